@@ -3,15 +3,25 @@
  */
 package com.IR.SearchEngine.app;
 
+import com.IR.SearchEngine.cache.QueryResultCache;
 import com.IR.SearchEngine.data.Document;
 import com.IR.SearchEngine.data.DocumentScore;
 import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.indexing.DecodedBlockCache;
+import com.IR.SearchEngine.indexing.ExternalIndexBuilder;
+import com.IR.SearchEngine.indexing.IndexReader;
+import com.IR.SearchEngine.indexing.IndexWriter;
 import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.indexing.PostingsCodec;
+import com.IR.SearchEngine.indexing.VByteCodec;
 import com.IR.SearchEngine.model.BM25;
 import com.IR.SearchEngine.model.IModel;
+import com.IR.SearchEngine.model.ParallelScorer;
 import com.IR.SearchEngine.model.VSM;
 import com.IR.SearchEngine.preprocessing.IPreprocessor;
 import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.query.ParsedQuery;
+import com.IR.SearchEngine.query.QueryParser;
 import com.IR.SearchEngine.util.DocumentLoader;
 
 import java.io.BufferedReader;
@@ -25,6 +35,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.stream.Collectors;
 import com.IR.SearchEngine.evaluation.Evaluator;
 import com.IR.SearchEngine.evaluation.GroundTruth;
@@ -44,17 +55,27 @@ public class App {
     private final Indexer indexer;
     private final VSM vsm;
     private final BM25 bm25;
-    private IModel currentModel; // The currently selected retrieval model
-    private boolean documentsIndexed;
+    private volatile IModel currentModel; // The currently selected retrieval model, read once per query
+    private volatile boolean documentsIndexed;
     private GroundTruth groundTruth;
     private Evaluator evaluator;
     private Map<String, String> queryIdToTextMap;
+    private final QueryParser queryParser;   // warns about malformed queries; keys queries with operators
+    private final QueryResultCache resultCache;
+    private volatile boolean resultCacheEnabled;
     
     // Paths to document and query resources - using project root as base
     private static final String DOCUMENTS_PATH = getResourcePath("documents");
     private static final String QUERIES_PATH = getResourcePath("queries");
     private static final String QRELS_FILE_PATH = getResourceFilePath("qrels/qrels.txt");
     private static final String OUTPUT_PATH = getResourcePath("output");
+    private static final int SNIPPET_RADIUS = 80; // characters on each side of the query word in a snippet
+    private static final int RESULT_CACHE_ENTRIES = 1000;
+    private static final long RESULT_CACHE_BYTES = 16L << 20;
+    private static final long BLOCK_CACHE_BYTES = 32L << 20;
+    private static final String USAGE = "Usage: App [--index <file>] [--rebuild] [--verify-index]"
+            + " [--codec vbyte|pfor|eliasfano] [--threads <n>] [--no-positions] [--warm-cache <file>]"
+            + " [--block-cache <MB>] [--parallel-threshold <postings>] [--memory-budget <MB>]";
     
     /**
      * Gets the absolute path to a resource directory.
@@ -119,11 +140,85 @@ public class App {
      * Constructor that initializes the search engine components.
      */
     public App() {
+        this(null, false, new VByteCodec());
+    }
+    
+    /**
+     * Constructor that can serve from a saved index file.
+     * If the index file exists (and rebuild is false) it is opened instead of
+     * loading and preprocessing the documents; otherwise the documents are
+     * indexed and the result is saved to the file for the next start.
+     * 
+     * @param indexPath Index file, or null to always index the documents in memory
+     * @param rebuild True to rebuild the index file even if it exists
+     * @param codec Postings codec used when building the index
+     */
+    public App(Path indexPath, boolean rebuild, PostingsCodec codec) {
+        this(indexPath, rebuild, codec, 1);
+    }
+    
+    /**
+     * Constructor that can serve from a saved index file and builds new indexes
+     * on several threads.
+     * 
+     * @param indexPath Index file, or null to always index the documents in memory
+     * @param rebuild True to rebuild the index file even if it exists
+     * @param codec Postings codec used when building the index
+     * @param indexingThreads Number of threads used to invert documents
+     */
+    public App(Path indexPath, boolean rebuild, PostingsCodec codec, int indexingThreads) {
+        this(indexPath, rebuild, codec, indexingThreads, true);
+    }
+    
+    /**
+     * Constructor that can serve from a saved index file and chooses whether a
+     * new index stores term positions. A saved index keeps the setting it was built with.
+     * 
+     * @param indexPath Index file, or null to always index the documents in memory
+     * @param rebuild True to rebuild the index file even if it exists
+     * @param codec Postings codec used when building the index
+     * @param indexingThreads Number of threads used to invert documents
+     * @param storePositions False to build postings without term positions
+     */
+    public App(Path indexPath, boolean rebuild, PostingsCodec codec, int indexingThreads, boolean storePositions) {
+        this(indexPath, rebuild, codec, indexingThreads, storePositions, 0);
+    }
+    
+    /**
+     * Constructor that can build a missing index file without holding the corpus
+     * in memory. With a memory budget, a new index file is built by ExternalIndexBuilder,
+     * loading and preprocessing one document at a time, and then opened like a saved
+     * index; without one, the documents are indexed in memory and saved.
+     * 
+     * @param indexPath Index file, or null to always index the documents in memory
+     * @param rebuild True to rebuild the index file even if it exists
+     * @param codec Postings codec used when building the index
+     * @param indexingThreads Number of threads used to invert documents in memory
+     * @param storePositions False to build postings without term positions
+     * @param memoryBudget Run buffer size in bytes for building the index file externally,
+     *                     or 0 to index in memory; ignored without an index file
+     */
+    public App(Path indexPath, boolean rebuild, PostingsCodec codec, int indexingThreads, boolean storePositions,
+               long memoryBudget) {
         System.out.println("Initializing Search Engine...");
         this.documentLoader = new DocumentLoader();
         this.preprocessor = new Preprocessor();
-        this.indexer = new Indexer();
-        this.documentsIndexed = false;
+        this.queryParser = new QueryParser(preprocessor);
+        this.resultCache = new QueryResultCache(RESULT_CACHE_ENTRIES, RESULT_CACHE_BYTES);
+        this.resultCacheEnabled = true;
+        Indexer savedIndex = rebuild ? null : openSavedIndex(indexPath);
+        if (savedIndex == null && indexPath != null && memoryBudget > 0) {
+            savedIndex = buildExternalIndex(indexPath, codec, storePositions, memoryBudget);
+        }
+        if (savedIndex != null) {
+            this.indexer = savedIndex;
+        } else {
+            this.indexer = new Indexer(codec);
+            this.indexer.setStorePositions(storePositions);
+        }
+        this.indexer.setIndexingThreads(indexingThreads);
+        this.indexer.setBlockCache(new DecodedBlockCache(BLOCK_CACHE_BYTES));
+        this.documentsIndexed = savedIndex != null;
 
         // Ensure resource directories exist (including for qrels)
         ensureResourceDirectoriesExist();
@@ -155,18 +250,23 @@ public class App {
         this.queryIdToTextMap = loadQueries(); // Load queries and store the map
         this.evaluator = new Evaluator(this, this.groundTruth, this.queryIdToTextMap);
         
-        // Automatically load and index documents on startup
-        try {
-            System.out.println("Auto-indexing documents on startup...");
-            List<Document> documents = loadAndPreprocessDocuments();
-            if (documents.isEmpty()) {
-                System.out.println("Warning: No documents were indexed on startup.");
-            } else {
-                System.out.println("Auto-indexing complete. " + documents.size() + " documents are ready for search.");
+        // Automatically load and index documents on startup, unless a saved index was opened
+        if (!documentsIndexed) {
+            try {
+                System.out.println("Auto-indexing documents on startup...");
+                List<Document> documents = loadAndPreprocessDocuments();
+                if (documents.isEmpty()) {
+                    System.out.println("Warning: No documents were indexed on startup.");
+                } else {
+                    System.out.println("Auto-indexing complete. " + documents.size() + " documents are ready for search.");
+                    if (indexPath != null) {
+                        saveIndex(indexPath);
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Error during auto-indexing: " + e.getMessage());
+                e.printStackTrace();
             }
-        } catch (Exception e) {
-            System.err.println("Error during auto-indexing: " + e.getMessage());
-            e.printStackTrace();
         }
 
         // Export document IDs after indexing
@@ -186,6 +286,86 @@ public class App {
         this.currentModel = this.vsm;
     }
 
+    /**
+     * Opens a saved index file if it exists.
+     * 
+     * @param indexPath The index file, or null
+     * @return The opened index, or null if there is no usable index file
+     */
+    private static Indexer openSavedIndex(Path indexPath) {
+        if (indexPath == null || !Files.exists(indexPath)) {
+            return null;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Indexer saved = IndexReader.open(indexPath);
+            System.out.println("Opened index " + indexPath.toAbsolutePath() + " in "
+                    + (System.currentTimeMillis() - start) + " ms (" + saved.getDocumentCount()
+                    + " documents, " + saved.getVocabularySize() + " terms, codec "
+                    + saved.getCodec().getName() + (saved.isStorePositions() ? "" : ", no positions") + ")");
+            return saved;
+        } catch (IOException e) {
+            System.err.println("Could not open index " + indexPath + ": " + e.getMessage());
+            System.err.println("Rebuilding the index from the documents instead.");
+            return null;
+        }
+    }
+    
+    /**
+     * Builds an index file with ExternalIndexBuilder and opens it. Documents are
+     * loaded and preprocessed one at a time, so only the run buffer (the memory
+     * budget), the vocabulary and the document lengths stay in the heap.
+     * 
+     * @param indexPath The index file
+     * @param codec Postings codec
+     * @param storePositions False to build postings without term positions
+     * @param memoryBudget Run buffer size in bytes
+     * @return The opened index, or null if it could not be built
+     */
+    private Indexer buildExternalIndex(Path indexPath, PostingsCodec codec, boolean storePositions, long memoryBudget) {
+        Path documentsDir = Paths.get(DOCUMENTS_PATH);
+        System.out.println("Building index " + indexPath.toAbsolutePath() + " from " + documentsDir.toAbsolutePath()
+                + " with a memory budget of " + (memoryBudget >> 20) + " MB...");
+        long start = System.currentTimeMillis();
+        try (ExternalIndexBuilder builder = new ExternalIndexBuilder(indexPath, codec, memoryBudget)) {
+            builder.setStorePositions(storePositions);
+            for (Path file : documentLoader.findTextFiles(documentsDir)) {
+                Document document;
+                try {
+                    document = documentLoader.loadTextDocument(file);
+                } catch (IOException e) {
+                    System.err.println("Error loading document: " + file + ": " + e.getMessage());
+                    continue;
+                }
+                builder.addDocument(preprocessor.preprocessDocument(document));
+            }
+            long bytes = builder.finish();
+            System.out.println("Built index from " + builder.getDocumentCount() + " documents (" + bytes
+                    + " bytes, " + builder.getRunCount() + " runs) in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not build index " + indexPath + ": " + e.getMessage());
+            System.err.println("Indexing the documents in memory instead.");
+            return null;
+        }
+        return openSavedIndex(indexPath);
+    }
+    
+    /**
+     * Saves the current index to a file.
+     * 
+     * @param indexPath The index file
+     */
+    public void saveIndex(Path indexPath) {
+        try {
+            long start = System.currentTimeMillis();
+            long bytes = IndexWriter.write(indexer, indexPath);
+            System.out.println("Saved index to " + indexPath.toAbsolutePath() + " (" + bytes + " bytes) in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException e) {
+            System.err.println("Error saving index to " + indexPath + ": " + e.getMessage());
+        }
+    }
+
     /**
      * Exports all indexed document IDs to a file.
      */
@@ -248,8 +428,10 @@ public class App {
     
     /**
      * Loads documents from the default documents directory, preprocesses them, and indexes them.
+     * Documents that are already indexed (by ID) are skipped, so running this again
+     * only adds new files as a new segment.
      * 
-     * @return List of preprocessed and indexed documents
+     * @return List of newly preprocessed and indexed documents
      */
     public List<Document> loadAndPreprocessDocuments() {
         try {
@@ -269,6 +451,21 @@ public class App {
             List<Document> documents = documentLoader.loadTextDocumentsFromDirectory(path);
             System.out.println("Loaded " + documents.size() + " documents.");
             
+            // Index only documents that are not in the index yet; the existing segments are kept
+            Set<String> indexedIds = indexer.getAllDocuments().stream()
+                .map(Document::getId)
+                .collect(Collectors.toSet());
+            if (!indexedIds.isEmpty()) {
+                documents = documents.stream()
+                    .filter(doc -> !indexedIds.contains(doc.getId()))
+                    .collect(Collectors.toList());
+                System.out.println(indexedIds.size() + " documents are already indexed, "
+                    + documents.size() + " new documents to index.");
+                if (documents.isEmpty()) {
+                    return documents;
+                }
+            }
+            
             // Log a sample of the documents for debugging
             if (!documents.isEmpty()) {
                 Document sampleDoc = documents.get(0);
@@ -292,7 +489,8 @@ public class App {
             // Index the preprocessed documents
             int indexedCount = indexer.indexDocuments(preprocessedDocs);
             System.out.println("Indexed " + indexedCount + " documents.");
-            System.out.println("Vocabulary size: " + indexer.getVocabularySize() + " unique terms");
+            System.out.println("Vocabulary size: " + indexer.getVocabularySize() + " unique terms, "
+                + indexer.getSegmentCount() + " segments");
             documentsIndexed = true;
             
             return preprocessedDocs;
@@ -358,6 +556,144 @@ public class App {
         return currentModel.getModelName();
     }
     
+    /**
+     * Gets the indexer holding the searched index.
+     * 
+     * @return The indexer
+     */
+    public Indexer getIndexer() {
+        return indexer;
+    }
+    
+    /**
+     * Gets the BM25 model, e.g. to change its execution mode.
+     * 
+     * @return The BM25 model
+     */
+    public BM25 getBM25Model() {
+        return bm25;
+    }
+    
+    /**
+     * Gets the evaluator over the loaded ground truth and queries.
+     * 
+     * @return The evaluator
+     */
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+    
+    /**
+     * Gets the cache of search results, e.g. for its hit and miss counters.
+     * 
+     * @return The result cache
+     */
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+    
+    /**
+     * Enables or disables the result cache, e.g. to time the models themselves.
+     * Cached results are kept while the cache is disabled.
+     * 
+     * @param enabled False to always run the model
+     */
+    public void setResultCacheEnabled(boolean enabled) {
+        this.resultCacheEnabled = enabled;
+    }
+    
+    /**
+     * Replaces the cache of decoded postings blocks shared by all queries.
+     * 
+     * @param maxBytes Size of the new cache, or 0 to decode every block
+     */
+    public void setBlockCacheSize(long maxBytes) {
+        indexer.setBlockCache(maxBytes > 0 ? new DecodedBlockCache(maxBytes) : null);
+    }
+    
+    /**
+     * Sets the postings volume from which the models score a query on several
+     * threads (see ParallelScorer).
+     * 
+     * @param postingsThreshold Minimum postings of a parallel query, Long.MAX_VALUE to never split
+     * @throws IllegalArgumentException If the threshold is negative
+     */
+    public void setParallelThreshold(long postingsThreshold) {
+        bm25.setParallelThreshold(postingsThreshold);
+        vsm.setParallelThreshold(postingsThreshold);
+    }
+    
+    /**
+     * Warms the result cache by running the queries of a query log with the
+     * current model. Every run is also counted by the cache's admission policy,
+     * so the queries that occur most often in the log are the ones kept.
+     * 
+     * @param queryLog File with one query per line; empty lines and lines starting with # are skipped
+     * @param topK The number of results to cache per query
+     * @return The number of queries run
+     * @throws IOException If the file cannot be read
+     */
+    public int warmResultCache(Path queryLog, int topK) throws IOException {
+        int count = 0;
+        for (String line : Files.readAllLines(queryLog, StandardCharsets.UTF_8)) {
+            String query = line.trim();
+            if (!query.isEmpty() && !query.startsWith("#") && executeQuery(query, topK) != null) {
+                count++;
+            }
+        }
+        System.out.println("Warmed result cache with " + count + " queries: " + resultCache);
+        return count;
+    }
+    
+    /**
+     * Releases the document loader's threads. Call once the application is no longer used.
+     */
+    public void shutdown() {
+        documentLoader.shutdown();
+    }
+    
+    /**
+     * Prints a short snippet of every result. The content of each result is
+     * loaded from the document store only now, one compressed block per document.
+     * 
+     * @param results The search results
+     * @param query The query, whose first matching word centers the snippet
+     */
+    public void printSnippets(QueryResult results, String query) {
+        System.out.println("Snippets:");
+        int rank = 1;
+        for (DocumentScore result : results.getResults()) {
+            String content = result.getDocId() >= 0 ? indexer.getDocumentContent(result.getDocId()) : null;
+            System.out.println(rank++ + ". " + result.getDocument().getTitle() + ": "
+                + (content != null ? snippet(content, query) : "(no stored content)"));
+        }
+    }
+    
+    /**
+     * Extracts about 160 characters around the first query word found in the text,
+     * or the start of the text if no query word occurs in it.
+     * 
+     * @param content The document content
+     * @param query The query
+     * @return The snippet on a single line
+     */
+    private static String snippet(String content, String query) {
+        String lowerContent = content.toLowerCase();
+        int match = -1;
+        for (String word : query.toLowerCase().split("\\W+")) {
+            if (word.length() > 2) {
+                match = lowerContent.indexOf(word);
+                if (match >= 0) {
+                    break;
+                }
+            }
+        }
+        int start = Math.max(0, match - SNIPPET_RADIUS);
+        int end = Math.min(content.length(), match >= 0 ? match + SNIPPET_RADIUS : 2 * SNIPPET_RADIUS);
+        return (start > 0 ? "..." : "") + content.substring(start, end).replaceAll("\\s+", " ").trim()
+            + (end < content.length() ? "..." : "");
+    }
+    
     /**
      * Switches the retrieval model to the specified model.
      * 
@@ -388,19 +724,24 @@ public class App {
     /**
      * Executes a search query using the currently selected retrieval model.
      * Will index documents if they haven't been indexed yet.
+     * Safe to call from several threads at once.
      * 
      * @param query The query string to search for
      * @param topK The number of top results to return
      * @return The search results or null if indexing failed
      */
     public QueryResult executeQuery(String query, int topK) {
-        // Make sure documents are indexed
+        // Make sure documents are indexed, once even if several threads search
         if (!documentsIndexed) {
-            System.out.println("Documents not yet indexed. Indexing now...");
-            List<Document> documents = loadAndPreprocessDocuments();
-            if (documents.isEmpty()) {
-                System.err.println("Failed to index documents. Cannot execute query.");
-                return null;
+            synchronized (this) {
+                if (!documentsIndexed) {
+                    System.out.println("Documents not yet indexed. Indexing now...");
+                    List<Document> documents = loadAndPreprocessDocuments();
+                    if (documents.isEmpty()) {
+                        System.err.println("Failed to index documents. Cannot execute query.");
+                        return null;
+                    }
+                }
             }
         }
         
@@ -411,22 +752,141 @@ public class App {
             return null;
         }
         
-        // Execute the search using the current model
+        // Execute the search using the current model; a concurrent switch applies to the next query
+        IModel model = currentModel;
         System.out.println("Executing search with query: " + query);
         System.out.println("Processed query: " + processedQuery);
-        System.out.println("Using model: " + currentModel.getModelName());
+        System.out.println("Using model: " + model.getModelName());
+        ParsedQuery parsedQuery = queryParser.parse(query);
+        for (String warning : parsedQuery.getWarnings()) {
+            System.out.println("Warning: " + warning);
+        }
+        
+        if (!resultCacheEnabled) {
+            return model.search(query, processedQuery, topK);
+        }
         
-        QueryResult results = currentModel.search(query, processedQuery, topK);
+        // Queries with operators are keyed by their query tree: "convex AND hull" and
+        // "convex hull" preprocess the same but match different documents
+        long startTime = System.currentTimeMillis();
+        String cacheQuery = parsedQuery.hasConstraints() ? parsedQuery.toString() : processedQuery;
+        QueryResultCache.Key key = new QueryResultCache.Key(cacheQuery, model.getModelName(),
+            model.getConfiguration(), topK);
+        long indexVersion = indexer.snapshot().getVersion();
+        QueryResult cached = resultCache.get(key, indexVersion);
+        if (cached != null) {
+            System.out.println("Result cache hit: " + resultCache);
+            return new QueryResult(query, cached.getProcessedQuery(), cached.getResults(),
+                System.currentTimeMillis() - startTime, cached.getModelName());
+        }
+        
+        QueryResult results = model.search(query, processedQuery, topK);
+        resultCache.put(key, results, indexVersion);
         return results;
 }
 
 /**
  * Demonstrates the document loading and preprocessing functionality.
  * 
+ * Options:
+ * - --index &lt;file&gt;  serve from a saved index file, building and saving it first if missing
+ * - --rebuild       rebuild the index file even if it exists
+ * - --verify-index  check the checksum and every posting of an existing index file first, rebuilding it if damaged
+ * - --codec &lt;name&gt;  postings codec for a new index: vbyte (default), pfor or eliasfano
+ * - --threads &lt;n&gt;   number of threads used to index documents (default 1)
+ * - --no-positions  build the index without term positions (smaller, no positional queries)
+ * - --warm-cache &lt;file&gt;  run the queries of a query log (one per line) to warm the result cache
+ * - --block-cache &lt;MB&gt;  size of the decoded postings block cache (default 32, 0 disables it)
+ * - --parallel-threshold &lt;postings&gt;  postings volume from which a query is scored on several threads
+ * - --memory-budget &lt;MB&gt;  build a missing --index file externally, loading one document at a time
+ * 
  * @param args Command line arguments
  */
 public static void main(String[] args) {
-    App app = new App();
+    Path indexPath = null;
+    boolean rebuild = false;
+    boolean verifyIndex = false;
+    PostingsCodec codec = new VByteCodec();
+    int indexingThreads = 1;
+    boolean storePositions = true;
+    Path queryLog = null;
+    long blockCacheMb = BLOCK_CACHE_BYTES >> 20;
+    long parallelThreshold = ParallelScorer.DEFAULT_POSTINGS_THRESHOLD;
+    long memoryBudgetMb = 0;
+    try {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--index":
+                    indexPath = Paths.get(requireValue(args, ++i, "--index"));
+                    break;
+                case "--rebuild":
+                    rebuild = true;
+                    break;
+                case "--verify-index":
+                    verifyIndex = true;
+                    break;
+                case "--codec":
+                    codec = PostingsCodec.forName(requireValue(args, ++i, "--codec"));
+                    break;
+                case "--threads":
+                    indexingThreads = (int) requireNumber(args, ++i, "--threads", 1, Integer.MAX_VALUE);
+                    break;
+                case "--no-positions":
+                    storePositions = false;
+                    break;
+                case "--warm-cache":
+                    queryLog = Paths.get(requireValue(args, ++i, "--warm-cache"));
+                    break;
+                case "--block-cache":
+                    blockCacheMb = requireNumber(args, ++i, "--block-cache", 0, Long.MAX_VALUE >> 20);
+                    break;
+                case "--parallel-threshold":
+                    parallelThreshold = requireNumber(args, ++i, "--parallel-threshold", 0, Long.MAX_VALUE);
+                    break;
+                case "--memory-budget":
+                    memoryBudgetMb = requireNumber(args, ++i, "--memory-budget", 0, Long.MAX_VALUE >> 20);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.err.println(USAGE);
+                    return;
+            }
+        }
+    } catch (IllegalArgumentException e) {
+        // Missing or malformed values, and unknown codec names
+        System.err.println("Invalid option: " + e.getMessage());
+        System.err.println(USAGE);
+        return;
+    }
+    
+    if (memoryBudgetMb != 0 && (indexPath == null || memoryBudgetMb << 20 < ExternalIndexBuilder.MIN_MEMORY_BUDGET)) {
+        System.err.println("--memory-budget needs --index and at least "
+                + (ExternalIndexBuilder.MIN_MEMORY_BUDGET >> 20) + " MB: " + memoryBudgetMb);
+        return;
+    }
+    
+    if (verifyIndex && indexPath == null) {
+        System.err.println("--verify-index needs --index");
+        return;
+    }
+    if (verifyIndex && !rebuild && Files.exists(indexPath) && !verifyIndexFile(indexPath)) {
+        rebuild = true;
+    }
+    
+    App app = new App(indexPath, rebuild, codec, indexingThreads, storePositions, memoryBudgetMb << 20);
+    if (blockCacheMb != BLOCK_CACHE_BYTES >> 20) {
+        app.setBlockCacheSize(blockCacheMb << 20);
+    }
+    if (parallelThreshold != ParallelScorer.DEFAULT_POSTINGS_THRESHOLD) {
+        app.setParallelThreshold(parallelThreshold);
+    }
+    if (queryLog != null) {
+        try {
+            app.warmResultCache(queryLog, 10);
+        } catch (IOException e) {
+            System.err.println("Could not read query log " + queryLog + ": " + e.getMessage());
+        }
+    }
     Scanner scanner = new Scanner(System.in);
     
     // Display actual paths for better debugging
@@ -498,6 +958,7 @@ public static void main(String[] args) {
                 QueryResult results = app.executeQuery(query, topK);
                 if (results != null) {
                     System.out.println("\n" + results);
+                    app.printSnippets(results, query);
                 }
                 break;
                 
@@ -531,6 +992,10 @@ public static void main(String[] args) {
                         System.out.println(batchResults);
                     }
                 }
+                System.out.println("\nResult cache: " + app.getResultCache());
+                if (app.indexer.getBlockCache() != null) {
+                    System.out.println("Block cache: " + app.indexer.getBlockCache());
+                }
                 break;
                 
             case "5":
@@ -599,9 +1064,71 @@ public static void main(String[] args) {
     scanner.close();
     
     // Shutdown the document loader to release resources
-    app.documentLoader.shutdown();
+    app.shutdown();
 }
     
+    /**
+     * Checks a saved index file with IndexReader.verify: the checksum over the whole
+     * file and every posting against the document table.
+     * 
+     * @param indexPath The index file
+     * @return True if the file passed, false if it is damaged and must be rebuilt
+     */
+    private static boolean verifyIndexFile(Path indexPath) {
+        try {
+            long start = System.currentTimeMillis();
+            Indexer verified = IndexReader.verify(indexPath);
+            System.out.println("Verified index " + indexPath.toAbsolutePath() + " in "
+                    + (System.currentTimeMillis() - start) + " ms (" + verified.getDocumentCount() + " documents, "
+                    + verified.getVocabularySize() + " terms)");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Index verification failed: " + e.getMessage());
+            System.err.println("Rebuilding the index from the documents instead.");
+            return false;
+        }
+    }
+    
+    /**
+     * Gets the value of a command line option.
+     * 
+     * @param args Command line arguments
+     * @param index Index of the value
+     * @param option Option name, for the error message
+     * @return The value
+     */
+    private static String requireValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+    
+    /**
+     * Gets the numeric value of a command line option.
+     * 
+     * @param args Command line arguments
+     * @param index Index of the value
+     * @param option The option, for the error message
+     * @param min Smallest accepted value
+     * @param max Largest accepted value
+     * @return The value
+     * @throws IllegalArgumentException If the value is missing, not a number or out of range
+     */
+    private static long requireNumber(String[] args, int index, String option, long min, long max) {
+        String value = requireValue(args, index, option);
+        long number;
+        try {
+            number = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " needs a number: " + value);
+        }
+        if (number < min || number > max) {
+            throw new IllegalArgumentException(option + " must be between " + min + " and " + max + ": " + value);
+        }
+        return number;
+    }
+    
     /**
      * Helper method to display information about documents.
      * 
@@ -638,7 +1165,7 @@ public static void main(String[] args) {
                 System.out.println("  ID: " + doc.getId());
                 System.out.println("  Title: " + doc.getTitle());
                 System.out.println("  Length: " + doc.getLength() + " terms");
-                System.out.println("  Term Count: " + doc.getTermFrequencies().size() + " unique terms");
+                System.out.println("  Term Count: " + doc.getUniqueTermCount() + " unique terms");
                 System.out.println();
             }
             
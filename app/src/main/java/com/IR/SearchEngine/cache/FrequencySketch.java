@@ -0,0 +1,91 @@
+package com.IR.SearchEngine.cache;
+
+/**
+ * Count-Min sketch estimating how often keys were accessed recently, the
+ * popularity measure of the TinyLFU admission policy.
+ *
+ * Implementation notes:
+ * - Four rows of 4-bit counters (stored in bytes, saturating at 15); the
+ *   estimate of a key is its smallest counter
+ * - After ten increments per counter of a row, every counter is halved, so old
+ *   popularity fades and the sketch follows the recent traffic
+ * - Rows are a power of two wide, at least the number of cached entries
+ * - Not thread-safe; the owning cache synchronizes
+ *
+ * @author alexhere
+ */
+final class FrequencySketch {
+
+    private static final int ROWS = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+        0x97cb3127L, 0xc2b2ae3d27d4eb4fL, 0x9e3779b97f4a7c15L, 0xbf58476d1ce4e5b9L
+    };
+
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Creates a sketch for a cache of the given number of entries.
+     *
+     * @param maxEntries Maximum number of cached entries
+     */
+    FrequencySketch(int maxEntries) {
+        int width = Integer.highestOneBit(Math.max(16, maxEntries - 1) << 1);
+        this.counters = new byte[ROWS][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Records an access to a key.
+     *
+     * @param hash The key's hash code
+     */
+    void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < ROWS; row++) {
+            int index = index(hash, row);
+            if (counters[row][index] < MAX_COUNT) {
+                counters[row][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Estimates how often a key was accessed recently.
+     *
+     * @param hash The key's hash code
+     * @return The estimated count, from 0 to 15
+     */
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < ROWS; row++) {
+            frequency = Math.min(frequency, counters[row][index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private int index(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Halves every counter.
+     */
+    private void reset() {
+        for (byte[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>= 1;
+            }
+        }
+        additions = sampleSize / 2;
+    }
+}
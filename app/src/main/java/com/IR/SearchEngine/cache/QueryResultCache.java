@@ -0,0 +1,390 @@
+package com.IR.SearchEngine.cache;
+
+import com.IR.SearchEngine.data.QueryResult;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache of search results, bounded by number of entries and by an estimate of
+ * their size in bytes, with the W-TinyLFU eviction policy.
+ *
+ * Policy:
+ * - New results enter a small LRU window (1% of the capacity), so a burst of
+ *   new queries cannot flush the cache
+ * - Results leaving the window compete for the main area with its eviction
+ *   victim: the one a frequency sketch estimates to be asked for more often
+ *   stays. Queries asked only once are rarely admitted
+ * - The main area is a segmented LRU: results asked for again are promoted from
+ *   the probation segment to the protected segment (80% of the main area)
+ *
+ * Responsibilities:
+ * - Return the cached result of a key, or record a miss
+ * - Drop everything when the index version changes, since new documents can
+ *   change every ranking
+ * - Count hits, misses, evictions and invalidations
+ *
+ * Implementation notes:
+ * - Results are stored as returned by the model; a hit returns the same
+ *   QueryResult, which callers must not modify
+ * - Sizes are estimates: the key strings, the result list and each
+ *   DocumentScore, but not the Documents, which the index already holds
+ * - A result larger than the whole byte budget is not cached
+ * - All methods are synchronized
+ *
+ * Usage:
+ * <pre>
+ * QueryResultCache.Key key = new QueryResultCache.Key(processedQuery, "BM25", configuration, 10);
+ * QueryResult result = cache.get(key, version);
+ * if (result == null) {
+ *     result = model.search(query, processedQuery, 10);
+ *     cache.put(key, result, version);
+ * }
+ * </pre>
+ *
+ * @author alexhere
+ */
+public class QueryResultCache {
+
+    /**
+     * Identifies a search: the same key on the same index version gives the same results.
+     */
+    public static final class Key {
+        private final String query;
+        private final String modelName;
+        private final String configuration;
+        private final int topK;
+        private final int hash;
+
+        /**
+         * Creates a key.
+         *
+         * @param query The processed query, or its query tree if it has operators
+         * @param modelName The model name
+         * @param configuration The model parameters that change its results
+         * @param topK Number of results asked for
+         */
+        public Key(String query, String modelName, String configuration, int topK) {
+            this.query = Objects.requireNonNull(query, "query");
+            this.modelName = Objects.requireNonNull(modelName, "modelName");
+            this.configuration = configuration == null ? "" : configuration;
+            this.topK = topK;
+            this.hash = Objects.hash(query, modelName, this.configuration, topK);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && topK == key.topK && query.equals(key.query)
+                    && modelName.equals(key.modelName) && configuration.equals(key.configuration);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return modelName + "[" + configuration + "] top " + topK + ": " + query;
+        }
+
+        long sizeInBytes() {
+            return 48 + 2L * (query.length() + modelName.length() + configuration.length());
+        }
+    }
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static final long ENTRY_OVERHEAD = 96;    // node, map entry, QueryResult
+    private static final long RESULT_OVERHEAD = 48;   // DocumentScore and its list slot
+
+    /**
+     * A cached result, linked into the list of its area.
+     */
+    private static final class Node {
+        final Key key;
+        final QueryResult result;
+        final long weight;
+        int area;
+        Node previous;
+        Node next;
+
+        Node(Key key, QueryResult result, long weight) {
+            this.key = key;
+            this.result = result;
+            this.weight = weight;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int windowMaxEntries;
+    private final long windowMaxBytes;
+    private final int protectedMaxEntries;
+    private final long protectedMaxBytes;
+
+    private final Map<Key, Node> entries = new HashMap<>();
+    private final FrequencySketch sketch;
+    private final Node[] heads = new Node[3];     // sentinels of the circular lists, most recent first
+    private final int[] areaEntries = new int[3];
+    private final long[] areaBytes = new long[3];
+    private long version = -1;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries Maximum number of cached results
+     * @param maxBytes Maximum estimated size of the cached results
+     * @throws IllegalArgumentException If a bound is not positive
+     */
+    public QueryResultCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.windowMaxEntries = Math.max(1, maxEntries / 100);
+        this.windowMaxBytes = Math.max(1, maxBytes / 100);
+        this.protectedMaxEntries = (int) (0.8 * (maxEntries - windowMaxEntries));
+        this.protectedMaxBytes = (long) (0.8 * (maxBytes - windowMaxBytes));
+        this.sketch = new FrequencySketch(maxEntries);
+        for (int area = 0; area < heads.length; area++) {
+            Node head = new Node(null, null, 0);
+            head.previous = head;
+            head.next = head;
+            heads[area] = head;
+        }
+    }
+
+    /**
+     * Gets the cached result of a search.
+     *
+     * @param key The search
+     * @param indexVersion Version of the index the search would run on
+     * @return The cached result, or null on a miss
+     */
+    public synchronized QueryResult get(Key key, long indexVersion) {
+        checkVersion(indexVersion);
+        sketch.increment(key.hashCode());
+        Node node = entries.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        if (node.area == PROBATION) {
+            // Asked for again: promote, demoting the least recent protected results if needed
+            moveTo(node, PROTECTED);
+            while (areaEntries[PROTECTED] > protectedMaxEntries || areaBytes[PROTECTED] > protectedMaxBytes) {
+                Node demoted = heads[PROTECTED].previous;
+                if (demoted == node) {
+                    break;
+                }
+                moveTo(demoted, PROBATION);
+            }
+        } else {
+            moveTo(node, node.area);
+        }
+        return node.result;
+    }
+
+    /**
+     * Caches the result of a search, evicting results if the cache is full.
+     *
+     * @param key The search
+     * @param result Its result
+     * @param indexVersion Version of the index the result was computed on
+     */
+    public synchronized void put(Key key, QueryResult result, long indexVersion) {
+        if (indexVersion < version) {
+            return; // computed on an older index
+        }
+        checkVersion(indexVersion);
+        long weight = ENTRY_OVERHEAD + key.sizeInBytes() + 2L * result.getOriginalQuery().length()
+                + RESULT_OVERHEAD * result.getResultCount();
+        Node existing = entries.remove(key);
+        if (existing != null) {
+            unlink(existing);
+        }
+        if (weight > maxBytes) {
+            return;
+        }
+        Node node = new Node(key, result, weight);
+        entries.put(key, node);
+        link(node, WINDOW);
+
+        // Results leaving the window are admitted to the main area only if they beat its victims
+        while (areaEntries[WINDOW] > windowMaxEntries || areaBytes[WINDOW] > windowMaxBytes) {
+            Node candidate = heads[WINDOW].previous;
+            unlink(candidate);
+            admit(candidate);
+        }
+    }
+
+    /**
+     * Drops every cached result. The counters are kept.
+     */
+    public synchronized void clear() {
+        for (Node node : entries.values()) {
+            node.previous = null;
+            node.next = null;
+        }
+        entries.clear();
+        for (int area = 0; area < heads.length; area++) {
+            heads[area].previous = heads[area];
+            heads[area].next = heads[area];
+            areaEntries[area] = 0;
+            areaBytes[area] = 0;
+        }
+    }
+
+    /**
+     * Moves a result from the window to the main area, evicting whichever
+     * of it and the main area's victims is less popular.
+     */
+    private void admit(Node candidate) {
+        int mainMaxEntries = maxEntries - windowMaxEntries;
+        long mainMaxBytes = maxBytes - windowMaxBytes;
+        int candidateFrequency = sketch.frequency(candidate.key.hashCode());
+        while (areaEntries[PROBATION] + areaEntries[PROTECTED] + 1 > mainMaxEntries
+                || areaBytes[PROBATION] + areaBytes[PROTECTED] + candidate.weight > mainMaxBytes) {
+            int victimArea = areaEntries[PROBATION] > 0 ? PROBATION : PROTECTED;
+            Node victim = heads[victimArea].previous;
+            if (victim == heads[victimArea] || sketch.frequency(victim.key.hashCode()) >= candidateFrequency) {
+                evict(candidate);
+                return;
+            }
+            unlink(victim);
+            evict(victim);
+        }
+        link(candidate, PROBATION);
+    }
+
+    private void evict(Node node) {
+        entries.remove(node.key);
+        evictions++;
+    }
+
+    private void checkVersion(long indexVersion) {
+        if (indexVersion != version) {
+            if (!entries.isEmpty()) {
+                invalidations++;
+            }
+            clear();
+            version = indexVersion;
+        }
+    }
+
+    private void moveTo(Node node, int area) {
+        unlink(node);
+        link(node, area);
+    }
+
+    private void link(Node node, int area) {
+        Node head = heads[area];
+        node.area = area;
+        node.previous = head;
+        node.next = head.next;
+        head.next.previous = node;
+        head.next = node;
+        areaEntries[area]++;
+        areaBytes[area] += node.weight;
+    }
+
+    private void unlink(Node node) {
+        node.previous.next = node.next;
+        node.next.previous = node.previous;
+        node.previous = null;
+        node.next = null;
+        areaEntries[node.area]--;
+        areaBytes[node.area] -= node.weight;
+    }
+
+    /**
+     * Gets the number of searches answered from the cache.
+     *
+     * @return The hit count
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of searches not found in the cache.
+     *
+     * @return The miss count
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of results evicted or refused admission because the cache was full.
+     *
+     * @return The eviction count
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of times the cache was emptied because the index version changed.
+     *
+     * @return The invalidation count
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Gets the fraction of searches answered from the cache.
+     *
+     * @return The hit rate, 0 if nothing was searched
+     */
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    /**
+     * Gets the number of cached results.
+     *
+     * @return The entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the estimated size of the cached results.
+     *
+     * @return The size in bytes
+     */
+    public synchronized long sizeInBytes() {
+        return areaBytes[WINDOW] + areaBytes[PROBATION] + areaBytes[PROTECTED];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d results (%d KB), hits=%d, misses=%d (hit rate %.1f%%), evictions=%d, invalidations=%d",
+                entries.size(), sizeInBytes() >> 10, hits, misses, 100.0 * getHitRate(), evictions, invalidations);
+    }
+}
@@ -5,6 +5,7 @@
 package com.IR.SearchEngine.data;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.nio.file.Path;
@@ -22,6 +23,10 @@ import java.nio.file.Path;
  * Implementation notes:
  * - Should be immutable after initial processing
  * - Will be used extensively by the indexing and retrieval components
+ * - The Indexer keeps a compact copy (see withoutContent()) holding only the ID,
+ *   title and statistics; the original content goes to the DocumentStore
+ * - Term positions are the indexes of the terms in the token stream after
+ *   stopword removal and stemming, as recorded by the Preprocessor
  * 
  * @author alexhere
  */
@@ -31,11 +36,13 @@ public class Document implements Serializable {
     
     private final String id;              // Unique identifier for the document
     private final String title;           // Document title
-    private final String originalContent;  // Original unprocessed content
+    private final String originalContent;  // Original unprocessed content (null in compact copies)
     private String processedContent;       // Content after preprocessing
     private Path filePath;                // Path to the source file (if applicable)
     private Map<String, Integer> termFrequencies; // Term frequency map for this document
+    private Map<String, int[]> termPositions; // Token positions of each term (null if not recorded)
     private int length;                   // Document length (in terms)
+    private int uniqueTermCount;          // Number of distinct terms
     
     /**
      * Constructor for creating a document with original content.
@@ -65,6 +72,35 @@ public class Document implements Serializable {
         this.filePath = filePath;
     }
     
+    /**
+     * Constructor for a compact document that holds only its ID, title and statistics.
+     * 
+     * @param id Unique identifier for the document
+     * @param title Document title
+     * @param length Document length (in terms)
+     * @param uniqueTermCount Number of distinct terms
+     */
+    public Document(String id, String title, int length, int uniqueTermCount) {
+        this.id = id;
+        this.title = title;
+        this.originalContent = null;
+        this.termFrequencies = Collections.emptyMap();
+        this.length = length;
+        this.uniqueTermCount = uniqueTermCount;
+    }
+    
+    /**
+     * Creates a compact copy of this document without its content, term
+     * frequency map and term positions, keeping the ID, title, file path and statistics.
+     * 
+     * @return The compact copy
+     */
+    public Document withoutContent() {
+        Document compact = new Document(id, title, length, uniqueTermCount);
+        compact.filePath = filePath;
+        return compact;
+    }
+    
     /**
      * Sets the processed content after preprocessing.
      * 
@@ -76,12 +112,30 @@ public class Document implements Serializable {
     
     /**
      * Updates the term frequency map and document length.
+     * Any recorded term positions are cleared, since they no longer match.
      * 
      * @param termFrequencies Map of terms to their frequencies
      */
     public void setTermFrequencies(Map<String, Integer> termFrequencies) {
         this.termFrequencies = termFrequencies;
+        this.termPositions = null;
         this.length = termFrequencies.values().stream().mapToInt(Integer::intValue).sum();
+        this.uniqueTermCount = termFrequencies.size();
+    }
+    
+    /**
+     * Sets the token positions of every term, and the term frequencies and
+     * document length that follow from them.
+     * 
+     * @param termPositions Map of terms to their positions, in increasing order
+     */
+    public void setTermPositions(Map<String, int[]> termPositions) {
+        Map<String, Integer> frequencies = new HashMap<>(termPositions.size() * 2);
+        for (Map.Entry<String, int[]> entry : termPositions.entrySet()) {
+            frequencies.put(entry.getKey(), entry.getValue().length);
+        }
+        setTermFrequencies(frequencies);
+        this.termPositions = termPositions;
     }
     
     /**
@@ -105,7 +159,7 @@ public class Document implements Serializable {
     /**
      * Gets the original unprocessed content.
      * 
-     * @return Original content
+     * @return Original content, or null for a compact copy (read it from the DocumentStore)
      */
     public String getOriginalContent() {
         return originalContent;
@@ -132,12 +186,21 @@ public class Document implements Serializable {
     /**
      * Gets the term frequency map.
      * 
-     * @return Map of terms to their frequencies
+     * @return Map of terms to their frequencies (empty for a compact copy)
      */
     public Map<String, Integer> getTermFrequencies() {
         return termFrequencies;
     }
     
+    /**
+     * Gets the token positions of every term.
+     * 
+     * @return Map of terms to their positions, or null if the positions were not recorded
+     */
+    public Map<String, int[]> getTermPositions() {
+        return termPositions;
+    }
+    
     /**
      * Gets the frequency of a specific term in this document.
      * 
@@ -157,6 +220,15 @@ public class Document implements Serializable {
         return length;
     }
     
+    /**
+     * Gets the number of distinct terms in the document.
+     * 
+     * @return Unique term count
+     */
+    public int getUniqueTermCount() {
+        return uniqueTermCount;
+    }
+    
     @Override
     public String toString() {
         return "Document{" +
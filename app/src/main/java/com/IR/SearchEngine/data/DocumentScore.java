@@ -24,6 +24,7 @@ public class DocumentScore implements Comparable<DocumentScore> {
     private final Document document;
     private final double score;
     private final String scoreType; // Optional, e.g., "TF-IDF", "BM25", etc.
+    private final int docId;        // Internal document ID, or -1 if unknown
     
     /**
      * Creates a new document score with the specified document and score.
@@ -43,12 +44,26 @@ public class DocumentScore implements Comparable<DocumentScore> {
      * @param scoreType The type of score (e.g., "TF-IDF", "BM25")
      */
     public DocumentScore(Document document, double score, String scoreType) {
+        this(document, score, scoreType, -1);
+    }
+    
+    /**
+     * Creates a new document score that also records the internal document ID,
+     * so the document's content can be loaded from the index when needed.
+     * 
+     * @param document The document
+     * @param score The relevance score
+     * @param scoreType The type of score (e.g., "TF-IDF", "BM25")
+     * @param docId The internal document ID
+     */
+    public DocumentScore(Document document, double score, String scoreType, int docId) {
         if (document == null) {
             throw new IllegalArgumentException("Document cannot be null");
         }
         this.document = document;
         this.score = score;
         this.scoreType = scoreType;
+        this.docId = docId;
     }
     
     /**
@@ -78,6 +93,15 @@ public class DocumentScore implements Comparable<DocumentScore> {
         return scoreType;
     }
     
+    /**
+     * Gets the internal document ID.
+     * 
+     * @return The document ID, or -1 if unknown
+     */
+    public int getDocId() {
+        return docId;
+    }
+    
     /**
      * Compares this document score with another document score.
      * Documents are compared by score in descending order (higher scores first).
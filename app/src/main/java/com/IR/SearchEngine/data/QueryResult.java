@@ -17,11 +17,14 @@ import java.util.List;
  * - Provide methods to access and iterate through results
  * - Support pagination and result filtering
  * - Maintain query metadata (execution time, etc.)
+ * - Tell a complete result from a partial one, cut short by its deadline
  * 
  * Implementation notes:
  * - Supports efficient sorting and filtering
  * - Works with different retrieval models (VSM, BM25, etc.)
  * - May include snippets or highlights for display purposes
+ * - The execution time only covers the search itself; the time a request
+ *   waited for a free slot in a SearchService is kept apart as the queue wait
  * 
  * @author alexhere
  */
@@ -32,6 +35,8 @@ public class QueryResult {
     private final List<DocumentScore> results;
     private final long executionTimeMs;
     private final String modelName; // E.g., "VSM", "BM25", etc.
+    private final QueryStatistics statistics;
+    private final long queueWaitMs;
     
     /**
      * Creates a new query result with the specified parameters.
@@ -44,11 +49,45 @@ public class QueryResult {
      */
     public QueryResult(String originalQuery, String processedQuery, List<DocumentScore> results, 
                       long executionTimeMs, String modelName) {
+        this(originalQuery, processedQuery, results, executionTimeMs, modelName, new QueryStatistics());
+    }
+    
+    /**
+     * Creates a new query result with execution statistics.
+     * 
+     * @param originalQuery The original query as entered by the user
+     * @param processedQuery The processed query after preprocessing
+     * @param results The list of document scores for this query
+     * @param executionTimeMs The execution time in milliseconds
+     * @param modelName The name of the retrieval model used (e.g., "VSM", "BM25")
+     * @param statistics Execution counters collected during the search
+     */
+    public QueryResult(String originalQuery, String processedQuery, List<DocumentScore> results, 
+                      long executionTimeMs, String modelName, QueryStatistics statistics) {
+        this(originalQuery, processedQuery, results, executionTimeMs, modelName, statistics, 0);
+    }
+    
+    /**
+     * Creates a new query result with execution statistics and the time the
+     * request waited before it was executed.
+     * 
+     * @param originalQuery The original query as entered by the user
+     * @param processedQuery The processed query after preprocessing
+     * @param results The list of document scores for this query
+     * @param executionTimeMs The execution time in milliseconds
+     * @param modelName The name of the retrieval model used (e.g., "VSM", "BM25")
+     * @param statistics Execution counters collected during the search
+     * @param queueWaitMs Time the request waited in a queue, in milliseconds
+     */
+    public QueryResult(String originalQuery, String processedQuery, List<DocumentScore> results, 
+                      long executionTimeMs, String modelName, QueryStatistics statistics, long queueWaitMs) {
         this.originalQuery = originalQuery;
         this.processedQuery = processedQuery;
         this.results = results != null ? results : new ArrayList<>();
         this.executionTimeMs = executionTimeMs;
         this.modelName = modelName;
+        this.statistics = statistics != null ? statistics : new QueryStatistics();
+        this.queueWaitMs = queueWaitMs;
     }
     
     /**
@@ -101,6 +140,37 @@ public class QueryResult {
         return executionTimeMs;
     }
     
+    /**
+     * Gets the time the request waited before its search started, e.g. for a
+     * free slot in a SearchService.
+     * 
+     * @return The queue wait in milliseconds, 0 if it was not queued
+     */
+    public long getQueueWaitMs() {
+        return queueWaitMs;
+    }
+    
+    /**
+     * Tells whether the search stopped at its deadline, so the results may miss
+     * documents that would rank in the top K.
+     * 
+     * @return True if the results are partial
+     */
+    public boolean isPartial() {
+        return statistics.isTimedOut();
+    }
+    
+    /**
+     * Creates a copy of this result with the time its request waited in a queue.
+     * 
+     * @param queueWaitMs The queue wait in milliseconds
+     * @return The copy
+     */
+    public QueryResult withQueueWait(long queueWaitMs) {
+        return new QueryResult(originalQuery, processedQuery, results, executionTimeMs, modelName, statistics,
+            queueWaitMs);
+    }
+    
     /**
      * Gets the name of the retrieval model used.
      * 
@@ -110,6 +180,33 @@ public class QueryResult {
         return modelName;
     }
     
+    /**
+     * Gets the execution statistics collected during the search.
+     * 
+     * @return The query statistics
+     */
+    public QueryStatistics getStatistics() {
+        return statistics;
+    }
+    
+    /**
+     * Gets the share of postings blocks this search read from the decoded block cache.
+     * 
+     * @return The hit ratio, 0 if no block cache was used
+     */
+    public double getBlockCacheHitRatio() {
+        return statistics.getBlockCacheHitRatio();
+    }
+    
+    /**
+     * Gets the estimated decoding time the block cache saved this search.
+     * 
+     * @return The time saved in nanoseconds
+     */
+    public long getDecodeNanosSaved() {
+        return statistics.getDecodeNanosSaved();
+    }
+    
     /**
      * Gets the number of results.
      * 
@@ -160,7 +257,8 @@ public class QueryResult {
             }
         }
         
-        return new QueryResult(originalQuery, processedQuery, filteredResults, executionTimeMs, modelName);
+        return new QueryResult(originalQuery, processedQuery, filteredResults, executionTimeMs, modelName, statistics,
+            queueWaitMs);
     }
     
     @Override
@@ -170,6 +268,18 @@ public class QueryResult {
         sb.append("Processed: ").append(processedQuery).append("\n");
         sb.append("Model: ").append(modelName).append("\n");
         sb.append("Found ").append(results.size()).append(" results in ").append(executionTimeMs).append(" ms\n");
+        if (queueWaitMs > 0) {
+            sb.append("Queue wait: ").append(queueWaitMs).append(" ms\n");
+        }
+        if (isPartial()) {
+            sb.append("Partial results: the search stopped at its deadline\n");
+        }
+        if (statistics.getExecution() != null) {
+            sb.append("Execution: ").append(statistics).append("\n");
+        } else if (statistics.getBlockCacheHits() + statistics.getBlockCacheMisses() > 0) {
+            sb.append(String.format("Block cache: %.1f%% hits, %.3f ms decoding saved%n",
+                100.0 * getBlockCacheHitRatio(), getDecodeNanosSaved() / 1e6));
+        }
         
         int rank = 1;
         for (DocumentScore result : results) {
@@ -0,0 +1,306 @@
+package com.IR.SearchEngine.data;
+
+/**
+ * Execution counters collected while a query is evaluated.
+ * Attached to a QueryResult so that the cost of different execution
+ * strategies can be compared per query.
+ * 
+ * Also carries the query's deadline, if it has one: the scoring loops ask
+ * isPastDeadline() as they go and stop early, returning the best results found
+ * so far, which are then flagged as partial.
+ * 
+ * Implementation notes:
+ * - Filled in by the retrieval model during a single search call
+ * - Not thread-safe; each query gets its own instance. A query scored on
+ *   several threads gives each of them its own instance (see forRange()) and
+ *   adds them up at the end
+ * - isPastDeadline() only reads the clock every {@value #DEADLINE_CHECK_INTERVAL}
+ *   calls, so scoring loops can call it once per document
+ * 
+ * @author alexhere
+ */
+public class QueryStatistics {
+    
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+    
+    private String execution;       // strategy that answered the query, e.g. BLOCK_MAX_WAND or MATCHING
+    private long postingsTotal;     // postings of all query terms
+    private long postingsScored;    // postings whose score contribution was computed
+    private long documentsScored;   // documents fully scored
+    private long documentsMatched;  // documents with a score above zero, 0 if the strategy does not count them
+    private long blockCacheHits;    // postings blocks read from the decoded block cache
+    private long blockCacheMisses;  // postings blocks decoded because they were not cached
+    private long decodeNanosSaved;  // estimated decoding time the cache hits saved
+    private int documentRanges;     // document ID ranges the query was split into, 0 if not split
+    
+    private boolean hasDeadline;
+    private long deadlineNanos;     // System.nanoTime() by which the query must answer
+    private int deadlineChecks;
+    private boolean timedOut;       // the query stopped early at its deadline
+    
+    /**
+     * Sets the time by which the query must answer.
+     * 
+     * @param deadlineNanos The deadline, as a System.nanoTime() value
+     */
+    public void setDeadline(long deadlineNanos) {
+        this.hasDeadline = true;
+        this.deadlineNanos = deadlineNanos;
+        this.deadlineChecks = 0;
+    }
+    
+    /**
+     * Tells whether the query has run past its deadline, in which case it is
+     * marked as timed out. Meant to be called from scoring loops.
+     * 
+     * @return True if the query should stop and return what it has
+     */
+    public boolean isPastDeadline() {
+        if (!hasDeadline || timedOut) {
+            return timedOut;
+        }
+        if (deadlineChecks++ % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadlineNanos >= 0) {
+            timedOut = true;
+        }
+        return timedOut;
+    }
+    
+    /**
+     * Tells whether the query stopped at its deadline, so its results may miss
+     * documents that would rank in the top K.
+     * 
+     * @return True if the results are partial
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+    
+    /**
+     * Records the strategy that answered the query: an execution mode, MATCHING
+     * for queries with operators, or the mode a strategy fell back to.
+     * 
+     * @param execution The strategy
+     */
+    public void setExecution(String execution) {
+        this.execution = execution;
+    }
+    
+    /**
+     * Records a postings block read from the decoded block cache.
+     * 
+     * @param savedNanos Estimated time decoding the block would have taken
+     */
+    public void addBlockCacheHit(long savedNanos) {
+        blockCacheHits++;
+        decodeNanosSaved += savedNanos;
+    }
+    
+    /**
+     * Records a postings block that had to be decoded although a block cache is used.
+     */
+    public void addBlockCacheMiss() {
+        blockCacheMisses++;
+    }
+    
+    /**
+     * Adds to the total number of postings of the query terms.
+     * 
+     * @param count Number of postings
+     */
+    public void addPostingsTotal(long count) {
+        postingsTotal += count;
+    }
+    
+    /**
+     * Adds to the number of postings that were scored.
+     * 
+     * @param count Number of postings
+     */
+    public void addPostingsScored(long count) {
+        postingsScored += count;
+    }
+    
+    /**
+     * Adds to the number of documents that were fully scored.
+     * 
+     * @param count Number of documents
+     */
+    public void addDocumentsScored(long count) {
+        documentsScored += count;
+    }
+    
+    /**
+     * Adds to the number of documents that matched the query.
+     * 
+     * @param count Number of documents
+     */
+    public void addDocumentsMatched(long count) {
+        documentsMatched += count;
+    }
+    
+    /**
+     * Records that the query was split into document ID ranges scored in parallel.
+     * 
+     * @param count Number of ranges
+     */
+    public void addDocumentRanges(int count) {
+        documentRanges += count;
+    }
+    
+    /**
+     * Creates empty statistics for a part of the query scored on another
+     * thread, with the same deadline.
+     * 
+     * @return The new statistics
+     */
+    public QueryStatistics forRange() {
+        QueryStatistics range = new QueryStatistics();
+        range.hasDeadline = hasDeadline;
+        range.deadlineNanos = deadlineNanos;
+        range.timedOut = timedOut;
+        return range;
+    }
+    
+    /**
+     * Adds the counters of a part of the query, which timed out the query if it
+     * stopped at the deadline.
+     * 
+     * @param other The statistics of the part
+     */
+    public void add(QueryStatistics other) {
+        postingsTotal += other.postingsTotal;
+        postingsScored += other.postingsScored;
+        documentsScored += other.documentsScored;
+        documentsMatched += other.documentsMatched;
+        blockCacheHits += other.blockCacheHits;
+        blockCacheMisses += other.blockCacheMisses;
+        decodeNanosSaved += other.decodeNanosSaved;
+        documentRanges += other.documentRanges;
+        timedOut |= other.timedOut;
+    }
+    
+    /**
+     * Gets the strategy that answered the query.
+     * 
+     * @return The strategy, or null if no model recorded one
+     */
+    public String getExecution() {
+        return execution;
+    }
+    
+    /**
+     * Gets the total number of postings of the query terms.
+     * 
+     * @return Total postings
+     */
+    public long getPostingsTotal() {
+        return postingsTotal;
+    }
+    
+    /**
+     * Gets the number of postings whose score contribution was computed.
+     * 
+     * @return Scored postings
+     */
+    public long getPostingsScored() {
+        return postingsScored;
+    }
+    
+    /**
+     * Gets the number of postings that were skipped without being scored.
+     * 
+     * @return Skipped postings
+     */
+    public long getPostingsSkipped() {
+        return Math.max(0, postingsTotal - postingsScored);
+    }
+    
+    /**
+     * Gets the number of documents that were fully scored.
+     * 
+     * @return Scored documents
+     */
+    public long getDocumentsScored() {
+        return documentsScored;
+    }
+    
+    /**
+     * Gets the number of documents that matched the query, counted by the
+     * strategies that visit every candidate (EXHAUSTIVE, TERM_AT_A_TIME, MATCHING).
+     * 
+     * @return Matching documents, 0 if the strategy does not count them
+     */
+    public long getDocumentsMatched() {
+        return documentsMatched;
+    }
+    
+    /**
+     * Gets the number of postings blocks read from the decoded block cache.
+     * 
+     * @return Block cache hits
+     */
+    public long getBlockCacheHits() {
+        return blockCacheHits;
+    }
+    
+    /**
+     * Gets the number of postings blocks decoded despite the block cache.
+     * 
+     * @return Block cache misses
+     */
+    public long getBlockCacheMisses() {
+        return blockCacheMisses;
+    }
+    
+    /**
+     * Gets the share of postings blocks read from the decoded block cache.
+     * 
+     * @return The hit ratio, 0 if no block cache was used
+     */
+    public double getBlockCacheHitRatio() {
+        long lookups = blockCacheHits + blockCacheMisses;
+        return lookups == 0 ? 0.0 : (double) blockCacheHits / lookups;
+    }
+    
+    /**
+     * Gets the decoding time the block cache saved, estimated from the cache's
+     * average decoding time per block.
+     * 
+     * @return Nanoseconds saved
+     */
+    public long getDecodeNanosSaved() {
+        return decodeNanosSaved;
+    }
+    
+    /**
+     * Gets the number of document ID ranges the query was split into.
+     * 
+     * @return Ranges scored in parallel, 0 if the query was scored on one thread
+     */
+    public int getDocumentRanges() {
+        return documentRanges;
+    }
+    
+    @Override
+    public String toString() {
+        String counters = String.format("postings scored=%d, skipped=%d (of %d), documents scored=%d",
+                postingsScored, getPostingsSkipped(), postingsTotal, documentsScored);
+        if (execution != null) {
+            counters = execution + ": " + counters;
+        }
+        if (documentsMatched > 0) {
+            counters += ", documents matched=" + documentsMatched;
+        }
+        if (blockCacheHits + blockCacheMisses > 0) {
+            counters += String.format(", block cache hits=%d/%d (%.1f%%), decode saved=%.3f ms", blockCacheHits,
+                    blockCacheHits + blockCacheMisses, 100.0 * getBlockCacheHitRatio(), decodeNanosSaved / 1e6);
+        }
+        if (documentRanges > 0) {
+            counters += ", split into " + documentRanges + " document ranges";
+        }
+        if (timedOut) {
+            counters += ", stopped at deadline";
+        }
+        return counters;
+    }
+}
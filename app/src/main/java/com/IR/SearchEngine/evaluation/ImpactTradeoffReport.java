@@ -0,0 +1,162 @@
+package com.IR.SearchEngine.evaluation;
+
+import com.IR.SearchEngine.app.App;
+import com.IR.SearchEngine.data.DocumentScore;
+import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.model.BM25;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reports the latency / effectiveness trade-off of BM25's approximate
+ * SCORE_AT_A_TIME execution against exact BM25 on the evaluation queries.
+ *
+ * For exact BM25 (BLOCK_MAX_WAND) and for score-at-a-time search with a range of
+ * postings budgets, prints MAP and P@K as computed by the Evaluator, the average
+ * time and postings scored per query, and how many of exact BM25's top K
+ * documents were also retrieved.
+ *
+ * Usage:
+ * <pre>
+ * java -cp app.jar com.IR.SearchEngine.evaluation.ImpactTradeoffReport [K] [budget ...]
+ * </pre>
+ *
+ * Implementation notes:
+ * - Without budgets on the command line, the budgets are fractions (100% down
+ *   to 5%) of the average number of postings of the queries' terms
+ * - Queries with boolean, phrase or NEAR operators are scored exactly in every
+ *   configuration (see BM25), so they only differ through the plain queries
+ * - P@K is the Evaluator's: relevant documents over the documents retrieved,
+ *   up to K, so a budget that returns fewer documents can raise it
+ * - Latency is averaged over several rounds of all queries, with the models'
+ *   logging discarded; the Evaluator runs are not timed. The result cache is
+ *   disabled, so every round runs the model
+ *
+ * @author alexhere
+ */
+public class ImpactTradeoffReport {
+
+    private static final int ROUNDS = 20;
+    private static final double[] BUDGET_FRACTIONS = {1.0, 0.5, 0.25, 0.1, 0.05};
+
+    public static void main(String[] args) {
+        int topK = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        App app = new App();
+        try {
+            app.switchModel("BM25");
+            app.setResultCacheEnabled(false);
+            BM25 bm25 = app.getBM25Model();
+            List<String> queries = new ArrayList<>(app.loadQueries().values());
+
+            // Exact BM25 gives the reference ranking and the postings per query
+            bm25.setExecutionMode(BM25.ExecutionMode.BLOCK_MAX_WAND);
+            List<Set<String>> exactTopK = new ArrayList<>();
+            long postingsTotal = 0;
+            PrintStream console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                for (String query : queries) {
+                    QueryResult result = app.executeQuery(query, topK);
+                    exactTopK.add(documentIds(result));
+                    postingsTotal += result != null ? result.getStatistics().getPostingsTotal() : 0;
+                }
+            } finally {
+                System.setOut(console);
+            }
+
+            List<Long> budgets = new ArrayList<>();
+            for (int i = 1; i < args.length; i++) {
+                budgets.add(Long.parseLong(args[i]));
+            }
+            if (budgets.isEmpty()) {
+                long averagePostings = Math.max(1, postingsTotal / Math.max(1, queries.size()));
+                for (double fraction : BUDGET_FRACTIONS) {
+                    budgets.add(Math.max(1, Math.round(averagePostings * fraction)));
+                }
+            }
+
+            System.out.println("\n=================== BM25 LATENCY / EFFECTIVENESS TRADE-OFF ===================");
+            System.out.printf("%d queries, top %d, %d-bit impacts%n", queries.size(), topK, bm25.getImpactBits());
+            System.out.printf("%-32s %7s %7s %10s %10s %8s%n", "Configuration", "MAP", "P@" + topK,
+                    "ms/query", "postings", "overlap");
+            report(app, "Exact (BLOCK_MAX_WAND)", queries, exactTopK, topK);
+            bm25.setExecutionMode(BM25.ExecutionMode.SCORE_AT_A_TIME);
+            bm25.setPostingsBudget(Long.MAX_VALUE);
+            // Until the impact index is built, queries would be answered exactly
+            bm25.waitForImpactIndex();
+            report(app, "Score-at-a-time, no budget", queries, exactTopK, topK);
+            for (long budget : budgets) {
+                bm25.setPostingsBudget(budget);
+                report(app, "Score-at-a-time, budget " + budget, queries, exactTopK, topK);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            app.shutdown();
+        }
+    }
+
+    /**
+     * Evaluates the current BM25 configuration and prints one row of the report.
+     */
+    private static void report(App app, String name, List<String> queries, List<Set<String>> exactTopK, int topK) {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Map<String, Map<String, Double>> metrics;
+        long elapsed;
+        long postingsScored = 0;
+        double overlap = 0.0;
+        try {
+            metrics = app.getEvaluator().evaluateAll(topK);
+
+            for (String query : queries) {
+                app.executeQuery(query, topK); // warm-up, and builds the impact index
+            }
+            long start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; round++) {
+                for (String query : queries) {
+                    app.executeQuery(query, topK);
+                }
+            }
+            elapsed = System.nanoTime() - start;
+
+            for (int q = 0; q < queries.size(); q++) {
+                QueryResult result = app.executeQuery(queries.get(q), topK);
+                postingsScored += result != null ? result.getStatistics().getPostingsScored() : 0;
+                Set<String> retrieved = documentIds(result);
+                retrieved.retainAll(exactTopK.get(q));
+                overlap += exactTopK.get(q).isEmpty() ? 1.0 : (double) retrieved.size() / exactTopK.get(q).size();
+            }
+        } finally {
+            System.setOut(console);
+        }
+
+        EvaluationMetrics calculator = new EvaluationMetrics();
+        List<Double> averagePrecisions = new ArrayList<>();
+        double precision = 0.0;
+        for (Map<String, Double> queryMetrics : metrics.values()) {
+            averagePrecisions.add(queryMetrics.getOrDefault("AveragePrecision", 0.0));
+            precision += queryMetrics.getOrDefault("Precision@" + topK, 0.0);
+        }
+        int n = Math.max(1, queries.size());
+        System.out.printf("%-32s %7.4f %7.4f %10.3f %10d %7.1f%%%n", name,
+                calculator.calculateMAP(averagePrecisions), precision / Math.max(1, metrics.size()),
+                elapsed / 1e6 / ROUNDS / n, postingsScored / n, 100.0 * overlap / n);
+    }
+
+    private static Set<String> documentIds(QueryResult result) {
+        Set<String> ids = new HashSet<>();
+        if (result != null) {
+            for (DocumentScore score : result.getResults()) {
+                ids.add(score.getDocument().getId());
+            }
+        }
+        return ids;
+    }
+}
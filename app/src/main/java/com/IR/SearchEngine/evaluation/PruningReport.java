@@ -0,0 +1,166 @@
+package com.IR.SearchEngine.evaluation;
+
+import com.IR.SearchEngine.app.App;
+import com.IR.SearchEngine.indexing.IndexPruner;
+import com.IR.SearchEngine.indexing.IndexWriter;
+import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.indexing.VByteCodec;
+import com.IR.SearchEngine.model.BM25;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Offline static pruning tool. Prunes the index of the document collection with
+ * IndexPruner, writes the pruned index files and reports their size next to
+ * the change in BM25 MAP and P@K, as computed by the Evaluator against the
+ * GroundTruth, when the application serves the pruned file.
+ *
+ * Usage:
+ * <pre>
+ * java -cp app.jar com.IR.SearchEngine.evaluation.PruningReport
+ * java -cp app.jar com.IR.SearchEngine.evaluation.PruningReport term [epsilon] [k] [output.idx]
+ * java -cp app.jar com.IR.SearchEngine.evaluation.PruningReport document [keepFraction] [output.idx]
+ * </pre>
+ * Without arguments, both strategies are reported for a range of settings and
+ * the pruned files are deleted afterwards. With a strategy, one pruned index
+ * is written to the given file (default pruned.idx) and kept.
+ *
+ * Implementation notes:
+ * - Term-centric pruning keeps at least the top k documents of every term, by
+ *   default {@value #TERM_TOP_K}: the collection is small and most terms occur in
+ *   only a few documents; larger collections usually take k around 10
+ * - Size is reported for the whole index file, which includes the stored
+ *   document content, and for the compressed postings alone, which is what
+ *   pruning shrinks
+ * - Postings are scored with the full index's BM25 term weights; the pruned
+ *   index is then opened and searched like any saved index, with its own statistics
+ * - P@K is the Evaluator's: relevant documents over the documents retrieved, up to K
+ *
+ * @author alexhere
+ */
+public class PruningReport {
+
+    private static final int TOP_K = 10;
+    private static final int TERM_TOP_K = 1;
+    private static final double[] EPSILONS = {0.2, 0.4, 0.6, 0.8, 1.0};
+    private static final double[] KEEP_FRACTIONS = {0.8, 0.6, 0.4, 0.2, 0.1};
+
+    public static void main(String[] args) throws IOException {
+        String strategy = args.length > 0 ? args[0] : "all";
+        if (!strategy.equals("all") && !strategy.equals("term") && !strategy.equals("document")) {
+            System.err.println("Usage: PruningReport [term [epsilon] [k] [output.idx] | document [keepFraction] [output.idx]]");
+            return;
+        }
+
+        App app = quietly(App::new);
+        Path directory = Files.createTempDirectory("pruning");
+        try {
+            Path fullFile = directory.resolve("full.idx");
+            long fullBytes = IndexWriter.write(app.getIndexer(), fullFile);
+            long fullPostings = app.getIndexer().getPostingsSizeInBytes();
+            double[] full = evaluate(fullFile);
+
+            System.out.println("\n======================== STATIC PRUNING (BM25) ========================");
+            System.out.printf("%-26s %8s %7s %12s %7s %8s %8s %8s %8s%n", "Index", "File KB", "", "Postings KB", "",
+                    "MAP", "dMAP", "P@" + TOP_K, "dP@" + TOP_K);
+            printRow("Full", fullBytes, fullBytes, fullPostings, fullPostings, full, full);
+
+            BM25 bm25 = app.getBM25Model();
+            if (strategy.equals("all")) {
+                for (double epsilon : EPSILONS) {
+                    Indexer pruned = IndexPruner.pruneByTerm(app.getIndexer(), bm25::getTermScorer, TERM_TOP_K, epsilon);
+                    report("Term-centric eps=" + epsilon + " k=" + TERM_TOP_K, pruned, directory.resolve("term.idx"),
+                            fullBytes, fullPostings, full);
+                }
+                for (double fraction : KEEP_FRACTIONS) {
+                    Indexer pruned = IndexPruner.pruneByDocument(app.getIndexer(), bm25::getTermScorer, fraction);
+                    report("Document-centric keep=" + fraction, pruned, directory.resolve("document.idx"),
+                            fullBytes, fullPostings, full);
+                }
+            } else {
+                boolean byTerm = strategy.equals("term");
+                double parameter = args.length > 1 ? Double.parseDouble(args[1]) : 0.5;
+                int k = byTerm && args.length > 2 ? Integer.parseInt(args[2]) : TERM_TOP_K;
+                int outputArg = byTerm ? 3 : 2;
+                Path output = Paths.get(args.length > outputArg ? args[outputArg] : "pruned.idx");
+                Indexer pruned = byTerm
+                        ? IndexPruner.pruneByTerm(app.getIndexer(), bm25::getTermScorer, k, parameter)
+                        : IndexPruner.pruneByDocument(app.getIndexer(), bm25::getTermScorer, parameter);
+                String name = byTerm ? "Term-centric eps=" + parameter + " k=" + k : "Document-centric keep=" + parameter;
+                report(name, pruned, output, fullBytes, fullPostings, full);
+                System.out.println("Pruned index written to " + output.toAbsolutePath());
+            }
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+            app.shutdown();
+        }
+    }
+
+    /**
+     * Writes a pruned index, evaluates it and prints its row.
+     */
+    private static void report(String name, Indexer pruned, Path file, long fullBytes, long fullPostings,
+                               double[] full) throws IOException {
+        long bytes = IndexWriter.write(pruned, file);
+        printRow(name, bytes, fullBytes, pruned.getPostingsSizeInBytes(), fullPostings, evaluate(file), full);
+    }
+
+    /**
+     * Serves an index file with a fresh application and evaluates BM25 on it.
+     *
+     * @return MAP and mean P@K
+     */
+    private static double[] evaluate(Path indexFile) {
+        App app = quietly(() -> new App(indexFile, false, new VByteCodec()));
+        try {
+            Map<String, Map<String, Double>> metrics = quietly(() -> {
+                app.switchModel("BM25");
+                return app.getEvaluator().evaluateAll(TOP_K);
+            });
+            List<Double> averagePrecisions = new ArrayList<>();
+            double precision = 0.0;
+            for (Map<String, Double> queryMetrics : metrics.values()) {
+                averagePrecisions.add(queryMetrics.getOrDefault("AveragePrecision", 0.0));
+                precision += queryMetrics.getOrDefault("Precision@" + TOP_K, 0.0);
+            }
+            return new double[] {new EvaluationMetrics().calculateMAP(averagePrecisions),
+                    precision / Math.max(1, metrics.size())};
+        } finally {
+            app.shutdown();
+        }
+    }
+
+    private static void printRow(String name, long bytes, long fullBytes, long postings, long fullPostings,
+                                 double[] metrics, double[] full) {
+        System.out.printf("%-26s %8d %6.1f%% %12d %6.1f%% %8.4f %+8.4f %8.4f %+8.4f%n", name,
+                bytes >> 10, 100.0 * bytes / fullBytes, postings >> 10, 100.0 * postings / fullPostings,
+                metrics[0], metrics[0] - full[0], metrics[1], metrics[1] - full[1]);
+    }
+
+    /**
+     * Runs a step with the application's logging discarded.
+     */
+    private static <T> T quietly(Supplier<T> step) {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return step.get();
+        } finally {
+            System.setOut(console);
+        }
+    }
+}
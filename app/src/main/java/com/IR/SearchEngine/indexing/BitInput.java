@@ -0,0 +1,66 @@
+package com.IR.SearchEngine.indexing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads bit fields and unary codes written by {@link BitOutput}.
+ * Consumes whole bytes from the underlying buffer, so after reading a
+ * flushed sequence the buffer is positioned right after it.
+ *
+ * @author alexhere
+ */
+class BitInput {
+
+    private final ByteBuffer in;
+    private long buffer;
+    private int bitCount;
+
+    BitInput(ByteBuffer in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads a fixed-width field.
+     *
+     * @param bits Number of bits (0-32)
+     * @return The value
+     */
+    int read(int bits) {
+        if (bits == 0) {
+            return 0;
+        }
+        while (bitCount < bits) {
+            buffer |= (long) (in.get() & 0xFF) << bitCount;
+            bitCount += 8;
+        }
+        int value = (int) (buffer & BitOutput.mask(bits));
+        buffer >>>= bits;
+        bitCount -= bits;
+        return value;
+    }
+
+    /**
+     * Reads a unary code (number of zero bits before the next one bit).
+     *
+     * @return The value
+     */
+    int readUnary() {
+        int zeros = 0;
+        while (true) {
+            if (bitCount == 0) {
+                buffer = in.get() & 0xFF;
+                bitCount = 8;
+            }
+            if (buffer == 0) {
+                zeros += bitCount;
+                bitCount = 0;
+                continue;
+            }
+            int trailing = Long.numberOfTrailingZeros(buffer);
+            zeros += trailing;
+            buffer >>>= trailing + 1;
+            bitCount -= trailing + 1;
+            return zeros;
+        }
+    }
+}
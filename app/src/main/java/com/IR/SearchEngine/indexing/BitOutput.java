@@ -0,0 +1,67 @@
+package com.IR.SearchEngine.indexing;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Writes fixed-width bit fields and unary codes to a byte stream,
+ * least significant bit first. Used by the bit-packing codecs.
+ *
+ * @author alexhere
+ */
+class BitOutput {
+
+    private final ByteArrayOutputStream out;
+    private long buffer;
+    private int bitCount;
+
+    BitOutput(ByteArrayOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the lowest {@code bits} bits of a value.
+     *
+     * @param value Value to write
+     * @param bits Number of bits (0-32)
+     */
+    void write(int value, int bits) {
+        if (bits == 0) {
+            return;
+        }
+        buffer |= (value & mask(bits)) << bitCount;
+        bitCount += bits;
+        while (bitCount >= 8) {
+            out.write((int) buffer & 0xFF);
+            buffer >>>= 8;
+            bitCount -= 8;
+        }
+    }
+
+    /**
+     * Writes {@code value} zero bits followed by a one bit.
+     *
+     * @param value Non-negative value to write in unary
+     */
+    void writeUnary(int value) {
+        while (value >= 32) {
+            write(0, 32);
+            value -= 32;
+        }
+        write(1 << value, value + 1);
+    }
+
+    /**
+     * Pads the last partial byte with zeros and writes it out.
+     */
+    void flush() {
+        if (bitCount > 0) {
+            out.write((int) buffer & 0xFF);
+        }
+        buffer = 0;
+        bitCount = 0;
+    }
+
+    static long mask(int bits) {
+        return bits == 64 ? -1L : (1L << bits) - 1;
+    }
+}
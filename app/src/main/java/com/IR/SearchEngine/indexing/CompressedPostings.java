@@ -0,0 +1,525 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.QueryStatistics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Immutable postings list for one term, encoded with a {@link PostingsCodec}
+ * in fixed-size blocks of {@value #BLOCK_SIZE} postings.
+ * Produced when the inverted index is sealed after a batch of documents has
+ * been indexed.
+ *
+ * Layout of one encoded block:
+ * - document IDs   (codec.encodeDocIds, relative to the last ID of the previous block)
+ * - frequencies    (codec.encodeValues)
+ * - positions      (codec.encodeValues over per-document position gaps; absent
+ *                   when the postings were indexed without positions)
+ *
+ * Skip data, one entry of {@value #SKIP_STRIDE} ints per block:
+ * - last document ID in the block
+ * - byte offset of the block
+ * - byte offset of the block's positions, or -1 if positions are not stored
+ * - maximum term frequency in the block
+ * - minimum document length in the block
+ *
+ * Implementation notes:
+ * - advance() binary searches the skip data and decodes only the target block
+ * - Positions are only decoded when a cursor asks for one in the current block
+ * - Max term frequency and min document length give block-level score upper
+ *   bounds for dynamic pruning (see PostingsCursor.blockUpperBound)
+ * - The encoded bytes live in a ByteBuffer: a heap buffer after indexing, or a
+ *   slice of a memory-mapped index file after IndexReader.open()
+ * - Cursors can share decoded blocks through a DecodedBlockCache; each list has
+ *   a unique ID, so a block is keyed by the list (segment and term) and its number
+ *
+ * @author alexhere
+ */
+public class CompressedPostings implements TermPostings {
+
+    public static final int BLOCK_SIZE = 128;
+
+    private static final int SKIP_STRIDE = 5;
+    private static final int LAST_DOC = 0;
+    private static final int BLOCK_OFFSET = 1;
+    private static final int POSITIONS_OFFSET = 2;
+    private static final int MAX_TF = 3;
+    private static final int MIN_DOC_LENGTH = 4;
+
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    private final PostingsCodec codec;
+    private final ByteBuffer data;
+    private final int[] skipData;
+    private final int docFrequency;
+    private final int maxTermFrequency;
+    private final boolean hasPositions;
+    private final long id;           // identifies the list's blocks in a DecodedBlockCache
+
+    private CompressedPostings(PostingsCodec codec, ByteBuffer data, int[] skipData, int docFrequency,
+                               int maxTermFrequency) {
+        this.codec = codec;
+        this.data = data;
+        this.skipData = skipData;
+        this.docFrequency = docFrequency;
+        this.maxTermFrequency = maxTermFrequency;
+        this.hasPositions = skipData.length == 0 || skipData[POSITIONS_OFFSET] >= 0;
+        this.id = NEXT_ID.getAndIncrement();
+    }
+
+    /**
+     * Encodes the postings of a term, with positions if its cursor has them.
+     *
+     * @param postings The postings to encode
+     * @param codec The codec to use
+     * @param docLengths Maps a document ID to its length, for the block-max metadata
+     * @return The compressed postings
+     */
+    public static CompressedPostings encode(TermPostings postings, PostingsCodec codec,
+                                            IntUnaryOperator docLengths) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Encoded encoded;
+        try {
+            encoded = encodeTo(postings, codec, docLengths, out);
+        } catch (IOException e) {
+            // Writing to a ByteArrayOutputStream does not fail
+            throw new UncheckedIOException(e);
+        }
+        return new CompressedPostings(codec, ByteBuffer.wrap(out.toByteArray()), encoded.skipData,
+                postings.size(), encoded.maxTermFrequency);
+    }
+
+    /**
+     * Encodes the postings of a term block by block into a stream, so the encoded
+     * bytes of a long list are never held in memory at once. The bytes are those
+     * encode() produces; ExternalIndexBuilder writes them straight to a file.
+     *
+     * @param postings The postings to encode
+     * @param codec The codec to use
+     * @param docLengths Maps a document ID to its length, for the block-max metadata
+     * @param out Receives the encoded blocks
+     * @return The skip data and sizes of the encoded postings
+     * @throws IOException If writing to the stream fails
+     */
+    static Encoded encodeTo(TermPostings postings, PostingsCodec codec, IntUnaryOperator docLengths,
+                            OutputStream out) throws IOException {
+        int df = postings.size();
+        int blockCount = (df + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] skipData = new int[blockCount * SKIP_STRIDE];
+        int[] docIds = new int[BLOCK_SIZE];
+        int[] freqs = new int[BLOCK_SIZE];
+        int[] positionGaps = new int[BLOCK_SIZE];
+        int maxTermFrequency = 0;
+
+        ByteArrayOutputStream blockOut = new ByteArrayOutputStream();
+        long dataLength = 0;
+        PostingsCursor cursor = postings.cursor();
+        boolean withPositions = cursor.hasPositions();
+        int previousDocId = -1;
+
+        for (int block = 0; block < blockCount; block++) {
+            int count = Math.min(BLOCK_SIZE, df - block * BLOCK_SIZE);
+            int positionCount = 0;
+            int blockMaxTf = 0;
+            int blockMinDocLength = Integer.MAX_VALUE;
+
+            for (int i = 0; i < count; i++) {
+                cursor.nextDoc();
+                docIds[i] = cursor.docId();
+                freqs[i] = cursor.termFrequency();
+                blockMaxTf = Math.max(blockMaxTf, freqs[i]);
+                blockMinDocLength = Math.min(blockMinDocLength, docLengths.applyAsInt(docIds[i]));
+
+                if (!withPositions) {
+                    continue;
+                }
+                if (positionCount + freqs[i] > positionGaps.length) {
+                    positionGaps = Arrays.copyOf(positionGaps,
+                            Math.max(positionCount + freqs[i], positionGaps.length * 2));
+                }
+                int previous = 0;
+                for (int p = 0; p < freqs[i]; p++) {
+                    int position = cursor.position(p);
+                    positionGaps[positionCount++] = position - previous;
+                    previous = position;
+                }
+            }
+
+            blockOut.reset();
+            codec.encodeDocIds(docIds, 0, count, previousDocId, blockOut);
+            codec.encodeValues(freqs, 0, count, blockOut);
+            int positionsOffset = blockOut.size();
+            if (withPositions) {
+                codec.encodeValues(positionGaps, 0, positionCount, blockOut);
+            }
+            if (dataLength + blockOut.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Postings of one term exceed " + Integer.MAX_VALUE + " bytes");
+            }
+
+            int skip = block * SKIP_STRIDE;
+            skipData[skip + LAST_DOC] = docIds[count - 1];
+            skipData[skip + BLOCK_OFFSET] = (int) dataLength;
+            skipData[skip + POSITIONS_OFFSET] = withPositions ? (int) dataLength + positionsOffset : -1;
+            skipData[skip + MAX_TF] = blockMaxTf;
+            skipData[skip + MIN_DOC_LENGTH] = blockMinDocLength;
+            blockOut.writeTo(out);
+            dataLength += blockOut.size();
+
+            previousDocId = docIds[count - 1];
+            maxTermFrequency = Math.max(maxTermFrequency, blockMaxTf);
+        }
+        return new Encoded(skipData, (int) dataLength, maxTermFrequency);
+    }
+
+    /**
+     * What encodeTo() tells about the postings it wrote to a stream.
+     */
+    static final class Encoded {
+
+        final int[] skipData;
+        final int dataLength;
+        final int maxTermFrequency;
+
+        Encoded(int[] skipData, int dataLength, int maxTermFrequency) {
+            this.skipData = skipData;
+            this.dataLength = dataLength;
+            this.maxTermFrequency = maxTermFrequency;
+        }
+
+        int blockCount() {
+            return skipData.length / SKIP_STRIDE;
+        }
+    }
+
+    /**
+     * Wraps postings that were encoded earlier, e.g. read back from an index file.
+     *
+     * @param codec The codec the data was encoded with
+     * @param data The encoded blocks (position 0 is the start of the first block)
+     * @param skipData The skip data
+     * @param docFrequency Number of postings
+     * @param maxTermFrequency Largest term frequency
+     * @return The postings
+     */
+    static CompressedPostings wrap(PostingsCodec codec, ByteBuffer data, int[] skipData, int docFrequency,
+                                   int maxTermFrequency) {
+        return new CompressedPostings(codec, data, skipData, docFrequency, maxTermFrequency);
+    }
+    
+    /**
+     * Gets a read-only view of the encoded blocks, for IndexWriter.
+     *
+     * @return The encoded data
+     */
+    ByteBuffer data() {
+        return data.asReadOnlyBuffer().position(0);
+    }
+    
+    /**
+     * Gets the skip data, for IndexWriter.
+     *
+     * @return The skip data (not copied)
+     */
+    int[] skipData() {
+        return skipData;
+    }
+
+    @Override
+    public int size() {
+        return docFrequency;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return data.capacity() + 4L * skipData.length;
+    }
+
+    /**
+     * Gets the codec used to encode this list.
+     *
+     * @return The codec
+     */
+    public PostingsCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Gets the number of blocks.
+     *
+     * @return Block count
+     */
+    public int getBlockCount() {
+        return skipData.length / SKIP_STRIDE;
+    }
+
+    /**
+     * Gets the largest term frequency of the term in any document.
+     *
+     * @return Maximum term frequency
+     */
+    public int getMaxTermFrequency() {
+        return maxTermFrequency;
+    }
+
+    /**
+     * Tells whether the blocks hold term positions.
+     *
+     * @return True if positions are stored
+     */
+    public boolean hasPositions() {
+        return hasPositions;
+    }
+
+    @Override
+    public PostingsCursor cursor() {
+        return new Cursor(null, null);
+    }
+
+    /**
+     * Creates a cursor that reads decoded blocks from a cache, and adds the
+     * blocks it decodes itself.
+     *
+     * @param cache The shared block cache
+     * @param statistics Counts the cache hits and misses, or null
+     * @return A postings cursor
+     */
+    public PostingsCursor cursor(DecodedBlockCache cache, QueryStatistics statistics) {
+        return new Cursor(cache, statistics);
+    }
+
+    /**
+     * Cursor decoding one block at a time.
+     */
+    private class Cursor implements PostingsCursor {
+
+        private final DecodedBlockCache cache;
+        private final QueryStatistics statistics;
+        private final boolean cacheable;
+
+        private final int blockCount = getBlockCount();
+        private final int[] docIds = new int[BLOCK_SIZE];
+        private final int[] freqs = new int[BLOCK_SIZE];
+        private final int[] positionStarts = new int[BLOCK_SIZE + 1];
+        private int[] positions = new int[BLOCK_SIZE];
+        private final ByteBuffer in = data.duplicate();
+
+        private int block = -1;          // block currently decoded
+        private int shallowBlock = 0;    // block whose metadata is exposed
+        private int blockDocCount;
+        private int index = -1;          // index of the current posting within the block
+        private int docId = -1;
+        private boolean positionsDecoded;
+
+        Cursor(DecodedBlockCache cache, QueryStatistics statistics) {
+            this.cache = cache;
+            this.statistics = statistics;
+            this.cacheable = cache != null && cache.admits(blockCount);
+        }
+
+        @Override
+        public int nextDoc() {
+            if (docId == NO_MORE_DOCS) {
+                return NO_MORE_DOCS;
+            }
+            if (block < 0 || index + 1 >= blockDocCount) {
+                if (block + 1 >= blockCount) {
+                    return exhaust();
+                }
+                decodeBlock(block + 1);
+            }
+            index++;
+            docId = docIds[index];
+            return docId;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (docId >= target) {
+                return docId;
+            }
+            int targetBlock = findBlock(target, Math.max(block, 0));
+            if (targetBlock >= blockCount) {
+                return exhaust();
+            }
+            if (targetBlock != block) {
+                decodeBlock(targetBlock);
+            }
+            // The target block's last document is >= target, so this terminates inside the block
+            do {
+                index++;
+            } while (docIds[index] < target);
+            docId = docIds[index];
+            return docId;
+        }
+
+        @Override
+        public int advanceShallow(int target) {
+            int from = Math.max(shallowBlock, Math.max(block, 0));
+            if (from < blockCount && skipData[from * SKIP_STRIDE + LAST_DOC] >= target) {
+                shallowBlock = from; // common case: target is still inside the current block
+                return skipData[from * SKIP_STRIDE + LAST_DOC];
+            }
+            shallowBlock = findBlock(target, from);
+            return blockLastDocId();
+        }
+
+        @Override
+        public int docId() {
+            return docId;
+        }
+
+        @Override
+        public int termFrequency() {
+            return freqs[index];
+        }
+
+        @Override
+        public int position(int i) {
+            if (!hasPositions) {
+                throw new IllegalStateException("Postings were stored without positions");
+            }
+            if (i < 0 || i >= freqs[index]) {
+                throw new IndexOutOfBoundsException("Position " + i + " of " + freqs[index]);
+            }
+            if (!positionsDecoded) {
+                decodePositions();
+            }
+            return positions[positionStarts[index] + i];
+        }
+
+        @Override
+        public boolean hasPositions() {
+            return hasPositions;
+        }
+
+        @Override
+        public int docFrequency() {
+            return docFrequency;
+        }
+
+        @Override
+        public int blockLastDocId() {
+            return shallowBlock < blockCount ? skipData[shallowBlock * SKIP_STRIDE + LAST_DOC] : NO_MORE_DOCS;
+        }
+
+        @Override
+        public int blockMaxTermFrequency() {
+            return shallowBlock < blockCount ? skipData[shallowBlock * SKIP_STRIDE + MAX_TF] : 0;
+        }
+
+        @Override
+        public int blockMinDocLength() {
+            return shallowBlock < blockCount ? skipData[shallowBlock * SKIP_STRIDE + MIN_DOC_LENGTH] : 0;
+        }
+
+        @Override
+        public int maxTermFrequency() {
+            return maxTermFrequency;
+        }
+
+        /**
+         * Searches the skip data for the first block, at or after {@code from},
+         * whose last document ID is >= target. Gallops forward first, since targets
+         * are usually close to the current block, then binary searches the bracket.
+         */
+        private int findBlock(int target, int from) {
+            int low = from;
+            int high = from;
+            int step = 1;
+            while (high < blockCount && skipData[high * SKIP_STRIDE + LAST_DOC] < target) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, blockCount);
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (skipData[mid * SKIP_STRIDE + LAST_DOC] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private void decodeBlock(int newBlock) {
+            block = newBlock;
+            shallowBlock = newBlock;
+            blockDocCount = Math.min(BLOCK_SIZE, docFrequency - newBlock * BLOCK_SIZE);
+            index = -1;
+            positionsDecoded = false;
+
+            if (cache == null) {
+                decodeBlockData(newBlock);
+                return;
+            }
+            if (!cacheable) {
+                if (statistics != null) {
+                    statistics.addBlockCacheMiss();
+                }
+                decodeBlockData(newBlock);
+                return;
+            }
+            long key = DecodedBlockCache.key(id, newBlock);
+            if (cache.read(key, docIds, freqs) >= 0) {
+                if (statistics != null) {
+                    statistics.addBlockCacheHit(cache.getAverageDecodeNanos());
+                }
+                return;
+            }
+            if (statistics != null) {
+                statistics.addBlockCacheMiss();
+            }
+            long start = System.nanoTime();
+            decodeBlockData(newBlock);
+            cache.put(key, docIds, freqs, blockDocCount, System.nanoTime() - start);
+        }
+
+        private void decodeBlockData(int newBlock) {
+            int skip = newBlock * SKIP_STRIDE;
+            int previousDocId = newBlock == 0 ? -1 : skipData[skip - SKIP_STRIDE + LAST_DOC];
+            in.position(skipData[skip + BLOCK_OFFSET]);
+            codec.decodeDocIds(in, docIds, 0, blockDocCount, previousDocId);
+            codec.decodeValues(in, freqs, 0, blockDocCount);
+        }
+
+        private void decodePositions() {
+            int positionCount = 0;
+            for (int i = 0; i < blockDocCount; i++) {
+                positionStarts[i] = positionCount;
+                positionCount += freqs[i];
+            }
+            positionStarts[blockDocCount] = positionCount;
+            if (positions.length < positionCount) {
+                positions = new int[positionCount];
+            }
+
+            in.position(skipData[block * SKIP_STRIDE + POSITIONS_OFFSET]);
+            codec.decodeValues(in, positions, 0, positionCount);
+
+            for (int i = 0; i < blockDocCount; i++) {
+                int previous = 0;
+                for (int p = positionStarts[i]; p < positionStarts[i + 1]; p++) {
+                    previous += positions[p];
+                    positions[p] = previous;
+                }
+            }
+            positionsDecoded = true;
+        }
+
+        private int exhaust() {
+            block = blockCount;
+            shallowBlock = blockCount;
+            docId = NO_MORE_DOCS;
+            return NO_MORE_DOCS;
+        }
+    }
+}
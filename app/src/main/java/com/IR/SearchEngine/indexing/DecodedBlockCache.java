@@ -0,0 +1,316 @@
+package com.IR.SearchEngine.indexing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of decoded postings blocks (document IDs and term frequencies), shared
+ * by all queries, so the blocks of frequent terms are decoded once instead of
+ * on every query.
+ *
+ * Blocks are keyed by the postings list they belong to, which identifies the
+ * segment and the term, and the block number. Once a merge replaces a segment,
+ * its blocks are never asked for again and age out of the cache.
+ *
+ * Responsibilities:
+ * - Copy a cached block into a cursor's buffers, or report a miss
+ * - Keep blocks decoded by cursors, within a size bound
+ * - Count hits, misses and evictions, and the average time a block takes to decode
+ *
+ * Implementation notes:
+ * - The cache is set-associative: a key hashes to a set of {@value #WAYS}
+ *   slots and can only live there, so lookups and evictions touch one set and
+ *   the cache has no lock at all, nor a map that boxes keys
+ * - A reader pins a block with a CAS on its pin count only while copying it;
+ *   eviction claims a block with a CAS from 0 pins, so a block is never
+ *   replaced while it is being read
+ * - Eviction is CLOCK within the set: a hit marks the block; the victim is the
+ *   first unmarked, unpinned block, and marks are cleared on the way
+ * - A block is only cached when it is decoded a second time: the first miss
+ *   only sets its bit in a "doorkeeper" bitmap, which is cleared periodically.
+ *   Blocks read once never displace blocks that are reused
+ * - Every block owns an int[] of 2 x {@value CompressedPostings#BLOCK_SIZE}
+ *   values. The new block reuses the buffer of the block it evicts, so a full
+ *   cache stops allocating buffers and does not churn the garbage collector
+ * - Postings lists with more blocks than 1/{@value #MAX_LIST_SHARE} of the
+ *   capacity are not cached: reading one through would evict most of the
+ *   cache while rarely hitting, and the cache bookkeeping would only add cost
+ * - Positions are not cached: they are variable-sized and only decoded for
+ *   positional queries
+ *
+ * Usage:
+ * <pre>
+ * indexer.setBlockCache(new DecodedBlockCache(32L &lt;&lt; 20));
+ * PostingsCursor cursor = indexer.snapshot().getPostings(termId, statistics);
+ * </pre>
+ *
+ * @author alexhere
+ */
+public class DecodedBlockCache {
+
+    private static final int WAYS = 8;
+    private static final int BUFFER_SIZE = 2 * CompressedPostings.BLOCK_SIZE;
+    private static final long BYTES_PER_BLOCK = 4L * BUFFER_SIZE + 64;  // buffer, block and pin count
+    private static final int EVICTED = -1;
+    private static final int MAX_LIST_SHARE = 8;
+    private static final AtomicIntegerFieldUpdater<Block> PINS =
+            AtomicIntegerFieldUpdater.newUpdater(Block.class, "pins");
+
+    /**
+     * A decoded block. Its pin count is EVICTED once it was replaced, after
+     * which its buffer belongs to the block that replaced it.
+     */
+    private static final class Block {
+        final long key;
+        final int[] buffer;           // document IDs, then term frequencies
+        final int count;
+        volatile int pins;
+        volatile boolean referenced;
+
+        Block(long key, int[] buffer, int count) {
+            this.key = key;
+            this.buffer = buffer;
+            this.count = count;
+        }
+    }
+
+    private final AtomicReferenceArray<Block> slots;   // sets of WAYS consecutive slots
+    private final int sets;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLongArray doorkeeper;          // blocks decoded once since the last reset
+    private final AtomicInteger doorkeeperAdditions = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile long averageDecodeNanos;             // moving average; racy updates are fine
+
+    /**
+     * Creates a cache. The capacity is rounded down to whole sets of {@value #WAYS} blocks.
+     *
+     * @param maxBytes Maximum size of the cached blocks, including their bookkeeping
+     * @throws IllegalArgumentException If maxBytes does not hold one set of blocks
+     */
+    public DecodedBlockCache(long maxBytes) {
+        if (maxBytes < WAYS * BYTES_PER_BLOCK) {
+            throw new IllegalArgumentException("maxBytes must hold at least " + WAYS + " blocks: " + maxBytes);
+        }
+        this.sets = (int) Math.min(1 << 26, maxBytes / BYTES_PER_BLOCK / WAYS);
+        this.slots = new AtomicReferenceArray<>(sets * WAYS);
+        this.doorkeeper = new AtomicLongArray(sets * WAYS / 16 + 1);  // 4 bits per block
+    }
+
+    /**
+     * Builds the key of a block.
+     *
+     * @param postingsId Unique ID of the postings list (see CompressedPostings)
+     * @param block Block number within the list
+     * @return The key
+     */
+    static long key(long postingsId, int block) {
+        return postingsId << 24 | block;   // a list of at most 2^31 postings has fewer than 2^24 blocks
+    }
+
+    /**
+     * Tells whether the blocks of a postings list are cached.
+     *
+     * @param blockCount Number of blocks of the list
+     * @return True if the list is small enough for the cache
+     */
+    boolean admits(int blockCount) {
+        return blockCount <= slots.length() / MAX_LIST_SHARE;
+    }
+
+    /**
+     * Copies a cached block into the given arrays.
+     *
+     * @param key The block key
+     * @param docIds Receives the document IDs
+     * @param freqs Receives the term frequencies
+     * @return The number of postings copied, or -1 if the block is not cached
+     */
+    int read(long key, int[] docIds, int[] freqs) {
+        int base = setOf(key);
+        for (int way = 0; way < WAYS; way++) {
+            Block block = slots.get(base + way);
+            if (block != null && block.key == key && pin(block)) {
+                try {
+                    System.arraycopy(block.buffer, 0, docIds, 0, block.count);
+                    System.arraycopy(block.buffer, CompressedPostings.BLOCK_SIZE, freqs, 0, block.count);
+                    if (!block.referenced) {
+                        block.referenced = true;
+                    }
+                    hits.increment();
+                    return block.count;
+                } finally {
+                    PINS.decrementAndGet(block);
+                }
+            }
+        }
+        misses.increment();
+        return -1;
+    }
+
+    /**
+     * Caches a block that a cursor has just decoded, if it was decoded before.
+     * The block is dropped if every block of its set is being read.
+     *
+     * @param key The block key
+     * @param docIds The decoded document IDs
+     * @param freqs The decoded term frequencies
+     * @param count Number of postings in the block
+     * @param nanos Time it took to decode the block
+     */
+    void put(long key, int[] docIds, int[] freqs, int count, long nanos) {
+        long average = averageDecodeNanos;
+        averageDecodeNanos = average == 0 ? nanos : average + (nanos - average) / 64;
+        if (!passDoorkeeper(key)) {
+            return;
+        }
+
+        int base = setOf(key);
+        int empty = -1;
+        for (int way = 0; way < WAYS; way++) {
+            Block block = slots.get(base + way);
+            if (block == null) {
+                empty = empty < 0 ? way : empty;
+            } else if (block.key == key) {
+                return; // another cursor cached it first
+            }
+        }
+        if (empty >= 0) {
+            if (slots.compareAndSet(base + empty, null, newBlock(key, new int[BUFFER_SIZE], docIds, freqs, count))) {
+                size.incrementAndGet();
+            }
+            return;
+        }
+
+        // CLOCK over the set, starting at a way picked by the key: up to two rounds,
+        // the first one clearing the marks of recently read blocks
+        int start = (int) (key ^ (key >>> 29)) & (WAYS - 1);
+        for (int step = 0; step < 2 * WAYS; step++) {
+            int slot = base + ((start + step) & (WAYS - 1));
+            Block victim = slots.get(slot);
+            if (victim.referenced) {
+                victim.referenced = false;
+            } else if (PINS.compareAndSet(victim, 0, EVICTED)) {
+                // Claimed: no reader can pin it any more, so its buffer is free
+                slots.set(slot, newBlock(key, victim.buffer, docIds, freqs, count));
+                evictions.increment();
+                return;
+            }
+        }
+    }
+
+    private static Block newBlock(long key, int[] buffer, int[] docIds, int[] freqs, int count) {
+        System.arraycopy(docIds, 0, buffer, 0, count);
+        System.arraycopy(freqs, 0, buffer, CompressedPostings.BLOCK_SIZE, count);
+        return new Block(key, buffer, count);
+    }
+
+    private int setOf(long key) {
+        long h = (key * 0x9e3779b97f4a7c15L) >>> 32;
+        return (int) ((h * sets) >>> 32) * WAYS;
+    }
+
+    /**
+     * Records a decoded block in the doorkeeper.
+     *
+     * @return True if the block was already recorded since the last reset
+     */
+    private boolean passDoorkeeper(long key) {
+        int bit = (int) (((key * 0xc2b2ae3d27d4eb4fL) >>> 32) % (doorkeeper.length() * 64L));
+        long mask = 1L << bit;
+        long word = doorkeeper.get(bit >>> 6);
+        if ((word & mask) != 0) {
+            return true;
+        }
+        doorkeeper.getAndUpdate(bit >>> 6, w -> w | mask);
+        if (doorkeeperAdditions.incrementAndGet() >= slots.length()) {
+            // About one addition per block since the reset: start over so that old misses fade
+            doorkeeperAdditions.set(0);
+            for (int i = 0; i < doorkeeper.length(); i++) {
+                doorkeeper.set(i, 0);
+            }
+        }
+        return false;
+    }
+
+    private static boolean pin(Block block) {
+        while (true) {
+            int pins = block.pins;
+            if (pins == EVICTED) {
+                return false;
+            }
+            if (PINS.compareAndSet(block, pins, pins + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gets the average time a block took to decode, measured on misses.
+     *
+     * @return Nanoseconds per block, 0 before the first miss
+     */
+    public long getAverageDecodeNanos() {
+        return averageDecodeNanos;
+    }
+
+    /**
+     * Gets the number of blocks read from the cache.
+     *
+     * @return The hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of blocks that had to be decoded.
+     *
+     * @return The miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of blocks evicted to make room for others.
+     *
+     * @return The eviction count
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the number of cached blocks.
+     *
+     * @return The block count
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Gets the maximum number of cached blocks.
+     *
+     * @return The capacity in blocks
+     */
+    public int getMaxBlocks() {
+        return slots.length();
+    }
+
+    @Override
+    public String toString() {
+        long hitCount = getHits();
+        long lookups = hitCount + getMisses();
+        return String.format("%d/%d blocks, hits=%d, misses=%d (hit ratio %.1f%%), evictions=%d, %d ns/block decode",
+                size(), getMaxBlocks(), hitCount, lookups - hitCount, lookups == 0 ? 0.0 : 100.0 * hitCount / lookups,
+                getEvictions(), getAverageDecodeNanos());
+    }
+}
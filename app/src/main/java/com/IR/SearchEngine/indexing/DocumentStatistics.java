@@ -0,0 +1,243 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Columnar per-document statistics of an IndexSnapshot, keyed by int document ID:
+ * document lengths, a forward index (the term IDs and frequencies of every
+ * document) and the external document IDs, all in primitive arrays.
+ * Retrieval models score from these arrays instead of Document objects, so the
+ * scoring loops neither chase pointers nor allocate.
+ *
+ * Layout:
+ * - lengths[d] is the length of document d
+ * - the terms of document d are the positions [termOffsets[d], termOffsets[d + 1])
+ *   of termIds and termFrequencies, in ascending term ID order
+ * - the external ID of document d is the UTF-8 bytes
+ *   [externalIdOffsets[d], externalIdOffsets[d + 1]) of externalIds
+ *
+ * Usage:
+ * <pre>
+ * DocumentStatistics statistics = snapshot.getDocumentStatistics();
+ * for (int p = statistics.termStart(docId); p &lt; statistics.termEnd(docId); p++) {
+ *     int termId = statistics.termId(p);
+ *     int tf = statistics.termFrequency(p);
+ * }
+ * </pre>
+ *
+ * Implementation notes:
+ * - Built from the snapshot's postings in term ID order, so the terms of each
+ *   document come out sorted without a sort
+ * - Term IDs are those of the snapshot the statistics were built from
+ * - Immutable and safe to share between threads
+ *
+ * @author alexhere
+ */
+public final class DocumentStatistics {
+
+    private final int[] lengths;
+    private final long totalLength;
+    private final int[] termOffsets;
+    private final int[] termIds;
+    private final int[] termFrequencies;
+    private final byte[] externalIds;
+    private final int[] externalIdOffsets;
+
+    private DocumentStatistics(int[] lengths, long totalLength, int[] termOffsets, int[] termIds,
+                               int[] termFrequencies, byte[] externalIds, int[] externalIdOffsets) {
+        this.lengths = lengths;
+        this.totalLength = totalLength;
+        this.termOffsets = termOffsets;
+        this.termIds = termIds;
+        this.termFrequencies = termFrequencies;
+        this.externalIds = externalIds;
+        this.externalIdOffsets = externalIdOffsets;
+    }
+
+    /**
+     * Builds the statistics of a snapshot.
+     *
+     * @param snapshot The snapshot
+     * @return The statistics
+     */
+    static DocumentStatistics build(IndexSnapshot snapshot) {
+        int documentCount = snapshot.getDocumentCount();
+        int vocabularySize = snapshot.getVocabularySize();
+
+        // Document lengths and external IDs
+        int[] lengths = new int[documentCount];
+        long totalLength = 0;
+        byte[][] ids = new byte[documentCount][];
+        int[] externalIdOffsets = new int[documentCount + 1];
+        for (int docId = 0; docId < documentCount; docId++) {
+            Document document = snapshot.getDocument(docId);
+            lengths[docId] = document.getLength();
+            totalLength += lengths[docId];
+            ids[docId] = document.getId().getBytes(StandardCharsets.UTF_8);
+            externalIdOffsets[docId + 1] = externalIdOffsets[docId] + ids[docId].length;
+        }
+        byte[] externalIds = new byte[externalIdOffsets[documentCount]];
+        for (int docId = 0; docId < documentCount; docId++) {
+            System.arraycopy(ids[docId], 0, externalIds, externalIdOffsets[docId], ids[docId].length);
+        }
+
+        // Forward index: count the terms of every document, then fill in term ID order
+        int[] termOffsets = new int[documentCount + 1];
+        for (int termId = 0; termId < vocabularySize; termId++) {
+            PostingsCursor postings = snapshot.getPostings(termId);
+            for (int docId = postings.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = postings.nextDoc()) {
+                termOffsets[docId + 1]++;
+            }
+        }
+        for (int docId = 0; docId < documentCount; docId++) {
+            termOffsets[docId + 1] += termOffsets[docId];
+        }
+        int[] termIds = new int[termOffsets[documentCount]];
+        int[] termFrequencies = new int[termIds.length];
+        int[] next = new int[documentCount];
+        System.arraycopy(termOffsets, 0, next, 0, documentCount);
+        for (int termId = 0; termId < vocabularySize; termId++) {
+            PostingsCursor postings = snapshot.getPostings(termId);
+            for (int docId = postings.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = postings.nextDoc()) {
+                int position = next[docId]++;
+                termIds[position] = termId;
+                termFrequencies[position] = postings.termFrequency();
+            }
+        }
+        return new DocumentStatistics(lengths, totalLength, termOffsets, termIds, termFrequencies,
+                externalIds, externalIdOffsets);
+    }
+
+    /**
+     * Gets the number of documents.
+     *
+     * @return Document count
+     */
+    public int getDocumentCount() {
+        return lengths.length;
+    }
+
+    /**
+     * Gets the length of a document.
+     *
+     * @param docId Document ID
+     * @return Document length in terms
+     */
+    public int length(int docId) {
+        return lengths[docId];
+    }
+
+    /**
+     * Gets the sum of all document lengths.
+     *
+     * @return Total length in terms
+     */
+    public long getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Gets the average document length.
+     *
+     * @return Average length, 0 for an empty snapshot
+     */
+    public double getAverageLength() {
+        return lengths.length == 0 ? 0 : (double) totalLength / lengths.length;
+    }
+
+    /**
+     * Gets the position of a document's first term in the forward index.
+     *
+     * @param docId Document ID
+     * @return First position (inclusive)
+     */
+    public int termStart(int docId) {
+        return termOffsets[docId];
+    }
+
+    /**
+     * Gets the position after a document's last term in the forward index.
+     *
+     * @param docId Document ID
+     * @return End position (exclusive)
+     */
+    public int termEnd(int docId) {
+        return termOffsets[docId + 1];
+    }
+
+    /**
+     * Gets the total number of (document, term) entries in the forward index.
+     *
+     * @return Entry count, the exclusive upper bound of the positions
+     */
+    public int termEntryCount() {
+        return termIds.length;
+    }
+
+    /**
+     * Gets the term ID at a forward index position.
+     *
+     * @param position Position in the forward index
+     * @return Term ID
+     */
+    public int termId(int position) {
+        return termIds[position];
+    }
+
+    /**
+     * Gets the term frequency at a forward index position.
+     *
+     * @param position Position in the forward index
+     * @return Term frequency
+     */
+    public int termFrequency(int position) {
+        return termFrequencies[position];
+    }
+
+    /**
+     * Finds a term among a document's terms by binary search.
+     *
+     * @param docId Document ID
+     * @param termId Term ID
+     * @return The forward index position, or -1 if the document does not contain the term
+     */
+    public int findTerm(int docId, int termId) {
+        int low = termOffsets[docId];
+        int high = termOffsets[docId + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midTermId = termIds[mid];
+            if (midTermId < termId) {
+                low = mid + 1;
+            } else if (midTermId > termId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the external (corpus) ID of a document.
+     *
+     * @param docId Document ID
+     * @return The external ID
+     */
+    public String externalId(int docId) {
+        int offset = externalIdOffsets[docId];
+        return new String(externalIds, offset, externalIdOffsets[docId + 1] - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the approximate heap size of the arrays.
+     *
+     * @return Size in bytes
+     */
+    public long sizeInBytes() {
+        return 4L * (lengths.length + termOffsets.length + termIds.length + termFrequencies.length
+                + externalIdOffsets.length) + externalIds.length;
+    }
+}
@@ -0,0 +1,468 @@
+package com.IR.SearchEngine.indexing;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Stored-fields store for the original document content, keyed by document ID.
+ * Content is appended at indexing time, packed into blocks of about
+ * {@value #BLOCK_SIZE} bytes (at most {@value #MAX_BLOCK_DOCUMENTS} documents), compressed with LZ4BlockCodec and written to
+ * disk; only the block offset index stays in the heap. A document's text is
+ * read back (one block read and decompression) only when a result needs it.
+ *
+ * Block layout (before compression):
+ * <pre>
+ * VInt documentCount, VInt length of each document, then the UTF-8 content of each document
+ * </pre>
+ *
+ * Section layout inside an index file (big-endian, see IndexWriter):
+ * <pre>
+ * int documentCount, int blockCount
+ * per block: int firstDocId, int rawLength, int compressedLength, long offset
+ * block data, offsets relative to the end of the block table
+ * </pre>
+ *
+ * Usage:
+ * <pre>
+ * DocumentStore store = DocumentStore.temporary();
+ * store.add(docId, content);          // document IDs in order
+ * String text = store.get(docId);     // loaded from disk on demand
+ * </pre>
+ *
+ * Implementation notes:
+ * - A new store writes to a temporary file, created when the first block is
+ *   full and deleted on close() or JVM exit
+ * - A store opened from an index file reads its blocks straight from the mapping;
+ *   documents added later go to a temporary file, addressed after the mapped blocks
+ * - Documents in the block being filled are served from memory
+ * - Safe for one writer and concurrent readers
+ *
+ * @author alexhere
+ */
+public class DocumentStore implements Closeable {
+
+    static final int BLOCK_SIZE = 32 * 1024;
+
+    // Bounds the length header walked by get(), so blocks of very short documents stay cheap
+    static final int MAX_BLOCK_DOCUMENTS = 1024;
+
+    // Sealed blocks live in the mapped section of an index file (offsets below mappedLength)
+    // or in a temporary file (offsets from mappedLength on)
+    private final MappedFile mapped;
+    private final long mappedLength;
+    private FileChannel channel;
+    private Path file;
+
+    // Block index
+    private int blockCount;
+    private int[] blockFirstDocs = new int[16];
+    private int[] blockRawLengths = new int[16];
+    private int[] blockCompressedLengths = new int[16];
+    private long[] blockOffsets = new long[16];
+    private long storedBytes;
+    private long endOffset;
+
+    // Block being filled
+    private byte[] pending = new byte[BLOCK_SIZE];
+    private int pendingLength;
+    private int[] pendingLengths = new int[64];
+    private int pendingCount;
+
+    private int documentCount;
+    private long rawBytes;
+
+    private DocumentStore(MappedFile mapped) {
+        this.mapped = mapped;
+        this.mappedLength = mapped != null ? mapped.length() : 0;
+        this.endOffset = mappedLength;
+    }
+
+    /**
+     * Creates an empty store backed by a temporary file.
+     *
+     * @return The store
+     */
+    public static DocumentStore temporary() {
+        return new DocumentStore(null);
+    }
+
+    /**
+     * Opens the stored-fields section of an index file.
+     *
+     * @param section The section, positioned at its start
+     * @return A store reading the section in place
+     * @throws IllegalArgumentException If the section is malformed
+     */
+    static DocumentStore wrap(ByteBuffer section) {
+        return wrap(MappedFile.of(section.slice()));
+    }
+
+    /**
+     * Opens the stored-fields section of a mapped index file, which may be larger than 2 GB.
+     *
+     * @param section The section
+     * @return A store reading the section in place
+     * @throws IllegalArgumentException If the section is malformed
+     */
+    static DocumentStore wrap(MappedFile section) {
+        int documentCount = section.getInt(0);
+        int blockCount = section.getInt(4);
+        if (documentCount < 0 || blockCount < 0 || blockCount > documentCount) {
+            throw new IllegalArgumentException("Invalid stored fields header: " + documentCount
+                    + " documents in " + blockCount + " blocks");
+        }
+        long dataStart = 8 + blockCount * 20L;
+        if (dataStart > section.length()) {
+            throw new IllegalArgumentException("Stored fields block table is truncated");
+        }
+        DocumentStore store = new DocumentStore(section.section(dataStart, section.length() - dataStart));
+        store.ensureBlockCapacity(blockCount);
+        long entry = 8;
+        for (int b = 0; b < blockCount; b++, entry += 20) {
+            store.blockFirstDocs[b] = section.getInt(entry);
+            store.blockRawLengths[b] = section.getInt(entry + 4);
+            store.blockCompressedLengths[b] = section.getInt(entry + 8);
+            store.blockOffsets[b] = section.getLong(entry + 12);
+            if (store.blockOffsets[b] < 0 || store.blockCompressedLengths[b] < 0
+                    || store.blockOffsets[b] + store.blockCompressedLengths[b] > store.mappedLength) {
+                throw new IllegalArgumentException("Stored fields block " + b + " is outside the section");
+            }
+            store.rawBytes += store.blockRawLengths[b];
+            store.storedBytes += store.blockCompressedLengths[b];
+        }
+        store.blockCount = blockCount;
+        store.documentCount = documentCount;
+        return store;
+    }
+
+    /**
+     * Appends the content of the next document.
+     *
+     * @param docId ID of the document, which must equal getDocumentCount()
+     * @param content The original content (null is stored as empty)
+     */
+    public synchronized void add(int docId, String content) {
+        if (docId != documentCount) {
+            throw new IllegalArgumentException("Expected document " + documentCount + ", got " + docId);
+        }
+        byte[] bytes = content != null ? content.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        addBytes(bytes, 0, bytes.length);
+    }
+
+    private void addBytes(byte[] bytes, int offset, int length) {
+        if (pendingCount > 0 && (pendingLength + length > BLOCK_SIZE || pendingCount == MAX_BLOCK_DOCUMENTS)) {
+            sealPendingBlock();
+        }
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, pendingLength + length);
+        }
+        System.arraycopy(bytes, offset, pending, pendingLength, length);
+        pendingLength += length;
+        if (pendingCount == pendingLengths.length) {
+            pendingLengths = Arrays.copyOf(pendingLengths, pendingCount * 2);
+        }
+        pendingLengths[pendingCount++] = length;
+        documentCount++;
+        rawBytes += length;
+    }
+
+    /**
+     * Gets the original content of a document, reading its block from disk if needed.
+     *
+     * @param docId The document ID
+     * @return The content, or null if no document with this ID is stored
+     */
+    public String get(int docId) {
+        long offset;
+        int compressedLength;
+        int rawLength;
+        int index;
+        synchronized (this) {
+            if (docId < 0 || docId >= documentCount) {
+                return null;
+            }
+            int pendingFirst = documentCount - pendingCount;
+            if (docId >= pendingFirst) {
+                int start = 0;
+                for (int i = 0; i < docId - pendingFirst; i++) {
+                    start += pendingLengths[i];
+                }
+                return new String(pending, start, pendingLengths[docId - pendingFirst], StandardCharsets.UTF_8);
+            }
+            int block = findBlock(docId);
+            offset = blockOffsets[block];
+            compressedLength = blockCompressedLengths[block];
+            rawLength = blockRawLengths[block];
+            index = docId - blockFirstDocs[block];
+        }
+        // Read and decompress outside the lock so concurrent readers do not serialize
+        byte[] raw = readBlock(offset, compressedLength, rawLength);
+
+        // Skip the lengths of the documents before this one
+        int[] cursor = {0};
+        int count = readVInt(raw, cursor);
+        int start = 0;
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int documentLength = readVInt(raw, cursor);
+            if (i < index) {
+                start += documentLength;
+            } else if (i == index) {
+                length = documentLength;
+            }
+        }
+        return new String(raw, cursor[0] + start, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the number of stored documents.
+     *
+     * @return Document count
+     */
+    public synchronized int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Gets the total size of the stored content before compression.
+     *
+     * @return Raw size in bytes
+     */
+    public synchronized long getRawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * Gets the compressed size of the sealed blocks.
+     *
+     * @return Stored size in bytes
+     */
+    public synchronized long getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * Writes the first documents of the store as an index file section.
+     * The content is re-blocked, so the section only depends on the documents and
+     * ends exactly at count; every block is decompressed once. The new blocks go to
+     * a temporary file and are then copied to the stream, so only the block table
+     * is held in memory.
+     *
+     * @param out The output stream
+     * @param count Number of documents to write, from document 0
+     * @throws IOException If writing fails
+     */
+    void writeTo(DataOutputStream out, int count) throws IOException {
+        try (DocumentStore copy = new DocumentStore(null)) {
+            copyDocuments(copy, count);
+            out.writeInt(count);
+            out.writeInt(copy.blockCount);
+            for (int b = 0; b < copy.blockCount; b++) {
+                out.writeInt(copy.blockFirstDocs[b]);
+                out.writeInt(copy.blockRawLengths[b]);
+                out.writeInt(copy.blockCompressedLengths[b]);
+                out.writeLong(copy.blockOffsets[b]);
+            }
+            copy.writeBlocksTo(out);
+        }
+    }
+
+    /**
+     * Adds the first documents of this store to another store, which seals all of its blocks.
+     */
+    private void copyDocuments(DocumentStore copy, int count) {
+        int docId = 0;
+        for (int block = 0; docId < count; block++) {
+            long offset;
+            int compressedLength;
+            int rawLength;
+            synchronized (this) {
+                if (block >= blockCount) {
+                    break;
+                }
+                offset = blockOffsets[block];
+                compressedLength = blockCompressedLengths[block];
+                rawLength = blockRawLengths[block];
+            }
+            byte[] raw = readBlock(offset, compressedLength, rawLength);
+            int[] cursor = {0};
+            int documents = readVInt(raw, cursor);
+            int[] lengths = new int[documents];
+            for (int i = 0; i < documents; i++) {
+                lengths[i] = readVInt(raw, cursor);
+            }
+            int start = cursor[0];
+            for (int i = 0; i < documents && docId < count; i++, docId++) {
+                copy.addBytes(raw, start, lengths[i]);
+                start += lengths[i];
+            }
+        }
+        // Documents still in the block being filled
+        synchronized (this) {
+            int i = docId - (documentCount - pendingCount);
+            int start = 0;
+            for (int j = 0; j < i; j++) {
+                start += pendingLengths[j];
+            }
+            for (; docId < count; i++, docId++) {
+                copy.addBytes(pending, start, pendingLengths[i]);
+                start += pendingLengths[i];
+            }
+        }
+        if (copy.pendingCount > 0) {
+            copy.sealPendingBlock();
+        }
+    }
+
+    /**
+     * Copies the sealed blocks of a store that has no mapped section from its temporary file.
+     */
+    private synchronized void writeBlocksTo(OutputStream out) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        ByteBuffer target = ByteBuffer.wrap(buffer);
+        long position = 0;
+        while (position < endOffset) {
+            target.clear().limit((int) Math.min(buffer.length, endOffset - position));
+            int read = channel.read(target, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of document store " + file);
+            }
+            out.write(buffer, 0, read);
+            position += read;
+        }
+    }
+
+    private void sealPendingBlock() {
+        // Raw block: VInt count, VInt lengths, content
+        byte[] header = new byte[5 * (pendingCount + 1)];
+        int headerLength = writeVInt(header, 0, pendingCount);
+        for (int i = 0; i < pendingCount; i++) {
+            headerLength = writeVInt(header, headerLength, pendingLengths[i]);
+        }
+        byte[] raw = new byte[headerLength + pendingLength];
+        System.arraycopy(header, 0, raw, 0, headerLength);
+        System.arraycopy(pending, 0, raw, headerLength, pendingLength);
+        byte[] compressed = LZ4BlockCodec.compress(raw, 0, raw.length);
+
+        ensureBlockCapacity(blockCount + 1);
+        blockFirstDocs[blockCount] = documentCount - pendingCount;
+        blockRawLengths[blockCount] = raw.length;
+        blockCompressedLengths[blockCount] = compressed.length;
+        blockOffsets[blockCount] = endOffset;
+        try {
+            if (channel == null) {
+                file = Files.createTempFile("documents", ".store");
+                file.toFile().deleteOnExit();
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            ByteBuffer source = ByteBuffer.wrap(compressed);
+            long position = endOffset - mappedLength;
+            while (source.hasRemaining()) {
+                position += channel.write(source, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write document store block", e);
+        }
+        blockCount++;
+        storedBytes += compressed.length;
+        endOffset += compressed.length;
+
+        pendingLength = 0;
+        pendingCount = 0;
+        if (pending.length > BLOCK_SIZE) {
+            pending = new byte[BLOCK_SIZE];
+        }
+    }
+
+    private byte[] readBlock(long offset, int compressedLength, int rawLength) {
+        byte[] compressed = new byte[compressedLength];
+        if (offset < mappedLength) {
+            mapped.get(offset, compressed);
+        } else {
+            ByteBuffer target = ByteBuffer.wrap(compressed);
+            long position = offset - mappedLength;
+            try {
+                while (target.hasRemaining()) {
+                    int read = channel.read(target, position);
+                    if (read < 0) {
+                        throw new IOException("Unexpected end of document store " + file);
+                    }
+                    position += read;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read document store block", e);
+            }
+        }
+        return LZ4BlockCodec.decompress(compressed, 0, compressedLength, rawLength);
+    }
+
+    private int findBlock(int docId) {
+        // Last block whose first document is <= docId
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blockFirstDocs[mid] <= docId) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void ensureBlockCapacity(int capacity) {
+        if (capacity > blockFirstDocs.length) {
+            int newLength = Math.max(capacity, blockFirstDocs.length * 2);
+            blockFirstDocs = Arrays.copyOf(blockFirstDocs, newLength);
+            blockRawLengths = Arrays.copyOf(blockRawLengths, newLength);
+            blockCompressedLengths = Arrays.copyOf(blockCompressedLengths, newLength);
+            blockOffsets = Arrays.copyOf(blockOffsets, newLength);
+        }
+    }
+
+    private static int writeVInt(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int readVInt(byte[] buffer, int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Closes the temporary file and deletes it. The store cannot be read afterwards.
+     *
+     * @throws IOException If the file cannot be closed or deleted
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            Files.deleteIfExists(file);
+            channel = null;
+        }
+    }
+}
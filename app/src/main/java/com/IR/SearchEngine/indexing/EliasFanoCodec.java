@@ -0,0 +1,116 @@
+package com.IR.SearchEngine.indexing;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Elias-Fano postings codec.
+ * A monotone sequence of n values bounded by U is split into l = floor(log2(U/n))
+ * low bits, stored verbatim, and high bits, stored as unary-coded gaps. This
+ * takes at most 2 + log2(U/n) bits per value, close to the information-theoretic
+ * minimum for sorted document IDs.
+ *
+ * Layout:
+ * - VInt     upper bound U (the last value)
+ * - 1 byte   number of low bits l
+ * - n*l      low bits
+ * - unary    gaps between consecutive high parts
+ *
+ * Implementation notes:
+ * - Document IDs are encoded directly (relative to the preceding document ID)
+ * - Frequencies and position gaps are not monotone, so encodeValues() stores
+ *   their prefix sums, which are monotone
+ *
+ * @author alexhere
+ */
+public class EliasFanoCodec implements PostingsCodec {
+
+    @Override
+    public String getName() {
+        return "eliasfano";
+    }
+
+    @Override
+    public void encodeDocIds(int[] docIds, int offset, int count, int previousDocId, ByteArrayOutputStream out) {
+        int[] shifted = new int[count];
+        for (int i = 0; i < count; i++) {
+            shifted[i] = docIds[offset + i] - previousDocId - 1;
+        }
+        encodeMonotone(shifted, count, out);
+    }
+
+    @Override
+    public void decodeDocIds(ByteBuffer in, int[] docIds, int offset, int count, int previousDocId) {
+        decodeMonotone(in, docIds, offset, count);
+        for (int i = offset; i < offset + count; i++) {
+            docIds[i] += previousDocId + 1;
+        }
+    }
+
+    @Override
+    public void encodeValues(int[] values, int offset, int count, ByteArrayOutputStream out) {
+        int[] prefixSums = new int[count];
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += values[offset + i];
+            prefixSums[i] = sum;
+        }
+        encodeMonotone(prefixSums, count, out);
+    }
+
+    @Override
+    public void decodeValues(ByteBuffer in, int[] values, int offset, int count) {
+        decodeMonotone(in, values, offset, count);
+        for (int i = offset + count - 1; i > offset; i--) {
+            values[i] -= values[i - 1];
+        }
+    }
+
+    private void encodeMonotone(int[] values, int count, ByteArrayOutputStream out) {
+        if (count == 0) {
+            return;
+        }
+        int upperBound = values[count - 1];
+        int lowBits = lowBits(upperBound, count);
+
+        VByteCodec.writeVInt(out, upperBound);
+        out.write(lowBits);
+
+        BitOutput bitOutput = new BitOutput(out);
+        for (int i = 0; i < count; i++) {
+            bitOutput.write(values[i], lowBits);
+        }
+        int previousHigh = 0;
+        for (int i = 0; i < count; i++) {
+            int high = values[i] >>> lowBits;
+            bitOutput.writeUnary(high - previousHigh);
+            previousHigh = high;
+        }
+        bitOutput.flush();
+    }
+
+    private void decodeMonotone(ByteBuffer in, int[] values, int offset, int count) {
+        if (count == 0) {
+            return;
+        }
+        VByteCodec.readVInt(in); // upper bound, implied by the data
+        int lowBits = in.get() & 0xFF;
+
+        BitInput bitInput = new BitInput(in);
+        for (int i = offset; i < offset + count; i++) {
+            values[i] = bitInput.read(lowBits);
+        }
+        int high = 0;
+        for (int i = offset; i < offset + count; i++) {
+            high += bitInput.readUnary();
+            values[i] |= high << lowBits;
+        }
+    }
+
+    private static int lowBits(int upperBound, int count) {
+        if (upperBound <= count) {
+            return 0;
+        }
+        return 31 - Integer.numberOfLeadingZeros(upperBound / count);
+    }
+}
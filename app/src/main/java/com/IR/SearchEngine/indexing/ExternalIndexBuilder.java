@@ -0,0 +1,718 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Builds an index file for a corpus that does not fit in the heap (external-memory
+ * inversion). Documents are streamed in one at a time; their postings are
+ * accumulated as (termId, docId, tf, positions) records in a run buffer of bounded
+ * size, which is sorted and spilled to a temporary run file whenever it reaches the
+ * memory budget. finish() k-way merges the sorted runs into the postings of the
+ * final file, encoding one term at a time straight from the run files.
+ *
+ * The file has the IndexWriter layout and is byte-for-byte the file IndexWriter
+ * writes for an Indexer that indexed the same documents with the same codec, so it
+ * is opened with IndexReader, which maps files of any size in chunks.
+ *
+ * Usage:
+ * <pre>
+ * try (ExternalIndexBuilder builder = new ExternalIndexBuilder(path, new VByteCodec(), 64 &lt;&lt; 20)) {
+ *     for (Document document : documents) {
+ *         builder.addDocument(document);
+ *     }
+ *     builder.finish();
+ * }
+ * Indexer indexer = IndexReader.open(path);
+ * </pre>
+ *
+ * Run file layout (VInts), one group per term in UTF-8 order of the terms:
+ * <pre>
+ * termId + 1, postingCount, per posting: docId gap, tf, tf position gaps (if positions are stored)
+ * 0           end of run
+ * </pre>
+ *
+ * Implementation notes:
+ * - The budget covers the run buffer, which is allocated once and reused by every
+ *   run, so heap use does not grow with the corpus. The vocabulary (term to ID) and
+ *   4 bytes per document of length stay in memory outside the budget
+ * - Document IDs, titles and lengths are written to a temporary file as they arrive
+ *   and the original content goes to a DocumentStore, so no Document is retained
+ * - No section of the output is held in memory: a term's blocks are encoded straight
+ *   to a temporary file, its skip data to another, and the two are interleaved when
+ *   the file is assembled; the stored fields are re-blocked through a temporary file
+ * - Temporary files live in a directory next to the index file and are deleted by close()
+ * - Not thread-safe
+ *
+ * @author alexhere
+ */
+public class ExternalIndexBuilder implements Closeable {
+
+    /**
+     * Smallest accepted memory budget in bytes.
+     */
+    public static final long MIN_MEMORY_BUDGET = 1 << 20;
+
+    // Bytes per record in the run buffer: term ID, doc ID, tf, position offset, sort order
+    private static final int RECORD_BYTES = 5 * Integer.BYTES;
+
+    private final Path path;
+    private final PostingsCodec codec;
+    private final long memoryBudget;
+    private final Path spillDirectory;
+
+    // Vocabulary: term IDs are assigned in order of first occurrence
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+
+    // Documents
+    private final DataOutputStream documentsOut;
+    private final Path documentsFile;
+    private final DocumentStore documentStore = DocumentStore.temporary();
+    private int[] docLengths = new int[1024];
+    private int documentCount;
+
+    // Run buffer: records in document order
+    private int[] recordTermIds;
+    private int[] recordDocIds;
+    private int[] recordFrequencies;
+    private int[] recordPositionStarts;
+    private int[] positions;
+    private int recordCount;
+    private int positionCount;
+    private final List<Path> runs = new ArrayList<>();
+    private long spilledRecords;
+
+    private boolean storePositions = true;
+    private boolean finished;
+
+    /**
+     * Creates a builder that writes the index to a file.
+     *
+     * @param path The index file, replaced when finish() completes
+     * @param codec The postings codec
+     * @param memoryBudget Maximum size of the run buffer in bytes
+     * @throws IOException If the temporary files cannot be created
+     */
+    public ExternalIndexBuilder(Path path, PostingsCodec codec, long memoryBudget) throws IOException {
+        if (codec == null) {
+            throw new IllegalArgumentException("A postings codec is required");
+        }
+        if (memoryBudget < MIN_MEMORY_BUDGET) {
+            throw new IllegalArgumentException("Memory budget must be at least " + MIN_MEMORY_BUDGET
+                    + " bytes: " + memoryBudget);
+        }
+        this.path = path;
+        this.codec = codec;
+        this.memoryBudget = memoryBudget;
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        this.spillDirectory = Files.createTempDirectory(parent, path.getFileName() + ".spill");
+        this.documentsFile = spillDirectory.resolve("documents");
+        this.documentsOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(documentsFile), 1 << 16));
+
+        // Start small; the buffer grows up to the budget and is then reused
+        int initialRecords = (int) Math.min(1 << 14, memoryBudget / 2 / RECORD_BYTES);
+        this.recordTermIds = new int[initialRecords];
+        this.recordDocIds = new int[initialRecords];
+        this.recordFrequencies = new int[initialRecords];
+        this.recordPositionStarts = new int[initialRecords];
+        this.positions = new int[initialRecords];
+    }
+
+    /**
+     * Sets whether postings store the positions of the terms, as
+     * Indexer.setStorePositions does. Must be set before the first document is added.
+     *
+     * @param storePositions False to store only document IDs and term frequencies
+     */
+    public void setStorePositions(boolean storePositions) {
+        if (documentCount != 0) {
+            throw new IllegalStateException("Positions can only be configured before adding documents");
+        }
+        this.storePositions = storePositions;
+    }
+
+    /**
+     * Adds the next document. Spills the run buffer first if the document's postings
+     * would not fit in the memory budget.
+     *
+     * @param document The preprocessed document
+     * @return The document ID assigned to the document
+     * @throws IOException If a run or the document data cannot be written
+     */
+    public int addDocument(Document document) throws IOException {
+        if (document == null) {
+            throw new IllegalArgumentException("Document cannot be null");
+        }
+        if (finished) {
+            throw new IllegalStateException("The index has already been written");
+        }
+        int docId = documentCount++;
+        if (docId == docLengths.length) {
+            docLengths = Arrays.copyOf(docLengths, docId * 2);
+        }
+        docLengths[docId] = document.getLength();
+        Map<String, int[]> termPositions = Indexer.termPositions(document);
+        documentsOut.writeInt(document.getLength());
+        documentsOut.writeInt(termPositions.size());
+        IndexWriter.writeString(documentsOut, document.getId());
+        IndexWriter.writeString(documentsOut, document.getTitle());
+        documentStore.add(docId, document.getOriginalContent());
+
+        int newPositions = 0;
+        if (storePositions) {
+            for (int[] termPositionList : termPositions.values()) {
+                newPositions += termPositionList.length;
+            }
+        }
+        ensureRunCapacity(termPositions.size(), newPositions);
+
+        for (Map.Entry<String, int[]> entry : termPositions.entrySet()) {
+            int[] termPositionList = entry.getValue();
+            if (termPositionList.length == 0) {
+                continue;
+            }
+            Integer termId = termIds.get(entry.getKey());
+            if (termId == null) {
+                termId = terms.size();
+                termIds.put(entry.getKey(), termId);
+                terms.add(entry.getKey());
+            }
+            recordTermIds[recordCount] = termId;
+            recordDocIds[recordCount] = docId;
+            recordFrequencies[recordCount] = termPositionList.length;
+            recordPositionStarts[recordCount] = positionCount;
+            recordCount++;
+            if (storePositions) {
+                System.arraycopy(termPositionList, 0, positions, positionCount, termPositionList.length);
+                positionCount += termPositionList.length;
+            }
+        }
+        return docId;
+    }
+
+    /**
+     * Makes room in the run buffer for a document, spilling the buffer when even
+     * growing it to the budget would not be enough.
+     */
+    private void ensureRunCapacity(int records, int newPositions) throws IOException {
+        if (recordCount + records <= recordTermIds.length && positionCount + newPositions <= positions.length) {
+            return;
+        }
+        if (bufferBytes(Math.max(recordTermIds.length, recordCount + records),
+                Math.max(positions.length, positionCount + newPositions)) > memoryBudget && recordCount > 0) {
+            spill();
+            if (records <= recordTermIds.length && newPositions <= positions.length) {
+                return;
+            }
+        }
+
+        // Grow by half, clamped to the budget; a document larger than the budget still fits
+        int recordCapacity = recordTermIds.length;
+        int positionCapacity = positions.length;
+        if (recordCount + records > recordCapacity) {
+            recordCapacity = Math.max(recordCount + records, recordCapacity + (recordCapacity >> 1));
+        }
+        if (positionCount + newPositions > positionCapacity) {
+            positionCapacity = Math.max(positionCount + newPositions, positionCapacity + (positionCapacity >> 1));
+        }
+        if (bufferBytes(recordCapacity, positionCapacity) > memoryBudget) {
+            int minRecords = Math.max(recordTermIds.length, recordCount + records);
+            int minPositions = Math.max(positions.length, positionCount + newPositions);
+            long spare = memoryBudget - bufferBytes(minRecords, minPositions);
+            if (spare <= 0) {
+                recordCapacity = minRecords;
+                positionCapacity = minPositions;
+            } else {
+                // Share the rest of the budget in proportion to the growth each array asked for
+                long recordGrowth = (long) (recordCapacity - minRecords) * RECORD_BYTES;
+                long positionGrowth = (long) (positionCapacity - minPositions) * Integer.BYTES;
+                double share = (double) spare / (recordGrowth + positionGrowth);
+                recordCapacity = minRecords + (int) (recordGrowth * share / RECORD_BYTES);
+                positionCapacity = minPositions + (int) (positionGrowth * share / Integer.BYTES);
+            }
+        }
+        if (recordCapacity != recordTermIds.length) {
+            recordTermIds = Arrays.copyOf(recordTermIds, recordCapacity);
+            recordDocIds = Arrays.copyOf(recordDocIds, recordCapacity);
+            recordFrequencies = Arrays.copyOf(recordFrequencies, recordCapacity);
+            recordPositionStarts = Arrays.copyOf(recordPositionStarts, recordCapacity);
+        }
+        if (positionCapacity != positions.length) {
+            positions = Arrays.copyOf(positions, positionCapacity);
+        }
+    }
+
+    private static long bufferBytes(int recordCapacity, int positionCapacity) {
+        return (long) recordCapacity * RECORD_BYTES + (long) positionCapacity * Integer.BYTES;
+    }
+
+    /**
+     * Sorts the run buffer by term (UTF-8 order), keeping document order within a
+     * term, and writes it to a new run file.
+     */
+    private void spill() throws IOException {
+        // Terms of this run in UTF-8 order (code point order is the same order)
+        int[] runTermCounts = new int[terms.size()];
+        int distinct = 0;
+        for (int r = 0; r < recordCount; r++) {
+            if (runTermCounts[recordTermIds[r]]++ == 0) {
+                distinct++;
+            }
+        }
+        Integer[] runTerms = new Integer[distinct];
+        for (int termId = 0, i = 0; termId < runTermCounts.length; termId++) {
+            if (runTermCounts[termId] > 0) {
+                runTerms[i++] = termId;
+            }
+        }
+        Arrays.sort(runTerms, Comparator.comparing(terms::get, ExternalIndexBuilder::compareCodePoints));
+
+        // Counting sort of the records by term; stable, so doc IDs stay ascending
+        int[] starts = new int[terms.size()];
+        int offset = 0;
+        for (int termId : runTerms) {
+            starts[termId] = offset;
+            offset += runTermCounts[termId];
+        }
+        int[] order = new int[recordCount];
+        for (int r = 0; r < recordCount; r++) {
+            order[starts[recordTermIds[r]]++] = r;
+        }
+
+        Path run = spillDirectory.resolve("run-" + runs.size());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            int next = 0;
+            for (int termId : runTerms) {
+                int count = runTermCounts[termId];
+                writeVInt(out, termId + 1);
+                writeVInt(out, count);
+                int previousDocId = 0;
+                for (int i = 0; i < count; i++) {
+                    int r = order[next++];
+                    writeVInt(out, recordDocIds[r] - previousDocId);
+                    previousDocId = recordDocIds[r];
+                    writeVInt(out, recordFrequencies[r]);
+                    if (!storePositions) {
+                        continue;
+                    }
+                    int previousPosition = 0;
+                    for (int p = recordPositionStarts[r]; p < recordPositionStarts[r] + recordFrequencies[r]; p++) {
+                        writeVInt(out, positions[p] - previousPosition);
+                        previousPosition = positions[p];
+                    }
+                }
+            }
+            writeVInt(out, 0);
+        }
+        runs.add(run);
+        spilledRecords += recordCount;
+        recordCount = 0;
+        positionCount = 0;
+    }
+
+    /**
+     * Spills the last run, merges all runs and writes the index file.
+     *
+     * @return The number of bytes written
+     * @throws IOException If the file cannot be written
+     */
+    public long finish() throws IOException {
+        if (finished) {
+            throw new IllegalStateException("The index has already been written");
+        }
+        finished = true;
+        if (recordCount > 0) {
+            spill();
+        }
+        documentsOut.close();
+        // The run buffer is not needed any more; free it for the merge
+        recordTermIds = recordDocIds = recordFrequencies = recordPositionStarts = positions = null;
+
+        // Final term order: UTF-8 order of all terms
+        Integer[] sortedTerms = new Integer[terms.size()];
+        for (int i = 0; i < sortedTerms.length; i++) {
+            sortedTerms[i] = i;
+        }
+        Arrays.sort(sortedTerms, Comparator.comparing(terms::get, ExternalIndexBuilder::compareCodePoints));
+        int[] rank = new int[sortedTerms.length];
+        for (int r = 0; r < sortedTerms.length; r++) {
+            rank[sortedTerms[r]] = r;
+        }
+
+        // Merge the runs into the postings section, keeping the dictionary entries in memory
+        int termCount = sortedTerms.length;
+        int[] docFrequencies = new int[termCount];
+        int[] maxTermFrequencies = new int[termCount];
+        int[] blockCounts = new int[termCount];
+        long[] offsets = new long[termCount];
+        int[] dataLengths = new int[termCount];
+        // Skip data and encoded blocks go to separate files, so a term is encoded block by
+        // block without holding its postings; they are interleaved when the file is assembled
+        Path skipFile = spillDirectory.resolve("skip");
+        Path postingsFile = spillDirectory.resolve("postings");
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        try (DataOutputStream skipOut = new DataOutputStream(
+                     new BufferedOutputStream(Files.newOutputStream(skipFile), 1 << 16));
+             OutputStream postingsOut = new BufferedOutputStream(Files.newOutputStream(postingsFile), 1 << 16)) {
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()),
+                    Comparator.<RunReader>comparingInt(reader -> rank[reader.termId]).thenComparingInt(reader -> reader.index));
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), i);
+                readers.add(reader);
+                if (reader.nextTerm()) {
+                    queue.add(reader);
+                }
+            }
+
+            long postingsOffset = 0;
+            List<RunReader> group = new ArrayList<>();
+            for (int t = 0; t < termCount; t++) {
+                // Runs holding the term, in run (and therefore document) order
+                group.clear();
+                int termId = queue.peek().termId;
+                while (!queue.isEmpty() && queue.peek().termId == termId) {
+                    group.add(queue.poll());
+                }
+                if (rank[termId] != t) {
+                    throw new IllegalStateException("Runs are out of order at term " + terms.get(termId));
+                }
+                RunPostings postings = new RunPostings(group, storePositions);
+                CompressedPostings.Encoded encoded = CompressedPostings.encodeTo(postings, codec,
+                        docId -> docLengths[docId], postingsOut);
+                for (RunReader reader : group) {
+                    if (reader.nextTerm()) {
+                        queue.add(reader);
+                    }
+                }
+
+                for (int value : encoded.skipData) {
+                    skipOut.writeInt(value);
+                }
+                docFrequencies[t] = postings.size();
+                maxTermFrequencies[t] = encoded.maxTermFrequency;
+                blockCounts[t] = encoded.blockCount();
+                offsets[t] = postingsOffset;
+                dataLengths[t] = encoded.dataLength;
+                postingsOffset += 4L * encoded.skipData.length + encoded.dataLength;
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+
+        // Assemble the file in the IndexWriter layout
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32 checksum = new CRC32();
+        try (OutputStream file = Files.newOutputStream(temporary);
+             CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), checksum);
+             DataOutputStream out = new DataOutputStream(checked)) {
+
+            out.writeInt(IndexWriter.MAGIC);
+            out.writeInt(IndexWriter.FORMAT_VERSION);
+            IndexWriter.writeString(out, codec.getName());
+            out.writeInt(storePositions ? IndexWriter.FLAG_POSITIONS : 0);
+            out.writeInt(documentCount);
+            out.writeInt(termCount);
+            Files.copy(documentsFile, out);
+            for (int t = 0; t < termCount; t++) {
+                IndexWriter.writeString(out, terms.get(sortedTerms[t]));
+                out.writeInt(docFrequencies[t]);
+                out.writeInt(maxTermFrequencies[t]);
+                out.writeInt(blockCounts[t]);
+                out.writeLong(offsets[t]);
+                out.writeInt(dataLengths[t]);
+            }
+            try (InputStream skip = new BufferedInputStream(Files.newInputStream(skipFile), 1 << 16);
+                 InputStream postings = new BufferedInputStream(Files.newInputStream(postingsFile), 1 << 16)) {
+                byte[] copyBuffer = new byte[1 << 16];
+                for (int t = 0; t < termCount; t++) {
+                    copy(skip, out, 4L * blockCounts[t] * IndexWriter.SKIP_STRIDE, copyBuffer);
+                    copy(postings, out, dataLengths[t], copyBuffer);
+                }
+            }
+            documentStore.writeTo(out, documentCount);
+
+            // The footer itself is not part of the checksum
+            out.writeLong(checksum.getValue());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(path);
+    }
+
+    /**
+     * Gets the number of documents added so far.
+     *
+     * @return Document count
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Gets the number of runs spilled to disk so far.
+     *
+     * @return Run count
+     */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Gets the number of postings spilled to disk so far.
+     *
+     * @return Spilled posting count
+     */
+    public long getSpilledPostings() {
+        return spilledRecords;
+    }
+
+    /**
+     * Deletes the temporary files. The index file, if finished, is kept.
+     *
+     * @throws IOException If the temporary files cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        documentsOut.close();
+        documentStore.close();
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(spillDirectory);
+    }
+
+    private static void copy(InputStream in, OutputStream out, long length, byte[] buffer) throws IOException {
+        while (length > 0) {
+            int read = in.readNBytes(buffer, 0, (int) Math.min(buffer.length, length));
+            if (read == 0) {
+                throw new EOFException("Temporary postings file is truncated");
+            }
+            out.write(buffer, 0, read);
+            length -= read;
+        }
+    }
+
+    // Compares in code point order, which is the UTF-8 byte order of TermDictionary
+    private static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    }
+
+    private static void writeVInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Sequential reader of one run file, positioned on a term group.
+     */
+    private static final class RunReader implements Closeable {
+
+        final int index;
+        final InputStream in;
+        final byte[] buffer = new byte[1 << 16];
+        int bufferPosition;
+        int bufferLimit;
+        int termId;
+        int remaining;   // postings of the current term not read yet
+
+        RunReader(Path run, int index) throws IOException {
+            this.index = index;
+            this.in = Files.newInputStream(run);
+        }
+
+        boolean nextTerm() throws IOException {
+            if (remaining != 0) {
+                throw new IllegalStateException("Term group of run " + index + " was not read to the end");
+            }
+            termId = readVInt() - 1;
+            if (termId < 0) {
+                return false;
+            }
+            remaining = readVInt();
+            return true;
+        }
+
+        // Decodes from the reader's own buffer; the merge reads every byte of every run through here
+        int readVInt() throws IOException {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (bufferPosition == bufferLimit) {
+                    fill();
+                }
+                b = buffer[bufferPosition++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private void fill() throws IOException {
+            int read = in.readNBytes(buffer, 0, buffer.length);
+            if (read <= 0) {
+                throw new EOFException("Run " + index + " is truncated");
+            }
+            bufferPosition = 0;
+            bufferLimit = read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Postings of one term streamed from the run files that hold it; its cursor
+     * can be read once, in order, which is all CompressedPostings.encode needs.
+     */
+    private static final class RunPostings implements TermPostings {
+
+        private final List<RunReader> readers;
+        private final boolean storePositions;
+        private final int size;
+
+        RunPostings(List<RunReader> readers, boolean storePositions) {
+            this.readers = new ArrayList<>(readers);
+            this.storePositions = storePositions;
+            int total = 0;
+            for (RunReader reader : readers) {
+                total += reader.remaining;
+            }
+            this.size = total;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 0;
+        }
+
+        @Override
+        public PostingsCursor cursor() {
+            return new PostingsCursor() {
+                private int reader;
+                private int docId = -1;
+                private int previousDocId;
+                private int termFrequency;
+                private int[] positions = new int[16];
+                private int maxTermFrequency;
+
+                @Override
+                public int nextDoc() {
+                    while (reader < readers.size() && readers.get(reader).remaining == 0) {
+                        reader++;
+                        previousDocId = 0;
+                    }
+                    if (reader == readers.size()) {
+                        return docId = NO_MORE_DOCS;
+                    }
+                    RunReader current = readers.get(reader);
+                    try {
+                        docId = previousDocId + current.readVInt();
+                        previousDocId = docId;
+                        termFrequency = current.readVInt();
+                        if (storePositions) {
+                            if (termFrequency > positions.length) {
+                                positions = new int[Math.max(termFrequency, positions.length * 2)];
+                            }
+                            int position = 0;
+                            for (int p = 0; p < termFrequency; p++) {
+                                position += current.readVInt();
+                                positions[p] = position;
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not read run " + current.index, e);
+                    }
+                    current.remaining--;
+                    maxTermFrequency = Math.max(maxTermFrequency, termFrequency);
+                    return docId;
+                }
+
+                @Override
+                public int docId() {
+                    return docId;
+                }
+
+                @Override
+                public int termFrequency() {
+                    return termFrequency;
+                }
+
+                @Override
+                public int position(int i) {
+                    if (!storePositions) {
+                        throw new IllegalStateException("Postings were stored without positions");
+                    }
+                    return positions[i];
+                }
+
+                @Override
+                public boolean hasPositions() {
+                    return storePositions;
+                }
+
+                @Override
+                public int docFrequency() {
+                    return size;
+                }
+
+                @Override
+                public int maxTermFrequency() {
+                    return maxTermFrequency;
+                }
+            };
+        }
+    }
+}
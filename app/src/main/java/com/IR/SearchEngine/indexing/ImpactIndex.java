@@ -0,0 +1,272 @@
+package com.IR.SearchEngine.indexing;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Impact-ordered copy of the postings of an IndexSnapshot, for score-at-a-time
+ * query processing. Every posting carries a precomputed term weight quantized
+ * to a few bits (its impact), and the postings of each term are grouped into
+ * segments of equal impact, highest impact first, instead of being ordered by
+ * document ID.
+ *
+ * Layout:
+ * - the segments of term t are [termStart(t), termEnd(t)), in decreasing impact order
+ * - the documents of segment s are the positions [segmentStart(s), segmentEnd(s))
+ *   of docIds, in ascending document ID order
+ *
+ * Usage:
+ * <pre>
+ * ImpactIndex impacts = ImpactIndex.build(snapshot, termId -&gt; scorer, 8);
+ * for (int s = impacts.termStart(termId); s &lt; impacts.termEnd(termId); s++) {
+ *     for (int p = impacts.segmentStart(s); p &lt; impacts.segmentEnd(s); p++) {
+ *         accumulator[impacts.docId(p)] += impacts.impact(s);
+ *     }
+ * }
+ * </pre>
+ *
+ * Implementation notes:
+ * - Quantization is uniform over the whole collection: the largest weight of any
+ *   posting maps to 2^bits - 1, and every positive weight is rounded up, so it
+ *   gets an impact of at least 1. Impacts of different terms are therefore on the
+ *   same scale and can be summed; impact * getScale() approximates the weight
+ * - Postings whose weight is zero or negative are left out
+ * - Built with two passes over the postings (the largest weight, then the
+ *   quantized impacts) and a counting sort by impact per term
+ * - Term IDs and document IDs are those of the snapshot the index was built from
+ * - Immutable and safe to share between threads
+ *
+ * @author alexhere
+ */
+public final class ImpactIndex {
+
+    private final int bits;
+    private final double scale;             // weight of one impact unit
+    private final int documentCount;
+    private final int[] termSegments;       // first segment of each term, vocabularySize + 1 entries
+    private final int[] segmentImpacts;     // impact of each segment
+    private final int[] segmentOffsets;     // first posting of each segment, segmentCount + 1 entries
+    private final int[] docIds;             // documents of all segments
+
+    private ImpactIndex(int bits, double scale, int documentCount, int[] termSegments,
+                        int[] segmentImpacts, int[] segmentOffsets, int[] docIds) {
+        this.bits = bits;
+        this.scale = scale;
+        this.documentCount = documentCount;
+        this.termSegments = termSegments;
+        this.segmentImpacts = segmentImpacts;
+        this.segmentOffsets = segmentOffsets;
+        this.docIds = docIds;
+    }
+
+    /**
+     * Builds the impact-ordered postings of a snapshot.
+     *
+     * @param snapshot The snapshot
+     * @param scorers Supplies the weighting function of a term ID, e.g. its BM25 term weight
+     * @param bits Number of bits of an impact, from 1 to 16
+     * @return The impact index
+     * @throws IllegalArgumentException If bits is out of range
+     * @throws IllegalStateException If the snapshot has more than Integer.MAX_VALUE postings
+     */
+    public static ImpactIndex build(IndexSnapshot snapshot, IntFunction<TermScorer> scorers, int bits) {
+        if (bits < 1 || bits > 16) {
+            throw new IllegalArgumentException("Impact bits must be between 1 and 16: " + bits);
+        }
+        int vocabularySize = snapshot.getVocabularySize();
+        DocumentStatistics statistics = snapshot.getDocumentStatistics();
+        TermScorer[] termScorers = new TermScorer[vocabularySize];
+
+        // First pass: the largest weight sets the quantization scale
+        double maxWeight = 0.0;
+        long postingCount = 0;
+        for (int termId = 0; termId < vocabularySize; termId++) {
+            termScorers[termId] = scorers.apply(termId);
+            PostingsCursor postings = snapshot.getPostings(termId);
+            for (int docId = postings.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = postings.nextDoc()) {
+                maxWeight = Math.max(maxWeight,
+                        termScorers[termId].score(postings.termFrequency(), statistics.length(docId)));
+            }
+            postingCount += snapshot.getDocumentFrequency(termId);
+        }
+        if (postingCount > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many postings for an impact index: " + postingCount);
+        }
+        int levels = (1 << bits) - 1;
+        double scale = maxWeight > 0.0 ? maxWeight / levels : 1.0;
+
+        // Second pass: quantize each term's postings, then lay them out by decreasing impact
+        int[] termSegments = new int[vocabularySize + 1];
+        int[] segmentImpacts = new int[Math.max(16, vocabularySize)];
+        int[] segmentOffsets = new int[segmentImpacts.length + 1];
+        int[] docIds = new int[(int) postingCount];
+        int[] termDocs = new int[16];
+        int[] termImpacts = new int[16];
+        int[] counts = new int[levels + 1];
+        int segmentCount = 0;
+        int posting = 0;
+        for (int termId = 0; termId < vocabularySize; termId++) {
+            termSegments[termId] = segmentCount;
+            int df = snapshot.getDocumentFrequency(termId);
+            if (termDocs.length < df) {
+                termDocs = new int[Math.max(df, termDocs.length * 2)];
+                termImpacts = new int[termDocs.length];
+            }
+            int n = 0;
+            PostingsCursor postings = snapshot.getPostings(termId);
+            for (int docId = postings.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = postings.nextDoc()) {
+                double weight = termScorers[termId].score(postings.termFrequency(), statistics.length(docId));
+                if (weight > 0.0) {
+                    termDocs[n] = docId;
+                    termImpacts[n++] = Math.min(levels, Math.max(1, (int) Math.ceil(weight / scale)));
+                }
+            }
+
+            // Counting sort by impact; documents stay in ID order within an impact
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[termImpacts[i]]++;
+            }
+            int start = posting;
+            for (int impact = levels; impact >= 1; impact--) {
+                if (counts[impact] == 0) {
+                    continue;
+                }
+                if (segmentCount == segmentImpacts.length) {
+                    segmentImpacts = Arrays.copyOf(segmentImpacts, segmentCount * 2);
+                    segmentOffsets = Arrays.copyOf(segmentOffsets, segmentCount * 2 + 1);
+                }
+                segmentImpacts[segmentCount] = impact;
+                segmentOffsets[segmentCount++] = start;
+                int size = counts[impact];
+                counts[impact] = start;  // now the next free position of the segment
+                start += size;
+            }
+            for (int i = 0; i < n; i++) {
+                docIds[counts[termImpacts[i]]++] = termDocs[i];
+            }
+            posting = start;
+        }
+        termSegments[vocabularySize] = segmentCount;
+        segmentOffsets[segmentCount] = posting;
+
+        return new ImpactIndex(bits, scale, snapshot.getDocumentCount(), termSegments,
+                Arrays.copyOf(segmentImpacts, segmentCount), Arrays.copyOf(segmentOffsets, segmentCount + 1),
+                posting == docIds.length ? docIds : Arrays.copyOf(docIds, posting));
+    }
+
+    /**
+     * Gets the number of bits of an impact.
+     *
+     * @return Impact bits
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * Gets the weight of one impact unit, to turn summed impacts back into an
+     * approximate score.
+     *
+     * @return The quantization step
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Gets the number of documents of the snapshot.
+     *
+     * @return Document count
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Gets the number of terms of the snapshot.
+     *
+     * @return Vocabulary size
+     */
+    public int getVocabularySize() {
+        return termSegments.length - 1;
+    }
+
+    /**
+     * Gets the total number of postings with a positive impact.
+     *
+     * @return Posting count
+     */
+    public int getPostingCount() {
+        return docIds.length;
+    }
+
+    /**
+     * Gets the first segment of a term.
+     *
+     * @param termId Term ID
+     * @return First segment (inclusive)
+     */
+    public int termStart(int termId) {
+        return termSegments[termId];
+    }
+
+    /**
+     * Gets the segment after the last segment of a term.
+     *
+     * @param termId Term ID
+     * @return End segment (exclusive)
+     */
+    public int termEnd(int termId) {
+        return termSegments[termId + 1];
+    }
+
+    /**
+     * Gets the impact shared by the postings of a segment.
+     *
+     * @param segment Segment index
+     * @return Impact, from 1 to 2^bits - 1
+     */
+    public int impact(int segment) {
+        return segmentImpacts[segment];
+    }
+
+    /**
+     * Gets the position of a segment's first posting.
+     *
+     * @param segment Segment index
+     * @return First position (inclusive)
+     */
+    public int segmentStart(int segment) {
+        return segmentOffsets[segment];
+    }
+
+    /**
+     * Gets the position after a segment's last posting.
+     *
+     * @param segment Segment index
+     * @return End position (exclusive)
+     */
+    public int segmentEnd(int segment) {
+        return segmentOffsets[segment + 1];
+    }
+
+    /**
+     * Gets the document ID at a posting position.
+     *
+     * @param position Posting position
+     * @return Document ID
+     */
+    public int docId(int position) {
+        return docIds[position];
+    }
+
+    /**
+     * Gets the approximate heap size of the arrays.
+     *
+     * @return Size in bytes
+     */
+    public long sizeInBytes() {
+        return 4L * (termSegments.length + segmentImpacts.length + segmentOffsets.length + docIds.length);
+    }
+}
@@ -0,0 +1,203 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Offline static pruning: builds a smaller copy of an index without the
+ * postings that contribute least to the scores.
+ *
+ * Strategies:
+ * - Term-centric: for each term, the postings scoring below epsilon times the
+ *   term's k-th highest score are dropped, so every term keeps at least its k
+ *   best documents
+ * - Document-centric: each document keeps only the given fraction of its terms,
+ *   those with the highest scores (at least one term per document)
+ *
+ * Usage:
+ * <pre>
+ * Indexer pruned = IndexPruner.pruneByTerm(indexer, bm25::getTermScorer, 10, 0.5);
+ * IndexWriter.write(pruned, path);
+ * </pre>
+ *
+ * Implementation notes:
+ * - Scores come from a per-term scoring function, e.g. BM25's term weights
+ * - Documents keep their original lengths, so length normalization is the same
+ *   as in the full index; the pruned indexer is marked as pruned, which lets the
+ *   index file hold documents longer than their postings
+ * - The pruned indexer shares the source's document store and codec, and keeps
+ *   positions if the source has them. Terms left without postings disappear
+ * - Collection statistics are those of the full index: the pruned indexer keeps
+ *   the document count and every term's original document frequency (see
+ *   IndexSnapshot.getCollectionDocumentFrequency), so IDF, and hence the score
+ *   of every surviving posting, is unchanged by pruning
+ * - Only the searchable snapshot is pruned; documents still in the source's
+ *   buffer are not included
+ *
+ * @author alexhere
+ */
+public final class IndexPruner {
+
+    private IndexPruner() {
+    }
+
+    /**
+     * Prunes each term's postings relative to the term's own score distribution.
+     *
+     * @param indexer The index to prune
+     * @param scorers Supplies the scoring function of a term ID of the indexer's current snapshot
+     * @param k Number of top documents every term keeps
+     * @param epsilon Postings scoring below epsilon times the k-th highest score are dropped, from 0 to 1
+     * @return A new indexer with the pruned index
+     * @throws IllegalArgumentException If k is not positive or epsilon is out of range
+     */
+    public static Indexer pruneByTerm(Indexer indexer, IntFunction<TermScorer> scorers, int k, double epsilon) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        if (epsilon < 0.0 || epsilon > 1.0) {
+            throw new IllegalArgumentException("epsilon must be between 0 and 1: " + epsilon);
+        }
+        IndexSnapshot snapshot = indexer.snapshot();
+        DocumentStatistics statistics = snapshot.getDocumentStatistics();
+        BitSet kept = new BitSet(statistics.termEntryCount());
+        double[] scores = new double[16];
+        double[] sorted = new double[16];
+        for (int termId = 0; termId < snapshot.getVocabularySize(); termId++) {
+            TermScorer scorer = scorers.apply(termId);
+            int df = snapshot.getDocumentFrequency(termId);
+            if (scores.length < df) {
+                scores = new double[Math.max(df, scores.length * 2)];
+                sorted = new double[scores.length];
+            }
+            int n = 0;
+            PostingsCursor postings = snapshot.getPostings(termId);
+            for (int docId = postings.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = postings.nextDoc()) {
+                scores[n++] = scorer.score(postings.termFrequency(), statistics.length(docId));
+            }
+
+            // Threshold: epsilon times the k-th highest score; terms with at most k postings keep them all
+            double threshold = Double.NEGATIVE_INFINITY;
+            if (n > k) {
+                System.arraycopy(scores, 0, sorted, 0, n);
+                Arrays.sort(sorted, 0, n);
+                threshold = epsilon * sorted[n - k];
+            }
+            n = 0;
+            postings = snapshot.getPostings(termId);
+            for (int docId = postings.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = postings.nextDoc()) {
+                if (scores[n++] >= threshold) {
+                    kept.set(statistics.findTerm(docId, termId));
+                }
+            }
+        }
+        return rebuild(indexer, snapshot, kept);
+    }
+
+    /**
+     * Prunes each document's terms, keeping the highest scoring fraction of them.
+     *
+     * @param indexer The index to prune
+     * @param scorers Supplies the scoring function of a term ID of the indexer's current snapshot
+     * @param keepFraction Fraction of each document's distinct terms to keep, above 0 and at most 1
+     * @return A new indexer with the pruned index
+     * @throws IllegalArgumentException If keepFraction is out of range
+     */
+    public static Indexer pruneByDocument(Indexer indexer, IntFunction<TermScorer> scorers, double keepFraction) {
+        if (!(keepFraction > 0.0 && keepFraction <= 1.0)) {
+            throw new IllegalArgumentException("keepFraction must be above 0 and at most 1: " + keepFraction);
+        }
+        IndexSnapshot snapshot = indexer.snapshot();
+        DocumentStatistics statistics = snapshot.getDocumentStatistics();
+        TermScorer[] termScorers = new TermScorer[snapshot.getVocabularySize()];
+        for (int termId = 0; termId < termScorers.length; termId++) {
+            termScorers[termId] = scorers.apply(termId);
+        }
+
+        BitSet kept = new BitSet(statistics.termEntryCount());
+        double[] scores = new double[16];
+        Integer[] order = new Integer[16];
+        for (int docId = 0; docId < statistics.getDocumentCount(); docId++) {
+            int start = statistics.termStart(docId);
+            int n = statistics.termEnd(docId) - start;
+            if (scores.length < n) {
+                scores = new double[Math.max(n, scores.length * 2)];
+                order = new Integer[scores.length];
+            }
+            for (int i = 0; i < n; i++) {
+                int position = start + i;
+                scores[i] = termScorers[statistics.termId(position)]
+                        .score(statistics.termFrequency(position), statistics.length(docId));
+                order[i] = i;
+            }
+
+            // Highest scores first; equal scores keep the lower term ID
+            final double[] documentScores = scores;
+            Arrays.sort(order, 0, n, (a, b) -> Double.compare(documentScores[b], documentScores[a]));
+            int keep = Math.max(1, (int) Math.ceil(keepFraction * n));
+            for (int i = 0; i < Math.min(keep, n); i++) {
+                kept.set(start + order[i]);
+            }
+        }
+        return rebuild(indexer, snapshot, kept);
+    }
+
+    /**
+     * Builds an indexer holding the postings whose forward index position is kept.
+     */
+    private static Indexer rebuild(Indexer source, IndexSnapshot snapshot, BitSet kept) {
+        DocumentStatistics statistics = snapshot.getDocumentStatistics();
+        PostingsCodec codec = source.getCodec();
+        TermDictionary dictionary = snapshot.getDictionary();
+        Map<String, TermPostings> postings = new HashMap<>();
+        Map<String, Integer> collectionFrequencies = new HashMap<>();
+        int[] distinctTerms = new int[snapshot.getDocumentCount()];
+        int[] positions = new int[16];
+        for (int termId = 0; termId < snapshot.getVocabularySize(); termId++) {
+            PostingsCursor cursor = snapshot.getPostings(termId);
+            PostingsList list = new PostingsList(source.isStorePositions() && cursor.hasPositions());
+            for (int docId = cursor.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = cursor.nextDoc()) {
+                if (!kept.get(statistics.findTerm(docId, termId))) {
+                    continue;
+                }
+                int tf = cursor.termFrequency();
+                if (positions.length < tf) {
+                    positions = new int[Math.max(tf, positions.length * 2)];
+                }
+                if (cursor.hasPositions()) {
+                    for (int i = 0; i < tf; i++) {
+                        positions[i] = cursor.position(i);
+                    }
+                }
+                list.addPosting(docId, Arrays.copyOf(positions, tf));
+                distinctTerms[docId]++;
+            }
+            if (list.size() > 0) {
+                list.trimToSize();
+                String term = dictionary.term(termId);
+                postings.put(term, codec != null ? CompressedPostings.encode(list, codec, statistics::length) : list);
+                collectionFrequencies.put(term, snapshot.getCollectionDocumentFrequency(termId));
+            }
+        }
+
+        List<Document> documents = new ArrayList<>(snapshot.getDocumentCount());
+        for (int docId = 0; docId < snapshot.getDocumentCount(); docId++) {
+            Document document = snapshot.getDocument(docId);
+            documents.add(new Document(document.getId(), document.getTitle(), document.getLength(),
+                    distinctTerms[docId]));
+        }
+
+        Indexer pruned = new Indexer(codec, source.getDocumentStore());
+        pruned.setStorePositions(source.isStorePositions());
+        pruned.setPruned(true);
+        pruned.restore(documents, postings, collectionFrequencies);
+        return pruned;
+    }
+}
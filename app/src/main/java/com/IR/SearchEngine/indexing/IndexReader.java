@@ -0,0 +1,264 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opens an index file written by IndexWriter.
+ * The file is mapped read-only with FileChannel.map and the postings are decoded
+ * straight from the mapping, so opening an index does not read the postings into
+ * the heap and the pages are shared through the OS page cache between processes.
+ *
+ * Usage:
+ * <pre>
+ * Indexer indexer = IndexReader.open(Paths.get("index/search.idx"));
+ * Indexer checked = IndexReader.verify(Paths.get("index/search.idx"));   // also CRC and postings
+ * </pre>
+ *
+ * Implementation notes:
+ * - open() reads the header, the document table and the dictionary and checks the
+ *   magic number, the format version and that every count, string and section lies
+ *   inside the file before allocating for it; it does not touch the encoded
+ *   postings, so startup does not grow with their size
+ * - Document lengths and distinct term counts come from the document table;
+ *   verify() additionally checks the CRC32 footer and decodes every posting to
+ *   check them, and a mismatch raises an IOException
+ * - Skip data is copied into int arrays (4 bytes per 128 postings); the encoded
+ *   blocks stay in the mapping
+ * - Documents are restored as compact Documents (ID, title and statistics); their
+ *   original content stays in the mapped stored-fields section until a result needs it
+ * - The file is mapped in chunks of 1 GB (see MappedFile), so files over 2 GB
+ *   open too; all offsets are longs
+ *
+ * @author alexhere
+ */
+public class IndexReader {
+
+    /**
+     * Opens an index file.
+     *
+     * @param path The index file
+     * @return An indexer serving the stored index
+     * @throws IOException If the file cannot be read, is not an index, has an
+     *                     unsupported version or a section outside the file
+     */
+    public static Indexer open(Path path) throws IOException {
+        return open(path, MappedFile.DEFAULT_CHUNK_SIZE, false);
+    }
+
+    /**
+     * Checks a whole index file: the CRC32 footer over every byte, and every posting
+     * against the document table (document IDs in range, document lengths and
+     * distinct term counts equal to what the postings hold). Reads the whole file,
+     * so it takes time linear in the index size; open() skips these checks.
+     *
+     * @param path The index file
+     * @return An indexer serving the verified index
+     * @throws IOException If the file cannot be read or any check fails
+     */
+    public static Indexer verify(Path path) throws IOException {
+        return open(path, MappedFile.DEFAULT_CHUNK_SIZE, true);
+    }
+
+    /**
+     * Opens an index file mapped in chunks of the given size.
+     *
+     * @param path      The index file
+     * @param chunkSize The size of each mapping
+     * @param verify    Whether to run the checks of verify()
+     * @return An indexer serving the stored index
+     * @throws IOException If the file cannot be read or is not a valid index
+     */
+    static Indexer open(Path path, int chunkSize, boolean verify) throws IOException {
+        MappedFile file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mappings stay valid after the channel is closed
+            file = MappedFile.map(channel, chunkSize);
+        }
+
+        try {
+            return read(file, path, verify);
+        } catch (RuntimeException e) {
+            throw new IOException("Index file is truncated or malformed: " + path, e);
+        }
+    }
+
+    private static Indexer read(MappedFile file, Path path, boolean verify) throws IOException {
+        if (file.length() < 16 || file.getInt(0) != IndexWriter.MAGIC) {
+            throw new IOException("Not an index file: " + path);
+        }
+        int version = file.getInt(4);
+        if (version != IndexWriter.FORMAT_VERSION) {
+            throw new IOException("Unsupported index format version " + version + " (expected "
+                    + IndexWriter.FORMAT_VERSION + "): " + path);
+        }
+        if (verify) {
+            verifyChecksum(file, path);
+        }
+
+        long[] cursor = {8};
+        PostingsCodec codec = PostingsCodec.forName(readString(file, cursor, path));
+        int flags = readInt(file, cursor);
+        if ((flags & ~(IndexWriter.FLAG_POSITIONS | IndexWriter.FLAG_PRUNED)) != 0) {
+            throw new IOException("Unsupported index flags " + Integer.toHexString(flags) + ": " + path);
+        }
+        boolean pruned = (flags & IndexWriter.FLAG_PRUNED) != 0;
+        int docCount = readInt(file, cursor);
+        int termCount = readInt(file, cursor);
+        // Every document takes at least 16 bytes of the table and every term 28 of the dictionary
+        if (docCount < 0 || termCount < 0
+                || 16L * docCount + 28L * termCount > file.length() - Long.BYTES - cursor[0]) {
+            throw new IOException("Index header declares " + docCount + " documents and " + termCount
+                    + " terms, more than the file holds: " + path);
+        }
+
+        String[] ids = new String[docCount];
+        String[] titles = new String[docCount];
+        int[] docLengths = new int[docCount];
+        int[] distinctTerms = new int[docCount];
+        for (int docId = 0; docId < docCount; docId++) {
+            docLengths[docId] = readInt(file, cursor);
+            distinctTerms[docId] = readInt(file, cursor);
+            ids[docId] = readString(file, cursor, path);
+            titles[docId] = readString(file, cursor, path);
+            if (distinctTerms[docId] < 0 || distinctTerms[docId] > docLengths[docId]) {
+                throw new IOException("Document " + ids[docId] + " has " + distinctTerms[docId]
+                        + " distinct terms for length " + docLengths[docId] + ": " + path);
+            }
+        }
+
+        String[] terms = new String[termCount];
+        int[] docFrequencies = new int[termCount];
+        Map<String, Integer> collectionFrequencies = pruned ? new HashMap<>(termCount * 2) : null;
+        int[] maxTermFrequencies = new int[termCount];
+        int[] blockCounts = new int[termCount];
+        long[] offsets = new long[termCount];
+        int[] dataLengths = new int[termCount];
+        for (int i = 0; i < termCount; i++) {
+            terms[i] = readString(file, cursor, path);
+            docFrequencies[i] = readInt(file, cursor);
+            if (pruned) {
+                collectionFrequencies.put(terms[i], readInt(file, cursor));
+            }
+            maxTermFrequencies[i] = readInt(file, cursor);
+            blockCounts[i] = readInt(file, cursor);
+            offsets[i] = file.getLong(cursor[0]);
+            cursor[0] += Long.BYTES;
+            dataLengths[i] = readInt(file, cursor);
+        }
+
+        long postingsStart = cursor[0];
+        long footer = file.length() - Long.BYTES;
+        Map<String, TermPostings> postings = new HashMap<>(termCount * 2);
+        CompressedPostings[] termPostings = new CompressedPostings[termCount];
+        long postingsEnd = postingsStart;
+        for (int i = 0; i < termCount; i++) {
+            long start = postingsStart + offsets[i];
+            long dataStart = start + 4L * blockCounts[i] * IndexWriter.SKIP_STRIDE;
+            if (offsets[i] < 0 || blockCounts[i] < 0 || dataLengths[i] < 0 || dataStart + dataLengths[i] > footer) {
+                throw new IOException("Postings of term " + terms[i] + " lie outside the file: " + path);
+            }
+            int[] skipData = new int[blockCounts[i] * IndexWriter.SKIP_STRIDE];
+            for (int s = 0; s < skipData.length; s++) {
+                skipData[s] = file.getInt(start + 4L * s);
+            }
+            ByteBuffer data = file.slice(dataStart, dataLengths[i]);
+            postingsEnd = Math.max(postingsEnd, dataStart + dataLengths[i]);
+            termPostings[i] = CompressedPostings.wrap(codec, data, skipData,
+                    docFrequencies[i], maxTermFrequencies[i]);
+            postings.put(terms[i], termPostings[i]);
+        }
+        if (verify) {
+            verifyPostings(termPostings, terms, ids, docLengths, distinctTerms, pruned, path);
+        }
+
+        List<Document> documents = new ArrayList<>(docCount);
+        for (int docId = 0; docId < docCount; docId++) {
+            documents.add(new Document(ids[docId], titles[docId], docLengths[docId], distinctTerms[docId]));
+        }
+
+        // Stored fields: everything between the postings and the footer
+        DocumentStore store = DocumentStore.wrap(file.section(postingsEnd, footer - postingsEnd));
+        if (store.getDocumentCount() != docCount) {
+            throw new IOException("Stored fields hold " + store.getDocumentCount() + " documents, expected "
+                    + docCount + ": " + path);
+        }
+
+        Indexer indexer = new Indexer(codec, store);
+        indexer.setStorePositions((flags & IndexWriter.FLAG_POSITIONS) != 0);
+        indexer.setPruned(pruned);
+        try {
+            indexer.restore(documents, postings, collectionFrequencies);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Pruned index has invalid collection frequencies: " + path, e);
+        }
+        return indexer;
+    }
+
+    /**
+     * Decodes every posting and checks it against the document table.
+     */
+    private static void verifyPostings(CompressedPostings[] termPostings, String[] terms, String[] ids,
+                                       int[] docLengths, int[] distinctTerms, boolean pruned,
+                                       Path path) throws IOException {
+        int[] postingsDistinct = new int[ids.length];
+        long[] postingsLengths = new long[ids.length];
+        for (int i = 0; i < termPostings.length; i++) {
+            PostingsCursor cursor = termPostings[i].cursor();
+            while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                if (cursor.docId() < 0 || cursor.docId() >= ids.length) {
+                    throw new IOException("Term " + terms[i] + " has a posting for unknown document "
+                            + cursor.docId() + ": " + path);
+                }
+                postingsDistinct[cursor.docId()]++;
+                postingsLengths[cursor.docId()] += cursor.termFrequency();
+            }
+        }
+        for (int docId = 0; docId < ids.length; docId++) {
+            // Pruning drops postings but keeps the original lengths for length normalization
+            if (pruned ? postingsLengths[docId] > docLengths[docId] : postingsLengths[docId] != docLengths[docId]) {
+                throw new IOException("Document " + ids[docId] + " length mismatch: stored "
+                        + docLengths[docId] + ", postings " + postingsLengths[docId] + ": " + path);
+            }
+            if (postingsDistinct[docId] != distinctTerms[docId]) {
+                throw new IOException("Document " + ids[docId] + " distinct term mismatch: stored "
+                        + distinctTerms[docId] + ", postings " + postingsDistinct[docId] + ": " + path);
+            }
+        }
+    }
+
+    private static void verifyChecksum(MappedFile file, Path path) throws IOException {
+        long footer = file.length() - Long.BYTES;
+        if (file.crc32(0, footer) != file.getLong(footer)) {
+            throw new IOException("Index file checksum mismatch (corrupt or incomplete): " + path);
+        }
+    }
+
+    private static int readInt(MappedFile file, long[] cursor) {
+        int value = file.getInt(cursor[0]);
+        cursor[0] += Integer.BYTES;
+        return value;
+    }
+
+    private static String readString(MappedFile file, long[] cursor, Path path) throws IOException {
+        int length = readInt(file, cursor);
+        // Checked before allocating, so a corrupt length cannot ask for gigabytes
+        if (length < 0 || length > file.length() - Long.BYTES - cursor[0]) {
+            throw new IOException("String of " + length + " bytes at offset " + cursor[0]
+                    + " runs past the end of the file: " + path);
+        }
+        byte[] bytes = file.get(cursor[0], new byte[length]);
+        cursor[0] += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,547 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.QueryStatistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Point-in-time, read-only view of the index: an immutable list of segments
+ * together with the collection statistics computed over them.
+ * The Indexer publishes a new snapshot whenever a segment is added or merged,
+ * so a query that holds on to one snapshot sees a consistent index while
+ * documents keep being ingested.
+ *
+ * Usage:
+ * <pre>
+ * IndexSnapshot index = indexer.snapshot();
+ * int termId = index.getTermId(term);                // resolve once per query, -1 if absent
+ * double idf = index.getIdf(termId);
+ * PostingsCursor cursor = index.getPostings(termId); // never returns documents >= getDocumentCount()
+ * </pre>
+ *
+ * Implementation notes:
+ * - A global TermDictionary gives every term of the snapshot a dense int ID;
+ *   document frequencies and IDF values are arrays indexed by that ID, so the
+ *   query hot path never hashes strings
+ * - IDF comes from the collection document frequencies. They equal the postings
+ *   counts, except in a statically pruned index (see IndexPruner), which keeps
+ *   the document frequencies of the full index so that its surviving postings
+ *   score as they did before pruning
+ * - Each segment keeps its own dictionary; segmentTermIds maps global term IDs
+ *   to segment term IDs (-1 if the segment lacks the term)
+ * - Term IDs stay the same across merges; a flush that adds new terms renumbers
+ *   them, so IDs must not be kept across snapshots
+ * - Per-document statistics (lengths, forward index) are built once per
+ *   snapshot on first use, see DocumentStatistics
+ * - Searches fan out over the segments: getPostings() chains the per-segment
+ *   postings of a term in document ID order (see MultiSegmentCursor)
+ * - getVersion() counts the flushes that produced the snapshot; merges keep the
+ *   version since they change neither the documents nor the statistics, so
+ *   anything derived from search results can be cached per version
+ * - With a DecodedBlockCache (see Indexer.setBlockCache), compressed postings
+ *   cursors share decoded blocks; getPostings(termId, statistics) also counts
+ *   the cache hits of a query
+ * - Safe to share between threads
+ *
+ * @author alexhere
+ */
+public class IndexSnapshot {
+
+    private final List<Segment> segments;
+    private final int[] segmentEnds;
+    private final TermDictionary dictionary;
+    private final int[][] segmentTermIds;     // [segment][global term ID] -> segment term ID or -1
+    private final int[] documentFrequencies;  // by global term ID
+    private final int[] collectionFrequencies; // by global term ID, those of the full index if pruned
+    private final double[] idfValues;         // by global term ID
+    private final PostingsCodec codec;
+    private final int documentCount;
+    private final long postingsSizeInBytes;
+    private final long version;
+    private final DecodedBlockCache blockCache;              // null if decoded blocks are not cached
+    private volatile DocumentStatistics documentStatistics;  // built on first use
+
+    private IndexSnapshot(List<Segment> segments, TermDictionary dictionary, int[][] segmentTermIds,
+                          int[] documentFrequencies, int[] collectionFrequencies, double[] idfValues,
+                          PostingsCodec codec, long version, DecodedBlockCache blockCache) {
+        this.segments = Collections.unmodifiableList(segments);
+        this.segmentEnds = new int[segments.size()];
+        long size = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            segmentEnds[i] = segments.get(i).endDocId();
+            size += segments.get(i).sizeInBytes();
+        }
+        this.dictionary = dictionary;
+        this.segmentTermIds = segmentTermIds;
+        this.documentFrequencies = documentFrequencies;
+        this.collectionFrequencies = collectionFrequencies;
+        this.codec = codec;
+        this.documentCount = segments.isEmpty() ? 0 : segmentEnds[segments.size() - 1];
+        this.postingsSizeInBytes = size;
+        this.version = version;
+        this.blockCache = blockCache;
+        this.idfValues = idfValues != null ? idfValues : computeIdf(collectionFrequencies, documentCount);
+    }
+
+    // IDF = log(N/df) where N is the total number of documents
+    private static double[] computeIdf(int[] documentFrequencies, int documentCount) {
+        double[] idf = new double[documentFrequencies.length];
+        for (int termId = 0; termId < idf.length; termId++) {
+            idf[termId] = Math.log((double) documentCount / documentFrequencies[termId]);
+        }
+        return idf;
+    }
+
+    /**
+     * Creates an empty snapshot.
+     *
+     * @param codec The indexer's postings codec
+     * @return A snapshot without documents
+     */
+    static IndexSnapshot empty(PostingsCodec codec) {
+        int[] frequencies = new int[0];
+        return new IndexSnapshot(new ArrayList<>(), TermDictionary.empty(), new int[0][], frequencies, frequencies, null,
+                codec, 0, null);
+    }
+
+    /**
+     * Creates a snapshot with a new segment appended. The new global dictionary
+     * is the union of the current one and the segment's, built in one sorted pass.
+     *
+     * @param segment Segment whose first document follows the last document of this snapshot
+     * @return The new snapshot
+     */
+    IndexSnapshot withSegment(Segment segment) {
+        if (segment.baseDocId() != documentCount) {
+            throw new IllegalArgumentException("Segment starts at document " + segment.baseDocId()
+                    + ", expected " + documentCount);
+        }
+        List<Segment> newSegments = new ArrayList<>(segments);
+        newSegments.add(segment);
+        TermDictionary added = segment.terms();
+
+        if (segments.isEmpty()) {
+            // The first segment's dictionary is the global one
+            int[] identity = new int[added.size()];
+            int[] frequencies = new int[added.size()];
+            for (int termId = 0; termId < identity.length; termId++) {
+                identity[termId] = termId;
+                frequencies[termId] = segment.postings(termId).size();
+            }
+            return new IndexSnapshot(newSegments, added, new int[][] {identity}, frequencies, frequencies, null,
+                    codec, version + 1, blockCache);
+        }
+
+        int[] oldToNew = new int[dictionary.size()];
+        int[] addedToNew = new int[added.size()];
+        TermDictionary.Builder builder = new TermDictionary.Builder();
+        TermDictionary.TermIterator oldTerms = dictionary.iterator();
+        TermDictionary.TermIterator addedTerms = added.iterator();
+        boolean hasOld = oldTerms.next();
+        boolean hasAdded = addedTerms.next();
+        while (hasOld || hasAdded) {
+            int cmp = !hasOld ? 1 : !hasAdded ? -1 : oldTerms.compareTo(addedTerms);
+            int newId = builder.size();
+            (cmp <= 0 ? oldTerms : addedTerms).copyTo(builder);
+            if (cmp <= 0) {
+                oldToNew[oldTerms.id()] = newId;
+                hasOld = oldTerms.next();
+            }
+            if (cmp >= 0) {
+                addedToNew[addedTerms.id()] = newId;
+                hasAdded = addedTerms.next();
+            }
+        }
+        TermDictionary newDictionary = builder.build();
+
+        int[][] newSegmentTermIds = new int[newSegments.size()][];
+        for (int s = 0; s <= segments.size(); s++) {
+            newSegmentTermIds[s] = new int[newDictionary.size()];
+            Arrays.fill(newSegmentTermIds[s], -1);
+        }
+        int[] newFrequencies = new int[newDictionary.size()];
+        boolean pruned = collectionFrequencies != documentFrequencies;
+        int[] newCollectionFrequencies = pruned ? new int[newDictionary.size()] : newFrequencies;
+        for (int termId = 0; termId < oldToNew.length; termId++) {
+            int newId = oldToNew[termId];
+            for (int s = 0; s < segments.size(); s++) {
+                newSegmentTermIds[s][newId] = segmentTermIds[s][termId];
+            }
+            newFrequencies[newId] = documentFrequencies[termId];
+            if (pruned) {
+                newCollectionFrequencies[newId] = collectionFrequencies[termId];
+            }
+        }
+        for (int termId = 0; termId < addedToNew.length; termId++) {
+            newSegmentTermIds[segments.size()][addedToNew[termId]] = termId;
+            newFrequencies[addedToNew[termId]] += segment.postings(termId).size();
+            if (pruned) {
+                newCollectionFrequencies[addedToNew[termId]] += segment.postings(termId).size();
+            }
+        }
+        return new IndexSnapshot(newSegments, newDictionary, newSegmentTermIds, newFrequencies,
+                newCollectionFrequencies, null, codec, version + 1, blockCache);
+    }
+
+    /**
+     * Creates a snapshot in which a run of adjacent segments is replaced by their merge.
+     * The documents and postings are unchanged, so the dictionary, the term IDs and
+     * the statistics are shared.
+     *
+     * @param from Index of the first merged segment
+     * @param to Index after the last merged segment
+     * @param merged The merged segment
+     * @return The new snapshot
+     */
+    IndexSnapshot withMerge(int from, int to, Segment merged) {
+        // Every term of the merged segment is in the global dictionary: walk both in order
+        int[] mergedTermIds = new int[dictionary.size()];
+        Arrays.fill(mergedTermIds, -1);
+        TermDictionary.TermIterator globalTerms = dictionary.iterator();
+        TermDictionary.TermIterator mergedTerms = merged.terms().iterator();
+        boolean hasGlobal = globalTerms.next();
+        while (mergedTerms.next()) {
+            while (hasGlobal && globalTerms.compareTo(mergedTerms) < 0) {
+                hasGlobal = globalTerms.next();
+            }
+            if (!hasGlobal || globalTerms.compareTo(mergedTerms) != 0) {
+                throw new IllegalArgumentException("Merged segment has a term outside the dictionary: "
+                        + mergedTerms.term());
+            }
+            mergedTermIds[globalTerms.id()] = mergedTerms.id();
+        }
+
+        List<Segment> newSegments = new ArrayList<>(segments.subList(0, from));
+        newSegments.add(merged);
+        newSegments.addAll(segments.subList(to, segments.size()));
+        List<int[]> newSegmentTermIds = new ArrayList<>(Arrays.asList(segmentTermIds).subList(0, from));
+        newSegmentTermIds.add(mergedTermIds);
+        newSegmentTermIds.addAll(Arrays.asList(segmentTermIds).subList(to, segments.size()));
+        IndexSnapshot snapshot = new IndexSnapshot(newSegments, dictionary, newSegmentTermIds.toArray(new int[0][]),
+                documentFrequencies, collectionFrequencies, idfValues, codec, version, blockCache);
+        snapshot.documentStatistics = documentStatistics;
+        return snapshot;
+    }
+
+    /**
+     * Gets the segments of this snapshot in document ID order.
+     *
+     * @return Unmodifiable segment list
+     */
+    List<Segment> segments() {
+        return segments;
+    }
+
+    /**
+     * Creates the same snapshot with another decoded block cache.
+     *
+     * @param cache The cache, or null to decode every block
+     * @return The snapshot using the cache
+     */
+    IndexSnapshot withBlockCache(DecodedBlockCache cache) {
+        IndexSnapshot snapshot = new IndexSnapshot(new ArrayList<>(segments), dictionary, segmentTermIds,
+                documentFrequencies, collectionFrequencies, idfValues, codec, version, cache);
+        snapshot.documentStatistics = documentStatistics;
+        return snapshot;
+    }
+
+    /**
+     * Creates the same snapshot with the collection document frequencies of the
+     * full index it was pruned from.
+     *
+     * @param frequencies Collection document frequency by term ID, at least the postings count of each term
+     * @return The snapshot with the IDF values of the full index
+     * @throws IllegalArgumentException If a frequency is below the term's postings count or above the document count
+     */
+    IndexSnapshot withCollectionFrequencies(int[] frequencies) {
+        if (frequencies.length != documentFrequencies.length) {
+            throw new IllegalArgumentException("Expected " + documentFrequencies.length
+                    + " collection frequencies, got " + frequencies.length);
+        }
+        for (int termId = 0; termId < frequencies.length; termId++) {
+            if (frequencies[termId] < documentFrequencies[termId] || frequencies[termId] > documentCount) {
+                throw new IllegalArgumentException("Invalid collection frequency " + frequencies[termId]
+                        + " for term " + dictionary.term(termId) + " with " + documentFrequencies[termId]
+                        + " postings");
+            }
+        }
+        IndexSnapshot snapshot = new IndexSnapshot(new ArrayList<>(segments), dictionary, segmentTermIds,
+                documentFrequencies, frequencies, null, codec, version, blockCache);
+        snapshot.documentStatistics = documentStatistics;
+        return snapshot;
+    }
+
+    /**
+     * Gets the cache of decoded postings blocks the snapshot's cursors use.
+     *
+     * @return The block cache, or null if there is none
+     */
+    public DecodedBlockCache getBlockCache() {
+        return blockCache;
+    }
+
+    /**
+     * Gets the version of the index: the number of flushes behind this snapshot.
+     * A new version can return different search results; merges keep the version.
+     *
+     * @return The index version, 0 for an empty index
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the number of segments.
+     *
+     * @return Segment count
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Gets the sorted term dictionary, e.g. for prefix lookups.
+     *
+     * @return The dictionary of all indexed terms
+     */
+    public TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Resolves a term to its ID in this snapshot.
+     *
+     * @param term The term
+     * @return The term ID, or -1 if the term is not indexed
+     */
+    public int getTermId(String term) {
+        return dictionary.termId(term);
+    }
+
+    /**
+     * Gets the number of distinct terms, which is the exclusive upper bound of the term IDs.
+     *
+     * @return Vocabulary size
+     */
+    public int getVocabularySize() {
+        return dictionary.size();
+    }
+
+    /**
+     * Calculates the IDF value log(N/df) of a term.
+     *
+     * @param term The term to calculate IDF for
+     * @return The IDF value, or 0 if the term is not indexed
+     */
+    public double calculateIdf(String term) {
+        int termId = getTermId(term);
+        return termId >= 0 ? idfValues[termId] : 0.0;
+    }
+
+    /**
+     * Gets the IDF value of a term.
+     *
+     * @param term The term to get IDF for
+     * @return The IDF value
+     */
+    public double getIdf(String term) {
+        return calculateIdf(term);
+    }
+
+    /**
+     * Gets the IDF value of a term by ID.
+     *
+     * @param termId The term ID
+     * @return The IDF value
+     */
+    public double getIdf(int termId) {
+        return idfValues[termId];
+    }
+
+    /**
+     * Gets the number of documents containing a term, over all segments.
+     *
+     * @param term The term
+     * @return The document frequency
+     */
+    public int getDocumentFrequency(String term) {
+        int termId = getTermId(term);
+        return termId >= 0 ? documentFrequencies[termId] : 0;
+    }
+
+    /**
+     * Gets the number of documents containing a term by ID.
+     *
+     * @param termId The term ID
+     * @return The document frequency
+     */
+    public int getDocumentFrequency(int termId) {
+        return documentFrequencies[termId];
+    }
+
+    /**
+     * Gets the document frequency of a term in the collection, which IDF is
+     * computed from. For a statically pruned index it is the term's document
+     * frequency in the full index, which can exceed its postings count.
+     *
+     * @param termId The term ID
+     * @return The collection document frequency
+     */
+    public int getCollectionDocumentFrequency(int termId) {
+        return collectionFrequencies[termId];
+    }
+
+    /**
+     * Gets a cursor over the postings of a term across all segments.
+     *
+     * @param term The term to get postings for
+     * @return A postings cursor (empty if the term is not indexed)
+     */
+    public PostingsCursor getPostings(String term) {
+        int termId = getTermId(term);
+        return termId >= 0 ? getPostings(termId) : PostingsCursor.EMPTY;
+    }
+
+    /**
+     * Gets a cursor over the postings of a term by ID.
+     *
+     * @param termId The term ID
+     * @return A postings cursor
+     */
+    public PostingsCursor getPostings(int termId) {
+        return getPostings(termId, null);
+    }
+
+    /**
+     * Gets a cursor over the postings of a term by ID, counting the decoded
+     * block cache hits and misses of its blocks.
+     *
+     * @param termId The term ID
+     * @param statistics The query's counters, or null
+     * @return A postings cursor
+     */
+    public PostingsCursor getPostings(int termId, QueryStatistics statistics) {
+        if (segments.size() == 1) {
+            return cursor(segments.get(0).postings(segmentTermIds[0][termId]), statistics);
+        }
+        PostingsCursor[] cursors = new PostingsCursor[segments.size()];
+        int[] ends = new int[segments.size()];
+        int count = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            int segmentTermId = segmentTermIds[i][termId];
+            if (segmentTermId >= 0) {
+                cursors[count] = cursor(segments.get(i).postings(segmentTermId), statistics);
+                ends[count++] = segmentEnds[i];
+            }
+        }
+        if (count == 1) {
+            return cursors[0];
+        }
+        return new MultiSegmentCursor(Arrays.copyOf(cursors, count), Arrays.copyOf(ends, count));
+    }
+
+    private PostingsCursor cursor(TermPostings postings, QueryStatistics statistics) {
+        if (blockCache != null && postings instanceof CompressedPostings) {
+            return ((CompressedPostings) postings).cursor(blockCache, statistics);
+        }
+        return postings.cursor();
+    }
+
+    /**
+     * Gets the columnar per-document statistics, building them on first use.
+     * A merge keeps the documents and term IDs, so it shares the statistics.
+     *
+     * @return The document statistics
+     */
+    public DocumentStatistics getDocumentStatistics() {
+        DocumentStatistics statistics = documentStatistics;
+        if (statistics == null) {
+            synchronized (this) {
+                statistics = documentStatistics;
+                if (statistics == null) {
+                    statistics = DocumentStatistics.build(this);
+                    documentStatistics = statistics;
+                }
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Gets the postings codec of the indexer.
+     *
+     * @return The codec, or null if postings are kept uncompressed
+     */
+    public PostingsCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Gets the approximate heap size of the postings in bytes.
+     *
+     * @return Postings size in bytes
+     */
+    public long getPostingsSizeInBytes() {
+        return postingsSizeInBytes;
+    }
+
+    /**
+     * Gets the vocabulary (all indexed terms) as a read-only view of the dictionary.
+     *
+     * @return The set of all terms
+     */
+    public Set<String> getVocabulary() {
+        return dictionary.asSet();
+    }
+
+    /**
+     * Gets the number of documents in the snapshot.
+     *
+     * @return The document count
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Gets the document with the specified ID.
+     *
+     * @param docId The document ID
+     * @return The document or null if not found
+     */
+    public Document getDocument(int docId) {
+        if (docId < 0 || docId >= documentCount) {
+            return null;
+        }
+        // Binary search for the first segment that ends after docId
+        int low = 0;
+        int high = segmentEnds.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segmentEnds[mid] <= docId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return segments.get(low).document(docId);
+    }
+
+    /**
+     * Gets all documents, in document ID order (the list index of a document is its ID).
+     *
+     * @return A new list of all documents
+     */
+    public List<Document> getAllDocuments() {
+        List<Document> allDocuments = new ArrayList<>(documentCount);
+        for (Segment segment : segments) {
+            allDocuments.addAll(segment.documents());
+        }
+        return allDocuments;
+    }
+}
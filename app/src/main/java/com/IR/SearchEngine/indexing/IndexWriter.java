@@ -0,0 +1,172 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes the searchable documents of an Indexer to a single binary index file that IndexReader can map
+ * back into memory without re-reading or re-preprocessing the documents.
+ *
+ * File layout (big-endian, version {@value #FORMAT_VERSION}):
+ * <pre>
+ * header      int magic "IRIX", int version, string codec, int flags, int docCount, int termCount
+ * documents   per document in ID order: int length, int distinctTerms, string id, string title
+ * dictionary  per term in UTF-8 byte order: string term, int docFrequency,
+ *             [int collectionDocFrequency if pruned], int maxTermFrequency,
+ *             int blockCount, long postingsOffset, int dataLength
+ * postings    per term: blockCount * 5 ints of skip data, then dataLength encoded bytes
+ * stored      original document content, LZ4-compressed blocks (see DocumentStore)
+ * footer      long CRC32 of everything before it
+ * </pre>
+ * Strings are an int byte length followed by UTF-8 bytes. Flag {@value #FLAG_POSITIONS}
+ * marks an index whose postings store term positions, flag {@value #FLAG_PRUNED}
+ * a statically pruned index, whose document lengths may exceed the term
+ * frequencies of their postings and whose terms also store their document
+ * frequency in the full index, which IDF is computed from (see IndexPruner). Postings offsets are
+ * relative to the start of the postings section; the stored fields start where
+ * the last term's postings end.
+ *
+ * Implementation notes:
+ * - Sealed postings are copied byte for byte; uncompressed postings are encoded
+ *   with VByte on the way out
+ * - Segments are merged into one on the way out; documents still in the
+ *   indexer's in-memory buffer are not written
+ * - The file is written next to the target and moved into place when complete,
+ *   so readers never see a half-written index
+ *
+ * @author alexhere
+ */
+public class IndexWriter {
+
+    static final int MAGIC = 0x49524958; // "IRIX"
+    static final int FORMAT_VERSION = 4;
+    static final int FLAG_POSITIONS = 1;
+    static final int FLAG_PRUNED = 2;
+    static final int SKIP_STRIDE = 5;
+
+    /**
+     * Writes the index to a file, replacing any existing file.
+     *
+     * @param indexer The populated indexer
+     * @param path The index file
+     * @return The number of bytes written
+     * @throws IOException If the file cannot be written
+     */
+    public static long write(Indexer indexer, Path path) throws IOException {
+        IndexSnapshot snapshot = indexer.snapshot();
+        PostingsCodec codec = indexer.getCodec() != null ? indexer.getCodec() : new VByteCodec();
+
+        // The file holds a single segment: merge the snapshot's segments if needed
+        List<Segment> segments = snapshot.segments();
+        Segment index;
+        if (segments.isEmpty()) {
+            index = Segment.of(0, Collections.emptyList(), Collections.emptyMap());
+        } else {
+            index = segments.size() == 1 ? segments.get(0) : Segment.merge(segments, codec);
+        }
+        List<Document> documents = index.documents();
+
+        // Bring every term into the file codec's block layout first
+        List<String> terms = new ArrayList<>(index.terms().size());
+        List<CompressedPostings> postings = new ArrayList<>(index.terms().size());
+        TermDictionary.TermIterator iterator = index.terms().iterator();
+        while (iterator.next()) {
+            terms.add(iterator.term());
+            postings.add(toCompressed(index.postings(iterator.id()), codec, index));
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32 checksum = new CRC32();
+
+        try (OutputStream file = Files.newOutputStream(temporary);
+             CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), checksum);
+             DataOutputStream out = new DataOutputStream(checked)) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, codec.getName());
+            out.writeInt((indexer.isStorePositions() ? FLAG_POSITIONS : 0) | (indexer.isPruned() ? FLAG_PRUNED : 0));
+            out.writeInt(documents.size());
+            out.writeInt(terms.size());
+
+            for (Document document : documents) {
+                out.writeInt(document.getLength());
+                out.writeInt(document.getUniqueTermCount());
+                writeString(out, document.getId());
+                writeString(out, document.getTitle());
+            }
+
+            long postingsOffset = 0;
+            for (int i = 0; i < terms.size(); i++) {
+                CompressedPostings termPostings = postings.get(i);
+                int dataLength = termPostings.data().remaining();
+                writeString(out, terms.get(i));
+                out.writeInt(termPostings.size());
+                if (indexer.isPruned()) {
+                    out.writeInt(snapshot.getCollectionDocumentFrequency(snapshot.getTermId(terms.get(i))));
+                }
+                out.writeInt(termPostings.getMaxTermFrequency());
+                out.writeInt(termPostings.getBlockCount());
+                out.writeLong(postingsOffset);
+                out.writeInt(dataLength);
+                postingsOffset += 4L * termPostings.skipData().length + dataLength;
+            }
+
+            byte[] copyBuffer = new byte[1 << 16];
+            for (CompressedPostings termPostings : postings) {
+                for (int value : termPostings.skipData()) {
+                    out.writeInt(value);
+                }
+                ByteBuffer data = termPostings.data();
+                while (data.hasRemaining()) {
+                    int chunk = Math.min(copyBuffer.length, data.remaining());
+                    data.get(copyBuffer, 0, chunk);
+                    out.write(copyBuffer, 0, chunk);
+                }
+            }
+
+            indexer.getDocumentStore().writeTo(out, documents.size());
+
+            // The footer itself is not part of the checksum
+            out.writeLong(checksum.getValue());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(path);
+    }
+
+    private static CompressedPostings toCompressed(TermPostings postings, PostingsCodec codec, Segment segment) {
+        if (postings instanceof CompressedPostings
+                && ((CompressedPostings) postings).getCodec().getName().equals(codec.getName())) {
+            return (CompressedPostings) postings;
+        }
+        return CompressedPostings.encode(postings, codec, docId -> segment.document(docId).getLength());
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -5,14 +5,17 @@
 package com.IR.SearchEngine.indexing;
 
 import com.IR.SearchEngine.data.Document;
-import com.IR.SearchEngine.data.Posting;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Responsible for building and maintaining the inverted index.
@@ -28,30 +31,195 @@ import java.util.Collections;
  * - Optimized for efficient batch processing
  * - Uses a custom inverted index implementation (no Lucene)
  * - Can be extended to support compression techniques for index storage
+ * - The index is a list of immutable segments. New documents are inverted into
+ *   an in-memory buffer that flush() seals into a new segment; a background
+ *   thread merges segments according to a TieredMergePolicy
+ * - Readers work on an IndexSnapshot, which is replaced atomically on every
+ *   flush and merge, so ingestion and merging never block queries. The read
+ *   methods of this class use the latest snapshot
+ * - Documents become searchable when their segment is flushed; indexDocuments()
+ *   flushes at the end of every batch
+ * - Only one thread may add documents at a time; with setIndexingThreads(n),
+ *   indexDocuments() itself inverts a batch on n worker threads (see
+ *   indexDocumentsParallel)
+ * - The original content of each document goes to a compressed DocumentStore;
+ *   the segments keep compact Documents holding only the ID, title and statistics
+ * - Postings store the token positions recorded by the Preprocessor, unless
+ *   setStorePositions(false) was called before indexing; without positions the
+ *   postings hold only document IDs and term frequencies
+ * - setBlockCache() lets queries share decoded postings blocks; the cache
+ *   carries over to every later snapshot
  * 
  * @author alexhere
  */
 public class Indexer {
     
-    private final InvertedIndex invertedIndex;
-    private final Map<String, Double> idfValues;
-    private final Map<Integer, Document> documents;
+    /**
+     * Number of buffered documents that triggers an automatic flush.
+     */
+    public static final int DEFAULT_MAX_BUFFERED_DOCUMENTS = 10_000;
+    
+    private final PostingsCodec codec;   // null keeps postings uncompressed
+    private final DocumentStore documentStore;
+    private final Object commitLock = new Object();
+    private volatile IndexSnapshot snapshot;
+    
+    // In-memory segment being filled by indexDocument()
+    private InvertedIndex buffer;
+    private List<Document> bufferedDocuments;
+    private int maxBufferedDocuments;
     private int nextDocId;
-    private int documentCount;
+    private int indexingThreads;
+    private boolean storePositions;
+    private boolean pruned;
+    
+    // Background merging
+    private volatile TieredMergePolicy mergePolicy;
+    private ExecutorService mergeExecutor;
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean();
     
     /**
-     * Constructor that initializes the indexer with an empty inverted index.
+     * Constructor that initializes the indexer with an empty inverted index whose
+     * postings are sealed into VByte-compressed blocks after each batch of documents.
      */
     public Indexer() {
-        this.invertedIndex = new InvertedIndex();
-        this.idfValues = new HashMap<>();
-        this.documents = new HashMap<>();
+        this(new VByteCodec());
+    }
+    
+    /**
+     * Constructor that initializes the indexer with an empty inverted index whose
+     * postings are compressed with the given codec after each batch of documents.
+     * 
+     * @param codec The postings codec, or null to keep postings uncompressed
+     */
+    public Indexer(PostingsCodec codec) {
+        this(codec, DocumentStore.temporary());
+    }
+    
+    /**
+     * Constructor that uses an existing document store, e.g. one read from an index file.
+     * 
+     * @param codec The postings codec, or null to keep postings uncompressed
+     * @param documentStore Store for the original content of the documents
+     */
+    Indexer(PostingsCodec codec, DocumentStore documentStore) {
+        this.codec = codec;
+        this.documentStore = documentStore;
+        this.snapshot = IndexSnapshot.empty(codec);
+        this.buffer = new InvertedIndex();
+        this.bufferedDocuments = new ArrayList<>();
+        this.maxBufferedDocuments = DEFAULT_MAX_BUFFERED_DOCUMENTS;
+        this.mergePolicy = new TieredMergePolicy();
         this.nextDocId = 0;
-        this.documentCount = 0;
+        this.indexingThreads = 1;
+        this.storePositions = true;
+        this.pruned = false;
+    }
+    
+    /**
+     * Sets whether postings store the positions of the terms. An index without
+     * positions is smaller but cannot answer positional queries. Must be set
+     * before the first document is indexed.
+     * 
+     * @param storePositions False to store only document IDs and term frequencies
+     */
+    public void setStorePositions(boolean storePositions) {
+        if (nextDocId != 0) {
+            throw new IllegalStateException("Positions can only be configured before indexing");
+        }
+        this.storePositions = storePositions;
+        this.buffer = new InvertedIndex(storePositions);
+    }
+    
+    /**
+     * Tells whether postings store the positions of the terms.
+     * 
+     * @return True if positions are stored
+     */
+    public boolean isStorePositions() {
+        return storePositions;
+    }
+    
+    /**
+     * Marks the index as statically pruned (see IndexPruner): documents keep their
+     * original lengths while their postings hold only part of their terms.
+     * 
+     * @param pruned True for a pruned index
+     */
+    void setPruned(boolean pruned) {
+        this.pruned = pruned;
+    }
+    
+    /**
+     * Tells whether the index was statically pruned, i.e. whether its postings
+     * may hold fewer terms than the document lengths count.
+     * 
+     * @return True for a pruned index
+     */
+    public boolean isPruned() {
+        return pruned;
+    }
+    
+    /**
+     * Sets the number of threads indexDocuments() uses to invert a batch.
+     * The index is the same for every thread count.
+     * 
+     * @param indexingThreads Number of worker threads; 1 indexes on the calling thread
+     */
+    public void setIndexingThreads(int indexingThreads) {
+        if (indexingThreads < 1) {
+            throw new IllegalArgumentException("indexingThreads must be positive: " + indexingThreads);
+        }
+        this.indexingThreads = indexingThreads;
+    }
+    
+    /**
+     * Sets the number of buffered documents that triggers an automatic flush.
+     * 
+     * @param maxBufferedDocuments Maximum documents in the in-memory segment
+     */
+    public void setMaxBufferedDocuments(int maxBufferedDocuments) {
+        if (maxBufferedDocuments < 1) {
+            throw new IllegalArgumentException("maxBufferedDocuments must be positive: " + maxBufferedDocuments);
+        }
+        this.maxBufferedDocuments = maxBufferedDocuments;
+    }
+    
+    /**
+     * Sets the cache of decoded postings blocks used by the current and all
+     * later snapshots. Only compressed postings are cached.
+     * 
+     * @param blockCache The cache, or null to decode every block
+     */
+    public void setBlockCache(DecodedBlockCache blockCache) {
+        synchronized (commitLock) {
+            snapshot = snapshot.withBlockCache(blockCache);
+        }
     }
     
     /**
-     * Indexes a single document, adding its terms to the inverted index.
+     * Gets the cache of decoded postings blocks.
+     * 
+     * @return The cache, or null if there is none
+     */
+    public DecodedBlockCache getBlockCache() {
+        return snapshot.getBlockCache();
+    }
+    
+    /**
+     * Sets the merge policy.
+     * 
+     * @param mergePolicy The policy, or null to disable merging
+     */
+    public void setMergePolicy(TieredMergePolicy mergePolicy) {
+        this.mergePolicy = mergePolicy;
+        maybeMerge();
+    }
+    
+    /**
+     * Indexes a single document, adding its terms to the in-memory segment.
+     * The document becomes searchable at the next flush. Its original content is
+     * moved to the document store; the index keeps a compact copy of the document.
      * 
      * @param document The document to index
      * @return The document ID assigned to the document
@@ -62,36 +230,68 @@ public class Indexer {
         }
         
         int docId = nextDocId++;
-        documents.put(docId, document);
-        documentCount++;
+        documentStore.add(docId, document.getOriginalContent());
+        bufferedDocuments.add(document.withoutContent());
+        invert(buffer, docId, document);
+        
+        if (bufferedDocuments.size() >= maxBufferedDocuments) {
+            flush();
+        }
+        return docId;
+    }
+    
+    /**
+     * Adds the terms of a document to an in-memory index.
+     * 
+     * @param index The index to add to
+     * @param docId The document ID
+     * @param document The preprocessed document
+     */
+    private static void invert(InvertedIndex index, int docId, Document document) {
+        Map<String, int[]> termPositions = termPositions(document);
+        if (!termPositions.isEmpty()) {
+            // Invert the whole document at once: one posting per (term, document)
+            index.addDocument(docId, termPositions);
+        }
+    }
+    
+    /**
+     * Gets the positions of every term of a document. Also used by ExternalIndexBuilder,
+     * so both build paths produce the same postings. Documents whose positions were
+     * not recorded (only term frequencies were set) get consecutive positions per
+     * term, which keep the frequencies right but carry no proximity information.
+     * 
+     * @param document The preprocessed document
+     * @return Map from term to its positions, empty if the document has no terms
+     */
+    static Map<String, int[]> termPositions(Document document) {
+        Map<String, int[]> recorded = document.getTermPositions();
+        if (recorded != null && !recorded.isEmpty()) {
+            return recorded;
+        }
         
         // Get the term frequencies from the document
         Map<String, Integer> termFrequencies = document.getTermFrequencies();
         if (termFrequencies == null || termFrequencies.isEmpty()) {
             System.err.println("Warning: Document " + document.getId() + " has no terms to index");
-            return docId;
+            return new HashMap<>();
         }
         
-        // Add each term to the inverted index
+        Map<String, int[]> termPositions = new HashMap<>(termFrequencies.size() * 2);
         int position = 0;
         for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
-            String term = entry.getKey();
-            int frequency = entry.getValue();
-            
-            // Add each occurrence of the term
-            for (int i = 0; i < frequency; i++) {
-                invertedIndex.addTerm(term, docId, position++);
+            int[] positions = new int[entry.getValue()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = position++;
             }
+            termPositions.put(entry.getKey(), positions);
         }
-        
-        // IDF values will need to be recalculated
-        idfValues.clear();
-        
-        return docId;
+        return termPositions;
     }
     
     /**
-     * Indexes a list of documents, building the inverted index.
+     * Indexes a list of documents and flushes them, so they are searchable on return.
+     * Uses indexDocumentsParallel when more than one indexing thread is configured.
      * 
      * @param documents The list of documents to index
      * @return The number of documents indexed
@@ -100,28 +300,292 @@ public class Indexer {
         if (documents == null || documents.isEmpty()) {
             return 0;
         }
+        if (indexingThreads > 1) {
+            return indexDocumentsParallel(documents, indexingThreads);
+        }
         
         int indexedCount = 0;
         for (Document document : documents) {
             indexDocument(document);
             indexedCount++;
         }
-        
-        // Calculate IDF values after all documents are indexed
-        calculateAllIdfValues();
+        flush();
         
         return indexedCount;
     }
     
     /**
-     * Calculates IDF values for all terms in the index.
+     * Indexes a list of documents on several threads and publishes them as one segment.
+     * Each worker inverts a contiguous partition of the documents into a private
+     * partial segment covering its range of document IDs; the partial segments
+     * are then merged in document ID order, encoding the terms in parallel, and
+     * the snapshot computes document frequencies and IDF for the merged segment.
+     * The resulting index is bit-identical to indexing the same documents
+     * sequentially. Meanwhile the calling thread writes the document contents to
+     * the document store.
+     * 
+     * @param documents The list of documents to index
+     * @param threads Number of worker threads
+     * @return The number of documents indexed
+     */
+    public int indexDocumentsParallel(List<Document> documents, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        if (documents == null || documents.isEmpty()) {
+            return 0;
+        }
+        for (Document document : documents) {
+            if (document == null) {
+                throw new IllegalArgumentException("Document cannot be null");
+            }
+        }
+        
+        // Documents buffered by indexDocument() come first, so IDs stay in order
+        flush();
+        int baseDocId = nextDocId;
+        int partitions = Math.min(threads, documents.size());
+        ExecutorService workers = Executors.newFixedThreadPool(partitions, runnable -> {
+            Thread thread = new Thread(runnable, "indexing-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Segment>> partials = new ArrayList<>(partitions);
+            for (int p = 0; p < partitions; p++) {
+                int from = (int) ((long) documents.size() * p / partitions);
+                int to = (int) ((long) documents.size() * (p + 1) / partitions);
+                List<Document> partition = documents.subList(from, to);
+                int partitionBase = baseDocId + from;
+                partials.add(workers.submit(() -> invertPartition(partitionBase, partition, storePositions)));
+            }
+            for (int i = 0; i < documents.size(); i++) {
+                documentStore.add(baseDocId + i, documents.get(i).getOriginalContent());
+            }
+            
+            List<Segment> segments = new ArrayList<>(partitions);
+            for (Future<Segment> partial : partials) {
+                segments.add(partial.get());
+            }
+            Segment segment = Segment.merge(segments, codec, workers, partitions);
+            nextDocId = baseDocId + documents.size();
+            synchronized (commitLock) {
+                snapshot = snapshot.withSegment(segment);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Indexing worker failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while indexing", e);
+        } finally {
+            workers.shutdown();
+        }
+        maybeMerge();
+        return documents.size();
+    }
+    
+    /**
+     * Inverts a partition of documents into an uncompressed partial segment.
+     * 
+     * @param baseDocId ID of the first document of the partition
+     * @param documents The documents of the partition
+     * @param storePositions False to leave the positions out of the postings
+     * @return The partial segment
      */
-    private void calculateAllIdfValues() {
-        Set<String> terms = invertedIndex.getVocabulary();
+    private static Segment invertPartition(int baseDocId, List<Document> documents, boolean storePositions) {
+        InvertedIndex partial = new InvertedIndex(storePositions);
+        List<Document> compactDocuments = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            compactDocuments.add(documents.get(i).withoutContent());
+            invert(partial, baseDocId + i, documents.get(i));
+        }
+        partial.trimToSize();
+        Map<String, TermPostings> postings = new HashMap<>(partial.getVocabulary().size() * 2);
+        for (String term : partial.getVocabulary()) {
+            postings.put(term, partial.getTermPostings(term));
+        }
+        return Segment.of(baseDocId, compactDocuments, postings);
+    }
+    
+    /**
+     * Seals the in-memory segment into an immutable segment and publishes it to
+     * searchers. Does nothing if no documents are buffered.
+     */
+    public void flush() {
+        if (bufferedDocuments.isEmpty()) {
+            return;
+        }
+        
+        // Release the growth slack of the postings arrays, then compress if configured
+        int baseDocId = nextDocId - bufferedDocuments.size();
+        List<Document> segmentDocuments = bufferedDocuments;
+        buffer.trimToSize();
+        if (codec != null) {
+            buffer.seal(codec, docId -> segmentDocuments.get(docId - baseDocId).getLength());
+        }
+        Map<String, TermPostings> postings = new HashMap<>(buffer.getVocabulary().size() * 2);
+        for (String term : buffer.getVocabulary()) {
+            postings.put(term, buffer.getTermPostings(term));
+        }
+        Segment segment = Segment.of(baseDocId, segmentDocuments, postings);
         
-        for (String term : terms) {
-            double idf = calculateIdf(term);
-            idfValues.put(term, idf);
+        buffer = new InvertedIndex(storePositions);
+        bufferedDocuments = new ArrayList<>();
+        synchronized (commitLock) {
+            snapshot = snapshot.withSegment(segment);
+        }
+        maybeMerge();
+    }
+    
+    /**
+     * Installs documents and sealed postings read from an index file as a
+     * single segment. The list index of each document is its ID. Used by IndexReader.
+     * 
+     * @param loadedDocuments The documents, in ID order
+     * @param postings The postings of every term
+     */
+    void restore(List<Document> loadedDocuments, Map<String, TermPostings> postings) {
+        restore(loadedDocuments, postings, null);
+    }
+    
+    /**
+     * Installs documents and sealed postings as a single segment, with the
+     * collection document frequencies of the full index a pruned index was
+     * built from. Used by IndexPruner and IndexReader.
+     * 
+     * @param loadedDocuments The documents, in ID order
+     * @param postings The postings of every term
+     * @param collectionFrequencies Document frequency of every term in the full index,
+     *                              or null to use the postings counts
+     * @throws IllegalArgumentException If a term has no collection frequency or an impossible one
+     */
+    void restore(List<Document> loadedDocuments, Map<String, TermPostings> postings,
+                 Map<String, Integer> collectionFrequencies) {
+        if (nextDocId != 0) {
+            throw new IllegalStateException("Index can only be restored into an empty indexer");
+        }
+        if (documentStore.getDocumentCount() != loadedDocuments.size()) {
+            throw new IllegalStateException("Document store holds " + documentStore.getDocumentCount()
+                    + " documents, index has " + loadedDocuments.size());
+        }
+        IndexSnapshot restored = snapshot.withSegment(Segment.of(0, loadedDocuments, postings));
+        if (collectionFrequencies != null) {
+            int[] frequencies = new int[restored.getVocabularySize()];
+            TermDictionary.TermIterator terms = restored.getDictionary().iterator();
+            while (terms.next()) {
+                Integer frequency = collectionFrequencies.get(terms.term());
+                if (frequency == null) {
+                    throw new IllegalArgumentException("No collection frequency for term " + terms.term());
+                }
+                frequencies[terms.id()] = frequency;
+            }
+            restored = restored.withCollectionFrequencies(frequencies);
+        }
+        nextDocId = loadedDocuments.size();
+        synchronized (commitLock) {
+            snapshot = restored;
+        }
+    }
+    
+    /**
+     * Gets the current point-in-time view of the searchable index.
+     * 
+     * @return The latest snapshot
+     */
+    public IndexSnapshot snapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * Gets the number of segments in the current snapshot.
+     * 
+     * @return Segment count
+     */
+    public int getSegmentCount() {
+        return snapshot.getSegmentCount();
+    }
+    
+    /**
+     * Schedules a background merge if the policy asks for one and none is running.
+     */
+    private void maybeMerge() {
+        TieredMergePolicy policy = mergePolicy;
+        if (policy == null || policy.findMerge(segmentSizes(snapshot)) == null) {
+            return;
+        }
+        if (mergeScheduled.compareAndSet(false, true)) {
+            mergeExecutor().execute(this::runMerges);
+        }
+    }
+    
+    private synchronized ExecutorService mergeExecutor() {
+        if (mergeExecutor == null) {
+            mergeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "segment-merger");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return mergeExecutor;
+    }
+    
+    /**
+     * Runs merges until the policy is satisfied. Merges run one at a time on the
+     * merge thread; flushes only append segments, so the merged run is still in
+     * place when the result is published.
+     */
+    private void runMerges() {
+        try {
+            while (true) {
+                TieredMergePolicy policy = mergePolicy;
+                IndexSnapshot current = snapshot;
+                int[] merge = policy == null ? null : policy.findMerge(segmentSizes(current));
+                if (merge == null) {
+                    break;
+                }
+                List<Segment> run = current.segments().subList(merge[0], merge[1]);
+                Segment merged = Segment.merge(run, codec);
+                synchronized (commitLock) {
+                    List<Segment> latest = snapshot.segments();
+                    for (int i = merge[0]; i < merge[1]; i++) {
+                        if (latest.get(i) != run.get(i - merge[0])) {
+                            throw new IllegalStateException("Segments changed during merge");
+                        }
+                    }
+                    snapshot = snapshot.withMerge(merge[0], merge[1], merged);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error merging segments: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            mergeScheduled.set(false);
+        }
+        // A flush may have added segments after the last check
+        maybeMerge();
+    }
+    
+    private static int[] segmentSizes(IndexSnapshot index) {
+        List<Segment> segments = index.segments();
+        int[] sizes = new int[segments.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = segments.get(i).documentCount();
+        }
+        return sizes;
+    }
+    
+    /**
+     * Waits until no merge is scheduled or running.
+     * 
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void waitForMerges() throws InterruptedException {
+        while (mergeScheduled.get()) {
+            try {
+                mergeExecutor().submit(() -> { }).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Merge thread failed", e.getCause());
+            }
         }
     }
     
@@ -132,13 +596,7 @@ public class Indexer {
      * @return The IDF value
      */
     public double calculateIdf(String term) {
-        int df = getDocumentFrequency(term);
-        if (df == 0) {
-            return 0.0;
-        }
-        
-        // IDF = log(N/df) where N is the total number of documents
-        return Math.log((double) documentCount / df);
+        return snapshot.calculateIdf(term);
     }
     
     /**
@@ -149,7 +607,7 @@ public class Indexer {
      * @return The IDF value
      */
     public double getIdf(String term) {
-        return idfValues.computeIfAbsent(term, this::calculateIdf);
+        return snapshot.getIdf(term);
     }
     
     /**
@@ -159,18 +617,45 @@ public class Indexer {
      * @return The document frequency
      */
     public int getDocumentFrequency(String term) {
-        List<Posting> postings = invertedIndex.getPostings(term);
-        return postings.size();
+        return snapshot.getDocumentFrequency(term);
     }
     
     /**
-     * Gets the postings list for a specific term.
+     * Gets a cursor over the postings of a specific term.
      * 
      * @param term The term to get postings for
-     * @return The postings list
+     * @return A postings cursor (empty if the term is not indexed)
      */
-    public List<Posting> getPostings(String term) {
-        return invertedIndex.getPostings(term);
+    public PostingsCursor getPostings(String term) {
+        return snapshot.getPostings(term);
+    }
+    
+    /**
+     * Gets the sorted term dictionary of the current snapshot. Term IDs are only
+     * valid for that snapshot; queries should resolve them through snapshot().
+     * 
+     * @return The term dictionary
+     */
+    public TermDictionary getTermDictionary() {
+        return snapshot.getDictionary();
+    }
+    
+    /**
+     * Gets the postings codec used by this indexer.
+     * 
+     * @return The codec, or null if postings are kept uncompressed
+     */
+    public PostingsCodec getCodec() {
+        return codec;
+    }
+    
+    /**
+     * Gets the approximate heap size of the postings in bytes.
+     * 
+     * @return Postings size in bytes
+     */
+    public long getPostingsSizeInBytes() {
+        return snapshot.getPostingsSizeInBytes();
     }
     
     /**
@@ -179,16 +664,16 @@ public class Indexer {
      * @return The set of all terms in the index
      */
     public Set<String> getVocabulary() {
-        return invertedIndex.getVocabulary();
+        return snapshot.getVocabulary();
     }
     
     /**
-     * Gets the total number of documents in the index.
+     * Gets the total number of searchable documents in the index.
      * 
      * @return The document count
      */
     public int getDocumentCount() {
-        return documentCount;
+        return snapshot.getDocumentCount();
     }
     
     /**
@@ -197,7 +682,7 @@ public class Indexer {
      * @return The vocabulary size
      */
     public int getVocabularySize() {
-        return invertedIndex.getVocabulary().size();
+        return snapshot.getVocabularySize();
     }
     
     /**
@@ -207,15 +692,36 @@ public class Indexer {
      * @return The document or null if not found
      */
     public Document getDocument(int docId) {
-        return documents.get(docId);
+        return snapshot.getDocument(docId);
+    }
+    
+    /**
+     * Gets the original content of a document, read from the document store.
+     * Only the block holding the document is loaded and decompressed.
+     * 
+     * @param docId The document ID
+     * @return The original content, or null if not found
+     */
+    public String getDocumentContent(int docId) {
+        return documentStore.get(docId);
+    }
+    
+    /**
+     * Gets the store holding the original content of the documents.
+     * 
+     * @return The document store
+     */
+    public DocumentStore getDocumentStore() {
+        return documentStore;
     }
     
     /**
-     * Gets all documents in the index.
+     * Gets all searchable documents in the index, in document ID order
+     * (the list index of a document is its ID).
      * 
-     * @return An unmodifiable collection of all documents
+     * @return A new list of all documents
      */
     public List<Document> getAllDocuments() {
-        return new ArrayList<>(documents.values());
+        return snapshot.getAllDocuments();
     }
 }
@@ -4,15 +4,10 @@
  */
 package com.IR.SearchEngine.indexing;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Optional;
-
-import com.IR.SearchEngine.data.Posting;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Represents the inverted index data structure.
@@ -26,8 +21,12 @@ import com.IR.SearchEngine.data.Posting;
  * 
  * Implementation notes:
  * - Should use efficient data structures for term dictionary
+ * - Postings are stored in primitive arrays (PostingsList) and read through PostingsCursor
+ * - seal() compresses the postings with a PostingsCodec once a batch is indexed
  * - Will leverage Lucene for advanced indexing features
- * - May implement skip lists or other optimizations for postings traversal
+ * - Sealed postings are stored in blocks with skip data and block-max metadata
+ * - The Indexer uses one instance as the in-memory buffer of new documents;
+ *   its postings become an immutable Segment when the buffer is flushed
  * 
  * @author alexhere updated by feliks
  */
@@ -35,10 +34,26 @@ import com.IR.SearchEngine.data.Posting;
 public class InvertedIndex {
 
     // Map yang menghubungkan kata (term) dengan daftar posting-nya
-    private final Map<String, List<Posting>> index;
+    private final Map<String, TermPostings> index;
+
+    // ID dokumen terakhir yang ditambahkan lewat addDocument
+    private int lastDocId;
+    // false jika posting baru hanya menyimpan frekuensi, tanpa posisi
+    private final boolean storePositions;
 
     public InvertedIndex() {
+        this(true);
+    }
+
+    /**
+     * membuat indeks kosong.
+     *
+     * @param storePositions false untuk menyimpan hanya ID dokumen dan frekuensi term
+     */
+    public InvertedIndex(boolean storePositions) {
         this.index = new HashMap<>();
+        this.lastDocId = -1;
+        this.storePositions = storePositions;
     }
 
     /**
@@ -52,32 +67,123 @@ public class InvertedIndex {
     public void addTerm(String term, int docId, int position) {
 
         // ambil atau buat daftar posting untuk term
-        List<Posting> postings = index.computeIfAbsent(term, k -> new ArrayList<>());
-
-        // cari apakah posting untuk dokumen ini sudah ada
-        Optional<Posting> postingOpt = postings.stream()
-                .filter(p -> p.getDocId() == docId)
-                .findFirst();
-
-        if (postingOpt.isPresent()) {
-            // Jika ada, update frekuensi dan tambahkan posisi
-            postingOpt.get().incrementFrequency();
-            postingOpt.get().getPositions().add(position);
-        } else {
-            // jika tidak ada, buat posting baru
-            // dengan frekuensi 1 dan posisi yang diberikan 
-            postings.add(new Posting(docId, 1, new ArrayList<>(List.of(position))));
+        PostingsList postings = mutablePostings(term);
+
+        // tambahkan kemunculan; posting untuk dokumen yang sama diperbarui di tempat
+        postings.addOccurrence(docId, position);
+    }
+
+    /**
+     * menambahkan seluruh term dari satu dokumen sekaligus (inversi per dokumen).
+     * setiap pasangan (term, dokumen) menghasilkan tepat satu posting yang
+     * ditambahkan di akhir daftar, tanpa mencari posting yang sudah ada.
+     * ID dokumen harus bertambah secara monoton antar pemanggilan.
+     *
+     * @param docId         ID dokumen
+     * @param termPositions map dari term ke posisi-posisinya dalam dokumen
+     */
+    public void addDocument(int docId, Map<String, int[]> termPositions) {
+        if (docId <= lastDocId) {
+            throw new IllegalArgumentException("Document IDs must be added in increasing order: "
+                    + docId + " after " + lastDocId);
+        }
+        lastDocId = docId;
+
+        for (Map.Entry<String, int[]> entry : termPositions.entrySet()) {
+            if (entry.getValue().length == 0) {
+                continue;
+            }
+            mutablePostings(entry.getKey()).addPosting(docId, entry.getValue());
         }
     }
 
+    /**
+     * mengambil daftar posting yang bisa diubah untuk term.
+     * daftar yang sudah dikompresi (sealed) dibuka kembali menjadi PostingsList.
+     *
+     * @param term term yang dicari
+     * @return daftar posting yang bisa diubah
+     */
+    private PostingsList mutablePostings(String term) {
+        TermPostings postings = index.get(term);
+        if (postings instanceof PostingsList) {
+            return (PostingsList) postings;
+        }
+        PostingsList mutable = postings == null
+                ? new PostingsList(storePositions) : PostingsList.copyOf(postings.cursor());
+        index.put(term, mutable);
+        return mutable;
+    }
+
+    /**
+     * mengompresi semua daftar posting yang masih bisa diubah dengan codec tertentu.
+     * daftar yang sudah dikompresi dibiarkan apa adanya.
+     *
+     * @param codec      codec kompresi posting
+     * @param docLengths panjang dokumen per ID dokumen, untuk metadata block-max
+     */
+    public void seal(PostingsCodec codec, IntUnaryOperator docLengths) {
+        for (Map.Entry<String, TermPostings> entry : index.entrySet()) {
+            if (entry.getValue() instanceof PostingsList) {
+                entry.setValue(CompressedPostings.encode(entry.getValue(), codec, docLengths));
+            }
+        }
+    }
+
+    /**
+     * mendapatkan daftar posting mentah untuk term, dipakai Indexer saat flush.
+     *
+     * @param term term yang dicari
+     * @return daftar posting, atau null jika term tidak ada
+     */
+    TermPostings getTermPostings(String term) {
+        return index.get(term);
+    }
+
     /**
      * mendapatkan daftar posting untuk term tertentu.
      *
      * @param term term yang dicari
-     * @return daftar posting untuk term, atau daftar kosong jika tidak ditemukan
+     * @return cursor atas posting untuk term, atau cursor kosong jika tidak ditemukan
      */
-    public List<Posting> getPostings(String term) {
-        return index.getOrDefault(term, Collections.emptyList());
+    public PostingsCursor getPostings(String term) {
+        TermPostings postings = index.get(term);
+        return postings != null ? postings.cursor() : PostingsCursor.EMPTY;
+    }
+
+    /**
+     * mendapatkan jumlah dokumen yang mengandung term (document frequency).
+     *
+     * @param term term yang dicari
+     * @return document frequency, atau 0 jika term tidak ada
+     */
+    public int getDocumentFrequency(String term) {
+        TermPostings postings = index.get(term);
+        return postings != null ? postings.size() : 0;
+    }
+
+    /**
+     * memangkas kapasitas cadangan semua daftar posting setelah indexing selesai.
+     */
+    public void trimToSize() {
+        for (TermPostings postings : index.values()) {
+            if (postings instanceof PostingsList) {
+                ((PostingsList) postings).trimToSize();
+            }
+        }
+    }
+
+    /**
+     * perkiraan ukuran memori seluruh daftar posting dalam byte.
+     *
+     * @return ukuran dalam byte
+     */
+    public long sizeInBytes() {
+        long total = 0;
+        for (TermPostings postings : index.values()) {
+            total += postings.sizeInBytes();
+        }
+        return total;
     }
 
     /**
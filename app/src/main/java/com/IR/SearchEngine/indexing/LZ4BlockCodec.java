@@ -0,0 +1,195 @@
+package com.IR.SearchEngine.indexing;
+
+import java.util.Arrays;
+
+/**
+ * Pure-Java block compressor using the LZ4 block format: a sequence of
+ * (literals, match) pairs found with a single-probe hash table, which trades
+ * some ratio for very fast compression and even faster decompression.
+ *
+ * Sequence format:
+ * <pre>
+ * token       1 byte: high nibble literal length, low nibble match length - 4
+ *             (15 means the length continues in extra bytes of 255 + a final byte &lt; 255)
+ * literals    literal length bytes
+ * offset      2 bytes little-endian distance back to the match (absent in the last sequence)
+ * </pre>
+ * The last sequence holds only literals, and the last 5 bytes of a block are always literals.
+ *
+ * Usage:
+ * <pre>
+ * byte[] compressed = LZ4BlockCodec.compress(raw, 0, raw.length);
+ * byte[] restored = LZ4BlockCodec.decompress(compressed, 0, compressed.length, raw.length);
+ * </pre>
+ *
+ * Implementation notes:
+ * - Matches are at least 4 bytes and at most 65535 bytes back
+ * - The caller stores the uncompressed length; decompress() verifies it
+ * - Stateless and thread-safe
+ *
+ * @author alexhere
+ */
+public final class LZ4BlockCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_BITS = 12;
+
+    private LZ4BlockCodec() {
+    }
+
+    /**
+     * Compresses a range of bytes.
+     *
+     * @param src Source array
+     * @param offset Start of the range
+     * @param length Number of bytes
+     * @return The compressed block
+     */
+    public static byte[] compress(byte[] src, int offset, int length) {
+        // Worst case: every byte a literal plus one length byte per 255 literals and the token
+        byte[] dst = new byte[length + length / 255 + 16];
+        int[] table = new int[1 << HASH_BITS];
+        Arrays.fill(table, -1);
+
+        int end = offset + length;
+        int matchLimit = end - LAST_LITERALS;
+        int anchor = offset;
+        int position = offset;
+        int out = 0;
+        while (position + MIN_MATCH <= matchLimit) {
+            int hash = hash(readInt(src, position));
+            int candidate = table[hash];
+            table[hash] = position;
+            if (candidate < 0 || position - candidate > MAX_DISTANCE
+                    || readInt(src, candidate) != readInt(src, position)) {
+                position++;
+                continue;
+            }
+
+            // Extend the match forwards, keeping the last literals out of it
+            int matchLength = MIN_MATCH;
+            while (position + matchLength < matchLimit && src[candidate + matchLength] == src[position + matchLength]) {
+                matchLength++;
+            }
+
+            out = writeSequence(dst, out, src, anchor, position - anchor, position - candidate, matchLength);
+            position += matchLength;
+            anchor = position;
+        }
+        out = writeLastLiterals(dst, out, src, anchor, end - anchor);
+        return Arrays.copyOf(dst, out);
+    }
+
+    /**
+     * Decompresses a block.
+     *
+     * @param src Array holding the compressed block
+     * @param offset Start of the block
+     * @param length Length of the compressed block
+     * @param rawLength Uncompressed length
+     * @return The uncompressed bytes
+     * @throws IllegalArgumentException If the block is malformed
+     */
+    public static byte[] decompress(byte[] src, int offset, int length, int rawLength) {
+        byte[] dst = new byte[rawLength];
+        int end = offset + length;
+        int in = offset;
+        int out = 0;
+        try {
+            while (in < end) {
+                int token = src[in++] & 0xFF;
+
+                int literalLength = token >>> 4;
+                if (literalLength == 15) {
+                    int b;
+                    do {
+                        b = src[in++] & 0xFF;
+                        literalLength += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, in, dst, out, literalLength);
+                in += literalLength;
+                out += literalLength;
+                if (in == end) {
+                    break; // the last sequence has no match
+                }
+
+                int distance = (src[in] & 0xFF) | (src[in + 1] & 0xFF) << 8;
+                in += 2;
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[in++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                int from = out - distance;
+                if (distance == 0 || from < 0) {
+                    throw new IllegalArgumentException("Invalid match distance " + distance + " at " + out);
+                }
+                // Byte by byte: a match may overlap the bytes it produces
+                for (int i = 0; i < matchLength; i++) {
+                    dst[out++] = dst[from + i];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Compressed block is truncated or does not match its length", e);
+        }
+        if (out != rawLength) {
+            throw new IllegalArgumentException("Decompressed " + out + " bytes, expected " + rawLength);
+        }
+        return dst;
+    }
+
+    private static int writeSequence(byte[] dst, int out, byte[] src, int literalStart, int literalLength,
+                                     int distance, int matchLength) {
+        int tokenPosition = out++;
+        int token = Math.min(literalLength, 15) << 4;
+        if (literalLength >= 15) {
+            out = writeLength(dst, out, literalLength - 15);
+        }
+        System.arraycopy(src, literalStart, dst, out, literalLength);
+        out += literalLength;
+
+        dst[out++] = (byte) distance;
+        dst[out++] = (byte) (distance >>> 8);
+        int extraMatch = matchLength - MIN_MATCH;
+        token |= Math.min(extraMatch, 15);
+        if (extraMatch >= 15) {
+            out = writeLength(dst, out, extraMatch - 15);
+        }
+        dst[tokenPosition] = (byte) token;
+        return out;
+    }
+
+    private static int writeLastLiterals(byte[] dst, int out, byte[] src, int literalStart, int literalLength) {
+        dst[out++] = (byte) (Math.min(literalLength, 15) << 4);
+        if (literalLength >= 15) {
+            out = writeLength(dst, out, literalLength - 15);
+        }
+        System.arraycopy(src, literalStart, dst, out, literalLength);
+        return out + literalLength;
+    }
+
+    private static int writeLength(byte[] dst, int out, int remaining) {
+        while (remaining >= 255) {
+            dst[out++] = (byte) 255;
+            remaining -= 255;
+        }
+        dst[out++] = (byte) remaining;
+        return out;
+    }
+
+    private static int readInt(byte[] src, int position) {
+        return (src[position] & 0xFF) | (src[position + 1] & 0xFF) << 8
+                | (src[position + 2] & 0xFF) << 16 | (src[position + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int value) {
+        return (value * -1640531535) >>> (32 - HASH_BITS);
+    }
+}
@@ -0,0 +1,192 @@
+package com.IR.SearchEngine.indexing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * A read-only file mapping addressed with long offsets.
+ * A single MappedByteBuffer is limited to 2 GB, so the file is mapped as a row
+ * of chunks and every read picks the chunk holding its offset. Used by
+ * IndexReader and DocumentStore to read index files of any size.
+ *
+ * Usage:
+ * <pre>
+ * MappedFile file = MappedFile.map(channel, MappedFile.DEFAULT_CHUNK_SIZE);
+ * int magic = file.getInt(0);
+ * ByteBuffer postings = file.slice(offset, length);
+ * </pre>
+ *
+ * Implementation notes:
+ * - Chunks are {@value #DEFAULT_CHUNK_SIZE} bytes by default; the last one holds the rest
+ * - slice() returns a view into the mapping when the range lies inside one chunk,
+ *   and a heap copy when it crosses a chunk boundary (at most one range per boundary
+ *   in an index file)
+ * - section() gives a view of part of the file without mapping anything again
+ * - The mappings stay valid after the channel is closed
+ *
+ * @author alexhere
+ */
+final class MappedFile {
+
+    static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+    private final ByteBuffer[] chunks;
+    private final int chunkSize;
+    private final long base;
+    private final long length;
+
+    private MappedFile(ByteBuffer[] chunks, int chunkSize, long base, long length) {
+        this.chunks = chunks;
+        this.chunkSize = chunkSize;
+        this.base = base;
+        this.length = length;
+    }
+
+    /**
+     * Maps a whole file read-only.
+     *
+     * @param channel   The file, opened for reading
+     * @param chunkSize The size of each mapping, at most Integer.MAX_VALUE bytes
+     * @return The mapped file
+     * @throws IOException If the file cannot be mapped
+     */
+    static MappedFile map(FileChannel channel, int chunkSize) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        long size = channel.size();
+        ByteBuffer[] chunks = new ByteBuffer[(int) Math.max(1, (size + chunkSize - 1) / chunkSize)];
+        for (int c = 0; c < chunks.length; c++) {
+            long start = (long) c * chunkSize;
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+        }
+        return new MappedFile(chunks, chunkSize, 0, size);
+    }
+
+    /**
+     * Wraps a buffer that is already in memory, as a single chunk.
+     *
+     * @param buffer The buffer; its content from index 0 to its capacity is used
+     * @return The wrapped buffer
+     */
+    static MappedFile of(ByteBuffer buffer) {
+        int size = buffer.capacity();
+        return new MappedFile(new ByteBuffer[] {buffer}, Math.max(1, size), 0, size);
+    }
+
+    /**
+     * Gets the length in bytes.
+     *
+     * @return The length
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * Gets a view of part of this file.
+     *
+     * @param offset The start of the section
+     * @param size   The length of the section
+     * @return The section, addressed from 0
+     */
+    MappedFile section(long offset, long size) {
+        checkRange(offset, size);
+        return new MappedFile(chunks, chunkSize, base + offset, size);
+    }
+
+    int getInt(long offset) {
+        checkRange(offset, Integer.BYTES);
+        long position = base + offset;
+        int chunk = (int) (position / chunkSize);
+        int within = (int) (position % chunkSize);
+        if (within + Integer.BYTES <= chunks[chunk].capacity()) {
+            return chunks[chunk].getInt(within);
+        }
+        return ByteBuffer.wrap(get(offset, new byte[Integer.BYTES])).getInt();
+    }
+
+    long getLong(long offset) {
+        checkRange(offset, Long.BYTES);
+        long position = base + offset;
+        int chunk = (int) (position / chunkSize);
+        int within = (int) (position % chunkSize);
+        if (within + Long.BYTES <= chunks[chunk].capacity()) {
+            return chunks[chunk].getLong(within);
+        }
+        return ByteBuffer.wrap(get(offset, new byte[Long.BYTES])).getLong();
+    }
+
+    /**
+     * Copies bytes into an array, across chunk boundaries if needed.
+     *
+     * @param offset The first byte to copy
+     * @param target The array to fill completely
+     * @return The array
+     */
+    byte[] get(long offset, byte[] target) {
+        checkRange(offset, target.length);
+        long position = base + offset;
+        int copied = 0;
+        while (copied < target.length) {
+            int chunk = (int) (position / chunkSize);
+            int within = (int) (position % chunkSize);
+            int count = Math.min(target.length - copied, chunks[chunk].capacity() - within);
+            chunks[chunk].get(within, target, copied, count);
+            copied += count;
+            position += count;
+        }
+        return target;
+    }
+
+    /**
+     * Gets a byte range as a buffer: a view when it lies in one chunk, a copy otherwise.
+     *
+     * @param offset The first byte
+     * @param size   The number of bytes
+     * @return A buffer positioned at 0 with the range as its capacity
+     */
+    ByteBuffer slice(long offset, int size) {
+        checkRange(offset, size);
+        if (size == 0) {
+            return ByteBuffer.allocate(0);
+        }
+        long position = base + offset;
+        int chunk = (int) (position / chunkSize);
+        int within = (int) (position % chunkSize);
+        if (within + size <= chunks[chunk].capacity()) {
+            return chunks[chunk].slice(within, size);
+        }
+        return ByteBuffer.wrap(get(offset, new byte[size]));
+    }
+
+    /**
+     * Computes the CRC32 of a byte range, one chunk at a time.
+     *
+     * @param offset The first byte
+     * @param size   The number of bytes
+     * @return The checksum value
+     */
+    long crc32(long offset, long size) {
+        checkRange(offset, size);
+        CRC32 checksum = new CRC32();
+        long position = base + offset;
+        long end = position + size;
+        while (position < end) {
+            int chunk = (int) (position / chunkSize);
+            int within = (int) (position % chunkSize);
+            int count = (int) Math.min(end - position, chunks[chunk].capacity() - within);
+            checksum.update(chunks[chunk].slice(within, count));
+            position += count;
+        }
+        return checksum.getValue();
+    }
+
+    private void checkRange(long offset, long size) {
+        if (offset < 0 || size < 0 || offset > length - size) {
+            throw new IndexOutOfBoundsException("Range " + offset + "+" + size + " outside " + length + " bytes");
+        }
+    }
+}
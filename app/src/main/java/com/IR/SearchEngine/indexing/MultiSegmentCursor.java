@@ -0,0 +1,140 @@
+package com.IR.SearchEngine.indexing;
+
+/**
+ * Postings cursor that reads one term across several segments as a single
+ * postings list. Segments cover increasing, disjoint document ID ranges, so
+ * the segment cursors are simply visited one after the other.
+ *
+ * Implementation notes:
+ * - advance() skips whole segments whose ID range ends before the target
+ * - Block metadata comes from the segment that holds the shallow target, so
+ *   block-max pruning keeps working across segment boundaries
+ *
+ * @author alexhere
+ */
+final class MultiSegmentCursor implements PostingsCursor {
+
+    private final PostingsCursor[] cursors;
+    private final int[] ends;          // ends[i]: first document ID after segment i
+    private final int docFrequency;
+    private final int maxTermFrequency;
+
+    private int current;               // segment of the current posting
+    private int shallow;               // segment of the current block metadata
+    private int doc = -1;
+
+    /**
+     * Creates a cursor over per-segment cursors.
+     *
+     * @param cursors Fresh cursors, in segment order
+     * @param ends Exclusive end document ID of each cursor's segment
+     */
+    MultiSegmentCursor(PostingsCursor[] cursors, int[] ends) {
+        this.cursors = cursors;
+        this.ends = ends;
+        int df = 0;
+        int maxTf = 0;
+        for (PostingsCursor cursor : cursors) {
+            df += cursor.docFrequency();
+            maxTf = Math.max(maxTf, cursor.maxTermFrequency());
+        }
+        this.docFrequency = df;
+        this.maxTermFrequency = maxTf;
+    }
+
+    @Override
+    public int nextDoc() {
+        while (current < cursors.length) {
+            int next = cursors[current].nextDoc();
+            if (next != NO_MORE_DOCS) {
+                return doc = next;
+            }
+            current++;
+        }
+        return doc = NO_MORE_DOCS;
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        while (current < cursors.length && ends[current] <= target) {
+            current++;
+        }
+        while (current < cursors.length) {
+            int next = cursors[current].advance(target);
+            if (next != NO_MORE_DOCS) {
+                return doc = next;
+            }
+            current++;
+        }
+        return doc = NO_MORE_DOCS;
+    }
+
+    @Override
+    public int advanceShallow(int target) {
+        shallow = Math.max(shallow, current);
+        while (shallow < cursors.length && ends[shallow] <= target) {
+            shallow++;
+        }
+        while (shallow < cursors.length) {
+            int last = cursors[shallow].advanceShallow(target);
+            if (last != NO_MORE_DOCS) {
+                return last;
+            }
+            shallow++;
+        }
+        return NO_MORE_DOCS;
+    }
+
+    @Override
+    public int blockLastDocId() {
+        return shallow < cursors.length ? cursors[shallow].blockLastDocId() : NO_MORE_DOCS;
+    }
+
+    @Override
+    public int blockMaxTermFrequency() {
+        return shallow < cursors.length ? cursors[shallow].blockMaxTermFrequency() : 0;
+    }
+
+    @Override
+    public int blockMinDocLength() {
+        return shallow < cursors.length ? cursors[shallow].blockMinDocLength() : 0;
+    }
+
+    @Override
+    public int maxTermFrequency() {
+        return maxTermFrequency;
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int termFrequency() {
+        return cursors[current].termFrequency();
+    }
+
+    @Override
+    public int position(int i) {
+        return cursors[current].position(i);
+    }
+
+    @Override
+    public boolean hasPositions() {
+        for (PostingsCursor cursor : cursors) {
+            if (!cursor.hasPositions()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int docFrequency() {
+        return docFrequency;
+    }
+}
@@ -0,0 +1,117 @@
+package com.IR.SearchEngine.indexing;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Patched frame-of-reference (PForDelta-style) postings codec.
+ * Values are split into blocks of {@value #BLOCK_SIZE}. Each block is bit-packed
+ * with the smallest width that fits about 90% of its values; the remaining
+ * values are stored as exceptions whose high bits are patched in after unpacking.
+ * Document IDs are gap encoded first.
+ *
+ * Block layout:
+ * - 1 byte   bit width b
+ * - VInt     number of exceptions
+ * - count*b  packed low bits of every value
+ * - per exception: VInt index in block, VInt (value >>> b)
+ *
+ * Implementation notes:
+ * - A few large gaps no longer force a wide frame on the whole block
+ * - Blocks are independent, so they can be decoded in isolation
+ *
+ * @author alexhere
+ */
+public class PForDeltaCodec implements PostingsCodec {
+
+    public static final int BLOCK_SIZE = 128;
+
+    // Fraction of values in a block that may be exceptions
+    private static final double EXCEPTION_RATE = 0.1;
+
+    @Override
+    public String getName() {
+        return "pfor";
+    }
+
+    @Override
+    public void encodeValues(int[] values, int offset, int count, ByteArrayOutputStream out) {
+        for (int start = offset; start < offset + count; start += BLOCK_SIZE) {
+            encodeBlock(values, start, Math.min(BLOCK_SIZE, offset + count - start), out);
+        }
+    }
+
+    @Override
+    public void decodeValues(ByteBuffer in, int[] values, int offset, int count) {
+        for (int start = offset; start < offset + count; start += BLOCK_SIZE) {
+            decodeBlock(in, values, start, Math.min(BLOCK_SIZE, offset + count - start));
+        }
+    }
+
+    private void encodeBlock(int[] values, int offset, int count, ByteArrayOutputStream out) {
+        int bits = chooseBitWidth(values, offset, count);
+        long limit = 1L << bits;
+
+        int exceptions = 0;
+        for (int i = offset; i < offset + count; i++) {
+            if ((values[i] & 0xFFFFFFFFL) >= limit) {
+                exceptions++;
+            }
+        }
+
+        out.write(bits);
+        VByteCodec.writeVInt(out, exceptions);
+
+        BitOutput bitOutput = new BitOutput(out);
+        for (int i = offset; i < offset + count; i++) {
+            bitOutput.write(values[i], bits);
+        }
+        bitOutput.flush();
+
+        if (exceptions > 0) {
+            for (int i = offset; i < offset + count; i++) {
+                if ((values[i] & 0xFFFFFFFFL) >= limit) {
+                    VByteCodec.writeVInt(out, i - offset);
+                    VByteCodec.writeVInt(out, values[i] >>> bits);
+                }
+            }
+        }
+    }
+
+    private void decodeBlock(ByteBuffer in, int[] values, int offset, int count) {
+        int bits = in.get() & 0xFF;
+        int exceptions = VByteCodec.readVInt(in);
+
+        BitInput bitInput = new BitInput(in);
+        for (int i = offset; i < offset + count; i++) {
+            values[i] = bitInput.read(bits);
+        }
+
+        for (int e = 0; e < exceptions; e++) {
+            int index = VByteCodec.readVInt(in);
+            int high = VByteCodec.readVInt(in);
+            values[offset + index] |= high << bits;
+        }
+    }
+
+    /**
+     * Chooses the smallest bit width for which at most EXCEPTION_RATE of the
+     * values in the block overflow.
+     */
+    private int chooseBitWidth(int[] values, int offset, int count) {
+        int[] widthHistogram = new int[33];
+        for (int i = offset; i < offset + count; i++) {
+            widthHistogram[32 - Integer.numberOfLeadingZeros(values[i])]++;
+        }
+
+        int allowedExceptions = (int) (count * EXCEPTION_RATE);
+        int overflow = 0;
+        for (int bits = 32; bits > 0; bits--) {
+            overflow += widthHistogram[bits];
+            if (overflow > allowedExceptions) {
+                return bits;
+            }
+        }
+        return 0;
+    }
+}
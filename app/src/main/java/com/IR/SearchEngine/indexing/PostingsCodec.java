@@ -0,0 +1,112 @@
+package com.IR.SearchEngine.indexing;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Compression scheme for postings data.
+ * A codec encodes the three integer streams of a postings list: strictly
+ * increasing document IDs, term frequencies, and (gap encoded) positions.
+ *
+ * Responsibilities:
+ * - Encode/decode sorted document ID sequences
+ * - Encode/decode sequences of small non-negative integers (frequencies, position gaps)
+ * - Report its name for statistics and benchmarking
+ *
+ * Implementation notes:
+ * - Decoding reads from a ByteBuffer so the same codec works for heap arrays
+ *   and memory-mapped files
+ * - By default document IDs are turned into gaps and written with encodeValues();
+ *   codecs that exploit monotonicity directly (Elias-Fano) override the docId methods
+ * - The number of values is not written by the codec; the caller stores it
+ *
+ * @author alexhere
+ */
+public interface PostingsCodec {
+
+    /**
+     * Gets the codec name (e.g., "vbyte", "pfor", "eliasfano").
+     *
+     * @return The codec name
+     */
+    String getName();
+
+    /**
+     * Encodes a sequence of non-negative integers.
+     *
+     * @param values Source array
+     * @param offset Offset of the first value
+     * @param count Number of values
+     * @param out Destination
+     */
+    void encodeValues(int[] values, int offset, int count, ByteArrayOutputStream out);
+
+    /**
+     * Decodes a sequence written by encodeValues().
+     *
+     * @param in Source, positioned at the start of the encoded sequence
+     * @param values Destination array
+     * @param offset Offset of the first decoded value
+     * @param count Number of values to decode
+     */
+    void decodeValues(ByteBuffer in, int[] values, int offset, int count);
+
+    /**
+     * Encodes a strictly increasing sequence of document IDs.
+     *
+     * @param docIds Source array
+     * @param offset Offset of the first document ID
+     * @param count Number of document IDs
+     * @param previousDocId Document ID preceding the sequence (-1 at the start of a list)
+     * @param out Destination
+     */
+    default void encodeDocIds(int[] docIds, int offset, int count, int previousDocId, ByteArrayOutputStream out) {
+        int[] gaps = new int[count];
+        int previous = previousDocId;
+        for (int i = 0; i < count; i++) {
+            gaps[i] = docIds[offset + i] - previous - 1;
+            previous = docIds[offset + i];
+        }
+        encodeValues(gaps, 0, count, out);
+    }
+
+    /**
+     * Decodes a sequence written by encodeDocIds().
+     *
+     * @param in Source, positioned at the start of the encoded sequence
+     * @param docIds Destination array
+     * @param offset Offset of the first decoded document ID
+     * @param count Number of document IDs to decode
+     * @param previousDocId Document ID preceding the sequence (-1 at the start of a list)
+     */
+    default void decodeDocIds(ByteBuffer in, int[] docIds, int offset, int count, int previousDocId) {
+        decodeValues(in, docIds, offset, count);
+        int previous = previousDocId;
+        for (int i = offset; i < offset + count; i++) {
+            previous += docIds[i] + 1;
+            docIds[i] = previous;
+        }
+    }
+
+    /**
+     * Looks up a codec by name.
+     *
+     * @param name Codec name ("vbyte", "pfor" or "eliasfano")
+     * @return The codec
+     * @throws IllegalArgumentException If the name is unknown
+     */
+    static PostingsCodec forName(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "vbyte":
+                return new VByteCodec();
+            case "pfor":
+            case "pfordelta":
+                return new PForDeltaCodec();
+            case "eliasfano":
+            case "ef":
+                return new EliasFanoCodec();
+            default:
+                throw new IllegalArgumentException("Unknown postings codec: " + name);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.IR.SearchEngine.indexing;
+
+/**
+ * Forward-only cursor over the postings of a single term.
+ * Replaces materialized lists of posting objects so that postings can be
+ * read straight from primitive or compressed storage.
+ *
+ * Usage:
+ * <pre>
+ * PostingsCursor cursor = indexer.getPostings(term);
+ * while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+ *     int docId = cursor.docId();
+ *     int tf = cursor.termFrequency();
+ * }
+ * </pre>
+ *
+ * Implementation notes:
+ * - A fresh cursor is positioned before the first posting (docId() returns -1)
+ * - termFrequency() and position() are only valid while positioned on a posting
+ * - Positions are token positions after preprocessing; an index built without
+ *   positions (see Indexer.setStorePositions) has only frequencies and
+ *   hasPositions() returns false
+ * - Postings are grouped in blocks; advance() uses the block skip data to jump
+ *   over whole blocks, and the block metadata (last document, max term frequency,
+ *   min document length) bounds the score of every posting in a block
+ *
+ * @author alexhere
+ */
+public interface PostingsCursor {
+
+    /**
+     * Sentinel document ID returned once the cursor is exhausted.
+     */
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * Moves to the next posting.
+     *
+     * @return The next document ID, or NO_MORE_DOCS if exhausted
+     */
+    int nextDoc();
+
+    /**
+     * Moves to the first posting whose document ID is >= target.
+     * Never moves backwards: if the cursor is already at or past target it stays put.
+     *
+     * @param target Target document ID
+     * @return The new current document ID, or NO_MORE_DOCS if exhausted
+     */
+    default int advance(int target) {
+        int doc = docId();
+        while (doc < target) {
+            doc = nextDoc();
+        }
+        return doc;
+    }
+
+    /**
+     * Moves the block metadata to the block that may contain target, without
+     * decoding it or moving the current posting.
+     *
+     * @param target Target document ID
+     * @return Last document ID of that block, or NO_MORE_DOCS if no block can contain target
+     */
+    default int advanceShallow(int target) {
+        return NO_MORE_DOCS;
+    }
+
+    /**
+     * Gets the last document ID of the current block (see advanceShallow()).
+     *
+     * @return Last document ID in the block, or NO_MORE_DOCS
+     */
+    default int blockLastDocId() {
+        return NO_MORE_DOCS;
+    }
+
+    /**
+     * Gets the largest term frequency in the current block.
+     *
+     * @return Maximum term frequency in the block
+     */
+    default int blockMaxTermFrequency() {
+        return maxTermFrequency();
+    }
+
+    /**
+     * Gets the smallest document length in the current block.
+     * Implementations that do not track document lengths return 0, which keeps
+     * score bounds valid but loose.
+     *
+     * @return Minimum document length in the block
+     */
+    default int blockMinDocLength() {
+        return 0;
+    }
+
+    /**
+     * Gets the largest term frequency of the term in any document.
+     *
+     * @return Maximum term frequency
+     */
+    int maxTermFrequency();
+
+    /**
+     * Computes an upper bound for the score of any posting in the current block.
+     * Valid for scorers that grow with the term frequency and do not grow with the
+     * document length (as BM25 and TF-IDF do).
+     *
+     * @param scorer Per-term scoring function
+     * @return Upper bound of the block's scores
+     */
+    default double blockUpperBound(TermScorer scorer) {
+        return scorer.score(blockMaxTermFrequency(), blockMinDocLength());
+    }
+
+    /**
+     * Gets the document ID of the current posting.
+     *
+     * @return Current document ID, -1 before the first call to nextDoc(), or NO_MORE_DOCS
+     */
+    int docId();
+
+    /**
+     * Gets the term frequency in the current document.
+     *
+     * @return Term frequency
+     */
+    int termFrequency();
+
+    /**
+     * Gets the i-th position of the term in the current document.
+     *
+     * @param i Index of the position (0 &lt;= i &lt; termFrequency())
+     * @return The position
+     * @throws IllegalStateException If the postings were stored without positions
+     */
+    int position(int i);
+
+    /**
+     * Tells whether the postings store term positions.
+     *
+     * @return True if position() can be called
+     */
+    default boolean hasPositions() {
+        return true;
+    }
+
+    /**
+     * Gets the total number of postings for the term (its document frequency).
+     *
+     * @return Document frequency
+     */
+    int docFrequency();
+
+    /**
+     * A cursor for a term that does not occur in the index.
+     */
+    PostingsCursor EMPTY = new PostingsCursor() {
+        @Override
+        public int nextDoc() {
+            return NO_MORE_DOCS;
+        }
+
+        @Override
+        public int docId() {
+            return NO_MORE_DOCS;
+        }
+
+        @Override
+        public int termFrequency() {
+            throw new IllegalStateException("Empty cursor has no postings");
+        }
+
+        @Override
+        public int position(int i) {
+            throw new IllegalStateException("Empty cursor has no postings");
+        }
+
+        @Override
+        public int docFrequency() {
+            return 0;
+        }
+
+        @Override
+        public int maxTermFrequency() {
+            return 0;
+        }
+    };
+}
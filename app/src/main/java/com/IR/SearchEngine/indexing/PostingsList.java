@@ -0,0 +1,381 @@
+package com.IR.SearchEngine.indexing;
+
+import java.util.Arrays;
+
+/**
+ * Array-backed postings list for a single term.
+ * Stores document IDs, term frequencies and positions in growable primitive
+ * arrays instead of one posting object (with a boxed position list) per
+ * document.
+ *
+ * Layout:
+ * - docIds[i]          document ID of the i-th posting (ascending)
+ * - freqs[i]           term frequency of the i-th posting
+ * - positionStarts[i]  offset of the first position of the i-th posting in positions[]
+ * - positions[]        positions of all postings, concatenated in posting order
+ *
+ * A list created without positions keeps only docIds[] and freqs[]; positionStarts[]
+ * and positions[] are not allocated.
+ *
+ * Implementation notes:
+ * - Postings are expected to arrive in increasing document ID order, which is
+ *   how the Indexer assigns IDs. The last posting can therefore be extended in place.
+ * - Arrays grow by 1.5x, so appends are amortized O(1)
+ * - Cursors expose virtual blocks of CompressedPostings.BLOCK_SIZE postings;
+ *   document lengths are not tracked, so blockMinDocLength() is 0
+ *
+ * @author alexhere
+ */
+public class PostingsList implements TermPostings {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final boolean storePositions;
+    private int[] docIds;
+    private int[] freqs;
+    private int[] positionStarts;   // null without positions
+    private int[] positions;        // null without positions
+    private int size;
+    private int positionCount;
+    private int maxTermFrequency;
+
+    public PostingsList() {
+        this(true);
+    }
+
+    /**
+     * Creates an empty list.
+     *
+     * @param storePositions False to keep only document IDs and term frequencies
+     */
+    public PostingsList(boolean storePositions) {
+        this.storePositions = storePositions;
+        this.docIds = new int[INITIAL_CAPACITY];
+        this.freqs = new int[INITIAL_CAPACITY];
+        if (storePositions) {
+            this.positionStarts = new int[INITIAL_CAPACITY];
+            this.positions = new int[INITIAL_CAPACITY];
+        }
+        this.size = 0;
+        this.positionCount = 0;
+    }
+
+    /**
+     * Creates a mutable copy of the postings read from a cursor.
+     * Used to reopen a sealed (compressed) list when new documents are added.
+     * The copy stores positions if the cursor has them.
+     *
+     * @param cursor Cursor positioned before its first posting
+     * @return A new postings list with the same content
+     */
+    public static PostingsList copyOf(PostingsCursor cursor) {
+        PostingsList copy = new PostingsList(cursor.hasPositions());
+        while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+            int[] positions = new int[cursor.termFrequency()];
+            if (copy.storePositions) {
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = cursor.position(i);
+                }
+            }
+            copy.addPosting(cursor.docId(), positions);
+        }
+        return copy;
+    }
+
+    /**
+     * Records one occurrence of the term in a document.
+     * If the document already has a posting its frequency is incremented and the
+     * position appended, otherwise a new posting is created.
+     *
+     * @param docId    Document ID
+     * @param position Position of the occurrence in the document
+     */
+    public void addOccurrence(int docId, int position) {
+        int index = findPosting(docId);
+        if (index < 0) {
+            appendPosting(docId);
+            index = size - 1;
+        } else if (index != size - 1 && storePositions) {
+            // Out of order occurrence for an earlier document: open a gap in positions[]
+            insertPosition(index, position);
+            return;
+        }
+
+        if (storePositions) {
+            ensurePositionCapacity(positionCount + 1);
+            positions[positionCount] = position;
+        }
+        positionCount++;
+        freqs[index]++;
+        maxTermFrequency = Math.max(maxTermFrequency, freqs[index]);
+    }
+
+    /**
+     * Appends a complete posting for a document in one step.
+     * This is the bulk path used by per-document inversion: there is no search
+     * for an existing posting, so the cost is O(1) amortized plus the positions copy.
+     *
+     * @param docId     Document ID, must be greater than every ID already in the list
+     * @param positions Positions of the term in the document (its length is the term
+     *                  frequency; only the length is used by a list without positions)
+     */
+    public void addPosting(int docId, int[] positions) {
+        if (size > 0 && docId <= docIds[size - 1]) {
+            throw new IllegalArgumentException("Document IDs must be added in increasing order: "
+                    + docId + " after " + docIds[size - 1]);
+        }
+        appendPosting(docId);
+        if (storePositions) {
+            ensurePositionCapacity(positionCount + positions.length);
+            System.arraycopy(positions, 0, this.positions, positionCount, positions.length);
+        }
+        positionCount += positions.length;
+        freqs[size - 1] = positions.length;
+        maxTermFrequency = Math.max(maxTermFrequency, positions.length);
+    }
+
+    /**
+     * Finds the posting for a document, searching from the tail since documents
+     * are normally added in increasing ID order.
+     *
+     * @param docId Document ID
+     * @return Index of the posting or -1 if not present
+     */
+    private int findPosting(int docId) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (docIds[i] == docId) {
+                return i;
+            }
+            if (docIds[i] < docId) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private void appendPosting(int docId) {
+        if (size > 0 && docId < docIds[size - 1]) {
+            throw new IllegalArgumentException("Document IDs must be added in increasing order: "
+                    + docId + " after " + docIds[size - 1]);
+        }
+        if (size == docIds.length) {
+            int newCapacity = size + (size >> 1) + 1;
+            docIds = Arrays.copyOf(docIds, newCapacity);
+            freqs = Arrays.copyOf(freqs, newCapacity);
+            if (storePositions) {
+                positionStarts = Arrays.copyOf(positionStarts, newCapacity);
+            }
+        }
+        docIds[size] = docId;
+        freqs[size] = 0;
+        if (storePositions) {
+            positionStarts[size] = positionCount;
+        }
+        size++;
+    }
+
+    private void insertPosition(int index, int position) {
+        ensurePositionCapacity(positionCount + 1);
+        int insertAt = positionStarts[index] + freqs[index];
+        System.arraycopy(positions, insertAt, positions, insertAt + 1, positionCount - insertAt);
+        positions[insertAt] = position;
+        positionCount++;
+        freqs[index]++;
+        maxTermFrequency = Math.max(maxTermFrequency, freqs[index]);
+        for (int i = index + 1; i < size; i++) {
+            positionStarts[i]++;
+        }
+    }
+
+    private void ensurePositionCapacity(int required) {
+        if (required > positions.length) {
+            int newCapacity = Math.max(required, positions.length + (positions.length >> 1) + 1);
+            positions = Arrays.copyOf(positions, newCapacity);
+        }
+    }
+
+    /**
+     * Gets the number of postings (the document frequency of the term).
+     *
+     * @return Number of postings
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the total number of occurrences (the collection frequency of the term),
+     * which is the number of stored positions if the list stores them.
+     *
+     * @return Number of occurrences
+     */
+    public int getPositionCount() {
+        return positionCount;
+    }
+
+    /**
+     * Trims the backing arrays to their used length.
+     * Called once indexing is finished to release the growth slack.
+     */
+    public void trimToSize() {
+        docIds = Arrays.copyOf(docIds, size);
+        freqs = Arrays.copyOf(freqs, size);
+        if (storePositions) {
+            positionStarts = Arrays.copyOf(positionStarts, size);
+            positions = Arrays.copyOf(positions, positionCount);
+        }
+    }
+
+    /**
+     * Tells whether this list stores term positions.
+     *
+     * @return True if positions are stored
+     */
+    public boolean hasPositions() {
+        return storePositions;
+    }
+
+    /**
+     * Approximate heap footprint of the backing arrays in bytes.
+     *
+     * @return Size in bytes
+     */
+    @Override
+    public long sizeInBytes() {
+        long size = 4L * (docIds.length + freqs.length);
+        return storePositions ? size + 4L * (positionStarts.length + positions.length) : size;
+    }
+
+    /**
+     * Creates a new cursor positioned before the first posting.
+     *
+     * @return A cursor over this list
+     */
+    @Override
+    public PostingsCursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Gets the largest term frequency of the term in any document.
+     *
+     * @return Maximum term frequency
+     */
+    public int getMaxTermFrequency() {
+        return maxTermFrequency;
+    }
+
+    /**
+     * Cursor reading directly from the backing arrays.
+     */
+    private class Cursor implements PostingsCursor {
+
+        private static final int BLOCK_SIZE = CompressedPostings.BLOCK_SIZE;
+
+        private int index = -1;
+        private int shallowBlock = 0;
+
+        @Override
+        public int advance(int target) {
+            if (index >= 0 && (index >= size || docIds[index] >= target)) {
+                return docId();
+            }
+            // Gallop forward from the current posting, then binary search the bracket
+            int low = index + 1;
+            int step = 1;
+            int high = low;
+            while (high < size && docIds[high] < target) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, size);
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (docIds[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            index = low;
+            shallowBlock = Math.max(shallowBlock, index / BLOCK_SIZE);
+            return docId();
+        }
+
+        @Override
+        public int advanceShallow(int target) {
+            int block = Math.max(shallowBlock, Math.max(index, 0) / BLOCK_SIZE);
+            int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            while (block < blockCount && docIds[Math.min(size, (block + 1) * BLOCK_SIZE) - 1] < target) {
+                block++;
+            }
+            shallowBlock = block;
+            return blockLastDocId();
+        }
+
+        @Override
+        public int blockLastDocId() {
+            int end = Math.min(size, (shallowBlock + 1) * BLOCK_SIZE);
+            return shallowBlock * BLOCK_SIZE < size ? docIds[end - 1] : NO_MORE_DOCS;
+        }
+
+        @Override
+        public int blockMaxTermFrequency() {
+            int max = 0;
+            for (int i = shallowBlock * BLOCK_SIZE, end = Math.min(size, i + BLOCK_SIZE); i < end; i++) {
+                max = Math.max(max, freqs[i]);
+            }
+            return max;
+        }
+
+        @Override
+        public int maxTermFrequency() {
+            return maxTermFrequency;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (index < size) {
+                index++;
+            }
+            shallowBlock = Math.max(shallowBlock, index / BLOCK_SIZE);
+            return docId();
+        }
+
+        @Override
+        public int docId() {
+            if (index < 0) {
+                return -1;
+            }
+            return index < size ? docIds[index] : NO_MORE_DOCS;
+        }
+
+        @Override
+        public int termFrequency() {
+            return freqs[index];
+        }
+
+        @Override
+        public int position(int i) {
+            if (!storePositions) {
+                throw new IllegalStateException("Postings were stored without positions");
+            }
+            if (i < 0 || i >= freqs[index]) {
+                throw new IndexOutOfBoundsException("Position " + i + " of " + freqs[index]);
+            }
+            return positions[positionStarts[index] + i];
+        }
+
+        @Override
+        public boolean hasPositions() {
+            return storePositions;
+        }
+
+        @Override
+        public int docFrequency() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable slice of the index covering a contiguous range of document IDs.
+ * The Indexer seals its in-memory buffer into a segment, searches fan out over
+ * all segments, and the merge policy replaces runs of adjacent segments with
+ * their merge.
+ *
+ * Implementation notes:
+ * - Postings store global document IDs, so a segment's postings can be read
+ *   without any ID translation and adjacent segments concatenate in ID order
+ * - Segments are never modified after construction and can be shared freely
+ *   between threads
+ * - Terms are kept in a sorted TermDictionary and postings in an array indexed
+ *   by the segment's term ID; merging walks the sorted dictionaries together
+ * - Merging re-encodes the concatenated postings into fresh blocks, exactly as
+ *   if the documents had been indexed in one batch; the terms can be encoded in
+ *   parallel since each one is independent of the others
+ *
+ * @author alexhere
+ */
+final class Segment {
+
+    private final int baseDocId;
+    private final List<Document> documents;
+    private final TermDictionary terms;
+    private final TermPostings[] postings;   // indexed by the segment's term ID
+    private final long sizeInBytes;
+
+    private Segment(int baseDocId, List<Document> documents, TermDictionary terms, TermPostings[] postings) {
+        this.baseDocId = baseDocId;
+        this.documents = Collections.unmodifiableList(documents);
+        this.terms = terms;
+        this.postings = postings;
+        long size = 0;
+        for (TermPostings termPostings : postings) {
+            size += termPostings.sizeInBytes();
+        }
+        this.sizeInBytes = size;
+    }
+
+    /**
+     * Creates a segment from documents and their postings.
+     *
+     * @param baseDocId ID of the first document
+     * @param documents The documents, in ID order
+     * @param postings The postings of every term, using global document IDs
+     * @return The segment
+     */
+    static Segment of(int baseDocId, List<Document> documents, Map<String, TermPostings> postings) {
+        TermDictionary terms = TermDictionary.of(postings.keySet());
+        TermPostings[] byId = new TermPostings[terms.size()];
+        TermDictionary.TermIterator iterator = terms.iterator();
+        while (iterator.next()) {
+            byId[iterator.id()] = postings.get(iterator.term());
+        }
+        return new Segment(baseDocId, new ArrayList<>(documents), terms, byId);
+    }
+
+    /**
+     * Merges adjacent segments into one.
+     *
+     * @param segments Segments in ID order, each starting where the previous one ends
+     * @param codec Codec for the merged postings, or null to keep them uncompressed
+     * @return The merged segment
+     */
+    static Segment merge(List<Segment> segments, PostingsCodec codec) {
+        return merge(segments, codec, null, 1);
+    }
+
+    /**
+     * Merges adjacent segments into one, encoding the merged postings of
+     * different terms in parallel. The result does not depend on the parallelism.
+     *
+     * @param segments Segments in ID order, each starting where the previous one ends
+     * @param codec Codec for the merged postings, or null to keep them uncompressed
+     * @param executor Executor for the encoding tasks, or null to encode on the calling thread
+     * @param parallelism Number of encoding tasks
+     * @return The merged segment
+     */
+    static Segment merge(List<Segment> segments, PostingsCodec codec, ExecutorService executor, int parallelism) {
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to merge");
+        }
+        List<Document> documents = new ArrayList<>();
+        int expectedBase = segments.get(0).baseDocId;
+        for (Segment segment : segments) {
+            if (segment.baseDocId != expectedBase) {
+                throw new IllegalArgumentException("Segments are not adjacent: expected base "
+                        + expectedBase + ", found " + segment.baseDocId);
+            }
+            documents.addAll(segment.documents);
+            expectedBase = segment.endDocId();
+        }
+
+        // Walk the sorted dictionaries of all segments together (k-way merge),
+        // recording which segments hold each merged term
+        int n = segments.size();
+        TermDictionary.TermIterator[] iterators = new TermDictionary.TermIterator[n];
+        boolean[] live = new boolean[n];
+        for (int s = 0; s < n; s++) {
+            iterators[s] = segments.get(s).terms.iterator();
+            live[s] = iterators[s].next();
+        }
+        TermDictionary.Builder builder = new TermDictionary.Builder();
+        int[] sourceStarts = new int[64];
+        int[] sourceSegments = new int[64];
+        int[] sourceTermIds = new int[64];
+        int termCount = 0;
+        int sourceCount = 0;
+        while (true) {
+            int smallest = -1;
+            for (int s = 0; s < n; s++) {
+                if (live[s] && (smallest < 0 || iterators[s].compareTo(iterators[smallest]) < 0)) {
+                    smallest = s;
+                }
+            }
+            if (smallest < 0) {
+                break;
+            }
+            TermDictionary.TermIterator term = iterators[smallest];
+            if (termCount + 1 >= sourceStarts.length) {
+                sourceStarts = Arrays.copyOf(sourceStarts, sourceStarts.length * 2);
+            }
+            sourceStarts[termCount++] = sourceCount;
+            for (int s = smallest; s < n; s++) {
+                if (live[s] && (s == smallest || iterators[s].compareTo(term) == 0)) {
+                    if (sourceCount == sourceSegments.length) {
+                        sourceSegments = Arrays.copyOf(sourceSegments, sourceCount * 2);
+                        sourceTermIds = Arrays.copyOf(sourceTermIds, sourceCount * 2);
+                    }
+                    sourceSegments[sourceCount] = s;
+                    sourceTermIds[sourceCount++] = iterators[s].id();
+                }
+            }
+            term.copyTo(builder);
+            for (int s = n - 1; s >= smallest; s--) {
+                if (live[s] && (s == smallest || iterators[s].compareTo(term) == 0)) {
+                    live[s] = iterators[s].next();
+                }
+            }
+        }
+        sourceStarts[termCount] = sourceCount;
+
+        // Concatenate and re-encode the postings of every merged term; terms are independent
+        int baseDocId = segments.get(0).baseDocId;
+        TermPostings[] merged = new TermPostings[termCount];
+        int[] starts = sourceStarts;
+        int[] segmentIndexes = sourceSegments;
+        int[] termIds = sourceTermIds;
+        IntConsumer mergeTerm = t -> {
+            int count = starts[t + 1] - starts[t];
+            PostingsCursor[] cursors = new PostingsCursor[count];
+            int[] ends = new int[count];
+            for (int i = 0; i < count; i++) {
+                Segment segment = segments.get(segmentIndexes[starts[t] + i]);
+                cursors[i] = segment.postings[termIds[starts[t] + i]].cursor();
+                ends[i] = segment.endDocId();
+            }
+            PostingsList list = PostingsList.copyOf(count == 1 ? cursors[0] : new MultiSegmentCursor(cursors, ends));
+            list.trimToSize();
+            merged[t] = codec != null
+                    ? CompressedPostings.encode(list, codec, docId -> documents.get(docId - baseDocId).getLength())
+                    : list;
+        };
+        if (executor == null || parallelism <= 1) {
+            for (int t = 0; t < termCount; t++) {
+                mergeTerm.accept(t);
+            }
+        } else {
+            // Interleaved ranges balance the frequent (long) terms over the tasks
+            List<Future<?>> tasks = new ArrayList<>(parallelism);
+            for (int task = 0; task < parallelism; task++) {
+                int first = task;
+                int total = termCount;
+                tasks.add(executor.submit(() -> {
+                    for (int t = first; t < total; t += parallelism) {
+                        mergeTerm.accept(t);
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Merging postings failed", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while merging postings", e);
+                }
+            }
+        }
+        return new Segment(baseDocId, documents, builder.build(), merged);
+    }
+
+    /**
+     * Gets the ID of the first document in the segment.
+     *
+     * @return First document ID
+     */
+    int baseDocId() {
+        return baseDocId;
+    }
+
+    /**
+     * Gets the ID following the last document in the segment.
+     *
+     * @return End document ID (exclusive)
+     */
+    int endDocId() {
+        return baseDocId + documents.size();
+    }
+
+    /**
+     * Gets the number of documents in the segment.
+     *
+     * @return Document count
+     */
+    int documentCount() {
+        return documents.size();
+    }
+
+    /**
+     * Gets a document by its global ID.
+     *
+     * @param docId Document ID within [baseDocId, endDocId)
+     * @return The document
+     */
+    Document document(int docId) {
+        return documents.get(docId - baseDocId);
+    }
+
+    /**
+     * Gets the documents of the segment in ID order.
+     *
+     * @return Unmodifiable document list
+     */
+    List<Document> documents() {
+        return documents;
+    }
+
+    /**
+     * Gets the postings of a term.
+     *
+     * @param term The term
+     * @return The postings, or null if no document in the segment contains the term
+     */
+    TermPostings postings(String term) {
+        int termId = terms.termId(term);
+        return termId >= 0 ? postings[termId] : null;
+    }
+
+    /**
+     * Gets the postings of a term by the segment's term ID.
+     *
+     * @param termId Term ID in this segment's dictionary
+     * @return The postings
+     */
+    TermPostings postings(int termId) {
+        return postings[termId];
+    }
+
+    /**
+     * Gets the sorted dictionary of the terms that occur in the segment.
+     *
+     * @return The term dictionary
+     */
+    TermDictionary terms() {
+        return terms;
+    }
+
+    /**
+     * Gets the approximate heap size of the segment's postings.
+     *
+     * @return Size in bytes
+     */
+    long sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "Segment{docs=" + baseDocId + ".." + (endDocId() - 1) + ", terms=" + terms.size() + '}';
+    }
+}
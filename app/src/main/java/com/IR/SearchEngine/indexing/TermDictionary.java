@@ -0,0 +1,440 @@
+package com.IR.SearchEngine.indexing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable sorted term dictionary that assigns every term a dense int ID.
+ * Term IDs follow the UTF-8 byte order of the terms, so the terms sharing a
+ * prefix form one contiguous ID range and per-term data can be kept in plain
+ * arrays indexed by term ID.
+ *
+ * Storage (front coding), in blocks of {@value #BLOCK_SIZE} terms:
+ * - the first term of a block: VInt length, bytes
+ * - every following term: VInt shared prefix length with the previous term,
+ *   VInt suffix length, suffix bytes
+ * - blockOffsets[b] is the byte offset of block b
+ *
+ * Usage:
+ * <pre>
+ * TermDictionary dictionary = TermDictionary.of(terms);
+ * int id = dictionary.termId("retriev");          // -1 if absent
+ * int[] range = dictionary.prefixRange("retr");   // IDs [range[0], range[1])
+ * </pre>
+ *
+ * Implementation notes:
+ * - termId() binary searches the first terms of the blocks in place, then
+ *   decodes at most one block, so a lookup costs O(log n + BLOCK_SIZE)
+ * - Sorted English vocabularies share long prefixes, which keeps the encoded
+ *   dictionary well below the size of the String objects
+ *
+ * @author alexhere
+ */
+public class TermDictionary {
+
+    static final int BLOCK_SIZE = 16;
+
+    private static final TermDictionary EMPTY = new Builder().build();
+
+    private final byte[] data;
+    private final int[] blockOffsets;
+    private final int size;
+    private final int maxTermLength;
+
+    private TermDictionary(byte[] data, int[] blockOffsets, int size, int maxTermLength) {
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+        this.size = size;
+        this.maxTermLength = maxTermLength;
+    }
+
+    /**
+     * Gets the dictionary without terms.
+     *
+     * @return The empty dictionary
+     */
+    public static TermDictionary empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds a dictionary from terms in any order. Duplicates are ignored.
+     *
+     * @param terms The terms
+     * @return The dictionary
+     */
+    public static TermDictionary of(Collection<String> terms) {
+        byte[][] sorted = new byte[terms.size()][];
+        int i = 0;
+        for (String term : terms) {
+            sorted[i++] = term.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(sorted, Arrays::compareUnsigned);
+
+        Builder builder = new Builder();
+        for (int t = 0; t < sorted.length; t++) {
+            if (t == 0 || Arrays.compareUnsigned(sorted[t - 1], sorted[t]) != 0) {
+                builder.add(sorted[t], sorted[t].length);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the number of terms.
+     *
+     * @return Term count, which is also the exclusive upper bound of the term IDs
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Looks up the ID of a term.
+     *
+     * @param term The term
+     * @return The term ID, or -1 if the term is not in the dictionary
+     */
+    public int termId(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int id = lowerBound(key);
+        if (id < size && compareTerm(id, key) == 0) {
+            return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the term with the given ID.
+     *
+     * @param termId Term ID (0 &lt;= termId &lt; size())
+     * @return The term
+     */
+    public String term(int termId) {
+        if (termId < 0 || termId >= size) {
+            throw new IndexOutOfBoundsException("Term ID " + termId + " of " + size);
+        }
+        TermIterator terms = iterator(termId / BLOCK_SIZE);
+        for (int i = termId - termId % BLOCK_SIZE; i <= termId; i++) {
+            terms.next();
+        }
+        return terms.term();
+    }
+
+    /**
+     * Finds the IDs of all terms that start with a prefix.
+     *
+     * @param prefix The prefix (an empty prefix selects every term)
+     * @return {from, to}: the matching terms are the IDs in [from, to)
+     */
+    public int[] prefixRange(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int from = lowerBound(key);
+
+        // The first term after the range is the lower bound of the prefix's successor:
+        // drop trailing 0xFF bytes and increment the last remaining byte
+        int length = key.length;
+        while (length > 0 && key[length - 1] == (byte) 0xFF) {
+            length--;
+        }
+        if (length == 0) {
+            return new int[] {from, size};
+        }
+        byte[] successor = Arrays.copyOf(key, length);
+        successor[length - 1]++;
+        return new int[] {from, lowerBound(successor)};
+    }
+
+    /**
+     * Finds the first term that is greater than or equal to a key.
+     *
+     * @param key UTF-8 bytes of the key
+     * @return The term ID, or size() if every term is smaller
+     */
+    private int lowerBound(byte[] key) {
+        // Last block whose first term is <= key
+        int low = 0;
+        int high = blockOffsets.length - 1;
+        int block = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compareFirstTerm(mid, key) <= 0) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (block < 0) {
+            return 0;
+        }
+
+        TermIterator terms = iterator(block);
+        int id = block * BLOCK_SIZE;
+        int end = Math.min(size, id + BLOCK_SIZE);
+        for (; id < end; id++) {
+            terms.next();
+            if (Arrays.compareUnsigned(terms.buffer, 0, terms.length, key, 0, key.length) >= 0) {
+                return id;
+            }
+        }
+        return id;
+    }
+
+    private int compareFirstTerm(int block, byte[] key) {
+        int offset = blockOffsets[block];
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[offset++];
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return Arrays.compareUnsigned(data, offset, offset + length, key, 0, key.length);
+    }
+
+    private int compareTerm(int termId, byte[] key) {
+        TermIterator terms = iterator(termId / BLOCK_SIZE);
+        for (int i = termId - termId % BLOCK_SIZE; i <= termId; i++) {
+            terms.next();
+        }
+        return Arrays.compareUnsigned(terms.buffer, 0, terms.length, key, 0, key.length);
+    }
+
+    /**
+     * Creates an iterator over all terms in ID order.
+     *
+     * @return A term iterator positioned before the first term
+     */
+    public TermIterator iterator() {
+        return iterator(0);
+    }
+
+    private TermIterator iterator(int block) {
+        return new TermIterator(block);
+    }
+
+    /**
+     * Gets a read-only Set view of the terms.
+     *
+     * @return The terms as a set
+     */
+    public Set<String> asSet() {
+        return new AbstractSet<String>() {
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String && termId((String) o) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                TermIterator terms = TermDictionary.this.iterator();
+                return new Iterator<String>() {
+                    @Override
+                    public boolean hasNext() {
+                        return terms.id + 1 < size;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (!terms.next()) {
+                            throw new NoSuchElementException();
+                        }
+                        return terms.term();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Gets the size of the encoded dictionary.
+     *
+     * @return Size in bytes
+     */
+    public long sizeInBytes() {
+        return data.length + 4L * blockOffsets.length;
+    }
+
+    /**
+     * Forward iterator over the terms in ID order. Decodes into a reused buffer,
+     * so moving to the next term does not allocate.
+     */
+    public final class TermIterator {
+
+        private final byte[] buffer = new byte[maxTermLength];
+        private int length;
+        private int offset;
+        private int id;
+
+        private TermIterator(int block) {
+            this.offset = block < blockOffsets.length ? blockOffsets[block] : data.length;
+            this.id = block * BLOCK_SIZE - 1;
+        }
+
+        /**
+         * Moves to the next term.
+         *
+         * @return False if there are no more terms
+         */
+        public boolean next() {
+            if (id + 1 >= size) {
+                id = size;
+                return false;
+            }
+            id++;
+            int shared = 0;
+            if (id % BLOCK_SIZE != 0) {
+                shared = readVInt();
+            }
+            int suffix = readVInt();
+            System.arraycopy(data, offset, buffer, shared, suffix);
+            offset += suffix;
+            length = shared + suffix;
+            return true;
+        }
+
+        /**
+         * Gets the ID of the current term.
+         *
+         * @return Term ID
+         */
+        public int id() {
+            return id;
+        }
+
+        /**
+         * Gets the current term.
+         *
+         * @return The term
+         */
+        public String term() {
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Compares the current term with the current term of another iterator,
+         * in dictionary (UTF-8 byte) order.
+         *
+         * @param other Another iterator, positioned on a term
+         * @return Negative, zero or positive like Comparator.compare
+         */
+        public int compareTo(TermIterator other) {
+            return Arrays.compareUnsigned(buffer, 0, length, other.buffer, 0, other.length);
+        }
+
+        /**
+         * Appends the current term to a builder.
+         *
+         * @param builder The builder
+         */
+        void copyTo(Builder builder) {
+            builder.add(buffer, length);
+        }
+
+        private int readVInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * Builds a dictionary from terms added in strictly increasing byte order.
+     */
+    static final class Builder {
+
+        private byte[] data = new byte[256];
+        private int position;
+        private int[] blockOffsets = new int[16];
+        private int size;
+        private byte[] previous = new byte[16];
+        private int previousLength;
+        private int maxTermLength;
+
+        /**
+         * Adds the next term.
+         *
+         * @param term UTF-8 bytes of the term
+         * @param length Number of bytes used
+         */
+        void add(byte[] term, int length) {
+            if (size > 0 && Arrays.compareUnsigned(previous, 0, previousLength, term, 0, length) >= 0) {
+                throw new IllegalArgumentException("Terms must be added in increasing order: "
+                        + new String(term, 0, length, StandardCharsets.UTF_8));
+            }
+            ensureCapacity(length + 10);
+            if (size % BLOCK_SIZE == 0) {
+                if (size / BLOCK_SIZE == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, blockOffsets.length * 2);
+                }
+                blockOffsets[size / BLOCK_SIZE] = position;
+                writeVInt(length);
+                System.arraycopy(term, 0, data, position, length);
+                position += length;
+            } else {
+                int shared = Arrays.mismatch(previous, 0, previousLength, term, 0, length);
+                if (shared < 0) {
+                    shared = length;
+                }
+                writeVInt(shared);
+                writeVInt(length - shared);
+                System.arraycopy(term, shared, data, position, length - shared);
+                position += length - shared;
+            }
+            if (length > previous.length) {
+                previous = Arrays.copyOf(previous, Math.max(length, previous.length * 2));
+            }
+            System.arraycopy(term, 0, previous, 0, length);
+            previousLength = length;
+            maxTermLength = Math.max(maxTermLength, length);
+            size++;
+        }
+
+        /**
+         * Gets the number of terms added so far, which is the ID of the next term.
+         *
+         * @return Term count
+         */
+        int size() {
+            return size;
+        }
+
+        TermDictionary build() {
+            int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            return new TermDictionary(Arrays.copyOf(data, position), Arrays.copyOf(blockOffsets, blocks),
+                    size, maxTermLength);
+        }
+
+        private void writeVInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                data[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[position++] = (byte) value;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (position + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(position + extra, data.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.IR.SearchEngine.indexing;
+
+/**
+ * Storage of the postings for one term in the inverted index.
+ * Implemented by the mutable, array-backed {@link PostingsList} used while
+ * indexing and by the immutable, codec-encoded {@link CompressedPostings}
+ * produced when the index is sealed.
+ *
+ * @author alexhere
+ */
+public interface TermPostings {
+
+    /**
+     * Gets the number of postings (the document frequency of the term).
+     *
+     * @return Number of postings
+     */
+    int size();
+
+    /**
+     * Creates a new cursor positioned before the first posting.
+     *
+     * @return A cursor over the postings
+     */
+    PostingsCursor cursor();
+
+    /**
+     * Approximate heap footprint of the stored postings in bytes.
+     *
+     * @return Size in bytes
+     */
+    long sizeInBytes();
+}
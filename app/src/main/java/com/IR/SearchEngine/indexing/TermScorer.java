@@ -0,0 +1,21 @@
+package com.IR.SearchEngine.indexing;
+
+/**
+ * Scoring function for a single query term, given its frequency in a document
+ * and the document length. Retrieval models supply one per query term so that
+ * postings cursors can compute block-level score upper bounds.
+ *
+ * @author alexhere
+ */
+@FunctionalInterface
+public interface TermScorer {
+
+    /**
+     * Scores one occurrence statistic of the term.
+     *
+     * @param termFrequency Frequency of the term in the document
+     * @param docLength Length of the document
+     * @return The term's score contribution
+     */
+    double score(int termFrequency, int docLength);
+}
@@ -0,0 +1,119 @@
+package com.IR.SearchEngine.indexing;
+
+/**
+ * Decides which segments to merge, following the tiered merge policy of
+ * Lucene: segments are grouped into tiers of exponentially growing size and
+ * each tier may hold up to {@code segmentsPerTier} segments. When there are
+ * more segments than that budget allows, the cheapest run of similarly sized
+ * segments is merged.
+ *
+ * Implementation notes:
+ * - Sizes are measured in documents; segments below the floor size count as
+ *   the floor, so tiny flushed segments are merged away quickly
+ * - Only runs of adjacent segments are merged, which keeps every segment a
+ *   contiguous document ID range
+ * - A candidate run is scored by its skew (largest segment / run size) times
+ *   a small power of its size, preferring balanced and smaller merges
+ *
+ * @author alexhere
+ */
+public class TieredMergePolicy {
+
+    private final int segmentsPerTier;
+    private final int maxMergeAtOnce;
+    private final int floorSegmentDocuments;
+
+    /**
+     * Creates a policy with the default settings: 10 segments per tier, at most
+     * 10 segments per merge and a floor of 1000 documents.
+     */
+    public TieredMergePolicy() {
+        this(10, 10, 1000);
+    }
+
+    /**
+     * Creates a policy with custom settings.
+     *
+     * @param segmentsPerTier Allowed number of segments per tier
+     * @param maxMergeAtOnce Maximum number of segments merged at once
+     * @param floorSegmentDocuments Smaller segments are treated as this size
+     */
+    public TieredMergePolicy(int segmentsPerTier, int maxMergeAtOnce, int floorSegmentDocuments) {
+        if (segmentsPerTier < 2) {
+            throw new IllegalArgumentException("segmentsPerTier must be at least 2: " + segmentsPerTier);
+        }
+        if (maxMergeAtOnce < 2) {
+            throw new IllegalArgumentException("maxMergeAtOnce must be at least 2: " + maxMergeAtOnce);
+        }
+        if (floorSegmentDocuments < 1) {
+            throw new IllegalArgumentException("floorSegmentDocuments must be positive: " + floorSegmentDocuments);
+        }
+        this.segmentsPerTier = segmentsPerTier;
+        this.maxMergeAtOnce = maxMergeAtOnce;
+        this.floorSegmentDocuments = floorSegmentDocuments;
+    }
+
+    /**
+     * Selects the next merge.
+     *
+     * @param segmentSizes Number of documents of each segment, in document ID order
+     * @return {from, to} for merging segments [from, to), or null if no merge is needed
+     */
+    public int[] findMerge(int[] segmentSizes) {
+        int count = segmentSizes.length;
+        if (count <= allowedSegmentCount(segmentSizes)) {
+            return null;
+        }
+
+        int length = Math.min(maxMergeAtOnce, count);
+        int[] best = null;
+        double bestScore = Double.POSITIVE_INFINITY;
+        for (int from = 0; from + length <= count; from++) {
+            long total = 0;
+            long largest = 0;
+            for (int i = from; i < from + length; i++) {
+                long size = floored(segmentSizes[i]);
+                total += size;
+                largest = Math.max(largest, size);
+            }
+            double score = ((double) largest / total) * Math.pow(total, 0.05);
+            if (score < bestScore) {
+                bestScore = score;
+                best = new int[] {from, from + length};
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Computes how many segments the index may have: segmentsPerTier per tier,
+     * starting at the floor size (or the smallest segment) and growing by
+     * maxMergeAtOnce per tier.
+     */
+    private int allowedSegmentCount(int[] segmentSizes) {
+        long total = 0;
+        long smallest = Long.MAX_VALUE;
+        for (int size : segmentSizes) {
+            total += floored(size);
+            smallest = Math.min(smallest, floored(size));
+        }
+
+        long tierSize = smallest;
+        long remaining = total;
+        int allowed = 0;
+        while (true) {
+            double tierSegments = (double) remaining / tierSize;
+            if (tierSegments < segmentsPerTier) {
+                allowed += (int) Math.ceil(tierSegments);
+                return allowed;
+            }
+            allowed += segmentsPerTier;
+            remaining -= segmentsPerTier * tierSize;
+            tierSize *= maxMergeAtOnce;
+        }
+    }
+
+    private long floored(int size) {
+        return Math.max(size, floorSegmentDocuments);
+    }
+}
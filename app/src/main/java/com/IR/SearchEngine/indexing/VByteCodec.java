@@ -0,0 +1,67 @@
+package com.IR.SearchEngine.indexing;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-byte postings codec.
+ * Each integer is written in 7-bit groups, least significant group first; the
+ * high bit of a byte marks that more bytes follow. Document IDs are gap encoded.
+ *
+ * Implementation notes:
+ * - Byte aligned, so decoding is simple and branch-predictable
+ * - Small gaps and frequencies (the common case) take a single byte
+ *
+ * @author alexhere
+ */
+public class VByteCodec implements PostingsCodec {
+
+    @Override
+    public String getName() {
+        return "vbyte";
+    }
+
+    @Override
+    public void encodeValues(int[] values, int offset, int count, ByteArrayOutputStream out) {
+        for (int i = offset; i < offset + count; i++) {
+            writeVInt(out, values[i]);
+        }
+    }
+
+    @Override
+    public void decodeValues(ByteBuffer in, int[] values, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            values[i] = readVInt(in);
+        }
+    }
+
+    /**
+     * Writes a non-negative integer as a variable-length byte sequence.
+     *
+     * @param out Destination
+     * @param value Value to write
+     */
+    public static void writeVInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads an integer written by writeVInt().
+     *
+     * @param in Source
+     * @return The decoded value
+     */
+    public static int readVInt(ByteBuffer in) {
+        int b = in.get();
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+        }
+        return value;
+    }
+}
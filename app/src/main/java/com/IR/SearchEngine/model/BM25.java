@@ -7,11 +7,24 @@ package com.IR.SearchEngine.model;
 import com.IR.SearchEngine.data.Document;
 import com.IR.SearchEngine.data.DocumentScore;
 import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.data.QueryStatistics;
+import com.IR.SearchEngine.indexing.DocumentStatistics;
+import com.IR.SearchEngine.indexing.ImpactIndex;
+import com.IR.SearchEngine.indexing.IndexSnapshot;
 import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.indexing.PostingsCursor;
+import com.IR.SearchEngine.indexing.TermScorer;
 import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.query.DocIdIterator;
+import com.IR.SearchEngine.query.ParsedQuery;
+import com.IR.SearchEngine.query.QueryParser;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Implements the BM25 ranking model for document retrieval.
@@ -37,24 +50,146 @@ import java.util.stream.Collectors;
  * - Support incremental scoring for efficient query processing
  * 
  * Implementation notes:
- * - Pre-computes document length statistics during indexing
+ * - Pre-computes document length statistics during indexing: the length
+ *   normalization k1 * (1 - b + b * |D| / avgdl) of every document is kept in an
+ *   array, and term frequencies come from the snapshot's DocumentStatistics, so
+ *   scoring never touches Document objects
+ * - Query terms are resolved to term IDs once per query; IDF values and score
+ *   upper bounds live in arrays indexed by term ID
+ * - Each query runs against one IndexSnapshot of the indexer, so documents can be
+ *   ingested while queries run
+ * - A search with a deadline (see IModel) stops scoring when it is reached, in
+ *   every execution mode, and returns the top K of what it scored so far
+ * - Thread-safe: the statistics of a snapshot are computed once into an immutable
+ *   object that concurrent queries share, settings are volatile, and the
+ *   term-at-a-time and score-at-a-time accumulators are borrowed from a pool for
+ *   the duration of a query. The pool holds as many accumulators as queries
+ *   ever ran at once, so a service that starts every query on a new (virtual)
+ *   thread does not allocate two arrays of the collection size per query
  * - Implements optimizations for efficient scoring
+ * - AND, OR, NOT, phrases ("convex hull") and NEAR/k clauses of the original
+ *   query restrict the results to the documents that match its query tree (see
+ *   QueryParser); only those documents are scored, whatever the execution mode.
+ *   If no document matches, the result is empty. Only when a phrase or NEAR
+ *   clause needs positions the index does not have is the query ranked as a
+ *   plain query, which is reported as an error
+ * - Execution modes: EXHAUSTIVE scores every document against the query,
+ *   TERM_AT_A_TIME walks only the postings of the query terms and accumulates
+ *   scores per document ID, so cost follows the postings length, not the corpus size.
+ *   WAND and BLOCK_MAX_WAND (the default) evaluate document-at-a-time and skip
+ *   postings that cannot reach the current top K, using per-term and per-block
+ *   score upper bounds (see WandEvaluator)
+ * - Queries with a large postings volume are split into document ID ranges
+ *   scored in parallel (see ParallelScorer), in the EXHAUSTIVE,
+ *   TERM_AT_A_TIME, WAND and BLOCK_MAX_WAND modes; the rankings are identical.
+ *   The threshold is set with setParallelThreshold()
+ * - SCORE_AT_A_TIME trades exactness for latency: it searches an ImpactIndex of
+ *   BM25 weights quantized to a few bits (8 by default), visits the highest
+ *   impacts first and stops after the postings budget (see
+ *   ScoreAtATimeEvaluator). Its scores and rankings are approximate
+ * - The impact index is built from k1, b and the collection statistics off the
+ *   query path: by initialize(), or on a background thread when the statistics of
+ *   a new snapshot are computed or the mode or impact bits change. Until it is
+ *   ready, SCORE_AT_A_TIME queries are answered with BLOCK_MAX_WAND
  * 
  * @author alexhere
  */
 public class BM25 implements IModel {
     
+    /**
+     * Query execution strategies. All of them except SCORE_AT_A_TIME produce
+     * identical rankings.
+     */
+    public enum ExecutionMode {
+        EXHAUSTIVE,      // score every document in the collection
+        TERM_AT_A_TIME,  // accumulate scores from the query terms' postings
+        WAND,            // skip documents using per-term score upper bounds
+        BLOCK_MAX_WAND,  // WAND plus per-block score upper bounds
+        SCORE_AT_A_TIME  // approximate: quantized impacts, highest first, within a postings budget
+    }
+    
+    /**
+     * Statistics of one snapshot, precomputed once and never modified, so that
+     * concurrent queries share them without locking. Only the impact index is
+     * built later, in the background.
+     */
+    private static final class SnapshotStatistics {
+        final IndexSnapshot index;                      // snapshot searched by the query
+        final DocumentStatistics documentStatistics;    // lengths and forward index of the snapshot
+        final double avgDocLength;
+        final double[] lengthNorms;   // k1 * (1 - b + b * |D| / avgdl), indexed by document ID
+        final double[] idf;           // BM25 IDF, indexed by term ID
+        final double[] upperBounds;   // max BM25 weight of each term, indexed by term ID
+        final Impacts impacts;        // score-at-a-time layout, shared with merged snapshots
+        
+        SnapshotStatistics(IndexSnapshot index, DocumentStatistics documentStatistics, double avgDocLength,
+                           double[] lengthNorms, double[] idf, double[] upperBounds, Impacts impacts) {
+            this.index = index;
+            this.documentStatistics = documentStatistics;
+            this.avgDocLength = avgDocLength;
+            this.lengthNorms = lengthNorms;
+            this.idf = idf;
+            this.upperBounds = upperBounds;
+            this.impacts = impacts;
+        }
+        
+        /**
+         * Shares these statistics with a merged snapshot of the same documents.
+         */
+        SnapshotStatistics withIndex(IndexSnapshot merged) {
+            return new SnapshotStatistics(merged, documentStatistics, avgDocLength, lengthNorms, idf,
+                    upperBounds, impacts);
+        }
+    }
+    
+    /**
+     * Impact index of one set of statistics, built on the impact thread.
+     */
+    private static final class Impacts {
+        volatile ImpactIndex index;   // null until the first build completes
+        int scheduledBits;            // bits of the build waiting or running, 0 if none; guarded by this
+    }
+    
+    /**
+     * Term-at-a-time accumulator of one query at a time, reused across queries
+     * and reset through the list of touched documents.
+     */
+    private static final class Accumulator {
+        final double[] scores;
+        final int[] touchedDocs;
+        
+        Accumulator(int documentCount) {
+            this.scores = new double[documentCount];
+            this.touchedDocs = new int[documentCount];
+        }
+    }
+    
     private final Indexer indexer;
     private final Preprocessor preprocessor;
+    private final QueryParser queryParser;  // phrase and NEAR clauses of the original query
     
     // BM25 parameters
     private final double k1; // Controls term frequency scaling (typically 1.2-2.0)
     private final double b;  // Controls document length normalization (typically 0.75)
     
-    // Precomputed statistics
-    private double avgDocLength;
-    private final Map<Integer, Double> documentLengths;
-    private final Map<String, Double> idfCache;
+    // Precomputed statistics of the last searched snapshot, replaced as a whole
+    private volatile SnapshotStatistics statistics;
+    
+    private volatile ExecutionMode executionMode;
+    
+    // Scratch space borrowed by one query at a time, so that queries never share mutable state
+    private final Queue<Accumulator> accumulators = new ConcurrentLinkedQueue<>();
+    private final Queue<ScoreAtATimeEvaluator> scoreAtATime = new ConcurrentLinkedQueue<>();
+    
+    // Score-at-a-time settings
+    private volatile int impactBits;
+    private volatile long postingsBudget;
+    
+    // Splits queries with many postings into document ranges scored in parallel
+    private final ParallelScorer parallelScorer = new ParallelScorer();
+    
+    // Builds impact indexes off the query path, one at a time
+    private ExecutorService impactExecutor;
     
     /**
      * Constructor with default BM25 parameters (k1=1.2, b=0.75).
@@ -84,11 +219,114 @@ public class BM25 implements IModel {
         
         this.indexer = indexer;
         this.preprocessor = preprocessor;
+        this.queryParser = new QueryParser(preprocessor);
         this.k1 = k1;
         this.b = b;
-        this.documentLengths = new HashMap<>();
-        this.idfCache = new HashMap<>();
-        this.avgDocLength = 0.0;
+        this.statistics = new SnapshotStatistics(indexer.snapshot(), null, 0.0,
+                new double[0], new double[0], new double[0], new Impacts());
+        this.executionMode = ExecutionMode.BLOCK_MAX_WAND;
+        this.impactBits = 8;
+        this.postingsBudget = Long.MAX_VALUE;
+    }
+    
+    /**
+     * Sets the query execution strategy. Switching to SCORE_AT_A_TIME starts
+     * building the impact index of the current statistics in the background.
+     * 
+     * @param executionMode The execution mode
+     */
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+        scheduleImpactIndexIfNeeded(statistics);
+    }
+    
+    /**
+     * Gets the query execution strategy.
+     * 
+     * @return The execution mode
+     */
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+    
+    /**
+     * Sets the number of postings a SCORE_AT_A_TIME query may score before it
+     * stops. Smaller budgets answer faster with a less accurate ranking.
+     * 
+     * @param postingsBudget Maximum postings per query, Long.MAX_VALUE for no limit
+     * @throws IllegalArgumentException If the budget is not positive
+     */
+    public void setPostingsBudget(long postingsBudget) {
+        if (postingsBudget <= 0) {
+            throw new IllegalArgumentException("Postings budget must be positive: " + postingsBudget);
+        }
+        this.postingsBudget = postingsBudget;
+    }
+    
+    /**
+     * Gets the postings budget of SCORE_AT_A_TIME queries.
+     * 
+     * @return Maximum postings per query
+     */
+    public long getPostingsBudget() {
+        return postingsBudget;
+    }
+    
+    /**
+     * Sets the number of bits the BM25 weights are quantized to in the impact
+     * index. The index is rebuilt in the background; SCORE_AT_A_TIME queries use
+     * the old one, or BLOCK_MAX_WAND if the bits differ, until it is ready.
+     * 
+     * @param impactBits Bits per impact, from 1 to 16
+     * @throws IllegalArgumentException If the number of bits is out of range
+     */
+    public void setImpactBits(int impactBits) {
+        if (impactBits < 1 || impactBits > 16) {
+            throw new IllegalArgumentException("Impact bits must be between 1 and 16: " + impactBits);
+        }
+        this.impactBits = impactBits;
+        scheduleImpactIndexIfNeeded(statistics);
+    }
+    
+    /**
+     * Gets the number of bits of the impact index.
+     * 
+     * @return Bits per impact
+     */
+    public int getImpactBits() {
+        return impactBits;
+    }
+    
+    /**
+     * Sets the postings volume from which a query is scored on several threads,
+     * one document ID range per task. An exhaustive query counts one posting per
+     * document and query term.
+     * 
+     * @param postingsThreshold Minimum postings of a parallel query, Long.MAX_VALUE to never split
+     * @throws IllegalArgumentException If the threshold is negative
+     */
+    public void setParallelThreshold(long postingsThreshold) {
+        parallelScorer.setPostingsThreshold(postingsThreshold);
+    }
+    
+    /**
+     * Gets the postings volume from which a query is scored on several threads.
+     * 
+     * @return Minimum postings of a parallel query
+     */
+    public long getParallelThreshold() {
+        return parallelScorer.getPostingsThreshold();
+    }
+    
+    /**
+     * Sets the pool that scores the document ranges of parallel queries
+     * (the common pool by default).
+     * 
+     * @param pool The pool
+     * @throws IllegalArgumentException If the pool is null
+     */
+    public void setParallelPool(ForkJoinPool pool) {
+        parallelScorer.setPool(pool);
     }
     
     /**
@@ -102,51 +340,120 @@ public class BM25 implements IModel {
     }
     
     /**
-     * Initializes the model by precomputing document length statistics.
-     * Called after documents have been indexed.
+     * Describes the BM25 parameters and execution mode; the approximate
+     * score-at-a-time mode also depends on the impact bits and the postings budget.
+     * 
+     * @return The configuration, e.g. "k1=1.2 b=0.75 mode=BLOCK_MAX_WAND"
+     */
+    @Override
+    public String getConfiguration() {
+        ExecutionMode executionMode = this.executionMode;
+        String configuration = "k1=" + k1 + " b=" + b + " mode=" + executionMode;
+        if (executionMode == ExecutionMode.SCORE_AT_A_TIME) {
+            configuration += " bits=" + impactBits + " budget=" + postingsBudget;
+        }
+        return configuration;
+    }
+    
+    /**
+     * Initializes the model by precomputing document length statistics, and the
+     * impact index in SCORE_AT_A_TIME mode. Called after documents have been indexed.
      */
     @Override
     public void initialize() {
         System.out.println("Initializing BM25 model...");
-        precomputeDocumentStatistics();
+        IndexSnapshot index = indexer.snapshot();
+        SnapshotStatistics initialized;
+        synchronized (this) {
+            initialized = computeStatistics(index);
+            statistics = initialized;
+        }
+        System.out.println("Computed statistics for " + index.getDocumentCount() + " documents (average length "
+                + initialized.avgDocLength + ", k1=" + k1 + ", b=" + b + ") and score upper bounds for "
+                + index.getVocabularySize() + " terms");
+        if (executionMode == ExecutionMode.SCORE_AT_A_TIME) {
+            int bits = impactBits;
+            initialized.impacts.index = buildImpactIndex(initialized, bits);
+        }
     }
     
     /**
-     * Precomputes document length statistics for BM25 scoring.
+     * Gets the precomputed statistics of a snapshot. Merges do not change the
+     * statistics, so they are only recomputed when documents were added; a flush
+     * that adds terms renumbers them, so the per-term arrays are recomputed with them.
+     * Concurrent queries of a new snapshot compute them once; the statistics of a
+     * snapshot older than the last searched one are computed but not kept.
+     * 
+     * @param index The snapshot to search
+     * @return The statistics of the snapshot
      */
-    private void precomputeDocumentStatistics() {
-        List<Document> allDocs = indexer.getAllDocuments();
-        System.out.println("Computing document statistics for " + allDocs.size() + " documents");
-        
-        // Compute document lengths and average document length
-        long totalLength = 0;
-        for (int i = 0; i < allDocs.size(); i++) {
-            Document doc = allDocs.get(i);
-            int docLength = doc.getLength();
-            documentLengths.put(i, (double) docLength);
-            totalLength += docLength;
-            
-            // Print debug info for the first few documents
-            if (i < 3) {
-                System.out.println("Document: " + doc.getTitle() + 
-                                 " (ID: " + doc.getId() + ", length: " + docLength + ")");
+    private SnapshotStatistics statisticsFor(IndexSnapshot index) {
+        SnapshotStatistics current = statistics;
+        if (current.index == index && current.documentStatistics != null) {
+            return current;
+        }
+        synchronized (this) {
+            current = statistics;
+            SnapshotStatistics updated;
+            if (current.documentStatistics == index.getDocumentStatistics()) {
+                updated = current.index == index ? current : current.withIndex(index);
+            } else {
+                updated = computeStatistics(index);
+            }
+            if (current.documentStatistics == null || index.getVersion() >= current.index.getVersion()) {
+                statistics = updated;
             }
+            if (updated.impacts != current.impacts) {
+                scheduleImpactIndexIfNeeded(updated);
+            }
+            return updated;
         }
+    }
+    
+    /**
+     * Precomputes the document length normalizations of a snapshot, then the IDF
+     * and the score upper bound of every vocabulary term, indexed by term ID.
+     * Upper bounds come from the block-max metadata stored with the postings and
+     * are used for WAND pruning.
+     * 
+     * @param index The snapshot
+     * @return Its statistics
+     */
+    private SnapshotStatistics computeStatistics(IndexSnapshot index) {
+        DocumentStatistics documentStatistics = index.getDocumentStatistics();
+        int documentCount = documentStatistics.getDocumentCount();
         
-        avgDocLength = allDocs.isEmpty() ? 0 : (double) totalLength / allDocs.size();
-        System.out.println("Average document length: " + avgDocLength);
-        System.out.println("BM25 parameters: k1=" + k1 + ", b=" + b);
+        // Average document length, then the length normalization of every document
+        double avgDocLength = documentStatistics.getAverageLength();
+        double[] lengthNorms = new double[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            double docLength = documentStatistics.length(i);
+            lengthNorms[i] = k1 * (1 - b + b * docLength / avgDocLength);
+        }
+        
+        int vocabularySize = index.getVocabularySize();
+        double[] idf = new double[vocabularySize];
+        double[] upperBounds = new double[vocabularySize];
+        for (int termId = 0; termId < vocabularySize; termId++) {
+            idf[termId] = computeIdf(index, index.getCollectionDocumentFrequency(termId));
+            upperBounds[termId] = computeUpperBound(index, termId, termScorer(idf[termId], avgDocLength));
+        }
+        
+        return new SnapshotStatistics(index, documentStatistics, avgDocLength, lengthNorms, idf, upperBounds,
+                new Impacts());
     }
     
     /**
      * Computes the BM25 weighted vector for a document.
      * This is used primarily for debugging/comparison with VSM vectors.
      * 
-     * @param document The document to compute the vector for
+     * @param document The document to compute the vector for; a preprocessed document,
+     *                 since the indexed copies keep no term frequencies
      * @return A map from terms to their BM25 weights
      */
     @Override
     public Map<String, Double> computeDocumentVector(Document document) {
+        SnapshotStatistics snapshot = statistics;
         Map<String, Double> vector = new HashMap<>();
         Map<String, Integer> termFrequencies = document.getTermFrequencies();
         double docLength = document.getLength();
@@ -157,12 +464,12 @@ public class BM25 implements IModel {
             int tf = entry.getValue();
             
             // Skip terms not in the index vocabulary
-            if (!indexer.getVocabulary().contains(term)) {
+            int termId = snapshot.index.getTermId(term);
+            if (termId < 0 || termId >= snapshot.idf.length) {
                 continue;
             }
             
-            double idf = computeIdf(term);
-            double weight = computeBM25TermWeight(tf, docLength, idf);
+            double weight = computeBM25TermWeight(tf, docLength, snapshot.idf[termId], snapshot.avgDocLength);
             vector.put(term, weight);
         }
         
@@ -177,6 +484,7 @@ public class BM25 implements IModel {
      */
     @Override
     public Map<String, Double> computeQueryVector(Map<String, Integer> queryTerms) {
+        SnapshotStatistics snapshot = statistics;
         Map<String, Double> queryVector = new HashMap<>();
         
         // For each term in the query, compute its BM25 weight
@@ -184,43 +492,33 @@ public class BM25 implements IModel {
             String term = entry.getKey();
             
             // Skip terms not in the vocabulary
-            if (!indexer.getVocabulary().contains(term)) {
+            int termId = snapshot.index.getTermId(term);
+            if (termId < 0 || termId >= snapshot.idf.length) {
                 continue;
             }
             
             // In BM25, query terms are usually weighted just by their IDF
-            double idf = computeIdf(term);
-            queryVector.put(term, idf);
+            queryVector.put(term, snapshot.idf[termId]);
         }
         
         return queryVector;
     }
     
     /**
-     * Computes the BM25 IDF value for a term.
+     * Computes the BM25 IDF value from a document frequency.
      * 
-     * @param term The term to compute IDF for
+     * @param index The snapshot
+     * @param n Number of documents containing the term
      * @return The BM25 IDF value
      */
-    private double computeIdf(String term) {
-        // Check if IDF is already cached
-        if (idfCache.containsKey(term)) {
-            return idfCache.get(term);
-        }
-        
-        int N = indexer.getDocumentCount();
-        int n = indexer.getDocumentFrequency(term);
+    private static double computeIdf(IndexSnapshot index, int n) {
+        int N = index.getDocumentCount();
         
         // BM25 IDF formula: log((N - n + 0.5) / (n + 0.5))
         double idf = Math.log((N - n + 0.5) / (n + 0.5));
         
         // Ensure IDF is positive (some formulations use max(0, idf))
-        idf = Math.max(0, idf);
-        
-        // Cache the result
-        idfCache.put(term, idf);
-        
-        return idf;
+        return Math.max(0, idf);
     }
     
     /**
@@ -229,9 +527,10 @@ public class BM25 implements IModel {
      * @param tf Term frequency in the document
      * @param docLength Length of the document
      * @param idf IDF value for the term
+     * @param avgDocLength Average document length of the snapshot
      * @return The BM25 term weight
      */
-    private double computeBM25TermWeight(int tf, double docLength, double idf) {
+    private double computeBM25TermWeight(int tf, double docLength, double idf, double avgDocLength) {
         // BM25 term weight formula: idf * ((tf * (k1 + 1)) / (tf + k1 * (1 - b + b * docLength / avgDocLength)))
         double numerator = tf * (k1 + 1);
         double denominator = tf + k1 * (1 - b + b * docLength / avgDocLength);
@@ -239,6 +538,24 @@ public class BM25 implements IModel {
         return idf * (numerator / denominator);
     }
     
+    /**
+     * Computes the BM25 term weight of a term in an indexed document, using the
+     * document's precomputed length normalization. Gives exactly the same value
+     * as computeBM25TermWeight with the document's length.
+     * 
+     * @param snapshot The snapshot statistics
+     * @param tf Term frequency in the document
+     * @param docId Document ID
+     * @param idf IDF value for the term
+     * @return The BM25 term weight
+     */
+    private double computeIndexedTermWeight(SnapshotStatistics snapshot, int tf, int docId, double idf) {
+        double numerator = tf * (k1 + 1);
+        double denominator = tf + snapshot.lengthNorms[docId];
+        
+        return idf * (numerator / denominator);
+    }
+    
     /**
      * Executes a search for the given query and returns top K results.
      * 
@@ -249,78 +566,570 @@ public class BM25 implements IModel {
      */
     @Override
     public QueryResult search(String query, String processedQuery, int topK) {
+        return search(query, processedQuery, topK, new QueryStatistics());
+    }
+    
+    /**
+     * Executes a search that stops scoring at a deadline, returning the best
+     * results found so far.
+     * 
+     * @param query Original query string
+     * @param processedQuery Preprocessed query string
+     * @param topK Number of top results to return
+     * @param deadlineNanos The deadline, as a System.nanoTime() value
+     * @return The search results, flagged as partial if the deadline was reached
+     */
+    @Override
+    public QueryResult search(String query, String processedQuery, int topK, long deadlineNanos) {
+        QueryStatistics statistics = new QueryStatistics();
+        statistics.setDeadline(deadlineNanos);
+        return search(query, processedQuery, topK, statistics);
+    }
+    
+    private QueryResult search(String query, String processedQuery, int topK, QueryStatistics statistics) {
         long startTime = System.currentTimeMillis();
         
-        // Debug log query information
-        System.out.println("Executing BM25 search for query: " + query);
-        System.out.println("Processed query: " + processedQuery);
+        // Boolean operators, phrases and NEAR clauses restrict the results; their words are ranked as usual
+        ParsedQuery parsedQuery = queryParser.parse(query);
+        if (parsedQuery.hasConstraints()) {
+            processedQuery = parsedQuery.getProcessedQuery();
+        }
         
         // Preprocess query and convert to term frequency map
         Map<String, Integer> queryTerms = processQueryToTermFrequencies(processedQuery);
-        System.out.println("Query terms: " + queryTerms.keySet());
         
-        // Get all documents for scoring
-        List<Document> allDocs = indexer.getAllDocuments();
-        System.out.println("Scoring " + allDocs.size() + " documents with BM25");
+        // Search one snapshot throughout the query; documents may be flushed concurrently.
+        // The query only reads the snapshot's statistics, so queries can run in parallel
+        SnapshotStatistics snapshot = statisticsFor(indexer.snapshot());
+        ExecutionMode executionMode = this.executionMode;
         
-        // Initialize results list
-        List<DocumentScore> results = new ArrayList<>();
+        // Resolve the query terms to term IDs once; the scorers only use int-indexed arrays
+        int[] termIds = resolveTermIds(snapshot.index, queryTerms);
+        
+        List<DocumentScore> topResults = null;
+        if (parsedQuery.hasConstraints()) {
+            topResults = searchMatching(snapshot, termIds, parsedQuery, topK, statistics);
+        }
+        if (topResults == null) {
+            // The score-at-a-time search records its fallback if it has to take one
+            statistics.setExecution(executionMode.name());
+            switch (executionMode) {
+                case EXHAUSTIVE:
+                    topResults = searchExhaustive(snapshot, termIds, topK, statistics);
+                    break;
+                case TERM_AT_A_TIME:
+                    topResults = searchTermAtATime(snapshot, termIds, topK, statistics);
+                    break;
+                case SCORE_AT_A_TIME:
+                    topResults = searchScoreAtATime(snapshot, termIds, topK, statistics);
+                    break;
+                default:
+                    topResults = searchWand(snapshot, termIds, topK,
+                            executionMode == ExecutionMode.BLOCK_MAX_WAND, statistics);
+            }
+        }
+        
+        long endTime = System.currentTimeMillis();
+        long executionTime = endTime - startTime;
+        
+        // Create a QueryResult with the BM25 model name
+        return new QueryResult(query, processedQuery, topResults, executionTime, "BM25", statistics);
+    }
+    
+    /**
+     * Resolves the query terms to term IDs, in query term order.
+     * 
+     * @param index The searched snapshot
+     * @param queryTerms The query terms with their frequencies
+     * @return The term ID of each query term, -1 for terms that are not indexed
+     */
+    private static int[] resolveTermIds(IndexSnapshot index, Map<String, Integer> queryTerms) {
+        int[] termIds = new int[queryTerms.size()];
+        int i = 0;
+        for (String term : queryTerms.keySet()) {
+            termIds[i++] = index.getTermId(term);
+        }
+        return termIds;
+    }
+    
+    /**
+     * Scores only the documents that match the query tree. The tree is evaluated as
+     * a tree of postings iterators (conjunctions leapfrog with advance(), phrases
+     * check positions), so a conjunction costs about the postings of its rarest
+     * clause, not the collection size. Every matching
+     * document is ranked, even if the ranked terms give it a zero score.
+     * 
+     * @param snapshot The statistics of the searched snapshot
+     * @param termIds The term IDs of the query terms
+     * @param parsedQuery The parsed query with its query tree
+     * @param topK Number of top results to return
+     * @param statistics Execution counters to update
+     * @return The top K document scores, empty if no document matches, or null if the index has
+     *         no positions for a phrase or NEAR clause
+     */
+    private List<DocumentScore> searchMatching(SnapshotStatistics snapshot, int[] termIds, ParsedQuery parsedQuery,
+                                               int topK, QueryStatistics statistics) {
+        IndexSnapshot index = snapshot.index;
+        DocIdIterator matches;
+        try {
+            matches = parsedQuery.matcher(index);
+        } catch (IllegalStateException e) {
+            System.err.println("Error: cannot evaluate the query operators, ranking their terms without them: "
+                    + e.getMessage());
+            return null;
+        }
+        
+        TopKCollector collector = new TopKCollector(Math.max(0, topK));
+        int matchCount = 0;
+        for (int docId = matches.nextDoc(); docId != DocIdIterator.NO_MORE_DOCS; docId = matches.nextDoc()) {
+            collector.offer(docId, computeBM25Score(snapshot, termIds, docId));
+            matchCount++;
+            if (statistics.isPastDeadline()) {
+                break;
+            }
+        }
+        for (int termId : termIds) {
+            statistics.addPostingsTotal(termId >= 0 ? index.getDocumentFrequency(termId) : 0);
+        }
+        statistics.addDocumentsScored(matchCount);
+        statistics.addDocumentsMatched(matchCount);
+        statistics.setExecution("MATCHING");
+        
+        return collector.toDocumentScores(index::getDocument, "BM25");
+    }
+    
+    /**
+     * Scores every document in the collection against the query.
+     * 
+     * @param snapshot The statistics of the searched snapshot
+     * @param termIds The term IDs of the query terms
+     * @param topK Number of top results to return
+     * @param statistics Execution counters to update
+     * @return The top K document scores
+     */
+    private List<DocumentScore> searchExhaustive(SnapshotStatistics snapshot, int[] termIds, int topK,
+                                                 QueryStatistics statistics) {
+        IndexSnapshot index = snapshot.index;
+        int documentCount = snapshot.documentStatistics.getDocumentCount();
+        for (int termId : termIds) {
+            int df = termId >= 0 ? index.getDocumentFrequency(termId) : 0;
+            statistics.addPostingsTotal(df);
+            statistics.addPostingsScored(df);
+        }
+        
+        // Keep only the top K results while scoring
+        TopKCollector collector;
+        if (parallelScorer.shouldSplit((long) documentCount * termIds.length, documentCount)) {
+            collector = parallelScorer.score(documentCount, topK, statistics, (fromDoc, toDoc, rangeStatistics) -> {
+                TopKCollector hits = new TopKCollector(Math.max(0, topK));
+                rangeStatistics.addDocumentsMatched(
+                        scoreExhaustive(snapshot, termIds, fromDoc, toDoc, hits, rangeStatistics));
+                return hits;
+            });
+        } else {
+            collector = new TopKCollector(Math.max(0, topK));
+            statistics.addDocumentsMatched(scoreExhaustive(snapshot, termIds, 0, documentCount, collector,
+                    statistics));
+        }
+        
+        return collector.toDocumentScores(index::getDocument, "BM25");
+    }
+    
+    /**
+     * Scores every document of a document ID range against the query.
+     * 
+     * @param snapshot The statistics of the searched snapshot
+     * @param termIds The term IDs of the query terms
+     * @param fromDoc First document ID of the range
+     * @param toDoc Document ID after the range
+     * @param collector Receives the hits
+     * @param statistics Execution counters to update
+     * @return The number of matching documents
+     */
+    private int scoreExhaustive(SnapshotStatistics snapshot, int[] termIds, int fromDoc, int toDoc,
+                                TopKCollector collector, QueryStatistics statistics) {
+        int matchCount = 0;
         
         // Score each document
-        for (int docId = 0; docId < allDocs.size(); docId++) {
-            Document doc = allDocs.get(docId);
-            double score = computeBM25Score(queryTerms, doc, docId);
+        int docId = fromDoc;
+        for (; docId < toDoc && !statistics.isPastDeadline(); docId++) {
+            double score = computeBM25Score(snapshot, termIds, docId);
             
             // Add to results if score is positive and above threshold
             if (score > 0.01) {
-                results.add(new DocumentScore(doc, score, "BM25"));
-                
-                // Debug log for matching documents
-                System.out.println("Match found: " + doc.getTitle() + " (score: " + score + ")");
+                collector.offer(docId, score);
+                matchCount++;
+            }
+        }
+        statistics.addDocumentsScored(docId - fromDoc);
+        return matchCount;
+    }
+    
+    /**
+     * Scores the query term-at-a-time: the postings of each query term are walked
+     * once and their contributions are added into a per-document accumulator.
+     * Only documents that contain at least one query term are ever touched.
+     * 
+     * @param snapshot The statistics of the searched snapshot
+     * @param termIds The term IDs of the query terms
+     * @param topK Number of top results to return
+     * @param statistics Execution counters to update
+     * @return The top K document scores
+     */
+    private List<DocumentScore> searchTermAtATime(SnapshotStatistics snapshot, int[] termIds, int topK,
+                                                  QueryStatistics statistics) {
+        IndexSnapshot index = snapshot.index;
+        int documentCount = index.getDocumentCount();
+        long postingsVolume = 0;
+        for (int termId : termIds) {
+            if (termId >= 0) {
+                int df = index.getDocumentFrequency(termId);
+                statistics.addPostingsTotal(df);
+                postingsVolume += df;
             }
         }
         
-        // Sort by score (descending)
-        results.sort(Comparator.comparing(DocumentScore::getScore).reversed());
-        System.out.println("Found " + results.size() + " matching documents");
+        // A pooled accumulator of another collection size is dropped
+        Accumulator polled = accumulators.poll();
+        while (polled != null && polled.scores.length != documentCount) {
+            polled = accumulators.poll();
+        }
+        Accumulator scratch = polled != null ? polled : new Accumulator(documentCount);
+        TopKCollector collector;
+        if (parallelScorer.shouldSplit(postingsVolume, documentCount)) {
+            // The ranges share the accumulator: each one only touches the documents of its range
+            collector = parallelScorer.score(documentCount, topK, statistics, (fromDoc, toDoc, rangeStatistics) -> {
+                TopKCollector hits = new TopKCollector(Math.max(0, topK));
+                rangeStatistics.addDocumentsMatched(
+                        scoreTermAtATime(snapshot, termIds, scratch, fromDoc, toDoc, hits, rangeStatistics));
+                return hits;
+            });
+        } else {
+            collector = new TopKCollector(Math.max(0, topK));
+            statistics.addDocumentsMatched(scoreTermAtATime(snapshot, termIds, scratch, 0, documentCount, collector,
+                    statistics));
+        }
+        // Every touched accumulator was reset, so the next query can reuse it; a
+        // query that failed halfway does not give its accumulator back
+        accumulators.offer(scratch);
+        return collector.toDocumentScores(index::getDocument, "BM25");
+    }
+    
+    /**
+     * Accumulates the scores of a document ID range term-at-a-time, then offers
+     * the touched documents to the collector and resets their accumulators.
+     * 
+     * @param snapshot The statistics of the searched snapshot
+     * @param termIds The term IDs of the query terms
+     * @param accumulator Scores, all zero, and touched documents; the range only uses its own slots
+     * @param fromDoc First document ID of the range
+     * @param toDoc Document ID after the range
+     * @param collector Receives the hits
+     * @param statistics Execution counters to update
+     * @return The number of matching documents
+     */
+    private int scoreTermAtATime(SnapshotStatistics snapshot, int[] termIds, Accumulator accumulator,
+                                 int fromDoc, int toDoc, TopKCollector collector, QueryStatistics statistics) {
+        IndexSnapshot index = snapshot.index;
+        double[] scores = accumulator.scores;
+        int[] touchedDocs = accumulator.touchedDocs;
+        int touchedEnd = fromDoc;  // the range records its touched documents from touchedDocs[fromDoc]
+        long postingsScored = 0;
         
-        // Limit to top K results
-        List<DocumentScore> topResults = results.stream()
-                .limit(topK)
-                .collect(Collectors.toList());
+        // Terms are processed in the same order as the exhaustive scorer so that
+        // every document's sum is accumulated identically
+        for (int termId : termIds) {
+            if (termId < 0) {
+                continue;
+            }
+            double idf = snapshot.idf[termId];
+            if (idf <= 0.0 || statistics.isTimedOut()) {
+                continue; // contributes nothing, and keeps every touched accumulator positive
+            }
+            PostingsCursor postings = index.getPostings(termId, statistics);
+            
+            for (int docId = postings.advance(fromDoc); docId < toDoc; docId = postings.nextDoc()) {
+                if (scores[docId] == 0.0) {
+                    touchedDocs[touchedEnd++] = docId;
+                }
+                scores[docId] += computeIndexedTermWeight(snapshot, postings.termFrequency(), docId, idf);
+                postingsScored++;
+                if (statistics.isPastDeadline()) {
+                    break; // the remaining postings and terms are not scored
+                }
+            }
+        }
+        statistics.addPostingsScored(postingsScored);
+        statistics.addDocumentsScored(touchedEnd - fromDoc);
         
-        long endTime = System.currentTimeMillis();
-        long executionTime = endTime - startTime;
+        // Select the top K candidates and reset the accumulator; the collector
+        // breaks ties by document ID, so the visiting order does not matter
+        int matchCount = 0;
+        for (int i = fromDoc; i < touchedEnd; i++) {
+            int docId = touchedDocs[i];
+            double score = scores[docId];
+            scores[docId] = 0.0;
+            if (score > 0.01) {
+                collector.offer(docId, score);
+                matchCount++;
+            }
+        }
+        return matchCount;
+    }
+    
+    /**
+     * Evaluates the query score-at-a-time over the impact index, highest impacts
+     * first, until the postings budget runs out. While the impact index of the
+     * snapshot is not built yet, the query is evaluated with Block-Max WAND.
+     * 
+     * @param snapshot The statistics of the searched snapshot
+     * @param termIds The term IDs of the query terms
+     * @param topK Number of top results to return
+     * @param statistics Execution counters to update
+     * @return The top K document scores, with approximate BM25 scores
+     */
+    private List<DocumentScore> searchScoreAtATime(SnapshotStatistics snapshot, int[] termIds, int topK,
+                                                   QueryStatistics statistics) {
+        ImpactIndex impacts = snapshot.impacts.index;
+        if (impacts == null || impacts.getBits() != impactBits) {
+            scheduleImpactIndex(snapshot);
+            statistics.setExecution(ExecutionMode.BLOCK_MAX_WAND + " (impact index not built yet)");
+            return searchWand(snapshot, termIds, topK, true, statistics);
+        }
+        long postingsBudget = this.postingsBudget;
+        ScoreAtATimeEvaluator evaluator = scoreAtATime.poll();
+        if (evaluator == null) {
+            evaluator = new ScoreAtATimeEvaluator();
+        }
+        TopKCollector hits = evaluator.evaluate(impacts, termIds, topK, postingsBudget, statistics);
+        scoreAtATime.offer(evaluator);
+        return hits.toDocumentScores(snapshot.index::getDocument, "BM25");
+    }
+    
+    /**
+     * Waits until the impact index of the current snapshot is built with the
+     * current number of impact bits, building it if needed. SCORE_AT_A_TIME
+     * queries from then on search it.
+     * 
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void waitForImpactIndex() throws InterruptedException {
+        SnapshotStatistics snapshot = statisticsFor(indexer.snapshot());
+        scheduleImpactIndex(snapshot);
+        try {
+            impactExecutor().submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Impact index thread failed", e.getCause());
+        }
+    }
+    
+    /**
+     * Schedules the impact index of computed statistics in SCORE_AT_A_TIME mode.
+     */
+    private void scheduleImpactIndexIfNeeded(SnapshotStatistics snapshot) {
+        if (executionMode == ExecutionMode.SCORE_AT_A_TIME && snapshot.documentStatistics != null) {
+            scheduleImpactIndex(snapshot);
+        }
+    }
+    
+    /**
+     * Builds the impact index of a snapshot with the current number of impact bits
+     * on the impact thread, unless it is built or already scheduled.
+     * 
+     * @param snapshot The snapshot statistics
+     */
+    private void scheduleImpactIndex(SnapshotStatistics snapshot) {
+        int bits = impactBits;
+        Impacts impacts = snapshot.impacts;
+        synchronized (impacts) {
+            ImpactIndex built = impacts.index;
+            if ((built != null && built.getBits() == bits) || impacts.scheduledBits == bits) {
+                return;
+            }
+            impacts.scheduledBits = bits;
+        }
+        impactExecutor().execute(() -> {
+            try {
+                impacts.index = buildImpactIndex(snapshot, bits);
+            } catch (RuntimeException e) {
+                System.err.println("Error building impact index: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                synchronized (impacts) {
+                    if (impacts.scheduledBits == bits) {
+                        impacts.scheduledBits = 0;
+                    }
+                }
+            }
+        });
+    }
+    
+    private synchronized ExecutorService impactExecutor() {
+        if (impactExecutor == null) {
+            impactExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "impact-index-builder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return impactExecutor;
+    }
+    
+    /**
+     * Builds the impact index of a snapshot from the BM25 term weights.
+     * 
+     * @param snapshot The snapshot statistics
+     * @param impactBits Bits per impact
+     * @return The impact index
+     */
+    private ImpactIndex buildImpactIndex(SnapshotStatistics snapshot, int impactBits) {
+        long start = System.currentTimeMillis();
+        ImpactIndex impacts = ImpactIndex.build(snapshot.index,
+                termId -> termScorer(snapshot.idf[termId], snapshot.avgDocLength), impactBits);
+        System.out.println("Built " + impactBits + "-bit impact index: " + impacts.getPostingCount()
+                + " postings, " + (impacts.sizeInBytes() >> 10) + " KB, in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return impacts;
+    }
+    
+    /**
+     * Evaluates the query document-at-a-time with WAND or Block-Max WAND.
+     * Only the final top K documents are materialized.
+     * 
+     * @param snapshot The statistics of the searched snapshot
+     * @param termIds The term IDs of the query terms
+     * @param topK Number of top results to return
+     * @param blockMax True to also prune with the per-block upper bounds
+     * @param statistics Execution counters to update
+     * @return The top K document scores
+     */
+    private List<DocumentScore> searchWand(SnapshotStatistics snapshot, int[] termIds, int topK, boolean blockMax,
+                                           QueryStatistics statistics) {
+        IndexSnapshot index = snapshot.index;
+        int[] scoredTermIds = new int[termIds.length];
+        TermScorer[] scorers = new TermScorer[termIds.length];
+        double[] termUpperBounds = new double[termIds.length];
+        int count = 0;
+        long postingsVolume = 0;
         
-        // Create a QueryResult with the BM25 model name
-        return new QueryResult(query, processedQuery, topResults, executionTime, "BM25");
+        // Keep the query term order so that scores are summed like the exhaustive scorer
+        for (int termId : termIds) {
+            if (termId < 0) {
+                continue;
+            }
+            if (snapshot.idf[termId] <= 0.0) {
+                statistics.addPostingsTotal(index.getDocumentFrequency(termId));
+                continue; // contributes nothing to any document
+            }
+            scoredTermIds[count] = termId;
+            scorers[count] = termScorer(snapshot.idf[termId], snapshot.avgDocLength);
+            termUpperBounds[count++] = snapshot.upperBounds[termId];
+            postingsVolume += index.getDocumentFrequency(termId);
+        }
+        int[] queryTermIds = Arrays.copyOf(scoredTermIds, count);
+        TermScorer[] queryScorers = Arrays.copyOf(scorers, count);
+        double[] upperBounds = Arrays.copyOf(termUpperBounds, count);
+        
+        WandEvaluator evaluator = new WandEvaluator(blockMax);
+        int documentCount = index.getDocumentCount();
+        TopKCollector hits;
+        if (parallelScorer.shouldSplit(postingsVolume, documentCount)) {
+            // Every range walks its own cursors and prunes against its own top K
+            if (topK > 0) {
+                statistics.addPostingsTotal(postingsVolume);
+            }
+            hits = parallelScorer.score(documentCount, topK, statistics, (fromDoc, toDoc, rangeStatistics) ->
+                    evaluator.evaluate(openCursors(index, queryTermIds, rangeStatistics), queryScorers, upperBounds,
+                            snapshot.documentStatistics::length, fromDoc, toDoc, topK, 0.01, rangeStatistics));
+        } else {
+            hits = evaluator.evaluate(openCursors(index, queryTermIds, statistics), queryScorers, upperBounds,
+                    snapshot.documentStatistics::length, topK, 0.01, statistics);
+        }
+        
+        return hits.toDocumentScores(index::getDocument, "BM25");
+    }
+    
+    /**
+     * Opens a postings cursor per term.
+     * 
+     * @param index The searched snapshot
+     * @param termIds The term IDs
+     * @param statistics Counts the blocks read through the block cache
+     * @return The cursors, in term order
+     */
+    private static PostingsCursor[] openCursors(IndexSnapshot index, int[] termIds, QueryStatistics statistics) {
+        PostingsCursor[] cursors = new PostingsCursor[termIds.length];
+        for (int i = 0; i < termIds.length; i++) {
+            cursors[i] = index.getPostings(termIds[i], statistics);
+        }
+        return cursors;
+    }
+    
+    /**
+     * Gets the BM25 term weight function of a term, e.g. to prune or impact-order
+     * the postings offline.
+     * 
+     * @param termId Term ID in the snapshot the model was last initialized or searched with
+     * @return The term scorer
+     */
+    public TermScorer getTermScorer(int termId) {
+        SnapshotStatistics snapshot = statistics;
+        return termScorer(snapshot.idf[termId], snapshot.avgDocLength);
+    }
+    
+    /**
+     * Creates the scoring function of a term for the postings cursors.
+     * 
+     * @param idf IDF value for the term
+     * @param avgDocLength Average document length of the snapshot
+     * @return The term scorer
+     */
+    private TermScorer termScorer(double idf, double avgDocLength) {
+        return (tf, docLength) -> computeBM25TermWeight(tf, docLength, idf, avgDocLength);
+    }
+    
+    /**
+     * Computes the largest BM25 weight a term can reach in any document,
+     * as the maximum of its block upper bounds.
+     * 
+     * @param index The snapshot
+     * @param termId The term ID
+     * @param scorer The term's weight function
+     * @return The term's score upper bound
+     */
+    private static double computeUpperBound(IndexSnapshot index, int termId, TermScorer scorer) {
+        PostingsCursor cursor = index.getPostings(termId);
+        double upperBound = cursor.blockUpperBound(scorer);
+        for (int last = cursor.advanceShallow(0); last != PostingsCursor.NO_MORE_DOCS;
+                last = cursor.advanceShallow(last + 1)) {
+            upperBound = Math.max(upperBound, cursor.blockUpperBound(scorer));
+        }
+        return upperBound;
     }
     
     /**
      * Computes the BM25 score for a document with respect to a query.
      * 
-     * @param queryTerms The query terms with their frequencies
-     * @param doc The document to score
-     * @param docId The document ID for statistics lookup
+     * @param snapshot The statistics of the searched snapshot
+     * @param termIds The term IDs of the query terms
+     * @param docId The document ID
      * @return The BM25 score
      */
-    private double computeBM25Score(Map<String, Integer> queryTerms, Document doc, int docId) {
+    private double computeBM25Score(SnapshotStatistics snapshot, int[] termIds, int docId) {
+        DocumentStatistics documentStatistics = snapshot.documentStatistics;
         double score = 0.0;
-        double docLength = documentLengths.getOrDefault(docId, (double) doc.getLength());
-        Map<String, Integer> docTermFreqs = doc.getTermFrequencies();
         
         // For each term in the query
-        for (String term : queryTerms.keySet()) {
-            // Skip terms not in the document
-            if (!docTermFreqs.containsKey(term)) {
+        for (int termId : termIds) {
+            // Skip terms not in the index or not in the document
+            int position = termId >= 0 ? documentStatistics.findTerm(docId, termId) : -1;
+            if (position < 0) {
                 continue;
             }
             
-            int tf = docTermFreqs.get(term);
-            double idf = computeIdf(term);
-            
             // Compute BM25 term weight and add to score
-            score += computeBM25TermWeight(tf, docLength, idf);
+            score += computeIndexedTermWeight(snapshot, documentStatistics.termFrequency(position), docId,
+                    snapshot.idf[termId]);
         }
         
         return score;
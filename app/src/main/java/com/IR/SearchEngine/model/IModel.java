@@ -33,6 +33,16 @@ public interface IModel {
      */
     String getModelName();
     
+    /**
+     * Describes the parameters that change the model's results, e.g. to tell
+     * cached results of differently configured models apart.
+     * 
+     * @return The parameters, empty if the model has none
+     */
+    default String getConfiguration() {
+        return "";
+    }
+    
     /**
      * Initializes the model with necessary data.
      * Called after documents have been indexed.
@@ -49,6 +59,21 @@ public interface IModel {
      */
     QueryResult search(String query, String processedQuery, int topK);
     
+    /**
+     * Executes a search that must answer by a deadline. A model that reaches the
+     * deadline stops scoring and returns the best results found so far, flagged
+     * as partial (see QueryResult#isPartial). By default the deadline is ignored.
+     * 
+     * @param query Original query string
+     * @param processedQuery Preprocessed query string
+     * @param topK Number of top results to return
+     * @param deadlineNanos The deadline, as a System.nanoTime() value
+     * @return The search results, possibly partial
+     */
+    default QueryResult search(String query, String processedQuery, int topK, long deadlineNanos) {
+        return search(query, processedQuery, topK);
+    }
+    
     /**
      * Computes a document vector based on the model's scoring mechanism.
      * 
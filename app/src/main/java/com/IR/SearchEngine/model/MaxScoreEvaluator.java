@@ -0,0 +1,201 @@
+package com.IR.SearchEngine.model;
+
+import com.IR.SearchEngine.data.QueryStatistics;
+import com.IR.SearchEngine.indexing.PostingsCursor;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Document-at-a-time top-K evaluator using MaxScore.
+ *
+ * Query terms are ordered by their score upper bound. The longest prefix of that
+ * order whose bounds sum to no more than the top-K threshold is "non-essential":
+ * a document that contains only those terms can never enter the results. Only
+ * the essential terms' postings generate candidates; the non-essential terms are
+ * looked up with advance() while the candidate can still beat the threshold.
+ *
+ * Responsibilities:
+ * - Select the top K documents of a disjunctive query without scoring every candidate
+ * - Count scored and skipped postings for the query statistics
+ *
+ * Implementation notes:
+ * - Pruning works on approximate contributions (e.g. computed with float norms);
+ *   candidates that survive are rescored with the exact scoring function, so the
+ *   returned scores are exactly those of the exhaustive scorer
+ * - Bounds are compared with a relative slack that covers the approximation error
+ * - Documents are visited in increasing ID order and must strictly beat the K-th
+ *   score, so ties keep the lower ID, as in a stable sort of the exhaustive results
+ * - At the query's deadline (see QueryStatistics) it stops and returns the
+ *   top K of the documents visited so far
+ *
+ * @author alexhere
+ */
+public class MaxScoreEvaluator {
+
+    // Relative slack applied to approximate scores and bounds before pruning
+    private static final double BOUND_SLACK = 1e-6;
+
+    /**
+     * Approximate score contribution of one posting.
+     */
+    @FunctionalInterface
+    public interface TermContribution {
+
+        /**
+         * Computes the contribution of a query term to a document's score.
+         *
+         * @param term Index of the query term
+         * @param docId Document ID
+         * @param termFrequency Frequency of the term in the document
+         * @return The contribution, never above the term's upper bound
+         */
+        double contribution(int term, int docId, int termFrequency);
+    }
+
+    /**
+     * Evaluates a query.
+     *
+     * @param cursors Fresh postings cursors, one per query term
+     * @param upperBounds Upper bound of each term's contribution over the whole collection
+     * @param contributions Approximate contribution of a posting, used for pruning
+     * @param exactScore Exact score of a document, computed for candidates that survive pruning
+     * @param topK Number of results to keep
+     * @param minScore Results must score strictly above this value
+     * @param statistics Counters to update
+     * @return The top K hits
+     */
+    public TopKCollector evaluate(PostingsCursor[] cursors, double[] upperBounds,
+                                  TermContribution contributions, IntToDoubleFunction exactScore,
+                                  int topK, double minScore, QueryStatistics statistics) {
+        if (topK > 0) {
+            for (PostingsCursor cursor : cursors) {
+                statistics.addPostingsTotal(cursor.docFrequency());
+            }
+        }
+        return evaluate(cursors, upperBounds, contributions, exactScore, 0, PostingsCursor.NO_MORE_DOCS, topK,
+                minScore, statistics);
+    }
+
+    /**
+     * Evaluates a query over the documents whose IDs are in [fromDoc, toDoc),
+     * e.g. one range of a query scored in parallel (see ParallelScorer). The
+     * postings totals are left to the caller, as the cursors only walk part of
+     * their postings.
+     *
+     * @param cursors Fresh postings cursors, one per query term
+     * @param upperBounds Upper bound of each term's contribution over the whole collection
+     * @param contributions Approximate contribution of a posting, used for pruning
+     * @param exactScore Exact score of a document, computed for candidates that survive pruning
+     * @param fromDoc First document ID of the range
+     * @param toDoc Document ID after the range
+     * @param topK Number of results to keep
+     * @param minScore Results must score strictly above this value
+     * @param statistics Counters to update
+     * @return The top K hits of the range
+     */
+    public TopKCollector evaluate(PostingsCursor[] cursors, double[] upperBounds,
+                                  TermContribution contributions, IntToDoubleFunction exactScore,
+                                  int fromDoc, int toDoc, int topK, double minScore, QueryStatistics statistics) {
+        int n = cursors.length;
+        TopKCollector hits = new TopKCollector(Math.max(0, topK));
+        if (n == 0 || topK <= 0) {
+            return hits;
+        }
+
+        // Terms by ascending upper bound; boundPrefix[i] is the bound sum of the first i terms
+        int[] byBound = new int[n];
+        for (int i = 0; i < n; i++) {
+            byBound[i] = i;
+            cursors[i].advance(fromDoc);
+        }
+        for (int i = 1; i < n; i++) {
+            int term = byBound[i];
+            int j = i - 1;
+            while (j >= 0 && upperBounds[byBound[j]] > upperBounds[term]) {
+                byBound[j + 1] = byBound[j];
+                j--;
+            }
+            byBound[j + 1] = term;
+        }
+        double[] boundPrefix = new double[n + 1];
+        for (int i = 0; i < n; i++) {
+            boundPrefix[i + 1] = boundPrefix[i] + upperBounds[byBound[i]];
+        }
+
+        double threshold = minScore;
+        double limit = slackLimit(threshold);
+        int firstEssential = firstEssential(boundPrefix, limit, 0);
+        long postingsScored = 0;
+        long documentsScored = 0;
+
+        while (firstEssential < n && !statistics.isPastDeadline()) {
+            // The next candidate is the smallest document among the essential terms
+            int doc = PostingsCursor.NO_MORE_DOCS;
+            for (int i = firstEssential; i < n; i++) {
+                doc = Math.min(doc, cursors[byBound[i]].docId());
+            }
+            if (doc >= toDoc) {
+                break;
+            }
+
+            double score = 0.0;
+            for (int i = firstEssential; i < n; i++) {
+                int term = byBound[i];
+                PostingsCursor cursor = cursors[term];
+                if (cursor.docId() == doc) {
+                    score += contributions.contribution(term, doc, cursor.termFrequency());
+                    postingsScored++;
+                    cursor.nextDoc();
+                }
+            }
+
+            // Add the non-essential terms, strongest first, while the document can still qualify
+            boolean pruned = false;
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                if (score + boundPrefix[i + 1] <= limit) {
+                    pruned = true;
+                    break;
+                }
+                int term = byBound[i];
+                PostingsCursor cursor = cursors[term];
+                if (cursor.advance(doc) == doc) {
+                    score += contributions.contribution(term, doc, cursor.termFrequency());
+                    postingsScored++;
+                }
+            }
+            if (pruned || score <= limit) {
+                continue;
+            }
+
+            double exact = exactScore.applyAsDouble(doc);
+            documentsScored++;
+            if (exact > threshold) {
+                hits.offer(doc, exact);
+                if (hits.isFull()) {
+                    threshold = Math.max(minScore, hits.minScore());
+                    limit = slackLimit(threshold);
+                    firstEssential = firstEssential(boundPrefix, limit, firstEssential);
+                }
+            }
+        }
+
+        statistics.addPostingsScored(postingsScored);
+        statistics.addDocumentsScored(documentsScored);
+        return hits;
+    }
+
+    private double slackLimit(double threshold) {
+        return threshold - Math.abs(threshold) * BOUND_SLACK;
+    }
+
+    /**
+     * Extends the non-essential prefix while its bound sum cannot beat the limit.
+     */
+    private int firstEssential(double[] boundPrefix, double limit, int from) {
+        int first = from;
+        while (first < boundPrefix.length - 1 && boundPrefix[first + 1] <= limit) {
+            first++;
+        }
+        return first;
+    }
+}
@@ -0,0 +1,216 @@
+package com.IR.SearchEngine.model;
+
+import com.IR.SearchEngine.data.QueryStatistics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scores one query on several threads by splitting the document ID space into
+ * ranges. Every range is scored on a ForkJoinPool into its own top-K heap, and
+ * the heaps are merged at the end.
+ *
+ * Splitting only pays off when a query has a lot of postings to walk; short
+ * queries would lose more to task overhead than they gain. Queries are
+ * therefore only split when their postings volume reaches a threshold.
+ *
+ * Responsibilities:
+ * - Decide whether a query is worth splitting, from its postings volume
+ * - Score the ranges in parallel and merge their top K hits
+ * - Merge the per-range execution counters into the query's statistics, and
+ *   record there how many ranges the query was split into
+ *
+ * Implementation notes:
+ * - Rank-identical to scoring the whole ID space at once: each document is
+ *   scored exactly as before, in its own range, and TopKCollector orders hits
+ *   by score, then by document ID. The order is total, so the merged top K does
+ *   not depend on how the ID space was split
+ * - Each range gets its own QueryStatistics, because they are not thread-safe.
+ *   They share the query's deadline and are added to the query's statistics
+ *   once every range is done
+ * - Ranges are about {@value #RANGES_PER_THREAD} per pool thread, so that fast
+ *   ranges leave room for work stealing, and at least {@value #MIN_RANGE_DOCS}
+ *   documents long
+ * - Queries are never split when the pool has a single thread, as the common
+ *   pool does on a machine with one or two cores
+ * - Thread-safe: the settings are volatile
+ *
+ * Usage:
+ * <pre>
+ * if (parallelScorer.shouldSplit(postingsVolume, documentCount)) {
+ *     TopKCollector hits = parallelScorer.score(documentCount, topK, statistics,
+ *             (fromDoc, toDoc, rangeStatistics) -&gt; ...);
+ * }
+ * </pre>
+ *
+ * @author alexhere
+ */
+public class ParallelScorer {
+
+    /**
+     * Default number of postings from which a query is split.
+     */
+    public static final long DEFAULT_POSTINGS_THRESHOLD = 1_000_000;
+
+    private static final int RANGES_PER_THREAD = 4;
+    private static final int MIN_RANGE_DOCS = 4096;
+
+    /**
+     * Scores the documents of one range.
+     */
+    @FunctionalInterface
+    public interface RangeScorer {
+
+        /**
+         * Scores the documents whose IDs are in [fromDoc, toDoc).
+         *
+         * @param fromDoc First document ID of the range
+         * @param toDoc Document ID after the range
+         * @param statistics Counters of the range, with the query's deadline
+         * @return The top K hits of the range
+         */
+        TopKCollector score(int fromDoc, int toDoc, QueryStatistics statistics);
+    }
+
+    private volatile ForkJoinPool pool;
+    private volatile long postingsThreshold;
+
+    /**
+     * Creates a scorer that splits queries of at least
+     * {@value #DEFAULT_POSTINGS_THRESHOLD} postings on the common pool.
+     */
+    public ParallelScorer() {
+        this.pool = ForkJoinPool.commonPool();
+        this.postingsThreshold = DEFAULT_POSTINGS_THRESHOLD;
+    }
+
+    /**
+     * Sets the pool the ranges are scored on.
+     *
+     * @param pool The pool
+     * @throws IllegalArgumentException If the pool is null
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Gets the pool the ranges are scored on.
+     *
+     * @return The pool
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Sets the postings volume from which a query is split.
+     *
+     * @param postingsThreshold Minimum postings of a split query, Long.MAX_VALUE to never split
+     * @throws IllegalArgumentException If the threshold is negative
+     */
+    public void setPostingsThreshold(long postingsThreshold) {
+        if (postingsThreshold < 0) {
+            throw new IllegalArgumentException("Postings threshold cannot be negative: " + postingsThreshold);
+        }
+        this.postingsThreshold = postingsThreshold;
+    }
+
+    /**
+     * Gets the postings volume from which a query is split.
+     *
+     * @return Minimum postings of a split query
+     */
+    public long getPostingsThreshold() {
+        return postingsThreshold;
+    }
+
+    /**
+     * Tells whether a query is worth splitting.
+     *
+     * @param postingsVolume Postings the query walks, or documents it scores
+     * @param documentCount Number of documents of the searched snapshot
+     * @return True if the query should be scored with score()
+     */
+    public boolean shouldSplit(long postingsVolume, int documentCount) {
+        return postingsVolume >= postingsThreshold && pool.getParallelism() > 1
+                && documentCount >= 2 * MIN_RANGE_DOCS;
+    }
+
+    /**
+     * Scores the document ID ranges in parallel and merges their hits.
+     *
+     * @param documentCount Number of documents; IDs run from 0 to documentCount - 1
+     * @param topK Number of hits to keep
+     * @param statistics Counters of the query, which receive the ranges' counters
+     * @param scorer Scores one range
+     * @return The top K hits over all ranges
+     */
+    public TopKCollector score(int documentCount, int topK, QueryStatistics statistics, RangeScorer scorer) {
+        ForkJoinPool pool = this.pool;
+        int rangeCount = (int) Math.max(1, Math.min((long) pool.getParallelism() * RANGES_PER_THREAD,
+                documentCount / MIN_RANGE_DOCS));
+        TopKCollector[] rangeHits = new TopKCollector[rangeCount];
+        QueryStatistics[] rangeStatistics = new QueryStatistics[rangeCount];
+        for (int range = 0; range < rangeCount; range++) {
+            rangeStatistics[range] = statistics.forRange();
+        }
+        pool.invoke(new RangeTask(scorer, documentCount, rangeCount, 0, rangeCount, rangeHits, rangeStatistics));
+
+        TopKCollector hits = new TopKCollector(Math.max(0, topK));
+        for (int range = 0; range < rangeCount; range++) {
+            TopKCollector collected = rangeHits[range];
+            for (int i = 0; i < collected.size(); i++) {
+                hits.offer(collected.docId(i), collected.score(i));
+            }
+            statistics.add(rangeStatistics[range]);
+        }
+        statistics.addDocumentRanges(rangeCount);
+        return hits;
+    }
+
+    /**
+     * Scores the ranges [firstRange, endRange), halving the span until one range is left.
+     */
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // Tasks are never serialized; RecursiveAction is Serializable only by inheritance
+        private final transient RangeScorer scorer;
+        private final int documentCount;
+        private final int rangeCount;
+        private final int firstRange;
+        private final int endRange;
+        private final transient TopKCollector[] rangeHits;
+        private final transient QueryStatistics[] rangeStatistics;
+
+        RangeTask(RangeScorer scorer, int documentCount, int rangeCount, int firstRange, int endRange,
+                  TopKCollector[] rangeHits, QueryStatistics[] rangeStatistics) {
+            this.scorer = scorer;
+            this.documentCount = documentCount;
+            this.rangeCount = rangeCount;
+            this.firstRange = firstRange;
+            this.endRange = endRange;
+            this.rangeHits = rangeHits;
+            this.rangeStatistics = rangeStatistics;
+        }
+
+        @Override
+        protected void compute() {
+            if (endRange - firstRange > 1) {
+                int middle = (firstRange + endRange) >>> 1;
+                invokeAll(new RangeTask(scorer, documentCount, rangeCount, firstRange, middle, rangeHits,
+                                rangeStatistics),
+                        new RangeTask(scorer, documentCount, rangeCount, middle, endRange, rangeHits,
+                                rangeStatistics));
+                return;
+            }
+            int fromDoc = (int) ((long) documentCount * firstRange / rangeCount);
+            int toDoc = (int) ((long) documentCount * (firstRange + 1) / rangeCount);
+            rangeHits[firstRange] = scorer.score(fromDoc, toDoc, rangeStatistics[firstRange]);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.IR.SearchEngine.model;
+
+import com.IR.SearchEngine.data.QueryStatistics;
+import com.IR.SearchEngine.indexing.ImpactIndex;
+
+/**
+ * Anytime score-at-a-time top-K evaluator over an ImpactIndex.
+ *
+ * The impact segments of all query terms are visited in one sequence of
+ * decreasing impact, whatever term they belong to, and every posting adds its
+ * segment's impact to the document's accumulator. The postings that matter most
+ * come first, so the evaluation can stop after a budget of postings and still
+ * return a good approximation of the ranking: the rest of the postings only
+ * carry the smallest contributions.
+ *
+ * Responsibilities:
+ * - Accumulate quantized impacts in decreasing impact order up to a postings budget
+ * - Select the top K accumulators
+ * - Count scored postings for the query statistics
+ *
+ * Implementation notes:
+ * - Scores are sums of quantized impacts times the index scale, so they only
+ *   approximate the exact model scores, even without a budget; ties keep the
+ *   lower document ID
+ * - Segments with the same impact are visited in query term order; a segment cut
+ *   by the budget is scored up to the budget, lowest document IDs first
+ * - Accumulators are ints, reused across queries and reset through the list of
+ *   touched documents, so a query costs its scored postings, not the collection size
+ * - At the query's deadline (see QueryStatistics) it stops like when the
+ *   budget runs out, between two segments
+ * - Not thread-safe; use one evaluator per running query
+ *
+ * @author alexhere
+ */
+public class ScoreAtATimeEvaluator {
+
+    private int[] accumulator = new int[0];
+    private int[] touchedDocs = new int[0];
+
+    /**
+     * Evaluates a query.
+     *
+     * @param impacts The impact index of the searched snapshot
+     * @param termIds The term IDs of the query terms, -1 for terms that are not indexed
+     * @param topK Number of results to keep
+     * @param postingsBudget Maximum number of postings to score
+     * @param statistics Counters to update
+     * @return The top K hits, scored with the dequantized impact sums
+     */
+    public TopKCollector evaluate(ImpactIndex impacts, int[] termIds, int topK, long postingsBudget,
+                                  QueryStatistics statistics) {
+        int documentCount = impacts.getDocumentCount();
+        if (accumulator.length != documentCount) {
+            accumulator = new int[documentCount];
+            touchedDocs = new int[documentCount];
+        }
+
+        // Next segment and end segment of each query term
+        int n = termIds.length;
+        int[] next = new int[n];
+        int[] end = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (termIds[i] >= 0) {
+                next[i] = impacts.termStart(termIds[i]);
+                end[i] = impacts.termEnd(termIds[i]);
+                statistics.addPostingsTotal(impacts.segmentStart(end[i]) - impacts.segmentStart(next[i]));
+            }
+        }
+
+        // Merge the terms' segment lists by decreasing impact until the budget runs out
+        long remaining = postingsBudget;
+        int touchedCount = 0;
+        while (remaining > 0 && !statistics.isPastDeadline()) {
+            int best = -1;
+            for (int i = 0; i < n; i++) {
+                if (next[i] < end[i] && (best < 0 || impacts.impact(next[i]) > impacts.impact(next[best]))) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break; // every posting has been scored
+            }
+            int segment = next[best]++;
+            int impact = impacts.impact(segment);
+            int start = impacts.segmentStart(segment);
+            int stop = start + (int) Math.min(impacts.segmentEnd(segment) - start, remaining);
+            for (int p = start; p < stop; p++) {
+                int docId = impacts.docId(p);
+                if (accumulator[docId] == 0) {
+                    touchedDocs[touchedCount++] = docId;
+                }
+                accumulator[docId] += impact;
+            }
+            remaining -= stop - start;
+        }
+        statistics.addPostingsScored(postingsBudget - remaining);
+        statistics.addDocumentsScored(touchedCount);
+
+        // Select the top K and reset the accumulator
+        TopKCollector hits = new TopKCollector(Math.max(0, topK));
+        double scale = impacts.getScale();
+        for (int i = 0; i < touchedCount; i++) {
+            int docId = touchedDocs[i];
+            hits.offer(docId, accumulator[docId] * scale);
+            accumulator[docId] = 0;
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,205 @@
+package com.IR.SearchEngine.model;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.DocumentScore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Bounded top-K selection over (document ID, score) pairs.
+ * Keeps the best K hits in a fixed-size min-heap of primitive arrays, so a query
+ * costs O(N log K) time and no allocation per candidate; DocumentScore objects
+ * are only created for the final K hits.
+ *
+ * Usage:
+ * <pre>
+ * TopKCollector collector = new TopKCollector(topK);
+ * collector.offer(docId, score);   // for every candidate
+ * List&lt;DocumentScore&gt; results = collector.toDocumentScores(indexer::getDocument, "BM25");
+ * </pre>
+ *
+ * Implementation notes:
+ * - Hits are ordered by score descending, then by document ID ascending. The
+ *   order is total, so the result does not depend on the order of the offers
+ *   and matches a stable sort of candidates visited in ID order
+ * - Not thread-safe; use one collector per query
+ *
+ * @author alexhere
+ */
+public class TopKCollector {
+
+    private final int capacity;
+    private final int[] docIds;
+    private final double[] scores;
+    private int size;
+    private boolean sorted;
+
+    /**
+     * Creates a collector for the best {@code k} hits.
+     *
+     * @param k Number of hits to keep
+     */
+    public TopKCollector(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k cannot be negative: " + k);
+        }
+        this.capacity = k;
+        this.docIds = new int[k];
+        this.scores = new double[k];
+    }
+
+    /**
+     * Offers a hit. It is kept if the collector is not full yet or if it ranks
+     * above the current K-th hit.
+     *
+     * @param docId Document ID
+     * @param score Score of the document
+     * @return True if the hit was kept
+     */
+    public boolean offer(int docId, double score) {
+        if (sorted) {
+            throw new IllegalStateException("Collector has already been sorted");
+        }
+        if (size < capacity) {
+            int i = size++;
+            docIds[i] = docId;
+            scores[i] = score;
+            siftUp(i);
+            return true;
+        }
+        if (capacity > 0 && ranksBelow(scores[0], docIds[0], score, docId)) {
+            docIds[0] = docId;
+            scores[0] = score;
+            siftDown(0, size);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether K hits have been collected.
+     *
+     * @return True if the collector is full
+     */
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Gets the score of the K-th (lowest kept) hit. Only meaningful once the
+     * collector is full: a new hit must beat it to be kept.
+     *
+     * @return The lowest kept score, or negative infinity if nothing is kept
+     */
+    public double minScore() {
+        return size == 0 ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * Gets the number of collected hits.
+     *
+     * @return Hit count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sorts the hits best first. No more hits can be offered afterwards.
+     */
+    public void sortBestFirst() {
+        if (sorted) {
+            return;
+        }
+        // Heapsort: repeatedly move the lowest hit to the end
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        sorted = true;
+    }
+
+    /**
+     * Gets the document ID of the i-th hit (best first after sortBestFirst()).
+     *
+     * @param i Hit index
+     * @return Document ID
+     */
+    public int docId(int i) {
+        return docIds[i];
+    }
+
+    /**
+     * Gets the score of the i-th hit (best first after sortBestFirst()).
+     *
+     * @param i Hit index
+     * @return Score
+     */
+    public double score(int i) {
+        return scores[i];
+    }
+
+    /**
+     * Sorts the hits and materializes them as document scores.
+     *
+     * @param documents Looks up a document by ID
+     * @param scoreType Score type stored in each DocumentScore
+     * @return The hits, best first
+     */
+    public List<DocumentScore> toDocumentScores(IntFunction<Document> documents, String scoreType) {
+        sortBestFirst();
+        List<DocumentScore> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(new DocumentScore(documents.apply(docIds[i]), scores[i], scoreType, docIds[i]));
+        }
+        return results;
+    }
+
+    // True if hit (scoreA, docA) ranks below hit (scoreB, docB)
+    private static boolean ranksBelow(double scoreA, int docA, double scoreB, int docB) {
+        return scoreA < scoreB || (scoreA == scoreB && docA > docB);
+    }
+
+    private boolean lower(int a, int b) {
+        return ranksBelow(scores[a], docIds[a], scores[b], docIds[b]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!lower(i, parent)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= end) {
+                break;
+            }
+            if (child + 1 < end && lower(child + 1, child)) {
+                child++;
+            }
+            if (!lower(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int d = docIds[a];
+        docIds[a] = docIds[b];
+        docIds[b] = d;
+        double s = scores[a];
+        scores[a] = scores[b];
+        scores[b] = s;
+    }
+}
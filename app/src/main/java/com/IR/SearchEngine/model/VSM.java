@@ -7,11 +7,19 @@ package com.IR.SearchEngine.model;
 import com.IR.SearchEngine.data.Document;
 import com.IR.SearchEngine.data.DocumentScore;
 import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.data.QueryStatistics;
+import com.IR.SearchEngine.indexing.DocumentStatistics;
+import com.IR.SearchEngine.indexing.IndexSnapshot;
 import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.indexing.PostingsCursor;
 import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.query.DocIdIterator;
+import com.IR.SearchEngine.query.ParsedQuery;
+import com.IR.SearchEngine.query.QueryParser;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntToDoubleFunction;
 
 /**
  * Implements the Vector Space Model for document retrieval.
@@ -24,9 +32,30 @@ import java.util.stream.Collectors;
  * - Handle document length normalization
  * 
  * Implementation notes:
- * - Uses sparse vector representation for memory efficiency
+ * - Uses sparse vector representation for memory efficiency: document vectors
+ *   share the term IDs of the snapshot's DocumentStatistics forward index and
+ *   keep only a flat array of weights, so scoring never touches Document objects
  * - Implements optimized cosine similarity calculation
  * - Caches document vectors for improved performance
+ * - Query terms are resolved to term IDs once per query
+ * - Each query runs against one IndexSnapshot of the indexer; the document
+ *   vectors are recomputed when the snapshot has more documents
+ * - A search with a deadline (see IModel) stops scoring when it is reached and
+ *   returns the top K of what it scored so far
+ * - Thread-safe: the vectors of a snapshot are computed once into an immutable
+ *   object that concurrent queries share, and the execution mode is volatile
+ * - Two execution modes: EXHAUSTIVE compares the query with every document vector,
+ *   MAX_SCORE (the default) walks the query terms' postings and skips documents
+ *   that cannot enter the top K (see MaxScoreEvaluator). Both rank identically.
+ * - Queries with a large postings volume are split into document ID ranges
+ *   scored in parallel (see ParallelScorer), in both modes, with identical
+ *   rankings. The threshold is set with setParallelThreshold()
+ * - AND, OR, NOT, phrases ("convex hull") and NEAR/k clauses of the original
+ *   query restrict the results to the documents that match its query tree (see
+ *   QueryParser); only those documents are scored, whatever the execution mode.
+ *   If no document matches, the result is empty. Only when a phrase or NEAR
+ *   clause needs positions the index does not have is the query ranked as a
+ *   plain query, which is reported as an error
  * 
  * @author alexhere
  */
@@ -58,10 +87,61 @@ import java.util.stream.Collectors;
  */
 public class VSM implements IModel {
     
+    /**
+     * Query execution strategies. Both produce identical rankings.
+     */
+    public enum ExecutionMode {
+        EXHAUSTIVE,  // cosine similarity against every document vector
+        MAX_SCORE    // postings-driven top-K with MaxScore pruning
+    }
+    
+    /**
+     * Document vectors of one snapshot, precomputed once and never modified, so
+     * that concurrent queries share them without locking.
+     */
+    private static final class SnapshotVectors {
+        final IndexSnapshot index;   // snapshot searched by the query
+        
+        // Document vectors: the terms of each document come from the snapshot's forward
+        // index, the weights are aligned with its positions
+        final DocumentStatistics documentStatistics;
+        final double[] vectorWeights;     // TF-IDF weight by forward index position
+        final double[] vectorNorms;       // indexed by document ID
+        
+        // Pruning statistics, indexed by document ID / term ID
+        final float[] documentNorms;
+        final double[] maxNormalizedWeights;  // max of w(t,d) / |d| over all documents
+        
+        SnapshotVectors(IndexSnapshot index, DocumentStatistics documentStatistics, double[] vectorWeights,
+                        double[] vectorNorms, float[] documentNorms, double[] maxNormalizedWeights) {
+            this.index = index;
+            this.documentStatistics = documentStatistics;
+            this.vectorWeights = vectorWeights;
+            this.vectorNorms = vectorNorms;
+            this.documentNorms = documentNorms;
+            this.maxNormalizedWeights = maxNormalizedWeights;
+        }
+        
+        /**
+         * Shares these vectors with a merged snapshot of the same documents.
+         */
+        SnapshotVectors withIndex(IndexSnapshot merged) {
+            return new SnapshotVectors(merged, documentStatistics, vectorWeights, vectorNorms, documentNorms,
+                    maxNormalizedWeights);
+        }
+    }
+    
     private final Indexer indexer;
     private final Preprocessor preprocessor;
-    private final Map<Integer, Map<String, Double>> documentVectors;
-    private final Map<Integer, Double> documentVectorNorms;
+    private final QueryParser queryParser;  // phrase and NEAR clauses of the original query
+    
+    // Vectors of the last searched snapshot, replaced as a whole
+    private volatile SnapshotVectors vectors;
+    
+    private volatile ExecutionMode executionMode;
+    
+    // Splits queries with many postings into document ranges scored in parallel
+    private final ParallelScorer parallelScorer = new ParallelScorer();
     
     // Weight constants for term frequency variants
     private static final int TF_BINARY = 0;
@@ -100,12 +180,62 @@ public class VSM implements IModel {
         
         this.indexer = indexer;
         this.preprocessor = preprocessor;
-        this.documentVectors = new HashMap<>();
-        this.documentVectorNorms = new HashMap<>();
+        this.queryParser = new QueryParser(preprocessor);
+        this.executionMode = ExecutionMode.MAX_SCORE;
         this.tfWeightingScheme = tfWeightingScheme;
         
         // Precompute document vectors for all documents in the index
-        precomputeAllDocumentVectors();
+        this.vectors = precomputeAllDocumentVectors(indexer.snapshot());
+    }
+    
+    /**
+     * Sets the query execution strategy.
+     * 
+     * @param executionMode The execution mode
+     */
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+    
+    /**
+     * Gets the query execution strategy.
+     * 
+     * @return The execution mode
+     */
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+    
+    /**
+     * Sets the postings volume from which a query is scored on several threads,
+     * one document ID range per task. An exhaustive query counts one posting per
+     * document and query term.
+     * 
+     * @param postingsThreshold Minimum postings of a parallel query, Long.MAX_VALUE to never split
+     * @throws IllegalArgumentException If the threshold is negative
+     */
+    public void setParallelThreshold(long postingsThreshold) {
+        parallelScorer.setPostingsThreshold(postingsThreshold);
+    }
+    
+    /**
+     * Gets the postings volume from which a query is scored on several threads.
+     * 
+     * @return Minimum postings of a parallel query
+     */
+    public long getParallelThreshold() {
+        return parallelScorer.getPostingsThreshold();
+    }
+    
+    /**
+     * Sets the pool that scores the document ranges of parallel queries
+     * (the common pool by default).
+     * 
+     * @param pool The pool
+     * @throws IllegalArgumentException If the pool is null
+     */
+    public void setParallelPool(ForkJoinPool pool) {
+        parallelScorer.setPool(pool);
     }
     
     /**
@@ -118,52 +248,111 @@ public class VSM implements IModel {
         return "VSM";
     }
     
+    /**
+     * Describes the term frequency weighting scheme and the execution mode.
+     * 
+     * @return The configuration, e.g. "tf=2 mode=MAX_SCORE"
+     */
+    @Override
+    public String getConfiguration() {
+        return "tf=" + tfWeightingScheme + " mode=" + executionMode;
+    }
+    
     /**
      * Initializes the model by precomputing document vectors.
      * Called after documents have been indexed.
      */
     @Override
     public void initialize() {
-        precomputeAllDocumentVectors();
+        IndexSnapshot index = indexer.snapshot();
+        synchronized (this) {
+            vectors = precomputeAllDocumentVectors(index);
+        }
+        System.out.println("Precomputed document vectors for " + index.getDocumentCount() + " documents");
+    }
+    
+    /**
+     * Gets the document vectors of a snapshot. They are recomputed when documents
+     * were added: new terms renumber the term IDs, so the vectors must match the
+     * snapshot's dictionary. Concurrent queries of a new snapshot compute them
+     * once; the vectors of a snapshot older than the last searched one are
+     * computed but not kept.
+     * 
+     * @param index The snapshot to search
+     * @return The vectors of the snapshot
+     */
+    private SnapshotVectors vectorsFor(IndexSnapshot index) {
+        SnapshotVectors current = vectors;
+        if (current.index == index) {
+            return current;
+        }
+        synchronized (this) {
+            current = vectors;
+            SnapshotVectors updated;
+            if (current.documentStatistics == index.getDocumentStatistics()) {
+                updated = current.index == index ? current : current.withIndex(index);
+            } else {
+                updated = precomputeAllDocumentVectors(index);
+            }
+            if (index.getVersion() >= current.index.getVersion()) {
+                vectors = updated;
+            }
+            return updated;
+        }
     }
     
     /**
      * Precomputes TF-IDF vectors for all documents to improve search performance.
      * This is called during initialization.
+     * 
+     * @param index The snapshot
+     * @return Its document vectors
      */
-    private void precomputeAllDocumentVectors() {
-        System.out.println("Precomputing document vectors for " + indexer.getDocumentCount() + " documents");
-        List<Document> allDocs = indexer.getAllDocuments();
-        
-        // Create a mapping from document ID string to internal integer ID
-        Map<String, Integer> docIdMap = new HashMap<>();
-        for (int i = 0; i < allDocs.size(); i++) {
-            docIdMap.put(allDocs.get(i).getId(), i);
-        }
+    private SnapshotVectors precomputeAllDocumentVectors(IndexSnapshot index) {
+        DocumentStatistics documentStatistics = index.getDocumentStatistics();
+        int documentCount = documentStatistics.getDocumentCount();
+        
+        double[] vectorWeights = new double[documentStatistics.termEntryCount()];
+        double[] vectorNorms = new double[documentCount];
+        float[] documentNorms = new float[documentCount];
+        double[] maxNormalizedWeights = new double[index.getVocabularySize()];
         
-        for (int i = 0; i < allDocs.size(); i++) {
-            Document doc = allDocs.get(i);
-            Map<String, Double> docVector = computeDocumentVector(doc);
-            documentVectors.put(i, docVector);
-            documentVectorNorms.put(i, computeVectorNorm(docVector));
+        for (int i = 0; i < documentCount; i++) {
+            // The forward index lists the terms of every document in ascending term ID order
+            int start = documentStatistics.termStart(i);
+            int end = documentStatistics.termEnd(i);
+            int docLength = documentStatistics.length(i);
+            double sumOfSquares = 0.0;
+            for (int p = start; p < end; p++) {
+                double weight = computeWeightedTF(documentStatistics.termFrequency(p), docLength)
+                        * index.getIdf(documentStatistics.termId(p));
+                vectorWeights[p] = weight;
+                sumOfSquares += weight * weight;
+            }
+            double norm = Math.sqrt(sumOfSquares);
+            vectorNorms[i] = norm;
+            documentNorms[i] = (float) norm;
             
-            // Print debug info for the first few documents
-            if (i < 3) {
-                System.out.println("Computed vector for document: " + doc.getTitle() + 
-                                 " (ID: " + doc.getId() + ", internal ID: " + i + ")");
-                System.out.println("Vector size: " + docVector.size() + " terms");
+            // Track the largest normalized weight of every term for MaxScore bounds
+            for (int p = start; p < end; p++) {
+                int termId = documentStatistics.termId(p);
+                double normalized = normalizedWeight(documentNorms, vectorWeights[p], i);
+                maxNormalizedWeights[termId] = Math.max(maxNormalizedWeights[termId], normalized);
             }
         }
-        System.out.println("Finished precomputing document vectors");
+        return new SnapshotVectors(index, documentStatistics, vectorWeights, vectorNorms, documentNorms,
+                maxNormalizedWeights);
     }
     
     /**
      * Computes the TF-IDF weighted vector for a document.
      * 
-     * @param document The document to compute the vector for
+     * @param document The document to compute the vector for; a preprocessed document,
+     *                 since the indexed copies keep no term frequencies
      * @return A map from terms to their TF-IDF weights
      */
     public Map<String, Double> computeDocumentVector(Document document) {
+        IndexSnapshot index = vectors.index;
         Map<String, Double> vector = new HashMap<>();
         Map<String, Integer> termFrequencies = document.getTermFrequencies();
         
@@ -173,7 +362,8 @@ public class VSM implements IModel {
             int rawTF = entry.getValue();
             
             // Skip terms not in the index vocabulary (should not happen in normal operation)
-            if (!indexer.getVocabulary().contains(term)) {
+            int termId = index.getTermId(term);
+            if (termId < 0) {
                 continue;
             }
             
@@ -181,7 +371,7 @@ public class VSM implements IModel {
             double weightedTF = computeWeightedTF(rawTF, document.getLength());
             
             // Get the IDF value from the indexer
-            double idf = indexer.getIdf(term);
+            double idf = index.getIdf(termId);
             
             // Compute the final TF-IDF weight
             double tfIdf = weightedTF * idf;
@@ -198,6 +388,17 @@ public class VSM implements IModel {
      * @return A map from terms to their TF-IDF weights
      */
     public Map<String, Double> computeQueryVector(Map<String, Integer> processedQuery) {
+        return computeQueryVector(vectors.index, processedQuery);
+    }
+    
+    /**
+     * Computes the TF-IDF weighted vector for a query on a snapshot.
+     * 
+     * @param index The searched snapshot
+     * @param processedQuery The preprocessed query terms with their frequencies
+     * @return A map from terms to their TF-IDF weights
+     */
+    private Map<String, Double> computeQueryVector(IndexSnapshot index, Map<String, Integer> processedQuery) {
         Map<String, Double> queryVector = new HashMap<>();
         int queryLength = processedQuery.values().stream().mapToInt(Integer::intValue).sum();
         
@@ -207,7 +408,8 @@ public class VSM implements IModel {
             int rawTF = entry.getValue();
             
             // Skip terms not in the vocabulary
-            if (!indexer.getVocabulary().contains(term)) {
+            int termId = index.getTermId(term);
+            if (termId < 0) {
                 continue;
             }
             
@@ -215,7 +417,7 @@ public class VSM implements IModel {
             double weightedTF = computeWeightedTF(rawTF, queryLength);
             
             // Get the IDF value
-            double idf = indexer.getIdf(term);
+            double idf = index.getIdf(termId);
             
             // Compute the TF-IDF weight
             double tfIdf = weightedTF * idf;
@@ -270,6 +472,33 @@ public class VSM implements IModel {
         return Math.sqrt(sumOfSquares);
     }
     
+    /**
+     * Computes the Euclidean norm (magnitude) of a vector's weights.
+     * 
+     * @param weights The vector weights
+     * @return The Euclidean norm of the vector
+     */
+    private double computeVectorNorm(double[] weights) {
+        double sumOfSquares = 0.0;
+        for (double weight : weights) {
+            sumOfSquares += weight * weight;
+        }
+        return Math.sqrt(sumOfSquares);
+    }
+    
+    /**
+     * Divides a document term weight by the document's (float) vector norm.
+     * 
+     * @param documentNorms The float vector norms, indexed by document ID
+     * @param weight TF-IDF weight of the term in the document
+     * @param docId Document ID
+     * @return The normalized weight, 0 for a zero-length vector
+     */
+    private static double normalizedWeight(float[] documentNorms, double weight, int docId) {
+        float norm = documentNorms[docId];
+        return norm == 0.0f ? 0.0 : weight / norm;
+    }
+    
     /**
      * Computes the cosine similarity between two vectors.
      * 
@@ -278,6 +507,9 @@ public class VSM implements IModel {
      * @return The cosine similarity value [0,1]
      */
     public double computeCosineSimilarity(Map<String, Double> vector1, Map<String, Double> vector2) {
+        double norm1 = computeVectorNorm(vector1);
+        double norm2 = computeVectorNorm(vector2);
+        
         // Ensure we use the smaller vector as the first one for efficiency
         if (vector1.size() > vector2.size()) {
             Map<String, Double> temp = vector1;
@@ -286,8 +518,6 @@ public class VSM implements IModel {
         }
         
         double dotProduct = 0.0;
-        double norm1 = computeVectorNorm(vector1);
-        double norm2 = computeVectorNorm(vector2);
         
         // If either vector has zero magnitude, similarity is 0
         if (norm1 == 0 || norm2 == 0) {
@@ -309,6 +539,52 @@ public class VSM implements IModel {
         return dotProduct / (norm1 * norm2);
     }
     
+    /**
+     * Computes the cosine similarity between the query and a document vector.
+     * Both vectors are sorted by term ID; the smaller one is iterated and its
+     * terms are binary searched in the larger one.
+     * 
+     * @param vectors The document vectors of the searched snapshot
+     * @param queryTermIds The query term IDs, ascending
+     * @param queryWeights The query weights
+     * @param queryNorm The norm of the query vector
+     * @param docId The document ID
+     * @return The cosine similarity value [0,1]
+     */
+    private static double computeCosineSimilarity(SnapshotVectors vectors, int[] queryTermIds, double[] queryWeights,
+                                                  double queryNorm, int docId) {
+        DocumentStatistics documentStatistics = vectors.documentStatistics;
+        double[] vectorWeights = vectors.vectorWeights;
+        double docNorm = vectors.vectorNorms[docId];
+        
+        // If either vector has zero magnitude, similarity is 0
+        if (queryNorm == 0 || docNorm == 0) {
+            return 0.0;
+        }
+        
+        int start = documentStatistics.termStart(docId);
+        int end = documentStatistics.termEnd(docId);
+        double dotProduct = 0.0;
+        if (queryTermIds.length <= end - start) {
+            for (int i = 0; i < queryTermIds.length; i++) {
+                int p = documentStatistics.findTerm(docId, queryTermIds[i]);
+                if (p >= 0) {
+                    dotProduct += queryWeights[i] * vectorWeights[p];
+                }
+            }
+        } else {
+            for (int p = start; p < end; p++) {
+                int i = Arrays.binarySearch(queryTermIds, documentStatistics.termId(p));
+                if (i >= 0) {
+                    dotProduct += queryWeights[i] * vectorWeights[p];
+                }
+            }
+        }
+        
+        // Cosine similarity formula: dot_product / (|v1| * |v2|)
+        return dotProduct / (queryNorm * docNorm);
+    }
+    
     /**
      * Executes a search for the given query and returns top K results.
      * 
@@ -318,63 +594,280 @@ public class VSM implements IModel {
      * @return The search results with document IDs and similarity scores
      */
     public QueryResult search(String query, String processedQuery, int topK) {
+        return search(query, processedQuery, topK, new QueryStatistics());
+    }
+    
+    /**
+     * Executes a search that stops scoring at a deadline, returning the best
+     * results found so far.
+     * 
+     * @param query Original query string
+     * @param processedQuery Preprocessed query string
+     * @param topK Number of top results to return
+     * @param deadlineNanos The deadline, as a System.nanoTime() value
+     * @return The search results, flagged as partial if the deadline was reached
+     */
+    @Override
+    public QueryResult search(String query, String processedQuery, int topK, long deadlineNanos) {
+        QueryStatistics statistics = new QueryStatistics();
+        statistics.setDeadline(deadlineNanos);
+        return search(query, processedQuery, topK, statistics);
+    }
+    
+    private QueryResult search(String query, String processedQuery, int topK, QueryStatistics statistics) {
         long startTime = System.currentTimeMillis();
         
-        // Debug log query information
-        System.out.println("Executing search for query: " + query);
-        System.out.println("Processed query: " + processedQuery);
+        // Boolean operators, phrases and NEAR clauses restrict the results; their words are ranked as usual
+        ParsedQuery parsedQuery = queryParser.parse(query);
+        if (parsedQuery.hasConstraints()) {
+            processedQuery = parsedQuery.getProcessedQuery();
+        }
         
         // Preprocess query and convert to term frequency map
         Map<String, Integer> queryTermFreqs = processQueryToTermFrequencies(processedQuery);
-        System.out.println("Query terms: " + queryTermFreqs.keySet());
-        
-        // Compute query vector
-        Map<String, Double> queryVector = computeQueryVector(queryTermFreqs);
-        System.out.println("Query vector size: " + queryVector.size() + " terms");
-        
-        // Initialize results list
-        List<DocumentScore> results = new ArrayList<>();
         
-        // Get all documents for matching
-        List<Document> allDocs = indexer.getAllDocuments();
-        System.out.println("Comparing query to " + allDocs.size() + " documents");
+        // Search one snapshot throughout the query; documents may be flushed concurrently.
+        // The query only reads the snapshot's vectors, so queries can run in parallel
+        SnapshotVectors vectors = vectorsFor(indexer.snapshot());
+        IndexSnapshot index = vectors.index;
+        ExecutionMode executionMode = this.executionMode;
         
-        // For each document, compute similarity with the query
-        for (Map.Entry<Integer, Map<String, Double>> entry : documentVectors.entrySet()) {
-            int docId = entry.getKey();
-            Map<String, Double> docVector = entry.getValue();
-            
-            // Make sure docId is valid
-            if (docId >= 0 && docId < allDocs.size()) {
-                // Compute similarity
-                double similarity = computeCosineSimilarity(queryVector, docVector);
-                
-                // Add to results if similarity is positive and above threshold
-                if (similarity > 0.01) { // Use a small threshold to filter out very low similarities
-                    Document doc = allDocs.get(docId);
-                    // Create a DocumentScore with TF-IDF score type
-                    results.add(new DocumentScore(doc, similarity, "TF-IDF"));
-                    
-                    // Debug log for matching documents
-                    System.out.println("Match found: " + doc.getTitle() + " (score: " + similarity + ")");
-                }
+        // Compute query vector, resolved to term IDs once and sorted by term ID
+        Map<String, Double> queryVector = computeQueryVector(index, queryTermFreqs);
+        int[] queryTermIds = new int[queryVector.size()];
+        double[] queryWeights = new double[queryVector.size()];
+        int count = 0;
+        for (Map.Entry<String, Double> entry : queryVector.entrySet()) {
+            int termId = index.getTermId(entry.getKey());
+            int i = count++;
+            for (; i > 0 && queryTermIds[i - 1] > termId; i--) {
+                queryTermIds[i] = queryTermIds[i - 1];
+                queryWeights[i] = queryWeights[i - 1];
             }
+            queryTermIds[i] = termId;
+            queryWeights[i] = entry.getValue();
         }
         
-        // Sort by similarity score (descending)
-        results.sort(Comparator.comparing(DocumentScore::getScore).reversed());
-        System.out.println("Found " + results.size() + " matching documents");
-        
-        // Limit to top K results
-        List<DocumentScore> topResults = results.stream()
-                .limit(topK)
-                .collect(Collectors.toList());
+        double queryNorm = computeVectorNorm(queryWeights);
+        List<DocumentScore> topResults = null;
+        if (parsedQuery.hasConstraints()) {
+            topResults = searchMatching(vectors, queryTermIds, queryWeights, queryNorm, parsedQuery, topK, statistics);
+        }
+        if (topResults == null) {
+            statistics.setExecution(executionMode.name());
+            if (executionMode == ExecutionMode.MAX_SCORE) {
+                topResults = searchMaxScore(vectors, queryTermIds, queryWeights, queryNorm, topK, statistics);
+            } else {
+                topResults = searchExhaustive(vectors, queryTermIds, queryWeights, queryNorm, topK, statistics);
+            }
+        }
         
         long endTime = System.currentTimeMillis();
         long executionTime = endTime - startTime;
         
         // Create a QueryResult with the VSM model name
-        return new QueryResult(query, processedQuery, topResults, executionTime, "VSM");
+        return new QueryResult(query, processedQuery, topResults, executionTime, "VSM", statistics);
+    }
+    
+    /**
+     * Compares the query vector only with the documents that match the query tree.
+     * The tree is evaluated as a tree of postings iterators (conjunctions leapfrog
+     * with advance(), phrases check positions), so a conjunction costs about the
+     * postings of its rarest clause, not the collection size. Every matching document is ranked, without the similarity
+     * threshold of the other modes.
+     * 
+     * @param vectors The document vectors of the searched snapshot
+     * @param queryTermIds The query term IDs, ascending
+     * @param queryWeights The query weights
+     * @param queryNorm The norm of the query vector
+     * @param parsedQuery The parsed query with its query tree
+     * @param topK Number of top results to return
+     * @param statistics Execution counters to update
+     * @return The top K document scores, empty if no document matches, or null if the index has
+     *         no positions for a phrase or NEAR clause
+     */
+    private List<DocumentScore> searchMatching(SnapshotVectors vectors, int[] queryTermIds, double[] queryWeights,
+                                               double queryNorm, ParsedQuery parsedQuery, int topK,
+                                               QueryStatistics statistics) {
+        IndexSnapshot index = vectors.index;
+        DocIdIterator matches;
+        try {
+            matches = parsedQuery.matcher(index);
+        } catch (IllegalStateException e) {
+            System.err.println("Error: cannot evaluate the query operators, ranking their terms without them: "
+                    + e.getMessage());
+            return null;
+        }
+        
+        TopKCollector collector = new TopKCollector(Math.max(0, topK));
+        int matchCount = 0;
+        for (int docId = matches.nextDoc(); docId != DocIdIterator.NO_MORE_DOCS; docId = matches.nextDoc()) {
+            collector.offer(docId, computeCosineSimilarity(vectors, queryTermIds, queryWeights, queryNorm, docId));
+            matchCount++;
+            if (statistics.isPastDeadline()) {
+                break;
+            }
+        }
+        for (int termId : queryTermIds) {
+            statistics.addPostingsTotal(index.getDocumentFrequency(termId));
+        }
+        statistics.addDocumentsScored(matchCount);
+        statistics.addDocumentsMatched(matchCount);
+        statistics.setExecution("MATCHING");
+        
+        return collector.toDocumentScores(index::getDocument, "TF-IDF");
+    }
+    
+    /**
+     * Compares the query vector with every document vector.
+     * 
+     * @param vectors The document vectors of the searched snapshot
+     * @param queryTermIds The query term IDs, ascending
+     * @param queryWeights The query weights
+     * @param queryNorm The norm of the query vector
+     * @param topK Number of top results to return
+     * @param statistics Execution counters to update
+     * @return The top K document scores
+     */
+    private List<DocumentScore> searchExhaustive(SnapshotVectors vectors, int[] queryTermIds, double[] queryWeights,
+                                                 double queryNorm, int topK, QueryStatistics statistics) {
+        IndexSnapshot index = vectors.index;
+        int documentCount = vectors.vectorNorms.length;
+        
+        for (int termId : queryTermIds) {
+            int df = index.getDocumentFrequency(termId);
+            statistics.addPostingsTotal(df);
+            statistics.addPostingsScored(df);
+        }
+        
+        // Keep only the top K results while scoring
+        TopKCollector collector;
+        if (parallelScorer.shouldSplit((long) documentCount * queryTermIds.length, documentCount)) {
+            collector = parallelScorer.score(documentCount, topK, statistics, (fromDoc, toDoc, rangeStatistics) -> {
+                TopKCollector hits = new TopKCollector(Math.max(0, topK));
+                rangeStatistics.addDocumentsMatched(scoreExhaustive(vectors, queryTermIds, queryWeights, queryNorm,
+                        fromDoc, toDoc, hits, rangeStatistics));
+                return hits;
+            });
+        } else {
+            collector = new TopKCollector(Math.max(0, topK));
+            statistics.addDocumentsMatched(scoreExhaustive(vectors, queryTermIds, queryWeights, queryNorm, 0,
+                    documentCount, collector, statistics));
+        }
+        
+        // Materialize DocumentScore objects (TF-IDF score type) for the top K only
+        return collector.toDocumentScores(index::getDocument, "TF-IDF");
+    }
+    
+    /**
+     * Compares the query vector with the vectors of a document ID range.
+     * 
+     * @param vectors The document vectors of the searched snapshot
+     * @param queryTermIds The query term IDs, ascending
+     * @param queryWeights The query weights
+     * @param queryNorm The norm of the query vector
+     * @param fromDoc First document ID of the range
+     * @param toDoc Document ID after the range
+     * @param collector Receives the hits
+     * @param statistics Execution counters to update
+     * @return The number of matching documents
+     */
+    private static int scoreExhaustive(SnapshotVectors vectors, int[] queryTermIds, double[] queryWeights,
+                                       double queryNorm, int fromDoc, int toDoc, TopKCollector collector,
+                                       QueryStatistics statistics) {
+        int matchCount = 0;
+        
+        // For each document, in ID order, compute similarity with the query
+        int docId = fromDoc;
+        for (; docId < toDoc && !statistics.isPastDeadline(); docId++) {
+            double similarity = computeCosineSimilarity(vectors, queryTermIds, queryWeights, queryNorm, docId);
+            
+            // Add to results if similarity is positive and above threshold
+            if (similarity > 0.01) { // Use a small threshold to filter out very low similarities
+                collector.offer(docId, similarity);
+                matchCount++;
+            }
+        }
+        statistics.addDocumentsScored(docId - fromDoc);
+        return matchCount;
+    }
+    
+    /**
+     * Evaluates the query over the postings of its terms with MaxScore pruning.
+     * Pruning uses the float document norms and per-term maximum normalized
+     * weights; surviving candidates are rescored exactly like the exhaustive
+     * search, so scores and ranking are identical.
+     * 
+     * @param vectors The document vectors of the searched snapshot
+     * @param queryTermIds The query term IDs, ascending
+     * @param queryWeights The query weights
+     * @param queryNorm The norm of the query vector
+     * @param topK Number of top results to return
+     * @param statistics Execution counters to update
+     * @return The top K document scores
+     */
+    private List<DocumentScore> searchMaxScore(SnapshotVectors vectors, int[] queryTermIds, double[] queryWeights,
+                                               double queryNorm, int topK, QueryStatistics statistics) {
+        IndexSnapshot index = vectors.index;
+        // Per-term query factor w(t,q) * idf(t) / |q| and upper bound w(t,q) * max(w(t,d) / |d|) / |q|
+        int[] scoredTermIds = new int[queryTermIds.length];
+        double[] queryFactors = new double[queryTermIds.length];
+        double[] upperBounds = new double[queryTermIds.length];
+        int n = 0;
+        long postingsVolume = 0;
+        for (int i = 0; i < queryTermIds.length; i++) {
+            int termId = queryTermIds[i];
+            if (queryWeights[i] <= 0.0) {
+                statistics.addPostingsTotal(index.getDocumentFrequency(termId));
+                continue; // contributes nothing to any document
+            }
+            double queryWeight = queryWeights[i] / queryNorm;
+            scoredTermIds[n] = termId;
+            queryFactors[n] = queryWeight * index.getIdf(termId);
+            upperBounds[n++] = queryWeight * vectors.maxNormalizedWeights[termId];
+            postingsVolume += index.getDocumentFrequency(termId);
+        }
+        int[] termIds = Arrays.copyOf(scoredTermIds, n);
+        double[] termUpperBounds = Arrays.copyOf(upperBounds, n);
+        MaxScoreEvaluator.TermContribution contributions = (term, docId, tf) -> queryFactors[term]
+                * normalizedWeight(vectors.documentNorms, computeWeightedTF(tf, vectors.documentStatistics.length(docId)),
+                        docId);
+        IntToDoubleFunction exactScore =
+                docId -> computeCosineSimilarity(vectors, queryTermIds, queryWeights, queryNorm, docId);
+        
+        MaxScoreEvaluator evaluator = new MaxScoreEvaluator();
+        int documentCount = index.getDocumentCount();
+        TopKCollector hits;
+        if (parallelScorer.shouldSplit(postingsVolume, documentCount)) {
+            // Every range walks its own cursors and prunes against its own top K
+            if (topK > 0) {
+                statistics.addPostingsTotal(postingsVolume);
+            }
+            hits = parallelScorer.score(documentCount, topK, statistics, (fromDoc, toDoc, rangeStatistics) ->
+                    evaluator.evaluate(openCursors(index, termIds, rangeStatistics), termUpperBounds, contributions,
+                            exactScore, fromDoc, toDoc, topK, 0.01, rangeStatistics));
+        } else {
+            hits = evaluator.evaluate(openCursors(index, termIds, statistics), termUpperBounds, contributions,
+                    exactScore, topK, 0.01, statistics);
+        }
+        
+        return hits.toDocumentScores(index::getDocument, "TF-IDF");
+    }
+    
+    /**
+     * Opens a postings cursor per term.
+     * 
+     * @param index The searched snapshot
+     * @param termIds The term IDs
+     * @param statistics Counts the blocks read through the block cache
+     * @return The cursors, in term order
+     */
+    private static PostingsCursor[] openCursors(IndexSnapshot index, int[] termIds, QueryStatistics statistics) {
+        PostingsCursor[] cursors = new PostingsCursor[termIds.length];
+        for (int i = 0; i < termIds.length; i++) {
+            cursors[i] = index.getPostings(termIds[i], statistics);
+        }
+        return cursors;
     }
     
     /**
@@ -0,0 +1,231 @@
+package com.IR.SearchEngine.model;
+
+import com.IR.SearchEngine.data.QueryStatistics;
+import com.IR.SearchEngine.indexing.PostingsCursor;
+import com.IR.SearchEngine.indexing.TermScorer;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Document-at-a-time top-K evaluator using WAND, with an optional Block-Max WAND
+ * variant.
+ *
+ * WAND keeps the query term cursors sorted by their current document. Summing
+ * the per-term score upper bounds in that order gives the first document (the
+ * pivot) that could possibly beat the current top-K threshold; every document
+ * before it is skipped. Block-Max WAND additionally checks the block-level bounds
+ * of the pivot's blocks and jumps past whole blocks that cannot qualify.
+ *
+ * Responsibilities:
+ * - Select the top K documents of a disjunctive query without scoring every candidate
+ * - Count scored and skipped postings for the query statistics
+ *
+ * Implementation notes:
+ * - Rank-identical to exhaustive scoring: a document's score is summed in query
+ *   term order, it must be strictly greater than the K-th score to enter, and
+ *   documents are visited in increasing ID order, so ties keep the lower ID
+ * - Bounds are compared with a small slack so that floating point rounding in
+ *   the bound sums can never prune a qualifying document
+ * - Term scorers must grow with the term frequency and not grow with the
+ *   document length
+ * - At the query's deadline (see QueryStatistics) it stops and returns the
+ *   top K of the documents visited so far, which have the lowest IDs
+ *
+ * @author alexhere
+ */
+public class WandEvaluator {
+
+    // Relative slack applied to score bounds before pruning
+    private static final double BOUND_SLACK = 1e-9;
+
+    private final boolean blockMax;
+
+    /**
+     * Creates an evaluator.
+     *
+     * @param blockMax True for Block-Max WAND, false for plain WAND
+     */
+    public WandEvaluator(boolean blockMax) {
+        this.blockMax = blockMax;
+    }
+
+    /**
+     * Evaluates a query.
+     *
+     * @param cursors Fresh postings cursors, one per query term, in query term order
+     * @param scorers Scoring function per query term
+     * @param upperBounds Upper bound of each term's score over the whole collection
+     * @param docLengths Maps a document ID to its length
+     * @param topK Number of results to keep
+     * @param minScore Results must score strictly above this value
+     * @param statistics Counters to update
+     * @return The top K hits
+     */
+    public TopKCollector evaluate(PostingsCursor[] cursors, TermScorer[] scorers, double[] upperBounds,
+                            IntUnaryOperator docLengths, int topK, double minScore,
+                            QueryStatistics statistics) {
+        if (topK > 0) {
+            for (PostingsCursor cursor : cursors) {
+                statistics.addPostingsTotal(cursor.docFrequency());
+            }
+        }
+        return evaluate(cursors, scorers, upperBounds, docLengths, 0, PostingsCursor.NO_MORE_DOCS, topK, minScore,
+                statistics);
+    }
+
+    /**
+     * Evaluates a query over the documents whose IDs are in [fromDoc, toDoc),
+     * e.g. one range of a query scored in parallel (see ParallelScorer). The
+     * postings totals are left to the caller, as the cursors only walk part of
+     * their postings.
+     *
+     * @param cursors Fresh postings cursors, one per query term, in query term order
+     * @param scorers Scoring function per query term
+     * @param upperBounds Upper bound of each term's score over the whole collection
+     * @param docLengths Maps a document ID to its length
+     * @param fromDoc First document ID of the range
+     * @param toDoc Document ID after the range
+     * @param topK Number of results to keep
+     * @param minScore Results must score strictly above this value
+     * @param statistics Counters to update
+     * @return The top K hits of the range
+     */
+    public TopKCollector evaluate(PostingsCursor[] cursors, TermScorer[] scorers, double[] upperBounds,
+                            IntUnaryOperator docLengths, int fromDoc, int toDoc, int topK, double minScore,
+                            QueryStatistics statistics) {
+        int n = cursors.length;
+        TopKCollector hits = new TopKCollector(Math.max(0, topK));
+        if (n == 0 || topK <= 0) {
+            return hits;
+        }
+
+        // order[] holds term indexes sorted by their cursor's current document
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            cursors[i].advance(fromDoc);
+        }
+        double[] contributions = new double[n];
+        long postingsScored = 0;
+        long documentsScored = 0;
+
+        while (!statistics.isPastDeadline()) {
+            sortByDoc(order, cursors);
+            double threshold = hits.isFull() ? Math.max(minScore, hits.minScore()) : minScore;
+            double limit = threshold - Math.abs(threshold) * BOUND_SLACK;
+
+            // Find the pivot: the first term at which the accumulated bound can beat the threshold
+            double boundSum = 0.0;
+            int pivot = -1;
+            for (int i = 0; i < n; i++) {
+                if (cursors[order[i]].docId() >= toDoc) {
+                    break;
+                }
+                boundSum += upperBounds[order[i]];
+                if (boundSum > limit) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                break;
+            }
+            int pivotDoc = cursors[order[pivot]].docId();
+            while (pivot + 1 < n && cursors[order[pivot + 1]].docId() == pivotDoc) {
+                pivot++;
+            }
+
+            if (blockMax && !blockCanQualify(order, pivot, pivotDoc, cursors, scorers, limit)) {
+                // Nothing in [pivotDoc, next) can qualify: jump the strongest preceding cursor past it
+                int next = PostingsCursor.NO_MORE_DOCS;
+                for (int i = 0; i <= pivot; i++) {
+                    int blockEnd = cursors[order[i]].blockLastDocId();
+                    next = Math.min(next, blockEnd == PostingsCursor.NO_MORE_DOCS ? blockEnd : blockEnd + 1);
+                }
+                if (pivot + 1 < n) {
+                    next = Math.min(next, cursors[order[pivot + 1]].docId());
+                }
+                cursors[order[strongest(order, pivot, upperBounds)]].advance(next);
+                continue;
+            }
+
+            if (cursors[order[0]].docId() == pivotDoc) {
+                // All cursors up to the pivot are on pivotDoc: score it fully
+                int docLength = docLengths.applyAsInt(pivotDoc);
+                for (int i = 0; i < n; i++) {
+                    contributions[i] = 0.0;
+                }
+                for (int i = 0; i <= pivot; i++) {
+                    int term = order[i];
+                    contributions[term] = scorers[term].score(cursors[term].termFrequency(), docLength);
+                    postingsScored++;
+                }
+                double score = 0.0;
+                for (int term = 0; term < n; term++) {
+                    score += contributions[term];
+                }
+                documentsScored++;
+                if (score > threshold) {
+                    hits.offer(pivotDoc, score);
+                }
+                for (int i = 0; i <= pivot; i++) {
+                    cursors[order[i]].nextDoc();
+                }
+            } else {
+                // Move a cursor that is behind the pivot up to it
+                int behind = 0;
+                while (cursors[order[behind + 1]].docId() < pivotDoc) {
+                    behind++;
+                }
+                cursors[order[strongest(order, behind, upperBounds)]].advance(pivotDoc);
+            }
+        }
+
+        statistics.addPostingsScored(postingsScored);
+        statistics.addDocumentsScored(documentsScored);
+        return hits;
+    }
+
+    /**
+     * Checks the block-max bound of the pivot document.
+     */
+    private boolean blockCanQualify(int[] order, int pivot, int pivotDoc, PostingsCursor[] cursors,
+                                    TermScorer[] scorers, double limit) {
+        double blockBound = 0.0;
+        for (int i = 0; i <= pivot; i++) {
+            PostingsCursor cursor = cursors[order[i]];
+            cursor.advanceShallow(pivotDoc);
+            blockBound += cursor.blockUpperBound(scorers[order[i]]);
+        }
+        return blockBound > limit;
+    }
+
+    /**
+     * Among order[0..last], picks the term with the largest upper bound.
+     */
+    private int strongest(int[] order, int last, double[] upperBounds) {
+        int best = 0;
+        for (int i = 1; i <= last; i++) {
+            if (upperBounds[order[i]] > upperBounds[order[best]]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Insertion sort of term indexes by current document (queries are short).
+     */
+    private void sortByDoc(int[] order, PostingsCursor[] cursors) {
+        for (int i = 1; i < order.length; i++) {
+            int term = order[i];
+            int doc = cursors[term].docId();
+            int j = i - 1;
+            while (j >= 0 && cursors[order[j]].docId() > doc) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = term;
+        }
+    }
+}
@@ -82,6 +82,15 @@ public interface IPreprocessor {
      */
     Map<String, Integer> computeTermFrequencies(String[] tokens);
     
+    /**
+     * Computes the positions of every term in an array of tokens.
+     * The position of a token is its index in the array.
+     * 
+     * @param tokens Array of tokens
+     * @return Map of terms to their positions, in increasing order
+     */
+    Map<String, int[]> computeTermPositions(String[] tokens);
+    
     /**
      * Normalizes text (lowercase, remove punctuation, etc.).
      * 
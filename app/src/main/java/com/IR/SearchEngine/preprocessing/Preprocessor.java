@@ -30,27 +30,30 @@ import java.util.stream.Collectors;
  * - Uses OpenNLP for advanced NLP tasks
  * - Supports configurable preprocessing pipeline
  * - Implements caching for efficiency
+ * - Thread-safe: OpenNLP's PorterStemmer keeps the word being stemmed in its
+ *   fields, so every thread gets its own stemmer; the caches and the stopword
+ *   set are concurrent, so queries can be preprocessed in parallel
  * 
  * @author alexhere
  */
 public class Preprocessor implements IPreprocessor {
     
     private final SimpleTokenizer tokenizer;
-    private final PorterStemmer stemmer;
+    private final ThreadLocal<PorterStemmer> stemmer;
     private final Set<String> stopwords;
     private final Map<String, String[]> tokenCache;
     private final Map<String, String> stemCache;
     
-    private boolean applyStemming;
-    private boolean removeStopwords;
+    private volatile boolean applyStemming;
+    private volatile boolean removeStopwords;
     
     /**
      * Default constructor that initializes the preprocessor with default settings.
      */
     public Preprocessor() {
         this.tokenizer = SimpleTokenizer.INSTANCE;
-        this.stemmer = new PorterStemmer();
-        this.stopwords = new HashSet<>();
+        this.stemmer = ThreadLocal.withInitial(PorterStemmer::new);
+        this.stopwords = ConcurrentHashMap.newKeySet();
         this.tokenCache = new ConcurrentHashMap<>();
         this.stemCache = new ConcurrentHashMap<>();
         this.applyStemming = true;
@@ -111,13 +114,14 @@ public class Preprocessor implements IPreprocessor {
             tokens = stem(tokens);
         }
         
-        // Compute term frequencies
-        Map<String, Integer> termFrequencies = computeTermFrequencies(tokens);
+        // Record where each term occurs; positions count the tokens that survived
+        // stopword removal, so adjacent terms of a phrase have adjacent positions
+        Map<String, int[]> termPositions = computeTermPositions(tokens);
         
-        // Update the document with processed content and term frequencies
+        // Update the document with processed content, term positions and frequencies
         String processedContent = String.join(" ", tokens);
         document.setProcessedContent(processedContent);
-        document.setTermFrequencies(termFrequencies);
+        document.setTermPositions(termPositions);
         
         return document;
     }
@@ -156,8 +160,9 @@ public class Preprocessor implements IPreprocessor {
     @Override
     public String[] tokenize(String text) {
         // Check cache first
-        if (tokenCache.containsKey(text)) {
-            return tokenCache.get(text);
+        String[] cached = tokenCache.get(text);
+        if (cached != null) {
+            return cached;
         }
         
         // Use OpenNLP tokenizer
@@ -199,12 +204,13 @@ public class Preprocessor implements IPreprocessor {
      */
     private String stemWord(String word) {
         // Check cache first
-        if (stemCache.containsKey(word)) {
-            return stemCache.get(word);
+        String cached = stemCache.get(word);
+        if (cached != null) {
+            return cached;
         }
         
         // Apply Porter stemmer
-        String stemmed = stemmer.stem(word);
+        String stemmed = stemmer.get().stem(word);
         
         // Cache the result
         stemCache.put(word, stemmed);
@@ -227,6 +233,27 @@ public class Preprocessor implements IPreprocessor {
         return termFrequencies;
     }
     
+    @Override
+    public Map<String, int[]> computeTermPositions(String[] tokens) {
+        if (tokens == null || tokens.length == 0) {
+            return Collections.emptyMap();
+        }
+        
+        // Count first, so every term gets an array of its exact size
+        Map<String, Integer> termFrequencies = computeTermFrequencies(tokens);
+        Map<String, int[]> termPositions = new HashMap<>(termFrequencies.size() * 2);
+        for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+            termPositions.put(entry.getKey(), new int[entry.getValue()]);
+        }
+        Map<String, Integer> filled = new HashMap<>(termFrequencies.size() * 2);
+        for (int position = 0; position < tokens.length; position++) {
+            int next = filled.merge(tokens[position], 1, Integer::sum) - 1;
+            termPositions.get(tokens[position])[next] = position;
+        }
+        
+        return termPositions;
+    }
+    
     @Override
     public String normalizeText(String text) {
         if (text == null || text.isEmpty()) {
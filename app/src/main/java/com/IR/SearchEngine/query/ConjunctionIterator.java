@@ -0,0 +1,67 @@
+package com.IR.SearchEngine.query;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Matches the documents that match every one of its clauses.
+ *
+ * Clauses are ordered by cost; the cheapest one proposes candidates and the
+ * others advance() to them, the same leapfrog the positional clauses use over
+ * their terms' postings.
+ *
+ * @author alexhere
+ */
+public class ConjunctionIterator implements DocIdIterator {
+
+    private final DocIdIterator[] clauses;  // ascending cost
+    private int doc = -1;
+
+    /**
+     * Creates a conjunction.
+     *
+     * @param clauses Fresh iterators of the clauses (at least one)
+     */
+    public ConjunctionIterator(DocIdIterator... clauses) {
+        if (clauses.length == 0) {
+            throw new IllegalArgumentException("A conjunction needs at least one clause");
+        }
+        this.clauses = clauses.clone();
+        Arrays.sort(this.clauses, Comparator.comparingLong(DocIdIterator::cost));
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return doc == NO_MORE_DOCS ? doc : advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        DocIdIterator lead = clauses[0];
+        int candidate = lead.advance(target);
+        while (candidate != NO_MORE_DOCS) {
+            int next = candidate;
+            for (int i = 1; i < clauses.length && next == candidate; i++) {
+                next = clauses[i].advance(candidate);
+            }
+            if (next == candidate) {
+                return doc = candidate;
+            }
+            candidate = lead.advance(next);
+        }
+        return doc = NO_MORE_DOCS;
+    }
+
+    @Override
+    public long cost() {
+        return clauses[0].cost();
+    }
+}
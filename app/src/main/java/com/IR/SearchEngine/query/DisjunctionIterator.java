@@ -0,0 +1,96 @@
+package com.IR.SearchEngine.query;
+
+/**
+ * Matches the documents that match at least one of its clauses.
+ *
+ * The clauses are merged with a min-heap ordered by their current document, so
+ * moving to the next match costs O(log n) per clause positioned on the current
+ * document, not O(n).
+ *
+ * Implementation notes:
+ * - The heap holds the clause iterators themselves, ordered by docId(); clauses
+ *   that are exhausted sink to the bottom with NO_MORE_DOCS
+ * - advance() only moves the clauses that are behind the target
+ *
+ * @author alexhere
+ */
+public class DisjunctionIterator implements DocIdIterator {
+
+    private final DocIdIterator[] heap;
+    private final long cost;
+    private int doc = -1;
+
+    /**
+     * Creates a disjunction.
+     *
+     * @param clauses Fresh iterators of the clauses (at least one)
+     */
+    public DisjunctionIterator(DocIdIterator... clauses) {
+        if (clauses.length == 0) {
+            throw new IllegalArgumentException("A disjunction needs at least one clause");
+        }
+        this.heap = clauses.clone();
+        long total = 0;
+        for (DocIdIterator clause : clauses) {
+            total += clause.cost();
+        }
+        this.cost = total;
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return doc == NO_MORE_DOCS ? doc : advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        if (doc == -1) {
+            // Fresh clauses all sit at -1, so any order is a heap; position them first
+            for (DocIdIterator clause : heap) {
+                clause.advance(target);
+            }
+            for (int i = heap.length / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        } else {
+            // Move every clause that is behind the target; each one goes down the heap
+            while (heap[0].docId() < target) {
+                heap[0].advance(target);
+                siftDown(0);
+            }
+        }
+        return doc = heap[0].docId();
+    }
+
+    @Override
+    public long cost() {
+        return cost;
+    }
+
+    private void siftDown(int i) {
+        DocIdIterator clause = heap[i];
+        int clauseDoc = clause.docId();
+        int half = heap.length >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < heap.length && heap[right].docId() < heap[child].docId()) {
+                child = right;
+            }
+            if (heap[child].docId() >= clauseDoc) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = clause;
+    }
+}
@@ -0,0 +1,53 @@
+package com.IR.SearchEngine.query;
+
+import com.IR.SearchEngine.indexing.PostingsCursor;
+
+/**
+ * Forward-only iterator over the IDs of the documents that match a query clause.
+ * Mirrors the document-level part of PostingsCursor, so clauses can be combined
+ * with the same advance() protocol the postings use.
+ *
+ * Implementation notes:
+ * - A fresh iterator is positioned before the first match (docId() returns -1)
+ * - Matches are returned in increasing document ID order
+ *
+ * @author alexhere
+ */
+public interface DocIdIterator {
+
+    /**
+     * Sentinel document ID returned once the iterator is exhausted.
+     */
+    int NO_MORE_DOCS = PostingsCursor.NO_MORE_DOCS;
+
+    /**
+     * Gets the current document ID.
+     *
+     * @return Current document ID, -1 before the first call to nextDoc(), or NO_MORE_DOCS
+     */
+    int docId();
+
+    /**
+     * Moves to the next matching document.
+     *
+     * @return The next document ID, or NO_MORE_DOCS if exhausted
+     */
+    int nextDoc();
+
+    /**
+     * Moves to the first matching document whose ID is >= target.
+     * Never moves backwards: if the iterator is already at or past target it stays put.
+     *
+     * @param target Target document ID
+     * @return The new current document ID, or NO_MORE_DOCS if exhausted
+     */
+    int advance(int target);
+
+    /**
+     * Gets an upper bound for the number of matching documents. Used to let the
+     * cheapest clause of a conjunction lead.
+     *
+     * @return Maximum number of matches
+     */
+    long cost();
+}
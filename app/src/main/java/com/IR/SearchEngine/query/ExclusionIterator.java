@@ -0,0 +1,54 @@
+package com.IR.SearchEngine.query;
+
+/**
+ * Matches the documents of one clause that do not match another ({@code a NOT b}).
+ *
+ * The excluded clause is never enumerated on its own: it only advance()s to the
+ * candidates of the included clause, so its cost is bounded by theirs.
+ *
+ * @author alexhere
+ */
+public class ExclusionIterator implements DocIdIterator {
+
+    private final DocIdIterator included;
+    private final DocIdIterator excluded;
+    private int doc = -1;
+
+    /**
+     * Creates an exclusion.
+     *
+     * @param included Fresh iterator of the documents to return
+     * @param excluded Fresh iterator of the documents to leave out
+     */
+    public ExclusionIterator(DocIdIterator included, DocIdIterator excluded) {
+        this.included = included;
+        this.excluded = excluded;
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return doc == NO_MORE_DOCS ? doc : advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        int candidate = included.advance(target);
+        while (candidate != NO_MORE_DOCS && excluded.advance(candidate) == candidate) {
+            candidate = included.nextDoc();
+        }
+        return doc = candidate;
+    }
+
+    @Override
+    public long cost() {
+        return included.cost();
+    }
+}
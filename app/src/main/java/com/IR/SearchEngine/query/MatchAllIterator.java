@@ -0,0 +1,45 @@
+package com.IR.SearchEngine.query;
+
+/**
+ * Matches every document of the index. Gives a purely negative query
+ * ({@code NOT robot}) something to exclude from.
+ *
+ * @author alexhere
+ */
+public class MatchAllIterator implements DocIdIterator {
+
+    private final int documentCount;
+    private int doc = -1;
+
+    /**
+     * Creates an iterator over the document IDs 0 to documentCount - 1.
+     *
+     * @param documentCount Number of documents in the index
+     */
+    public MatchAllIterator(int documentCount) {
+        this.documentCount = documentCount;
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return doc == NO_MORE_DOCS ? doc : advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        return doc = target < documentCount ? target : NO_MORE_DOCS;
+    }
+
+    @Override
+    public long cost() {
+        return documentCount;
+    }
+}
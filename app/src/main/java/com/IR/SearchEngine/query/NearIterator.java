@@ -0,0 +1,72 @@
+package com.IR.SearchEngine.query;
+
+import com.IR.SearchEngine.indexing.PostingsCursor;
+
+/**
+ * Matches the documents in which two terms occur within a given distance, in
+ * either order ({@code left NEAR/k right}).
+ *
+ * The distance is counted in token positions after preprocessing: adjacent terms
+ * have distance 1, and removed stopwords do not count.
+ *
+ * Implementation notes:
+ * - Candidates come from the leapfrog intersection of PositionalIterator
+ * - The closest pair of positions is found with a two-pointer merge over the two
+ *   sorted position arrays, always moving the pointer at the smaller position
+ * - When both operands are the same term, two different occurrences of it must be
+ *   within the distance, which only needs to compare consecutive positions
+ *
+ * @author alexhere
+ */
+public class NearIterator extends PositionalIterator {
+
+    private final int maxDistance;
+    private final boolean sameTerm;
+
+    /**
+     * Creates a proximity iterator.
+     *
+     * @param left Fresh cursor of the first term
+     * @param right Fresh cursor of the second term
+     * @param sameTerm Whether both cursors are over the same term
+     * @param maxDistance Largest allowed distance between the two terms (at least 1)
+     * @throws IllegalStateException If the postings have no positions
+     */
+    public NearIterator(PostingsCursor left, PostingsCursor right, boolean sameTerm, int maxDistance) {
+        super(new PostingsCursor[] {left, right}, true);
+        if (maxDistance < 1) {
+            throw new IllegalArgumentException("NEAR distance must be at least 1: " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+        this.sameTerm = sameTerm;
+    }
+
+    @Override
+    protected boolean matchesPositions() {
+        int leftCount = loadPositions(0);
+        int[] left = positions[0];
+        if (sameTerm) {
+            for (int i = 1; i < leftCount; i++) {
+                if (left[i] - left[i - 1] <= maxDistance) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        int rightCount = loadPositions(1);
+        int[] right = positions[1];
+        int i = 0;
+        int j = 0;
+        while (i < leftCount && j < rightCount) {
+            if (Math.abs(left[i] - right[j]) <= maxDistance) {
+                return true;
+            }
+            if (left[i] < right[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,89 @@
+package com.IR.SearchEngine.query;
+
+import com.IR.SearchEngine.indexing.IndexSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A query parsed into its boolean tree (see QueryParser), with the terms that
+ * rank the matching documents.
+ *
+ * The models score the ranked terms as a bag of words, as for a plain query,
+ * but only over the documents returned by matcher().
+ *
+ * @author alexhere
+ */
+public class ParsedQuery {
+
+    private final QueryNode root;           // null if preprocessing removed every term
+    private final String processedQuery;
+    private final List<String> warnings;    // malformed parts of the query that were skipped
+
+    ParsedQuery(QueryNode root, List<String> warnings) {
+        this.root = root;
+        this.warnings = Collections.unmodifiableList(new ArrayList<>(warnings));
+        List<String> terms = new ArrayList<>();
+        if (root != null) {
+            root.collectTerms(terms);
+        }
+        this.processedQuery = String.join(" ", terms);
+    }
+
+    /**
+     * Gets the root of the query tree.
+     *
+     * @return The root node, or null if the query has no terms left after preprocessing
+     */
+    public QueryNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets the preprocessed terms to rank by: all terms of the query except the
+     * excluded ones, without operators.
+     *
+     * @return Preprocessed query string
+     */
+    public String getProcessedQuery() {
+        return processedQuery;
+    }
+
+    /**
+     * Gets the warnings about malformed parts of the query, such as a dangling
+     * operator or an unbalanced parenthesis, that the parser skipped.
+     *
+     * @return The warnings, empty if the whole query was understood
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * Tells whether the query restricts the matching documents beyond "contains
+     * any of the terms", i.e. whether it has a phrase, NEAR, AND or NOT clause.
+     * Without one it is a plain bag-of-words query.
+     *
+     * @return True if matcher() returns an iterator
+     */
+    public boolean hasConstraints() {
+        return root != null && !root.isDisjunctionOfTerms();
+    }
+
+    /**
+     * Creates an iterator over the documents of a snapshot that match the query.
+     *
+     * @param index The snapshot to search
+     * @return The matching documents, or null if the query has no constraints
+     * @throws IllegalStateException If a clause needs positions and the index was built without them
+     */
+    public DocIdIterator matcher(IndexSnapshot index) {
+        return hasConstraints() ? root.iterator(index) : null;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(root);
+    }
+}
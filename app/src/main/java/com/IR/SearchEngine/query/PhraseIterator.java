@@ -0,0 +1,70 @@
+package com.IR.SearchEngine.query;
+
+import com.IR.SearchEngine.indexing.PostingsCursor;
+
+/**
+ * Matches the documents that contain a sequence of terms at consecutive positions.
+ *
+ * Positions are token positions after preprocessing, so stopwords removed from
+ * the document and from the phrase do not break adjacency: "state of the art"
+ * matches wherever "state" is directly followed by "art".
+ *
+ * Implementation notes:
+ * - Candidates come from the leapfrog intersection of PositionalIterator
+ * - A phrase starting at s needs term i at position s + i. The check is one
+ *   merge over the sorted position arrays: every term keeps a pointer that only
+ *   moves forward, so a candidate costs O(sum of the terms' frequencies)
+ * - A single-term phrase needs no positions and matches every posting of the term
+ *
+ * @author alexhere
+ */
+public class PhraseIterator extends PositionalIterator {
+
+    private final int[] pointers;
+
+    /**
+     * Creates a phrase iterator.
+     *
+     * @param cursors Fresh cursors of the phrase terms, in phrase order (a repeated
+     *                term needs its own cursor for every occurrence)
+     * @throws IllegalStateException If the phrase has several terms and the postings have no positions
+     */
+    public PhraseIterator(PostingsCursor[] cursors) {
+        super(cursors, cursors.length > 1);
+        this.pointers = new int[cursors.length];
+    }
+
+    @Override
+    protected boolean matchesPositions() {
+        int terms = cursors.length;
+        if (terms == 1) {
+            return true;
+        }
+        for (int i = 0; i < terms; i++) {
+            loadPositions(i);
+            pointers[i] = 0;
+        }
+        int[] starts = positions[0];
+        candidates:
+        for (int s = 0; s < positionCounts[0]; s++) {
+            int start = starts[s];
+            for (int i = 1; i < terms; i++) {
+                int wanted = start + i;
+                int[] termPositions = positions[i];
+                int p = pointers[i];
+                while (p < positionCounts[i] && termPositions[p] < wanted) {
+                    p++;
+                }
+                pointers[i] = p;
+                if (p == positionCounts[i]) {
+                    return false;  // later starts need even later positions
+                }
+                if (termPositions[p] != wanted) {
+                    continue candidates;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
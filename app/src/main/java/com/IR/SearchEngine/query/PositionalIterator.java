@@ -0,0 +1,124 @@
+package com.IR.SearchEngine.query;
+
+import com.IR.SearchEngine.indexing.PostingsCursor;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Base class of the clauses that match on term positions (phrases, proximity).
+ *
+ * Candidates are the documents that contain every term. They are found by
+ * leapfrogging: the term with the fewest postings leads and the other cursors
+ * advance() to its document, using the block skip data to jump over postings,
+ * so the work follows the rarest term's postings. Only candidates that contain
+ * all terms are checked on positions, by matchesPositions().
+ *
+ * Implementation notes:
+ * - The position check reads the positions already stored in the postings; the
+ *   documents are never re-tokenized
+ * - Positions of the current candidate are copied into per-term buffers that are
+ *   reused across documents
+ *
+ * @author alexhere
+ */
+abstract class PositionalIterator implements DocIdIterator {
+
+    protected final PostingsCursor[] cursors;  // one per term, in clause order
+    protected final int[][] positions;         // positions of each term in the current candidate
+    protected final int[] positionCounts;
+    private final PostingsCursor[] leapfrogOrder;  // ascending document frequency
+    private int doc = -1;
+
+    /**
+     * Creates an iterator over the given term cursors.
+     *
+     * @param cursors Fresh cursors, one per term
+     * @param needsPositions Whether matchesPositions() reads positions
+     * @throws IllegalStateException If positions are needed but the postings have none
+     */
+    protected PositionalIterator(PostingsCursor[] cursors, boolean needsPositions) {
+        if (cursors.length == 0) {
+            throw new IllegalArgumentException("A positional clause needs at least one term");
+        }
+        if (needsPositions) {
+            for (PostingsCursor cursor : cursors) {
+                if (!cursor.hasPositions()) {
+                    throw new IllegalStateException(
+                            "Phrase and proximity queries need an index built with positions");
+                }
+            }
+        }
+        this.cursors = cursors;
+        this.positions = new int[cursors.length][16];
+        this.positionCounts = new int[cursors.length];
+        this.leapfrogOrder = cursors.clone();
+        Arrays.sort(leapfrogOrder, Comparator.comparingInt(PostingsCursor::docFrequency));
+    }
+
+    /**
+     * Checks the positions of the terms in the current candidate, which contains all terms.
+     *
+     * @return True if the document matches the clause
+     */
+    protected abstract boolean matchesPositions();
+
+    /**
+     * Copies the positions of a term in the current candidate into its buffer.
+     *
+     * @param term Index of the term
+     * @return Number of positions
+     */
+    protected int loadPositions(int term) {
+        PostingsCursor cursor = cursors[term];
+        int count = cursor.termFrequency();
+        if (positions[term].length < count) {
+            positions[term] = new int[Math.max(count, positions[term].length * 2)];
+        }
+        int[] buffer = positions[term];
+        for (int i = 0; i < count; i++) {
+            buffer[i] = cursor.position(i);
+        }
+        positionCounts[term] = count;
+        return count;
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return doc == NO_MORE_DOCS ? doc : advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        PostingsCursor lead = leapfrogOrder[0];
+        int candidate = lead.advance(target);
+        while (candidate != NO_MORE_DOCS) {
+            int next = candidate;
+            for (int i = 1; i < leapfrogOrder.length && next == candidate; i++) {
+                next = leapfrogOrder[i].advance(candidate);
+            }
+            if (next != candidate) {
+                // Some term is missing from the candidate: the lead jumps to where that term occurs next
+                candidate = lead.advance(next);
+            } else if (matchesPositions()) {
+                return doc = candidate;
+            } else {
+                candidate = lead.nextDoc();
+            }
+        }
+        return doc = NO_MORE_DOCS;
+    }
+
+    @Override
+    public long cost() {
+        return leapfrogOrder[0].docFrequency();
+    }
+}
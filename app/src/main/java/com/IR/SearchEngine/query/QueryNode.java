@@ -0,0 +1,264 @@
+package com.IR.SearchEngine.query;
+
+import com.IR.SearchEngine.indexing.IndexSnapshot;
+import com.IR.SearchEngine.indexing.PostingsCursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Node of a parsed query tree (see QueryParser). Every node turns into a
+ * DocIdIterator over one index snapshot, so a query tree becomes a tree of
+ * iterators evaluated over the postings.
+ *
+ * Node types:
+ * - Term: a preprocessed term
+ * - Phrase: terms at consecutive positions
+ * - Near: two terms within a distance
+ * - Group: a boolean combination of required, optional and excluded clauses
+ *
+ * @author alexhere
+ */
+public abstract class QueryNode {
+
+    /**
+     * Creates the iterator over the documents that match this node.
+     *
+     * @param index The snapshot to search
+     * @return A fresh iterator
+     * @throws IllegalStateException If the node needs positions and the index was built without them
+     */
+    public abstract DocIdIterator iterator(IndexSnapshot index);
+
+    /**
+     * Adds the terms that rank the matching documents: every term of the node
+     * except those of excluded clauses.
+     *
+     * @param terms List to add the terms to, in query order
+     */
+    public abstract void collectTerms(List<String> terms);
+
+    /**
+     * Tells whether the node matches exactly the documents that contain any of its
+     * terms, i.e. it is a plain bag-of-words query.
+     *
+     * @return True for a term, or a group of optional plain clauses
+     */
+    public boolean isDisjunctionOfTerms() {
+        return false;
+    }
+
+    /**
+     * A single preprocessed term.
+     */
+    public static final class Term extends QueryNode {
+        private final String term;
+
+        public Term(String term) {
+            this.term = term;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        @Override
+        public DocIdIterator iterator(IndexSnapshot index) {
+            return new TermIterator(index.getPostings(term));
+        }
+
+        @Override
+        public void collectTerms(List<String> terms) {
+            terms.add(term);
+        }
+
+        @Override
+        public boolean isDisjunctionOfTerms() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return term;
+        }
+    }
+
+    /**
+     * Two or more preprocessed terms that must occur at consecutive positions.
+     */
+    public static final class Phrase extends QueryNode {
+        private final String[] terms;
+
+        public Phrase(String[] terms) {
+            this.terms = terms.clone();
+        }
+
+        public String[] getTerms() {
+            return terms.clone();
+        }
+
+        @Override
+        public DocIdIterator iterator(IndexSnapshot index) {
+            PostingsCursor[] cursors = new PostingsCursor[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                cursors[i] = index.getPostings(terms[i]);
+            }
+            return new PhraseIterator(cursors);
+        }
+
+        @Override
+        public void collectTerms(List<String> terms) {
+            Collections.addAll(terms, this.terms);
+        }
+
+        @Override
+        public String toString() {
+            return "\"" + String.join(" ", terms) + "\"";
+        }
+    }
+
+    /**
+     * A {@code left NEAR/k right} clause over two preprocessed terms.
+     */
+    public static final class Near extends QueryNode {
+        private final String left;
+        private final String right;
+        private final int maxDistance;
+
+        public Near(String left, String right, int maxDistance) {
+            this.left = left;
+            this.right = right;
+            this.maxDistance = maxDistance;
+        }
+
+        public String getLeft() {
+            return left;
+        }
+
+        public String getRight() {
+            return right;
+        }
+
+        public int getMaxDistance() {
+            return maxDistance;
+        }
+
+        @Override
+        public DocIdIterator iterator(IndexSnapshot index) {
+            return new NearIterator(index.getPostings(left), index.getPostings(right),
+                    left.equals(right), maxDistance);
+        }
+
+        @Override
+        public void collectTerms(List<String> terms) {
+            terms.add(left);
+            terms.add(right);
+        }
+
+        @Override
+        public String toString() {
+            return left + " NEAR/" + maxDistance + " " + right;
+        }
+    }
+
+    /**
+     * A boolean combination of clauses. A document matches if it matches every
+     * required clause (or, when there is none, at least one optional clause) and
+     * no excluded clause. Optional clauses of a group with required clauses only
+     * contribute ranked terms. A group of excluded clauses only matches every
+     * other document.
+     */
+    public static final class Group extends QueryNode {
+        private final List<QueryNode> required;
+        private final List<QueryNode> optional;
+        private final List<QueryNode> excluded;
+
+        public Group(List<QueryNode> required, List<QueryNode> optional, List<QueryNode> excluded) {
+            this.required = new ArrayList<>(required);
+            this.optional = new ArrayList<>(optional);
+            this.excluded = new ArrayList<>(excluded);
+        }
+
+        public List<QueryNode> getRequired() {
+            return Collections.unmodifiableList(required);
+        }
+
+        public List<QueryNode> getOptional() {
+            return Collections.unmodifiableList(optional);
+        }
+
+        public List<QueryNode> getExcluded() {
+            return Collections.unmodifiableList(excluded);
+        }
+
+        @Override
+        public DocIdIterator iterator(IndexSnapshot index) {
+            DocIdIterator matches;
+            if (!required.isEmpty()) {
+                matches = required.size() == 1
+                        ? required.get(0).iterator(index)
+                        : new ConjunctionIterator(iterators(required, index));
+            } else if (!optional.isEmpty()) {
+                matches = optional.size() == 1
+                        ? optional.get(0).iterator(index)
+                        : new DisjunctionIterator(iterators(optional, index));
+            } else {
+                matches = new MatchAllIterator(index.getDocumentCount());
+            }
+            if (excluded.isEmpty()) {
+                return matches;
+            }
+            DocIdIterator exclusions = excluded.size() == 1
+                    ? excluded.get(0).iterator(index)
+                    : new DisjunctionIterator(iterators(excluded, index));
+            return new ExclusionIterator(matches, exclusions);
+        }
+
+        private static DocIdIterator[] iterators(List<QueryNode> nodes, IndexSnapshot index) {
+            DocIdIterator[] iterators = new DocIdIterator[nodes.size()];
+            for (int i = 0; i < iterators.length; i++) {
+                iterators[i] = nodes.get(i).iterator(index);
+            }
+            return iterators;
+        }
+
+        @Override
+        public void collectTerms(List<String> terms) {
+            for (QueryNode node : required) {
+                node.collectTerms(terms);
+            }
+            for (QueryNode node : optional) {
+                node.collectTerms(terms);
+            }
+        }
+
+        @Override
+        public boolean isDisjunctionOfTerms() {
+            if (!required.isEmpty() || !excluded.isEmpty()) {
+                return false;
+            }
+            for (QueryNode node : optional) {
+                if (!node.isDisjunctionOfTerms()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            List<String> parts = new ArrayList<>();
+            for (QueryNode node : required) {
+                parts.add("+" + node);
+            }
+            for (QueryNode node : optional) {
+                parts.add(node.toString());
+            }
+            for (QueryNode node : excluded) {
+                parts.add("-" + node);
+            }
+            return "(" + String.join(" ", parts) + ")";
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.IR.SearchEngine.query;
+
+import com.IR.SearchEngine.preprocessing.IPreprocessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the query language into a tree of QueryNodes.
+ *
+ * Syntax, from the loosest to the tightest binding:
+ * - {@code a OR b}: documents matching either side
+ * - {@code a AND b}: documents matching both sides
+ * - {@code a b}: words next to each other form a group that matches documents
+ *   containing any of the words, as a plain query does. Phrases and NEAR clauses
+ *   in a group are required, the words then only rank the results
+ * - {@code NOT a}: excludes the documents matching a from its group, e.g.
+ *   {@code convex hull NOT robot}; a query of only NOT clauses matches every
+ *   other document
+ * - {@code "convex hull"}: the words must occur as a phrase, at consecutive positions
+ * - {@code robot NEAR/5 navigation}: the two words must occur within 5 positions
+ *   of each other, in either order
+ * - Parentheses group clauses, e.g. {@code (convex OR hull) AND robot}
+ *
+ * All words outside NOT clauses are ranked as a bag of words.
+ *
+ * Implementation notes:
+ * - Operators (AND, OR, NOT, NEAR/k) are case-sensitive; lower-case "and" or
+ *   "near" are words (and usually stopwords)
+ * - Only the ASCII double quote delimits phrases; typographic quotes are
+ *   normalized away like other punctuation, so queries pasted from documents
+ *   stay plain queries. An unterminated quote is ignored
+ * - Phrases and NEAR operands go through the same preprocessing as the
+ *   documents (stopwords, stemming), so positions line up with the postings.
+ *   A phrase left with no terms is dropped, one left with a single term only
+ *   requires that term. Clauses removed by preprocessing disappear from the
+ *   operators around them ({@code the AND robot} is {@code robot})
+ * - Malformed input never fails: dangling operators and unbalanced
+ *   parentheses are skipped, with a warning in the ParsedQuery
+ *
+ * @author alexhere
+ */
+public class QueryParser {
+
+    // A quoted phrase, a parenthesis, or a word
+    private static final Pattern TOKEN = Pattern.compile("\"([^\"]*)\"|([()])|([^\\s()]+)");
+    private static final Pattern NEAR = Pattern.compile("NEAR/(\\d{1,9})");
+
+    private enum Kind { WORD, PHRASE, AND, OR, NOT, NEAR, OPEN, CLOSE }
+
+    private static final class Token {
+        final Kind kind;
+        final String text;
+
+        Token(Kind kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Tokens of one query with the parse position.
+     */
+    private static final class Tokens {
+        final List<Token> tokens = new ArrayList<>();
+        final List<String> warnings = new ArrayList<>();
+        int position;
+
+        boolean at(Kind kind) {
+            return position < tokens.size() && tokens.get(position).kind == kind;
+        }
+
+        boolean atEnd() {
+            return position == tokens.size();
+        }
+
+        Token next() {
+            return tokens.get(position++);
+        }
+    }
+
+    private final IPreprocessor preprocessor;
+
+    /**
+     * Creates a parser.
+     *
+     * @param preprocessor The preprocessor used for the documents
+     */
+    public QueryParser(IPreprocessor preprocessor) {
+        this.preprocessor = preprocessor;
+    }
+
+    /**
+     * Parses a query.
+     *
+     * @param query The original query string
+     * @return The query tree and its ranked terms
+     */
+    public ParsedQuery parse(String query) {
+        Tokens tokens = tokenize(query == null ? "" : query);
+        List<QueryNode> parts = new ArrayList<>();
+        parts.add(parseOr(tokens));
+        while (!tokens.atEnd()) {
+            // Only a closing parenthesis stops parseOr() early
+            tokens.warnings.add("ignoring unmatched ')'");
+            tokens.next();
+            parts.add(parseOr(tokens));
+        }
+        return new ParsedQuery(or(parts), tokens.warnings);
+    }
+
+    private static Tokens tokenize(String query) {
+        Tokens tokens = new Tokens();
+        Matcher matcher = TOKEN.matcher(query);
+        while (matcher.find()) {
+            if (matcher.group(1) != null) {
+                tokens.tokens.add(new Token(Kind.PHRASE, matcher.group(1)));
+            } else if (matcher.group(2) != null) {
+                tokens.tokens.add(new Token(matcher.group(2).equals("(") ? Kind.OPEN : Kind.CLOSE, matcher.group(2)));
+            } else {
+                String word = matcher.group(3);
+                Kind kind = Kind.WORD;
+                if (word.equals("AND")) {
+                    kind = Kind.AND;
+                } else if (word.equals("OR")) {
+                    kind = Kind.OR;
+                } else if (word.equals("NOT")) {
+                    kind = Kind.NOT;
+                } else if (NEAR.matcher(word).matches()) {
+                    kind = Kind.NEAR;
+                }
+                tokens.tokens.add(new Token(kind, word));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * orExpr := andExpr (OR andExpr)*
+     */
+    private QueryNode parseOr(Tokens tokens) {
+        List<QueryNode> operands = new ArrayList<>();
+        operands.add(parseAnd(tokens));
+        while (tokens.at(Kind.OR)) {
+            tokens.next();
+            operands.add(parseAnd(tokens));
+        }
+        return or(operands);
+    }
+
+    /**
+     * andExpr := group (AND group)*
+     */
+    private QueryNode parseAnd(Tokens tokens) {
+        List<QueryNode> operands = new ArrayList<>();
+        operands.add(parseGroup(tokens));
+        while (tokens.at(Kind.AND)) {
+            tokens.next();
+            operands.add(parseGroup(tokens));
+        }
+        return and(operands);
+    }
+
+    /**
+     * group := (NOT* primary)*, up to the next AND, OR or closing parenthesis
+     */
+    private QueryNode parseGroup(Tokens tokens) {
+        List<QueryNode> required = new ArrayList<>();
+        List<QueryNode> optional = new ArrayList<>();
+        List<QueryNode> excluded = new ArrayList<>();
+        while (!tokens.atEnd() && !tokens.at(Kind.AND) && !tokens.at(Kind.OR) && !tokens.at(Kind.CLOSE)) {
+            boolean negated = false;
+            while (tokens.at(Kind.NOT)) {
+                tokens.next();
+                negated = !negated;
+            }
+            if (tokens.atEnd() || tokens.at(Kind.AND) || tokens.at(Kind.OR) || tokens.at(Kind.CLOSE)) {
+                tokens.warnings.add("ignoring NOT without an operand");
+                break;
+            }
+            // Phrases and NEAR clauses are required; words and parenthesized clauses are optional
+            Kind start = tokens.tokens.get(tokens.position).kind;
+            QueryNode node = parsePrimary(tokens);
+            if (node == null) {
+                continue;
+            }
+            if (negated) {
+                excluded.add(node);
+            } else if (start == Kind.PHRASE || start == Kind.WORD && !node.isDisjunctionOfTerms()) {
+                required.add(node);
+            } else {
+                optional.add(node);
+            }
+        }
+        if (required.isEmpty() && excluded.isEmpty()) {
+            return or(optional);
+        }
+        return new QueryNode.Group(required, optional, excluded);
+    }
+
+    /**
+     * primary := '(' orExpr ')' | PHRASE | WORD (NEAR/k WORD)*
+     */
+    private QueryNode parsePrimary(Tokens tokens) {
+        Token token = tokens.next();
+        switch (token.kind) {
+            case OPEN:
+                QueryNode inner = parseOr(tokens);
+                if (tokens.at(Kind.CLOSE)) {
+                    tokens.next();
+                } else {
+                    tokens.warnings.add("missing ')'");
+                }
+                return inner;
+            case PHRASE:
+                String[] terms = terms(token.text);
+                if (terms.length == 0) {
+                    return null;
+                }
+                return terms.length == 1 ? new QueryNode.Term(terms[0]) : new QueryNode.Phrase(terms);
+            case NEAR:
+                tokens.warnings.add("ignoring " + token.text + ", it needs a word on each side");
+                return null;
+            default:
+                return parseProximity(token, tokens);
+        }
+    }
+
+    /**
+     * Parses a word and the NEAR/k clauses chained to it: {@code a NEAR/2 b NEAR/3 c}
+     * requires a near b and b near c.
+     */
+    private QueryNode parseProximity(Token first, Tokens tokens) {
+        List<String[]> words = new ArrayList<>();
+        List<String> rawWords = new ArrayList<>();
+        List<Boolean> inClause = new ArrayList<>();
+        words.add(terms(first.text));
+        rawWords.add(first.text);
+        inClause.add(false);
+        List<QueryNode> clauses = new ArrayList<>();
+        while (tokens.at(Kind.NEAR)) {
+            Token operator = tokens.next();
+            if (!tokens.at(Kind.WORD)) {
+                tokens.warnings.add("ignoring " + operator.text + ", it needs a word on each side");
+                break;
+            }
+            Token right = tokens.next();
+            int last = words.size() - 1;
+            String[] leftTerms = words.get(last);
+            String[] rightTerms = terms(right.text);
+            int maxDistance = Integer.parseInt(operator.text.substring(operator.text.indexOf('/') + 1));
+            if (maxDistance < 1) {
+                tokens.warnings.add("ignoring " + operator.text + ", the distance must be at least 1");
+                inClause.add(false);
+            } else if (leftTerms.length == 0 || rightTerms.length == 0) {
+                tokens.warnings.add("ignoring " + rawWords.get(last) + " " + operator.text + " "
+                        + right.text + ", an operand is a stopword");
+                inClause.add(false);
+            } else {
+                // A word that preprocessing splits in several terms contributes the terms next to the operator
+                clauses.add(new QueryNode.Near(leftTerms[leftTerms.length - 1], rightTerms[0], maxDistance));
+                inClause.set(last, true);
+                inClause.add(true);
+            }
+            words.add(rightTerms);
+            rawWords.add(right.text);
+        }
+        
+        // Words that are not part of a valid NEAR clause stay plain words
+        List<QueryNode> plain = new ArrayList<>();
+        for (int i = 0; i < words.size(); i++) {
+            if (!inClause.get(i)) {
+                for (String term : words.get(i)) {
+                    plain.add(new QueryNode.Term(term));
+                }
+            }
+        }
+        if (clauses.isEmpty()) {
+            return or(plain);
+        }
+        if (clauses.size() == 1 && plain.isEmpty()) {
+            return clauses.get(0);
+        }
+        return new QueryNode.Group(clauses, plain, new ArrayList<>());
+    }
+
+    /**
+     * Combines the operands of an OR: none, one, or a group of optional clauses.
+     */
+    private static QueryNode or(List<QueryNode> operands) {
+        List<QueryNode> optional = new ArrayList<>();
+        for (QueryNode operand : operands) {
+            if (operand != null) {
+                optional.add(operand);
+            }
+        }
+        if (optional.size() <= 1) {
+            return optional.isEmpty() ? null : optional.get(0);
+        }
+        return new QueryNode.Group(new ArrayList<>(), optional, new ArrayList<>());
+    }
+
+    /**
+     * Combines the operands of an AND. An operand made only of NOT clauses adds
+     * its exclusions to the conjunction instead of matching every other document.
+     */
+    private static QueryNode and(List<QueryNode> operands) {
+        List<QueryNode> required = new ArrayList<>();
+        List<QueryNode> excluded = new ArrayList<>();
+        for (QueryNode operand : operands) {
+            if (operand instanceof QueryNode.Group && ((QueryNode.Group) operand).getRequired().isEmpty()
+                    && ((QueryNode.Group) operand).getOptional().isEmpty()) {
+                excluded.addAll(((QueryNode.Group) operand).getExcluded());
+            } else if (operand != null) {
+                required.add(operand);
+            }
+        }
+        if (required.size() == 1 && excluded.isEmpty()) {
+            return required.get(0);
+        }
+        if (required.isEmpty() && excluded.isEmpty()) {
+            return null;
+        }
+        return new QueryNode.Group(required, new ArrayList<>(), excluded);
+    }
+
+    /**
+     * Preprocesses a fragment of the query into its terms.
+     */
+    private String[] terms(String fragment) {
+        String processed = preprocessor.preprocessQuery(fragment);
+        return processed.isEmpty() ? new String[0] : processed.split(" ");
+    }
+}
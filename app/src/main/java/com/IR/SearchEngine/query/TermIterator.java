@@ -0,0 +1,43 @@
+package com.IR.SearchEngine.query;
+
+import com.IR.SearchEngine.indexing.PostingsCursor;
+
+/**
+ * Matches the documents that contain a term: the leaf of a query's execution tree.
+ * advance() is the cursor's own, which gallops over the block skip data.
+ *
+ * @author alexhere
+ */
+public class TermIterator implements DocIdIterator {
+
+    private final PostingsCursor cursor;
+
+    /**
+     * Creates an iterator over a term's postings.
+     *
+     * @param cursor Fresh cursor of the term
+     */
+    public TermIterator(PostingsCursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public int docId() {
+        return cursor.docId();
+    }
+
+    @Override
+    public int nextDoc() {
+        return cursor.nextDoc();
+    }
+
+    @Override
+    public int advance(int target) {
+        return cursor.advance(target);
+    }
+
+    @Override
+    public long cost() {
+        return cursor.docFrequency();
+    }
+}
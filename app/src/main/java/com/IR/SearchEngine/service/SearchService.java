@@ -0,0 +1,273 @@
+package com.IR.SearchEngine.service;
+
+import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.data.QueryStatistics;
+import com.IR.SearchEngine.model.IModel;
+import com.IR.SearchEngine.preprocessing.IPreprocessor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves concurrent search requests, each on its own virtual thread, with a
+ * deadline per request and a bound on the number of searches running at once.
+ *
+ * Requests beyond the concurrency limit wait in a queue, in arrival order; when
+ * the queue is full too, new requests are rejected at once instead of piling up,
+ * so latency stays bounded at peak load.
+ *
+ * Responsibilities:
+ * - Run IModel.search on a virtual thread per request
+ * - Limit running searches and queued requests, rejecting the excess
+ * - Enforce each request's deadline, counted from its submission: a request
+ *   still queued at its deadline gets an empty partial result, a search that
+ *   reaches it stops and returns the best results found so far (see
+ *   IModel#search(String, String, int, long)); both are flagged with
+ *   QueryResult#isPartial
+ * - Report the time spent queued apart from the search time (see
+ *   QueryResult#getQueueWaitMs)
+ * - Count completed, partial and rejected requests
+ *
+ * Implementation notes:
+ * - The concurrency limit is a fair semaphore: a request holds a permit while
+ *   its query is preprocessed and searched
+ * - Virtual threads are cheap, so queued requests park instead of occupying
+ *   platform threads; searching is CPU-bound, so the concurrency limit should be
+ *   about the number of cores. Virtual threads are not preempted, so when every
+ *   carrier thread is busy searching, a queued request notices its deadline late
+ * - The model and preprocessor must be thread-safe, as BM25, VSM and
+ *   Preprocessor are
+ *
+ * Usage:
+ * <pre>
+ * try (SearchService service = new SearchService(bm25, preprocessor, 4, 64)) {
+ *     QueryResult result = service.submit("convex hull", 10, Duration.ofMillis(50)).join();
+ *     if (result.isPartial()) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * @author alexhere
+ */
+public class SearchService implements AutoCloseable {
+
+    private final IModel model;
+    private final IPreprocessor preprocessor;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Semaphore slots;
+    private final AtomicInteger pending = new AtomicInteger();  // running and queued requests
+    private final ExecutorService executor;
+    private volatile boolean closed;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder partial = new LongAdder();
+    private final LongAdder expiredInQueue = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a service.
+     *
+     * @param model The model that answers the requests
+     * @param preprocessor The preprocessor of the queries
+     * @param maxConcurrent Maximum number of searches running at once
+     * @param maxQueued Maximum number of requests waiting for a running slot
+     * @throws IllegalArgumentException If a component is null or a limit is out of range
+     */
+    public SearchService(IModel model, IPreprocessor preprocessor, int maxConcurrent, int maxQueued) {
+        if (model == null) {
+            throw new IllegalArgumentException("Model cannot be null");
+        }
+        if (preprocessor == null) {
+            throw new IllegalArgumentException("Preprocessor cannot be null");
+        }
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("maxConcurrent must be positive: " + maxConcurrent);
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("maxQueued cannot be negative: " + maxQueued);
+        }
+        this.model = model;
+        this.preprocessor = preprocessor;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.slots = new Semaphore(maxConcurrent, true);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("search-", 0).factory());
+    }
+
+    /**
+     * Submits a search request.
+     *
+     * @param query The query as entered by the user
+     * @param topK Number of top results to return
+     * @param timeout Time the request may take, from now, queueing included
+     * @return The result, partial if the deadline was reached
+     * @throws IllegalArgumentException If the timeout is not positive
+     * @throws RejectedExecutionException If the queue is full or the service is closed
+     */
+    public CompletableFuture<QueryResult> submit(String query, int topK, Duration timeout) {
+        if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Timeout must be positive: " + timeout);
+        }
+        long submittedNanos = System.nanoTime();
+        long deadlineNanos = submittedNanos + Math.min(timeout.toNanos(), Long.MAX_VALUE / 2);
+        if (closed) {
+            rejected.increment();
+            throw new RejectedExecutionException("Search service is closed");
+        }
+        if (pending.incrementAndGet() > maxConcurrent + maxQueued) {
+            pending.decrementAndGet();
+            rejected.increment();
+            throw new RejectedExecutionException("Search service is busy: " + maxConcurrent + " running, "
+                    + maxQueued + " queued");
+        }
+
+        CompletableFuture<QueryResult> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(execute(query, topK, submittedNanos, deadlineNanos));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            rejected.increment();
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Runs a search request and waits for its result.
+     *
+     * @param query The query as entered by the user
+     * @param topK Number of top results to return
+     * @param timeout Time the request may take, queueing included
+     * @return The result, partial if the deadline was reached
+     * @throws RejectedExecutionException If the queue is full or the service is closed
+     * @throws IllegalStateException If the search failed
+     */
+    public QueryResult search(String query, int topK, Duration timeout) {
+        try {
+            return submit(query, topK, timeout).join();
+        } catch (CompletionException | CancellationException e) {
+            throw new IllegalStateException("Search failed: " + query, e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    /**
+     * Waits for a running slot, then preprocesses and searches the query.
+     */
+    private QueryResult execute(String query, int topK, long submittedNanos, long deadlineNanos)
+            throws InterruptedException {
+        boolean acquired = slots.tryAcquire(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        long queueWaitMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submittedNanos);
+        if (!acquired) {
+            // Still queued at the deadline: answer with no results rather than late
+            expiredInQueue.increment();
+            partial.increment();
+            QueryStatistics statistics = new QueryStatistics();
+            statistics.setDeadline(deadlineNanos);
+            statistics.isPastDeadline();  // marks it timed out
+            return new QueryResult(query, "", new ArrayList<>(), 0, model.getModelName(), statistics, queueWaitMs);
+        }
+        try {
+            String processedQuery = preprocessor.preprocessQuery(query);
+            QueryResult result = model.search(query, processedQuery, topK, deadlineNanos).withQueueWait(queueWaitMs);
+            completed.increment();
+            if (result.isPartial()) {
+                partial.increment();
+            }
+            return result;
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Stops accepting requests and waits for the submitted ones to finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.close();
+    }
+
+    /**
+     * Gets the number of searches running now.
+     *
+     * @return The running search count
+     */
+    public int getRunning() {
+        return maxConcurrent - slots.availablePermits();
+    }
+
+    /**
+     * Gets the number of requests waiting for a running slot now.
+     *
+     * @return The queued request count
+     */
+    public int getQueued() {
+        return Math.max(0, pending.get() - getRunning());
+    }
+
+    /**
+     * Gets the number of searches that ran, completely or up to their deadline.
+     *
+     * @return The completed search count
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * Gets the number of requests answered with partial results, including
+     * those whose deadline passed while they were queued.
+     *
+     * @return The partial result count
+     */
+    public long getPartial() {
+        return partial.sum();
+    }
+
+    /**
+     * Gets the number of requests whose deadline passed while they were queued.
+     *
+     * @return The expired request count
+     */
+    public long getExpiredInQueue() {
+        return expiredInQueue.sum();
+    }
+
+    /**
+     * Gets the number of requests rejected because the queue was full or the
+     * service was closed.
+     *
+     * @return The rejected request count
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d running, %d queued (limits %d/%d), completed=%d, partial=%d, "
+                + "expired in queue=%d, rejected=%d", model.getModelName(), getRunning(), getQueued(),
+                maxConcurrent, maxQueued, getCompleted(), getPartial(), getExpiredInQueue(), getRejected());
+    }
+}
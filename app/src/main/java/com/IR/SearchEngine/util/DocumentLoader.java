@@ -21,6 +21,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Responsible for loading documents from various sources.
@@ -89,16 +90,28 @@ public class DocumentLoader {
      * @throws IOException If an I/O error occurs
      */
     public List<Document> loadTextDocumentsFromDirectory(Path directoryPath) throws IOException {
+        return loadTextDocumentsParallel(findTextFiles(directoryPath));
+    }
+    
+    /**
+     * Lists the text files of a directory, in the order loadTextDocumentsFromDirectory loads them.
+     * Lets a caller load one document at a time instead of the whole directory.
+     * 
+     * @param directoryPath Path to the directory containing text files
+     * @return Paths of the text files
+     * @throws IOException If an I/O error occurs
+     */
+    public List<Path> findTextFiles(Path directoryPath) throws IOException {
         if (!Files.exists(directoryPath) || !Files.isDirectory(directoryPath)) {
             throw new IOException("Directory does not exist or is not a directory: " + directoryPath);
         }
         
-        List<Path> textFiles = Files.walk(directoryPath)
-                .filter(Files::isRegularFile)
-                .filter(path -> path.toString().endsWith(".txt"))
-                .collect(Collectors.toList());
-        
-        return loadTextDocumentsParallel(textFiles);
+        try (Stream<Path> files = Files.walk(directoryPath)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(".txt"))
+                    .collect(Collectors.toList());
+        }
     }
     
     /**
@@ -0,0 +1,995 @@
+package com.IR.SearchEngine.util;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.DocumentScore;
+import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.indexing.DecodedBlockCache;
+import com.IR.SearchEngine.indexing.ExternalIndexBuilder;
+import com.IR.SearchEngine.indexing.IndexWriter;
+import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.indexing.PostingsCodec;
+import com.IR.SearchEngine.indexing.PostingsCursor;
+import com.IR.SearchEngine.indexing.VByteCodec;
+import com.IR.SearchEngine.model.BM25;
+import com.IR.SearchEngine.model.IModel;
+import com.IR.SearchEngine.model.VSM;
+import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.service.SearchService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Command line benchmark for index construction on a synthetic corpus.
+ * Generates documents whose terms follow a Zipf-like distribution, indexes them
+ * and reports build time and heap footprint.
+ *
+ * Usage:
+ * <pre>
+ * java -cp app.jar com.IR.SearchEngine.util.IndexBenchmark [numDocs] [docLength] [vocabularySize]
+ * java -cp app.jar com.IR.SearchEngine.util.IndexBenchmark scaling [numDocs] [docLength] [vocabularySize]
+ * java -cp app.jar com.IR.SearchEngine.util.IndexBenchmark codecs [numDocs] [docLength] [vocabularySize]
+ * java -cp app.jar com.IR.SearchEngine.util.IndexBenchmark queries [numDocs] [docLength] [vocabularySize]
+ * java -cp app.jar com.IR.SearchEngine.util.IndexBenchmark boolean [numDocs] [docLength] [vocabularySize]
+ * java -cp app.jar com.IR.SearchEngine.util.IndexBenchmark impacts [numDocs] [docLength] [vocabularySize]
+ * java -cp app.jar com.IR.SearchEngine.util.IndexBenchmark blockcache [numDocs] [docLength] [vocabularySize]
+ * java -cp app.jar com.IR.SearchEngine.util.IndexBenchmark service [numDocs] [docLength] [vocabularySize]
+ * java -cp app.jar com.IR.SearchEngine.util.IndexBenchmark intraquery [numDocs] [docLength] [vocabularySize]
+ * java -cp app.jar com.IR.SearchEngine.util.IndexBenchmark parallel [numDocs] [docLength] [vocabularySize]
+ * java -Xmx256m -cp app.jar com.IR.SearchEngine.util.IndexBenchmark external [numDocs] [docLength] [vocabularySize] [budgetMB]
+ * java -cp app.jar com.IR.SearchEngine.util.IndexBenchmark positions [numDocs] [docLength] [vocabularySize]
+ * </pre>
+ *
+ * Implementation notes:
+ * - Documents are generated already "preprocessed" (term positions set directly)
+ *   so the numbers isolate the indexing path from tokenization and stemming; the
+ *   terms are letter-only (see term()), so queries still match after preprocessing
+ * - Heap usage is sampled after System.gc(), so treat it as an estimate
+ * - The external mode streams generated documents into an ExternalIndexBuilder
+ *   without keeping the corpus, so it can index more than fits in the heap
+ * - The parallel mode checks that every thread count writes the same index file,
+ *   byte for byte, as the sequential build
+ * - The positions mode builds the index with and without term positions and
+ *   compares postings size, index file size and build time
+ * - The boolean mode compares "a AND b" with the plain query "a b"; the
+ *   conjunction only scores the documents containing both terms
+ * - The impacts mode compares exact BM25 with SCORE_AT_A_TIME under shrinking
+ *   postings budgets; the synthetic corpus has no relevance judgments, so
+ *   effectiveness is the share of the exact top 10 that is retrieved (see
+ *   ImpactTradeoffReport for MAP and P@10 on the evaluation queries)
+ * - The blockcache mode runs the same queries without a decoded block cache and
+ *   with caches of several sizes; the queries' terms follow the corpus' Zipf
+ *   distribution, so the frequent terms' blocks are the ones reused
+ * - The service mode submits bursts of queries to a SearchService with one
+ *   running slot per core and shrinking deadlines, and reports the 50th and 99th
+ *   percentiles of queue wait and search time apart, with the partial and
+ *   rejected requests
+ * - The intraquery mode runs long queries on one thread and split into
+ *   document ranges on pools of several sizes, and checks that the results are
+ *   identical
+ * - Per-query allocation is read from the JVM's per-thread allocation counter
+ *   (com.sun.management.ThreadMXBean) and includes the models' logging
+ *
+ * @author alexhere
+ */
+public class IndexBenchmark {
+
+    private static final long SEED = 42L;
+    private static final int ROUNDS = 3;
+
+    // Consonants spelling the digits 0-9 of a term's rank
+    private static final String DIGIT_LETTERS = "bcdfghjklm";
+    private static final Pattern RANKED_TERM = Pattern.compile("\\bt(\\d+)\\b");
+
+    /**
+     * Gets the synthetic term of the given rank (0 is the most frequent). The
+     * term is "t" followed by the rank's decimal digits spelled as consonants
+     * (0 = b ... 9 = m), so "t3" is "tf" and "t10" is "tcb": a single token of
+     * letters without vowels, which tokenization, stopword removal and stemming
+     * leave unchanged, so queries typed with these terms match the corpus.
+     *
+     * @param rank The rank of the term in the vocabulary
+     * @return The term
+     */
+    public static String term(int rank) {
+        String digits = Integer.toString(rank);
+        StringBuilder term = new StringBuilder(digits.length() + 1).append('t');
+        for (int i = 0; i < digits.length(); i++) {
+            term.append(DIGIT_LETTERS.charAt(digits.charAt(i) - '0'));
+        }
+        return term.toString();
+    }
+
+    /**
+     * Writes a query over the synthetic vocabulary: every "t" followed by a rank,
+     * as in "t3 AND t7", is replaced with term(rank); everything else is kept.
+     *
+     * @param template The query with ranked terms
+     * @return The query with the terms of the synthetic corpus
+     */
+    public static String query(String template) {
+        return RANKED_TERM.matcher(template).replaceAll(match -> term(Integer.parseInt(match.group(1))));
+    }
+
+    /**
+     * Generates a synthetic corpus of preprocessed documents.
+     *
+     * @param numDocs Number of documents
+     * @param docLength Number of tokens per document
+     * @param vocabularySize Number of distinct terms
+     * @return List of documents with term positions set
+     */
+    public static List<Document> generateCorpus(int numDocs, int docLength, int vocabularySize) {
+        List<Document> documents = new ArrayList<>(numDocs);
+        generateDocuments(numDocs, docLength, vocabularySize, documents::add);
+        return documents;
+    }
+
+    /**
+     * Generates the same synthetic corpus as generateCorpus, handing each document
+     * to a consumer instead of keeping them.
+     *
+     * @param numDocs Number of documents
+     * @param docLength Number of tokens per document
+     * @param vocabularySize Number of distinct terms
+     * @param consumer Receives the documents in order
+     */
+    public static void generateDocuments(int numDocs, int docLength, int vocabularySize,
+                                         Consumer<Document> consumer) {
+        Random random = new Random(SEED);
+        double[] cumulative = zipfCumulative(vocabularySize);
+        String[] vocabulary = new String[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            vocabulary[i] = term(i);
+        }
+
+        String[] tokens = new String[docLength];
+        for (int d = 0; d < numDocs; d++) {
+            Map<String, Integer> termFrequencies = new HashMap<>();
+            for (int i = 0; i < docLength; i++) {
+                tokens[i] = vocabulary[sample(cumulative, random.nextDouble())];
+                termFrequencies.merge(tokens[i], 1, Integer::sum);
+            }
+            // Positions are the token indexes, as the Preprocessor records them
+            Map<String, int[]> termPositions = new HashMap<>(termFrequencies.size() * 2);
+            for (int i = docLength - 1; i >= 0; i--) {
+                int remaining = termFrequencies.merge(tokens[i], -1, Integer::sum);
+                termPositions.computeIfAbsent(tokens[i], term -> new int[remaining + 1])[remaining] = i;
+            }
+            Document document = new Document("doc" + d, "Document " + d, "");
+            document.setTermPositions(termPositions);
+            consumer.accept(document);
+        }
+    }
+
+    private static double[] zipfCumulative(int vocabularySize) {
+        double[] cumulative = new double[vocabularySize];
+        double sum = 0.0;
+        for (int i = 0; i < vocabularySize; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < vocabularySize; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, double u) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the currently used heap after requesting a garbage collection.
+     *
+     * @return Used heap in bytes
+     */
+    public static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Indexes a corpus and prints build time and memory figures.
+     *
+     * @param documents The corpus
+     * @return The populated indexer
+     */
+    public static Indexer benchmarkBuild(List<Document> documents) {
+        return benchmarkBuild(documents, new VByteCodec());
+    }
+
+    /**
+     * Indexes a corpus with the given postings codec and prints build time and
+     * memory figures.
+     *
+     * @param documents The corpus
+     * @param codec The postings codec, or null for uncompressed postings
+     * @return The populated indexer
+     */
+    public static Indexer benchmarkBuild(List<Document> documents, PostingsCodec codec) {
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+
+        Indexer indexer = new Indexer(codec);
+        indexer.indexDocuments(documents);
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        long heapAfter = usedHeap();
+
+        System.out.println("Documents indexed: " + indexer.getDocumentCount());
+        System.out.println("Vocabulary size: " + indexer.getVocabularySize());
+        System.out.println("Build time: " + elapsedMs + " ms");
+        System.out.printf("Throughput: %.0f docs/sec%n", documents.size() * 1000.0 / Math.max(1, elapsedMs));
+        System.out.printf("Postings arrays: %.1f MB%n", indexer.getPostingsSizeInBytes() / (1024.0 * 1024.0));
+        System.out.printf("Index heap delta: %.1f MB%n", (heapAfter - heapBefore) / (1024.0 * 1024.0));
+        return indexer;
+    }
+
+    /**
+     * Reads every posting of every term (document IDs, frequencies and positions)
+     * and prints the decode throughput.
+     *
+     * @param indexer The populated indexer
+     */
+    public static void benchmarkDecode(Indexer indexer) {
+        List<String> terms = new ArrayList<>(indexer.getVocabulary());
+        long values = 0;
+        long checksum = 0;
+        long start = System.nanoTime();
+
+        for (String term : terms) {
+            PostingsCursor cursor = indexer.getPostings(term);
+            while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                int tf = cursor.termFrequency();
+                checksum += cursor.docId() + tf;
+                values += 2;
+                if (cursor.hasPositions()) {
+                    for (int i = 0; i < tf; i++) {
+                        checksum += cursor.position(i);
+                    }
+                    values += tf;
+                }
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Decode: %,d integers in %.2f s (%.1f M ints/sec, checksum %d)%n",
+                values, seconds, values / seconds / 1e6, checksum);
+    }
+
+    /**
+     * Builds the index once per codec and reports size, build time and decode speed.
+     *
+     * @param documents The corpus
+     */
+    public static void benchmarkCodecs(List<Document> documents) {
+        String[] codecNames = {"none", "vbyte", "pfor", "eliasfano"};
+        for (String name : codecNames) {
+            System.out.println("\n=== Codec: " + name + " ===");
+            PostingsCodec codec = name.equals("none") ? null : PostingsCodec.forName(name);
+            benchmarkDecode(benchmarkBuild(documents, codec));
+        }
+    }
+
+    /**
+     * Indexes a corpus one document at a time and prints the throughput of each
+     * interval between checkpoints, to show whether indexing cost grows with
+     * the size of the collection.
+     *
+     * @param documents The corpus
+     * @param checkpoints Ascending document counts at which to report
+     */
+    public static void benchmarkScaling(List<Document> documents, int[] checkpoints) {
+        Indexer indexer = new Indexer();
+        int indexed = 0;
+        long start = System.nanoTime();
+
+        for (int checkpoint : checkpoints) {
+            int target = Math.min(checkpoint, documents.size());
+            long intervalStart = System.nanoTime();
+            int intervalDocs = target - indexed;
+            while (indexed < target) {
+                indexer.indexDocument(documents.get(indexed++));
+            }
+            long intervalNs = System.nanoTime() - intervalStart;
+            System.out.printf("%,10d docs: interval %.0f docs/sec, cumulative %.1f s%n",
+                    indexed, intervalDocs * 1e9 / Math.max(1, intervalNs),
+                    (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /**
+     * Builds the index sequentially and then in parallel with 1, 2, 4, ... threads up
+     * to the number of available processors, and prints the build time and speedup
+     * of each, including background merges. Every parallel index is written to a file and compared byte for byte
+     * with the sequential one.
+     *
+     * @param documents The corpus
+     */
+    public static void benchmarkParallelBuild(List<Document> documents) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < processors; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(processors);
+
+        try {
+            Path sequentialFile = Files.createTempFile("sequential", ".idx");
+            Path parallelFile = Files.createTempFile("parallel", ".idx");
+            try {
+                long start = System.nanoTime();
+                Indexer sequential = new Indexer();
+                sequential.indexDocuments(documents);
+                sequential.waitForMerges();
+                long sequentialNs = System.nanoTime() - start;
+                System.out.printf("%-12s %8.2f s  %8.0f docs/sec%n", "sequential",
+                        sequentialNs / 1e9, documents.size() * 1e9 / sequentialNs);
+                IndexWriter.write(sequential, sequentialFile);
+                sequential = null;
+
+                for (int threads : threadCounts) {
+                    usedHeap();
+                    start = System.nanoTime();
+                    Indexer parallel = new Indexer();
+                    parallel.indexDocumentsParallel(documents, threads);
+                    parallel.waitForMerges();
+                    long elapsedNs = System.nanoTime() - start;
+                    IndexWriter.write(parallel, parallelFile);
+                    boolean identical = Files.mismatch(sequentialFile, parallelFile) == -1;
+                    System.out.printf("%-12s %8.2f s  %8.0f docs/sec  speedup %.2fx  %s%n",
+                            threads + (threads == 1 ? " thread" : " threads"), elapsedNs / 1e9,
+                            documents.size() * 1e9 / elapsedNs, (double) sequentialNs / elapsedNs,
+                            identical ? "identical" : "DIFFERENT");
+                }
+            } finally {
+                Files.deleteIfExists(sequentialFile);
+                Files.deleteIfExists(parallelFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the index files to compare", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Builds the index with and without term positions and prints the build time,
+     * postings size, heap delta and index file size of each.
+     *
+     * @param documents The corpus
+     */
+    public static void benchmarkPositions(List<Document> documents) {
+        try {
+            Path file = Files.createTempFile("positions", ".idx");
+            try {
+                for (boolean storePositions : new boolean[] {true, false}) {
+                    long heapBefore = usedHeap();
+                    long start = System.nanoTime();
+                    Indexer indexer = new Indexer();
+                    indexer.setStorePositions(storePositions);
+                    indexer.indexDocuments(documents);
+                    indexer.waitForMerges();
+                    long elapsedNs = System.nanoTime() - start;
+                    long heapAfter = usedHeap();
+                    long fileBytes = IndexWriter.write(indexer, file);
+                    System.out.printf("%-17s %8.2f s  postings %8.1f MB  heap delta %8.1f MB  file %8.1f MB%n",
+                            storePositions ? "with positions" : "without positions", elapsedNs / 1e9,
+                            indexer.getPostingsSizeInBytes() / (1024.0 * 1024.0),
+                            (heapAfter - heapBefore) / (1024.0 * 1024.0), fileBytes / (1024.0 * 1024.0));
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the index file", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Indexes a generated corpus with an ExternalIndexBuilder and prints the
+     * throughput of every tenth of the corpus, the number of spilled runs, the
+     * merge time and the peak heap use. The index file is deleted afterwards.
+     *
+     * @param numDocs Number of documents
+     * @param docLength Number of tokens per document
+     * @param vocabularySize Number of distinct terms
+     * @param memoryBudget Run buffer budget in bytes
+     */
+    public static void benchmarkExternalBuild(int numDocs, int docLength, int vocabularySize, long memoryBudget) {
+        System.out.printf("Max heap %.0f MB, run buffer budget %.0f MB%n",
+                Runtime.getRuntime().maxMemory() / (1024.0 * 1024.0), memoryBudget / (1024.0 * 1024.0));
+        try {
+            Path file = Files.createTempFile("external", ".idx");
+            try (ExternalIndexBuilder builder = new ExternalIndexBuilder(file, new VByteCodec(), memoryBudget)) {
+                int interval = Math.max(1, numDocs / 10);
+                long start = System.nanoTime();
+                long[] intervalStart = {start};
+                generateDocuments(numDocs, docLength, vocabularySize, document -> {
+                    try {
+                        int indexed = builder.addDocument(document) + 1;
+                        if (indexed % interval == 0 || indexed == numDocs) {
+                            long now = System.nanoTime();
+                            int intervalDocs = indexed % interval == 0 ? interval : indexed % interval;
+                            System.out.printf("%,10d docs: interval %.0f docs/sec, %d runs, cumulative %.1f s%n",
+                                    indexed, intervalDocs * 1e9 / Math.max(1, now - intervalStart[0]),
+                                    builder.getRunCount(), (now - start) / 1e9);
+                            intervalStart[0] = now;
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                long mergeStart = System.nanoTime();
+                long bytes = builder.finish();
+                long end = System.nanoTime();
+                System.out.printf("Merged %d runs (%,d postings) in %.1f s, index file %.1f MB%n",
+                        builder.getRunCount(), builder.getSpilledPostings(), (end - mergeStart) / 1e9,
+                        bytes / (1024.0 * 1024.0));
+                System.out.printf("Total %.1f s (%.0f docs/sec), peak heap %.0f MB%n", (end - start) / 1e9,
+                        numDocs * 1e9 / (end - start), peakHeap() / (1024.0 * 1024.0));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("External build failed", e);
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Runs random queries through every execution mode of BM25 and VSM and prints
+     * the average time and heap allocation per query. Model output is discarded
+     * while the queries run.
+     *
+     * @param indexer The populated indexer
+     * @param vocabularySize Number of distinct terms of the synthetic corpus
+     * @param numQueries Number of queries per execution mode
+     */
+    public static void benchmarkQueries(Indexer indexer, int vocabularySize, int numQueries) {
+        Random random = new Random(SEED);
+        double[] cumulative = zipfCumulative(vocabularySize);
+        String[] queries = new String[numQueries];
+        for (int q = 0; q < numQueries; q++) {
+            StringBuilder query = new StringBuilder();
+            int length = 2 + random.nextInt(3);
+            for (int i = 0; i < length; i++) {
+                query.append(i == 0 ? "" : " ").append(term(sample(cumulative, random.nextDouble())));
+            }
+            queries[q] = query.toString();
+        }
+
+        Preprocessor preprocessor = new Preprocessor();
+        List<String> names = new ArrayList<>();
+        List<IModel> models = new ArrayList<>();
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (BM25.ExecutionMode mode : BM25.ExecutionMode.values()) {
+                BM25 bm25 = new BM25(indexer, preprocessor);
+                bm25.setExecutionMode(mode);
+                bm25.initialize();
+                names.add("BM25 " + mode);
+                models.add(bm25);
+            }
+            for (VSM.ExecutionMode mode : VSM.ExecutionMode.values()) {
+                VSM vsm = new VSM(indexer, preprocessor);
+                vsm.setExecutionMode(mode);
+                names.add("VSM " + mode);
+                models.add(vsm);
+            }
+        } finally {
+            System.setOut(console);
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int m = 0; m < models.size(); m++) {
+            IModel model = models.get(m);
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long elapsed;
+            long allocated;
+            try {
+                for (String query : queries) {
+                    model.search(query, query, 10); // warm-up
+                }
+                long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                for (String query : queries) {
+                    model.search(query, query, 10);
+                }
+                elapsed = System.nanoTime() - start;
+                allocated = threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+            } finally {
+                System.setOut(console);
+            }
+            System.out.printf("%-24s %8.3f ms/query %,12d bytes/query%n", names.get(m),
+                    elapsed / 1e6 / numQueries, allocated / numQueries);
+        }
+    }
+
+    /**
+     * Runs random two-term conjunctions ("a AND b") through BM25 and VSM and
+     * compares them with the same terms as a plain query, both scored exhaustively
+     * (what a conjunction cost before boolean operators) and with the default
+     * pruning mode. Prints the average time and documents scored per query.
+     *
+     * @param indexer The populated indexer
+     * @param vocabularySize Number of distinct terms of the synthetic corpus
+     * @param numQueries Number of queries per row
+     */
+    public static void benchmarkBoolean(Indexer indexer, int vocabularySize, int numQueries) {
+        Random random = new Random(SEED);
+        double[] cumulative = zipfCumulative(vocabularySize);
+        String[] plain = new String[numQueries];
+        String[] conjunctions = new String[numQueries];
+        for (int q = 0; q < numQueries; q++) {
+            int first = sample(cumulative, random.nextDouble());
+            int second = sample(cumulative, random.nextDouble());
+            plain[q] = term(first) + " " + term(second);
+            conjunctions[q] = term(first) + " AND " + term(second);
+        }
+
+        Preprocessor preprocessor = new Preprocessor();
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        BM25 bm25Exhaustive = new BM25(indexer, preprocessor);
+        BM25 bm25 = new BM25(indexer, preprocessor);
+        VSM vsmExhaustive = new VSM(indexer, preprocessor);
+        VSM vsm = new VSM(indexer, preprocessor);
+        try {
+            bm25Exhaustive.setExecutionMode(BM25.ExecutionMode.EXHAUSTIVE);
+            bm25Exhaustive.initialize();
+            bm25.initialize();
+            vsmExhaustive.setExecutionMode(VSM.ExecutionMode.EXHAUSTIVE);
+        } finally {
+            System.setOut(console);
+        }
+
+        String[] names = {"BM25 EXHAUSTIVE a b", "BM25 " + bm25.getExecutionMode() + " a b", "BM25 a AND b",
+                "VSM EXHAUSTIVE a b", "VSM " + vsm.getExecutionMode() + " a b", "VSM a AND b"};
+        IModel[] models = {bm25Exhaustive, bm25, bm25, vsmExhaustive, vsm, vsm};
+        for (int m = 0; m < models.length; m++) {
+            String[] queries = m % 3 == 2 ? conjunctions : plain;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long elapsed;
+            long documentsScored = 0;
+            try {
+                for (String query : queries) {
+                    models[m].search(query, query, 10); // warm-up
+                }
+                long start = System.nanoTime();
+                for (String query : queries) {
+                    documentsScored += models[m].search(query, query, 10).getStatistics().getDocumentsScored();
+                }
+                elapsed = System.nanoTime() - start;
+            } finally {
+                System.setOut(console);
+            }
+            System.out.printf("%-28s %8.3f ms/query %,12d documents scored/query%n", names[m],
+                    elapsed / 1e6 / numQueries, documentsScored / numQueries);
+        }
+    }
+
+    /**
+     * Runs random queries through exact BM25 (BLOCK_MAX_WAND) and through
+     * SCORE_AT_A_TIME with no budget and with budgets of 50% down to 1% of the
+     * queries' average postings. Prints the average time and postings scored per
+     * query and the share of the exact top 10 each configuration retrieves.
+     *
+     * @param indexer The populated indexer
+     * @param vocabularySize Number of distinct terms of the synthetic corpus
+     * @param numQueries Number of queries per row
+     */
+    public static void benchmarkImpacts(Indexer indexer, int vocabularySize, int numQueries) {
+        Random random = new Random(SEED);
+        double[] cumulative = zipfCumulative(vocabularySize);
+        String[] queries = new String[numQueries];
+        for (int q = 0; q < numQueries; q++) {
+            StringBuilder query = new StringBuilder();
+            int length = 2 + random.nextInt(3);
+            for (int i = 0; i < length; i++) {
+                query.append(i == 0 ? "" : " ").append(term(sample(cumulative, random.nextDouble())));
+            }
+            queries[q] = query.toString();
+        }
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        BM25 bm25 = new BM25(indexer, new Preprocessor());
+        List<List<Integer>> exactTopK = new ArrayList<>();
+        long postingsTotal = 0;
+        long start = System.nanoTime();
+        try {
+            bm25.initialize();
+            for (String query : queries) {
+                QueryResult result = bm25.search(query, query, 10);
+                exactTopK.add(docIds(result));
+                postingsTotal += result.getStatistics().getPostingsTotal();
+            }
+            start = System.nanoTime();
+            bm25.setExecutionMode(BM25.ExecutionMode.SCORE_AT_A_TIME);
+            bm25.waitForImpactIndex();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            System.setOut(console);
+        }
+        System.out.printf("Impact index build: %.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+        long averagePostings = Math.max(1, postingsTotal / numQueries);
+        long[] budgets = {Long.MAX_VALUE, averagePostings / 2, averagePostings / 5,
+                averagePostings / 10, averagePostings / 20, averagePostings / 100};
+        for (int row = -1; row < budgets.length; row++) {
+            bm25.setExecutionMode(row < 0 ? BM25.ExecutionMode.BLOCK_MAX_WAND : BM25.ExecutionMode.SCORE_AT_A_TIME);
+            bm25.setPostingsBudget(row < 0 ? Long.MAX_VALUE : Math.max(1, budgets[row]));
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long elapsed;
+            long postingsScored = 0;
+            double overlap = 0.0;
+            try {
+                for (String query : queries) {
+                    bm25.search(query, query, 10); // warm-up
+                }
+                start = System.nanoTime();
+                for (int q = 0; q < numQueries; q++) {
+                    QueryResult result = bm25.search(queries[q], queries[q], 10);
+                    postingsScored += result.getStatistics().getPostingsScored();
+                    List<Integer> retrieved = docIds(result);
+                    retrieved.retainAll(exactTopK.get(q));
+                    overlap += exactTopK.get(q).isEmpty() ? 1.0 : (double) retrieved.size() / exactTopK.get(q).size();
+                }
+                elapsed = System.nanoTime() - start;
+            } finally {
+                System.setOut(console);
+            }
+            String name = row < 0 ? "BM25 BLOCK_MAX_WAND (exact)"
+                    : "BM25 SCORE_AT_A_TIME " + (budgets[row] == Long.MAX_VALUE ? "no budget" : "budget " + bm25.getPostingsBudget());
+            System.out.printf("%-40s %8.3f ms/query %,12d postings/query %6.1f%% of exact top 10%n", name,
+                    elapsed / 1e6 / numQueries, postingsScored / numQueries, 100.0 * overlap / numQueries);
+        }
+    }
+
+    /**
+     * Runs random queries through BM25 without a decoded block cache and with
+     * caches of 1 MB up to 64 MB. Prints the average time per query, the block
+     * cache hit ratio and the decoding time the cache saved per query, over
+     * {@value #ROUNDS} rounds after as many warm-up rounds.
+     *
+     * @param indexer The populated indexer
+     * @param vocabularySize Number of distinct terms of the synthetic corpus
+     * @param numQueries Number of queries per row
+     */
+    public static void benchmarkBlockCache(Indexer indexer, int vocabularySize, int numQueries) {
+        Random random = new Random(SEED);
+        double[] cumulative = zipfCumulative(vocabularySize);
+        String[] queries = new String[numQueries];
+        for (int q = 0; q < numQueries; q++) {
+            queries[q] = term(sample(cumulative, random.nextDouble())) + " " + term(sample(cumulative, random.nextDouble()));
+        }
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        BM25 bm25 = new BM25(indexer, new Preprocessor());
+        try {
+            bm25.initialize();
+        } finally {
+            System.setOut(console);
+        }
+
+        long[] cacheSizes = {0, 1L << 20, 8L << 20, 64L << 20};
+        for (long cacheSize : cacheSizes) {
+            indexer.setBlockCache(cacheSize > 0 ? new DecodedBlockCache(cacheSize) : null);
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long elapsed;
+            long hits = 0;
+            long misses = 0;
+            long saved = 0;
+            try {
+                for (int round = 0; round < ROUNDS; round++) {
+                    for (String query : queries) {
+                        bm25.search(query, query, 10); // warm-up, and fills the cache
+                    }
+                }
+                long start = System.nanoTime();
+                for (int round = 0; round < ROUNDS; round++) {
+                    for (String query : queries) {
+                        QueryResult result = bm25.search(query, query, 10);
+                        hits += result.getStatistics().getBlockCacheHits();
+                        misses += result.getStatistics().getBlockCacheMisses();
+                        saved += result.getDecodeNanosSaved();
+                    }
+                }
+                elapsed = System.nanoTime() - start;
+            } finally {
+                System.setOut(console);
+            }
+            String name = cacheSize == 0 ? "No block cache" : "Block cache " + (cacheSize >> 20) + " MB";
+            System.out.printf("%-20s %8.3f ms/query %6.1f%% block hits %8.3f ms/query decoding saved%n", name,
+                    elapsed / 1e6 / (ROUNDS * numQueries), hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses),
+                    saved / 1e6 / (ROUNDS * numQueries));
+        }
+        indexer.setBlockCache(null);
+    }
+
+    /**
+     * Submits all queries at once to a SearchService, for deadlines from 1 s
+     * down to 2 ms, with one running slot per core and room in the queue for
+     * three quarters of the burst, so the last quarter is rejected. Prints the
+     * percentiles of queue wait and search time, and the partial and rejected
+     * requests.
+     *
+     * @param indexer The populated indexer
+     * @param vocabularySize Number of distinct terms of the synthetic corpus
+     * @param numQueries Number of queries per burst
+     */
+    public static void benchmarkService(Indexer indexer, int vocabularySize, int numQueries) {
+        Random random = new Random(SEED);
+        double[] cumulative = zipfCumulative(vocabularySize);
+        String[] queries = new String[numQueries];
+        for (int q = 0; q < numQueries; q++) {
+            queries[q] = term(sample(cumulative, random.nextDouble())) + " " + term(sample(cumulative, random.nextDouble()))
+                    + " " + term(sample(cumulative, random.nextDouble()));
+        }
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Preprocessor preprocessor = new Preprocessor();
+        BM25 bm25 = new BM25(indexer, preprocessor);
+        try {
+            bm25.initialize();
+            for (String query : queries) {
+                bm25.search(query, query, 10); // warm-up
+            }
+        } finally {
+            System.setOut(console);
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("Bursts of " + numQueries + " queries, " + cores + " running, "
+                + (numQueries * 3 / 4) + " queued");
+        long[] deadlinesMs = {1000, 50, 10, 2};
+        for (long deadlineMs : deadlinesMs) {
+            long[] queueWaits = new long[numQueries];
+            long[] searchTimes = new long[numQueries];
+            int answered = 0;
+            SearchService service = new SearchService(bm25, preprocessor, cores, numQueries * 3 / 4);
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long start = System.nanoTime();
+            try {
+                List<CompletableFuture<QueryResult>> futures = new ArrayList<>();
+                for (String query : queries) {
+                    try {
+                        futures.add(service.submit(query, 10, Duration.ofMillis(deadlineMs)));
+                    } catch (RejectedExecutionException e) {
+                        // counted by the service
+                    }
+                }
+                for (CompletableFuture<QueryResult> future : futures) {
+                    QueryResult result = future.join();
+                    queueWaits[answered] = result.getQueueWaitMs();
+                    searchTimes[answered++] = result.getExecutionTimeMs();
+                }
+            } finally {
+                service.close();
+                System.setOut(console);
+            }
+            long elapsed = System.nanoTime() - start;
+            Arrays.sort(queueWaits, 0, answered);
+            Arrays.sort(searchTimes, 0, answered);
+            System.out.printf("Deadline %4d ms: queue wait p50=%d p99=%d ms, search p50=%d p99=%d ms, "
+                    + "partial=%d, rejected=%d, %.0f queries/s%n", deadlineMs,
+                    percentile(queueWaits, answered, 0.50), percentile(queueWaits, answered, 0.99),
+                    percentile(searchTimes, answered, 0.50), percentile(searchTimes, answered, 0.99),
+                    service.getPartial(), service.getRejected(), answered / (elapsed / 1e9));
+        }
+    }
+
+    /**
+     * Runs long queries on one thread, then split into document ranges on
+     * ForkJoinPools of 2, 4 and one thread per core, for the BM25 and VSM modes
+     * that walk postings. Prints the time per query and the number of queries
+     * whose results differ from the single-threaded run.
+     *
+     * @param indexer The populated indexer
+     * @param vocabularySize Number of distinct terms of the synthetic corpus
+     * @param numQueries Number of queries
+     */
+    public static void benchmarkIntraQuery(Indexer indexer, int vocabularySize, int numQueries) {
+        Random random = new Random(SEED);
+        double[] cumulative = zipfCumulative(vocabularySize);
+        String[] queries = new String[numQueries];
+        for (int q = 0; q < numQueries; q++) {
+            StringBuilder query = new StringBuilder();
+            for (int t = 0; t < 20; t++) {
+                query.append(t == 0 ? "t" : " t").append(sample(cumulative, random.nextDouble()));
+            }
+            queries[q] = query.toString();
+        }
+
+        Preprocessor preprocessor = new Preprocessor();
+        List<IModel> models = new ArrayList<>();
+        for (BM25.ExecutionMode mode : new BM25.ExecutionMode[] {
+                BM25.ExecutionMode.TERM_AT_A_TIME, BM25.ExecutionMode.BLOCK_MAX_WAND}) {
+            BM25 bm25 = new BM25(indexer, preprocessor);
+            bm25.setExecutionMode(mode);
+            models.add(bm25);
+        }
+        models.add(new VSM(indexer, preprocessor));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] threadCounts = cores > 4 ? new int[] {1, 2, 4, cores} : new int[] {1, 2, 4};
+        System.out.println(numQueries + " queries of 20 terms, " + cores + " cores");
+        PrintStream console = System.out;
+        for (IModel model : models) {
+            List<List<Integer>> expected = new ArrayList<>();
+            for (int threads : threadCounts) {
+                ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+                setParallelism(model, pool);
+                long elapsed;
+                int mismatches = 0;
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                try {
+                    model.initialize();
+                    for (String query : queries) {
+                        model.search(query, query, 10); // warm-up
+                    }
+                    long start = System.nanoTime();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (int q = 0; q < numQueries; q++) {
+                            List<Integer> ids = docIds(model.search(queries[q], queries[q], 10));
+                            if (pool == null && round == 0) {
+                                expected.add(ids);
+                            } else if (!ids.equals(expected.get(q))) {
+                                mismatches++;
+                            }
+                        }
+                    }
+                    elapsed = System.nanoTime() - start;
+                } finally {
+                    System.setOut(console);
+                    if (pool != null) {
+                        pool.shutdown();
+                    }
+                }
+                System.out.printf("%-40s %2d threads %8.3f ms/query, %d mismatches%n",
+                        model.getModelName() + " " + model.getConfiguration(), threads,
+                        elapsed / 1e6 / (ROUNDS * numQueries), mismatches);
+            }
+            setParallelism(model, null);
+        }
+    }
+
+    /**
+     * Scores every query of a model on a pool, or never splits them if the pool is null.
+     */
+    private static void setParallelism(IModel model, ForkJoinPool pool) {
+        long threshold = pool == null ? Long.MAX_VALUE : 0;
+        if (model instanceof BM25) {
+            ((BM25) model).setParallelThreshold(threshold);
+            if (pool != null) {
+                ((BM25) model).setParallelPool(pool);
+            }
+        } else if (model instanceof VSM) {
+            ((VSM) model).setParallelThreshold(threshold);
+            if (pool != null) {
+                ((VSM) model).setParallelPool(pool);
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, int count, double fraction) {
+        return count == 0 ? 0 : sorted[Math.min(count - 1, (int) (fraction * count))];
+    }
+
+    private static List<Integer> docIds(QueryResult result) {
+        List<Integer> ids = new ArrayList<>();
+        for (DocumentScore score : result.getResults()) {
+            ids.add(Integer.parseInt(score.getDocument().getId().substring(3)));
+        }
+        return ids;
+    }
+
+    public static void main(String[] args) {
+        String mode = args.length > 0 && !Character.isDigit(args[0].charAt(0)) ? args[0] : "build";
+        int offset = mode.equals("build") ? 0 : 1;
+        int numDocs = args.length > offset ? Integer.parseInt(args[offset]) : 100_000;
+        int docLength = args.length > offset + 1 ? Integer.parseInt(args[offset + 1]) : 100;
+        int vocabularySize = args.length > offset + 2 ? Integer.parseInt(args[offset + 2]) : 50_000;
+
+        if (mode.equals("external")) {
+            long budgetMb = args.length > offset + 3 ? Long.parseLong(args[offset + 3]) : 64;
+            benchmarkExternalBuild(numDocs, docLength, vocabularySize, budgetMb << 20);
+            return;
+        }
+
+        System.out.println("Generating " + numDocs + " documents (" + docLength
+                + " tokens each, vocabulary " + vocabularySize + ")...");
+        List<Document> documents = generateCorpus(numDocs, docLength, vocabularySize);
+
+        switch (mode) {
+            case "scaling":
+                List<Integer> checkpoints = new ArrayList<>();
+                for (int n = 10_000; n < numDocs; n *= 10) {
+                    checkpoints.add(n);
+                }
+                checkpoints.add(numDocs);
+                benchmarkScaling(documents, checkpoints.stream().mapToInt(Integer::intValue).toArray());
+                break;
+            case "codecs":
+                benchmarkCodecs(documents);
+                break;
+            case "queries":
+                benchmarkQueries(benchmarkBuild(documents), vocabularySize, 200);
+                break;
+            case "boolean":
+                benchmarkBoolean(benchmarkBuild(documents), vocabularySize, 200);
+                break;
+            case "impacts":
+                benchmarkImpacts(benchmarkBuild(documents), vocabularySize, 200);
+                break;
+            case "blockcache":
+                benchmarkBlockCache(benchmarkBuild(documents), vocabularySize, 500);
+                break;
+            case "service":
+                benchmarkService(benchmarkBuild(documents), vocabularySize, 400);
+                break;
+            case "intraquery":
+                benchmarkIntraQuery(benchmarkBuild(documents), vocabularySize, 100);
+                break;
+            case "parallel":
+                benchmarkParallelBuild(documents);
+                break;
+            case "positions":
+                benchmarkPositions(documents);
+                break;
+            default:
+                benchmarkBuild(documents);
+        }
+    }
+}
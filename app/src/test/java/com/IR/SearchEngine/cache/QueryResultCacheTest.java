@@ -0,0 +1,86 @@
+package com.IR.SearchEngine.cache;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.DocumentScore;
+import com.IR.SearchEngine.data.QueryResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the result cache keeps popular queries through a scan of
+ * one-off queries, stays within its bounds and forgets everything when the
+ * index version changes.
+ */
+class QueryResultCacheTest {
+
+    @Test
+    void popularQueriesSurviveScan() {
+        QueryResultCache cache = new QueryResultCache(200, 1L << 20);
+        for (int round = 0; round < 5; round++) {
+            for (int q = 0; q < 100; q++) {
+                lookup(cache, "popular " + q, 1);
+            }
+        }
+        for (int q = 0; q < 5000; q++) {
+            lookup(cache, "scan " + q, 1);
+        }
+
+        int kept = 0;
+        for (int q = 0; q < 100; q++) {
+            if (cache.get(key("popular " + q), 1) != null) {
+                kept++;
+            }
+        }
+        assertTrue(kept >= 95, "popular queries kept: " + kept);
+        assertTrue(cache.size() <= 200);
+        assertTrue(cache.getEvictions() > 0);
+        assertEquals(5500 + 100, cache.getHits() + cache.getMisses());
+    }
+
+    @Test
+    void staysWithinByteBudget() {
+        QueryResultCache cache = new QueryResultCache(1000, 50_000);
+        for (int q = 0; q < 2000; q++) {
+            lookup(cache, "query " + q, 1);
+            assertTrue(cache.sizeInBytes() <= 50_000);
+        }
+        assertTrue(cache.size() < 1000);
+    }
+
+    @Test
+    void newIndexVersionInvalidates() {
+        QueryResultCache cache = new QueryResultCache(100, 1L << 20);
+        lookup(cache, "convex hull", 1);
+        assertNotNull(cache.get(key("convex hull"), 1));
+        assertNull(cache.get(key("convex hull"), 2));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getInvalidations());
+
+        // Results computed on an older index are not cached
+        cache.put(key("convex hull"), result("convex hull"), 1);
+        assertEquals(0, cache.size());
+        assertFalse(key("convex hull").equals(new QueryResultCache.Key("convex hull", "BM25", "k1=2.0", 10)));
+    }
+
+    private static void lookup(QueryResultCache cache, String query, long version) {
+        if (cache.get(key(query), version) == null) {
+            cache.put(key(query), result(query), version);
+        }
+    }
+
+    private static QueryResultCache.Key key(String query) {
+        return new QueryResultCache.Key(query, "BM25", "k1=1.2", 10);
+    }
+
+    private static QueryResult result(String query) {
+        List<DocumentScore> scores = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            scores.add(new DocumentScore(new Document("doc" + i, "Doc " + i, 100, 50), 10.0 - i, "BM25", i));
+        }
+        return new QueryResult(query, query, scores, 1, "BM25");
+    }
+}
@@ -0,0 +1,95 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.QueryStatistics;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that cursors reading through a decoded block cache return the same
+ * postings as uncached cursors, hit the cache once blocks were read twice, and that a
+ * small cache stays within its capacity.
+ */
+class DecodedBlockCacheTest {
+
+    @Test
+    void cachedCursorsMatchDecodedPostings() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(3000, 30, 400);
+        Indexer indexer = new Indexer();
+        indexer.setMaxBufferedDocuments(1000);
+        indexer.indexDocuments(corpus);
+        IndexSnapshot plain = indexer.snapshot();
+        DecodedBlockCache cache = new DecodedBlockCache(16L << 20);
+        indexer.setBlockCache(cache);
+        IndexSnapshot cached = indexer.snapshot();
+        assertSame(cache, cached.getBlockCache());
+        assertEquals(plain.getVersion(), cached.getVersion());
+
+        // Blocks are cached when they are decoded a second time
+        for (int pass = 0; pass < 3; pass++) {
+            QueryStatistics statistics = new QueryStatistics();
+            for (int termId = 0; termId < plain.getVocabularySize(); termId++) {
+                assertSamePostings(plain.getPostings(termId), cached.getPostings(termId, statistics));
+            }
+            if (pass == 0) {
+                assertEquals(0, statistics.getBlockCacheHits());
+            } else if (pass == 2) {
+                assertEquals(1.0, statistics.getBlockCacheHitRatio(), 0.0);
+                assertTrue(statistics.getDecodeNanosSaved() >= 0);
+            }
+        }
+
+        // Skipping through cached blocks lands on the same documents
+        for (int termId = 0; termId < plain.getVocabularySize(); termId += 7) {
+            PostingsCursor expected = plain.getPostings(termId);
+            PostingsCursor actual = cached.getPostings(termId);
+            for (int target = 0; target < plain.getDocumentCount(); target += 97) {
+                assertEquals(expected.advance(target), actual.advance(target));
+                if (expected.docId() == PostingsCursor.NO_MORE_DOCS) {
+                    break;
+                }
+                assertEquals(expected.termFrequency(), actual.termFrequency());
+            }
+        }
+    }
+
+    @Test
+    void smallCacheEvicts() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(3000, 30, 400);
+        Indexer indexer = new Indexer();
+        indexer.indexDocuments(corpus);
+        DecodedBlockCache cache = new DecodedBlockCache(64 * 1200);
+        indexer.setBlockCache(cache);
+        IndexSnapshot index = indexer.snapshot();
+
+        for (int pass = 0; pass < 3; pass++) {
+            for (int termId = 0; termId < index.getVocabularySize(); termId++) {
+                PostingsCursor cursor = index.getPostings(termId);
+                while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                    cursor.termFrequency();
+                }
+            }
+        }
+        assertTrue(cache.size() <= cache.getMaxBlocks());
+        assertTrue(cache.getEvictions() > 0);
+        assertTrue(cache.getHits() > 0);
+    }
+
+    private static void assertSamePostings(PostingsCursor expected, PostingsCursor actual) {
+        while (true) {
+            int docId = expected.nextDoc();
+            assertEquals(docId, actual.nextDoc());
+            if (docId == PostingsCursor.NO_MORE_DOCS) {
+                return;
+            }
+            assertEquals(expected.termFrequency(), actual.termFrequency());
+            if (expected.hasPositions()) {
+                assertEquals(expected.position(0), actual.position(0));
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.IR.SearchEngine.indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round-trips bytes through LZ4BlockCodec (incompressible, highly repetitive,
+ * empty and tiny input, matches too far back to reference) and documents
+ * through DocumentStore: several blocks, the block being filled, a section
+ * written with writeTo() and opened again with wrap(), and the
+ * {@value DocumentStore#MAX_BLOCK_DOCUMENTS}-documents-per-block cap.
+ */
+class DocumentStoreTest {
+
+    @Test
+    void lz4RoundTrips() {
+        Random random = new Random(11);
+        byte[] incompressible = new byte[100_000];
+        random.nextBytes(incompressible);
+        byte[] compressed = assertLz4RoundTrip(incompressible, 0, incompressible.length);
+        assertTrue(compressed.length <= incompressible.length + incompressible.length / 255 + 16);
+
+        byte[] repetitive = new byte[100_000];
+        Arrays.fill(repetitive, (byte) 'a');
+        assertTrue(assertLz4RoundTrip(repetitive, 0, repetitive.length).length < 1000);
+
+        byte[] text = "the quick brown fox jumps over the lazy dog; the lazy dog sleeps. "
+                .repeat(500).getBytes(StandardCharsets.UTF_8);
+        assertTrue(assertLz4RoundTrip(text, 0, text.length).length < text.length / 10);
+
+        // Empty and shorter than a match plus the trailing literals
+        for (int length = 0; length <= 12; length++) {
+            assertLz4RoundTrip(repetitive, 0, length);
+            assertLz4RoundTrip(incompressible, 7, length);
+        }
+
+        // A repeat more than 65535 bytes back cannot be referenced
+        byte[] far = new byte[140_000];
+        random.nextBytes(far);
+        System.arraycopy(far, 0, far, 70_000, 1000);
+        assertLz4RoundTrip(far, 0, far.length);
+
+        // A range in the middle of a larger array
+        assertLz4RoundTrip(text, 123, 5000);
+    }
+
+    @Test
+    void lz4RejectsMalformedBlocks() {
+        byte[] text = "abcdefgh".repeat(100).getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = LZ4BlockCodec.compress(text, 0, text.length);
+        assertThrows(IllegalArgumentException.class,
+                () -> LZ4BlockCodec.decompress(compressed, 0, compressed.length, text.length + 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> LZ4BlockCodec.decompress(compressed, 0, compressed.length - 3, text.length));
+    }
+
+    @Test
+    void storeServesSealedAndPendingBlocks() throws IOException {
+        List<String> documents = documents(2000, new Random(5));
+        try (DocumentStore store = DocumentStore.temporary()) {
+            for (int docId = 0; docId < documents.size(); docId++) {
+                store.add(docId, documents.get(docId));
+            }
+            store.add(documents.size(), null);
+            assertEquals(documents.size() + 1, store.getDocumentCount());
+            for (int docId = 0; docId < documents.size(); docId++) {
+                assertEquals(documents.get(docId), store.get(docId));
+            }
+            assertEquals("", store.get(documents.size()));
+            assertNull(store.get(-1));
+            assertNull(store.get(documents.size() + 1));
+            assertTrue(store.getStoredBytes() < store.getRawBytes());
+            assertThrows(IllegalArgumentException.class, () -> store.add(0, "out of order"));
+        }
+    }
+
+    @Test
+    void sectionRoundTrip() throws IOException {
+        List<String> documents = documents(1500, new Random(9));
+        try (DocumentStore store = DocumentStore.temporary()) {
+            for (int docId = 0; docId < documents.size(); docId++) {
+                store.add(docId, documents.get(docId));
+            }
+            // The whole store, a prefix ending inside a sealed block, and nothing
+            for (int count : new int[] {documents.size(), 777, 0}) {
+                ByteBuffer section = ByteBuffer.wrap(writeSection(store, count));
+                try (DocumentStore wrapped = DocumentStore.wrap(section)) {
+                    assertEquals(count, wrapped.getDocumentCount());
+                    for (int docId = 0; docId < count; docId++) {
+                        assertEquals(documents.get(docId), wrapped.get(docId));
+                    }
+                    assertNull(wrapped.get(count));
+
+                    // Documents added after opening go after the mapped blocks
+                    wrapped.add(count, "added later");
+                    assertEquals("added later", wrapped.get(count));
+                    if (count > 0) {
+                        assertEquals(documents.get(count - 1), wrapped.get(count - 1));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void blocksHoldAtMostMaxBlockDocuments() throws IOException {
+        int count = 2 * DocumentStore.MAX_BLOCK_DOCUMENTS + 100;
+        try (DocumentStore store = DocumentStore.temporary()) {
+            for (int docId = 0; docId < count; docId++) {
+                store.add(docId, "d" + docId);   // all of them would fit in one block by size
+            }
+            ByteBuffer section = ByteBuffer.wrap(writeSection(store, count));
+            assertEquals(count, section.getInt(0));
+            assertEquals(3, section.getInt(4));
+            for (int block = 0; block < 3; block++) {
+                assertEquals(block * DocumentStore.MAX_BLOCK_DOCUMENTS, section.getInt(8 + 20 * block));
+            }
+            try (DocumentStore wrapped = DocumentStore.wrap(section)) {
+                for (int docId = 0; docId < count; docId++) {
+                    assertEquals("d" + docId, wrapped.get(docId));
+                }
+            }
+        }
+    }
+
+    @Test
+    void wrapRejectsMalformedSections() {
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(0, 1).putInt(4, 2);   // more blocks than documents
+        assertThrows(IllegalArgumentException.class, () -> DocumentStore.wrap(header));
+        ByteBuffer outside = ByteBuffer.allocate(8 + 20).putInt(0, 1).putInt(4, 1)
+                .putInt(12, 10).putInt(16, 10).putLong(20, 0);   // a block past the end of the section
+        assertThrows(IllegalArgumentException.class, () -> DocumentStore.wrap(outside));
+    }
+
+    private static byte[] assertLz4RoundTrip(byte[] src, int offset, int length) {
+        byte[] compressed = LZ4BlockCodec.compress(src, offset, length);
+        byte[] restored = LZ4BlockCodec.decompress(compressed, 0, compressed.length, length);
+        assertArrayEquals(Arrays.copyOfRange(src, offset, offset + length), restored);
+        return compressed;
+    }
+
+    private static byte[] writeSection(DocumentStore store, int count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            store.writeTo(out, count);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Documents from empty to larger than a block, with non-ASCII text, totalling
+     * several blocks.
+     */
+    private static List<String> documents(int count, Random random) {
+        String[] words = {"inverted", "index", "posting", "query", "rank", "dokumen", "pencarian", "é", "中文"};
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int length = i == 100 ? 10_000 : random.nextInt(60);
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < length; w++) {
+                text.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            documents.add(text.toString());
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,77 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that ExternalIndexBuilder, spilling several runs under the smallest
+ * memory budget, writes byte-for-byte the file IndexWriter writes for the same
+ * documents, for every postings codec, and that IndexReader serves the same
+ * index from that file when it is mapped in small chunks, so that postings,
+ * strings and stored-field blocks cross chunk boundaries as they do past 2 GB.
+ */
+class ExternalIndexBuilderTest {
+
+    @Test
+    void builderMatchesIndexWriter() throws Exception {
+        List<Document> corpus = IndexBenchmark.generateCorpus(3000, 40, 1000);
+        for (PostingsCodec codec : new PostingsCodec[] {new VByteCodec(), new PForDeltaCodec(), new EliasFanoCodec()}) {
+            Indexer indexer = new Indexer(codec);
+            indexer.setMaxBufferedDocuments(700);
+            indexer.indexDocuments(corpus);
+            indexer.waitForMerges();
+
+            Path written = Files.createTempFile("writer", ".idx");
+            Path built = Files.createTempFile("external", ".idx");
+            try {
+                IndexWriter.write(indexer, written);
+                try (ExternalIndexBuilder builder = new ExternalIndexBuilder(built, codec,
+                        ExternalIndexBuilder.MIN_MEMORY_BUDGET)) {
+                    for (Document document : corpus) {
+                        builder.addDocument(document);
+                    }
+                    long size = builder.finish();
+                    assertEquals(Files.size(built), size);
+                    assertTrue(builder.getRunCount() > 1, codec.getName() + " spilled a single run");
+                }
+                assertEquals(-1, Files.mismatch(written, built), codec.getName());
+
+                for (int chunkSize : new int[] {MappedFile.DEFAULT_CHUNK_SIZE, 4096, 1000}) {
+                    assertSameIndex(indexer, IndexReader.open(built, chunkSize, true));
+                }
+            } finally {
+                Files.deleteIfExists(written);
+                Files.deleteIfExists(built);
+            }
+        }
+    }
+
+    private static void assertSameIndex(Indexer expected, Indexer actual) {
+        assertEquals(expected.getDocumentCount(), actual.getDocumentCount());
+        for (int docId = 0; docId < expected.getDocumentCount(); docId++) {
+            assertEquals(expected.getDocument(docId).getId(), actual.getDocument(docId).getId());
+            assertEquals(expected.getDocument(docId).getLength(), actual.getDocument(docId).getLength());
+            assertEquals(expected.getDocumentContent(docId), actual.getDocumentContent(docId));
+        }
+        assertEquals(expected.getVocabulary(), actual.getVocabulary());
+        for (String term : expected.getVocabulary()) {
+            PostingsCursor expectedCursor = expected.getPostings(term);
+            PostingsCursor actualCursor = actual.getPostings(term);
+            while (expectedCursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                assertEquals(expectedCursor.docId(), actualCursor.nextDoc(), term);
+                assertEquals(expectedCursor.termFrequency(), actualCursor.termFrequency(), term);
+                for (int i = 0; i < expectedCursor.termFrequency(); i++) {
+                    assertEquals(expectedCursor.position(i), actualCursor.position(i), term);
+                }
+            }
+            assertEquals(PostingsCursor.NO_MORE_DOCS, actualCursor.nextDoc(), term);
+        }
+    }
+}
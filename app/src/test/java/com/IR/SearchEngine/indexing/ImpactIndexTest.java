@@ -0,0 +1,63 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that an impact index holds every positive-weight posting of a
+ * multi-segment snapshot exactly once, with its quantized weight, in segments
+ * of decreasing impact and increasing document ID.
+ */
+class ImpactIndexTest {
+
+    @Test
+    void segmentsHoldQuantizedPostings() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(3000, 30, 400);
+        Indexer indexer = new Indexer();
+        indexer.setMaxBufferedDocuments(700);
+        indexer.indexDocuments(corpus);
+        IndexSnapshot index = indexer.snapshot();
+        DocumentStatistics statistics = index.getDocumentStatistics();
+
+        // Term 0 weighs nothing, so its postings are left out
+        TermScorer weight = (tf, docLength) -> tf * 10.0 / (tf + docLength / 30.0);
+        ImpactIndex impacts = ImpactIndex.build(index, termId -> termId == 0 ? (tf, docLength) -> 0.0 : weight, 8);
+        assertEquals(0, impacts.termEnd(0) - impacts.termStart(0));
+
+        long postings = 0;
+        for (int termId = 1; termId < index.getVocabularySize(); termId++) {
+            int[] expected = new int[index.getDocumentCount()];
+            PostingsCursor cursor = index.getPostings(termId);
+            for (int docId = cursor.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = cursor.nextDoc()) {
+                double w = weight.score(cursor.termFrequency(), statistics.length(docId));
+                expected[docId] = Math.min(255, (int) Math.ceil(w / impacts.getScale()));
+                assertTrue(expected[docId] >= 1);
+            }
+
+            int previousImpact = Integer.MAX_VALUE;
+            for (int s = impacts.termStart(termId); s < impacts.termEnd(termId); s++) {
+                assertTrue(impacts.impact(s) < previousImpact, "impacts must decrease");
+                previousImpact = impacts.impact(s);
+                int previousDoc = -1;
+                for (int p = impacts.segmentStart(s); p < impacts.segmentEnd(s); p++) {
+                    int docId = impacts.docId(p);
+                    assertTrue(docId > previousDoc, "documents must increase within a segment");
+                    previousDoc = docId;
+                    assertEquals(expected[docId], impacts.impact(s));
+                    expected[docId] = 0;
+                    postings++;
+                }
+            }
+            for (int remaining : expected) {
+                assertEquals(0, remaining, "every posting must be in a segment");
+            }
+        }
+        assertEquals(impacts.getPostingCount(), postings);
+        assertEquals(index.getVocabularySize(), impacts.getVocabularySize());
+    }
+}
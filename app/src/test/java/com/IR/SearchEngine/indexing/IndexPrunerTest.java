@@ -0,0 +1,137 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.model.BM25;
+import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that pruning drops only low-scoring postings, keeps the document
+ * lengths and the collection statistics, so that surviving postings score as
+ * in the full index, and that a pruned index survives an index file round trip.
+ */
+class IndexPrunerTest {
+
+    private static final TermScorer SCORER = (tf, docLength) -> tf * 2.2 / (tf + 1.2 * docLength / 30.0);
+
+    @Test
+    void termCentricKeepsTopPostingsOfEveryTerm() throws Exception {
+        Indexer indexer = index();
+        IndexSnapshot full = indexer.snapshot();
+        Indexer pruned = IndexPruner.pruneByTerm(indexer, termId -> SCORER, 5, 0.8);
+        IndexSnapshot index = pruned.snapshot();
+
+        assertEquals(full.getVocabularySize(), index.getVocabularySize());
+        long fullPostings = 0;
+        long prunedPostings = 0;
+        for (int termId = 0; termId < full.getVocabularySize(); termId++) {
+            int df = full.getDocumentFrequency(termId);
+            int kept = index.getDocumentFrequency(full.getDictionary().term(termId));
+            assertTrue(kept >= Math.min(5, df) && kept <= df);
+            fullPostings += df;
+            prunedPostings += kept;
+        }
+        assertTrue(prunedPostings < fullPostings);
+        assertRoundTrip(pruned, indexer);
+    }
+
+    @Test
+    void documentCentricKeepsFractionOfEachDocument() throws Exception {
+        Indexer indexer = index();
+        IndexSnapshot full = indexer.snapshot();
+        Indexer pruned = IndexPruner.pruneByDocument(indexer, termId -> SCORER, 0.5);
+        DocumentStatistics before = full.getDocumentStatistics();
+        DocumentStatistics after = pruned.snapshot().getDocumentStatistics();
+
+        for (int docId = 0; docId < full.getDocumentCount(); docId++) {
+            int terms = before.termEnd(docId) - before.termStart(docId);
+            assertEquals((terms + 1) / 2, after.termEnd(docId) - after.termStart(docId));
+            assertEquals(before.length(docId), after.length(docId));
+        }
+        assertRoundTrip(pruned, indexer);
+    }
+
+    @Test
+    void survivingPostingsKeepTheirBM25Weight() throws Exception {
+        Indexer indexer = index();
+        BM25 fullModel = new BM25(indexer, new Preprocessor());
+        fullModel.initialize();
+        IndexSnapshot full = indexer.snapshot();
+        Indexer pruned = IndexPruner.pruneByTerm(indexer, fullModel::getTermScorer, 3, 0.9);
+        assertSameWeights(fullModel, full, pruned);
+
+        Path file = Files.createTempFile("pruned", ".idx");
+        try {
+            IndexWriter.write(pruned, file);
+            Indexer reopened = IndexReader.open(file);
+            assertSameWeights(fullModel, full, reopened);
+
+            // Pruning a pruned index still keeps the statistics of the first full index
+            Indexer prunedTwice = IndexPruner.pruneByDocument(reopened, fullModel::getTermScorer, 0.5);
+            assertSameWeights(fullModel, full, prunedTwice);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Checks every posting of a pruned index against the weight of the same
+     * posting in the full index, and the IDF values of the terms.
+     */
+    private static void assertSameWeights(BM25 fullModel, IndexSnapshot full, Indexer pruned) {
+        BM25 prunedModel = new BM25(pruned, new Preprocessor());
+        prunedModel.initialize();
+        IndexSnapshot index = pruned.snapshot();
+        DocumentStatistics statistics = index.getDocumentStatistics();
+        boolean zeroIdfTerm = false;
+        long postings = 0;
+        for (int termId = 0; termId < index.getVocabularySize(); termId++) {
+            int fullTermId = full.getTermId(index.getDictionary().term(termId));
+            assertEquals(full.getDocumentFrequency(fullTermId), index.getCollectionDocumentFrequency(termId));
+            assertEquals(full.getIdf(fullTermId), index.getIdf(termId));
+            TermScorer fullScorer = fullModel.getTermScorer(fullTermId);
+            TermScorer prunedScorer = prunedModel.getTermScorer(termId);
+            zeroIdfTerm |= fullScorer.score(1, 30) == 0.0;
+            PostingsCursor cursor = index.getPostings(termId);
+            for (int docId = cursor.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = cursor.nextDoc()) {
+                int length = statistics.length(docId);
+                assertEquals(fullScorer.score(cursor.termFrequency(), length),
+                        prunedScorer.score(cursor.termFrequency(), length));
+                postings++;
+            }
+        }
+        assertTrue(zeroIdfTerm, "the corpus should have a term with zero BM25 IDF");
+        assertTrue(postings < full.getDocumentStatistics().termEntryCount());
+    }
+
+    private static Indexer index() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(1500, 30, 300);
+        Indexer indexer = new Indexer();
+        indexer.setMaxBufferedDocuments(400);
+        indexer.indexDocuments(corpus);
+        return indexer;
+    }
+
+    private static void assertRoundTrip(Indexer pruned, Indexer full) throws Exception {
+        Path file = Files.createTempFile("pruned", ".idx");
+        try {
+            IndexWriter.write(pruned, file);
+            Indexer reopened = IndexReader.open(file);
+            assertTrue(reopened.isPruned());
+            assertEquals(pruned.getVocabularySize(), reopened.getVocabularySize());
+            for (int docId = 0; docId < full.getDocumentCount(); docId++) {
+                assertEquals(full.getDocument(docId).getLength(), reopened.getDocument(docId).getLength());
+                assertEquals(full.getDocumentContent(docId), reopened.getDocumentContent(docId));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round-trips a multi-segment index through IndexWriter and IndexReader, and
+ * checks that damaged files are rejected: a wrong magic number or version,
+ * truncated files and counts or string lengths past the end of the file by
+ * open(), flipped bytes anywhere by verify()'s checksum, and
+ * a document table that disagrees with the postings by verify() even when the
+ * checksum was rewritten to match.
+ */
+class IndexReaderTest {
+
+    private final Indexer indexer = indexer();
+
+    @Test
+    void roundTrip() throws Exception {
+        Path file = Files.createTempFile("reader", ".idx");
+        try {
+            IndexWriter.write(indexer, file);
+            for (Indexer reopened : new Indexer[] {IndexReader.open(file), IndexReader.verify(file)}) {
+                assertEquals(indexer.getCodec().getName(), reopened.getCodec().getName());
+                assertTrue(reopened.isStorePositions());
+                assertEquals(indexer.getDocumentCount(), reopened.getDocumentCount());
+                for (int docId = 0; docId < indexer.getDocumentCount(); docId++) {
+                    Document expected = indexer.getDocument(docId);
+                    Document actual = reopened.getDocument(docId);
+                    assertEquals(expected.getId(), actual.getId());
+                    assertEquals(expected.getTitle(), actual.getTitle());
+                    assertEquals(expected.getLength(), actual.getLength());
+                    assertEquals(expected.getUniqueTermCount(), actual.getUniqueTermCount());
+                    assertEquals(indexer.getDocumentContent(docId), reopened.getDocumentContent(docId));
+                }
+                assertEquals(indexer.getVocabulary(), reopened.getVocabulary());
+                for (String term : indexer.getVocabulary()) {
+                    assertEquals(indexer.getDocumentFrequency(term), reopened.getDocumentFrequency(term));
+                    assertEquals(indexer.getIdf(term), reopened.getIdf(term));
+                    PostingsCursor expected = indexer.getPostings(term);
+                    PostingsCursor actual = reopened.getPostings(term);
+                    while (expected.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                        assertEquals(expected.docId(), actual.nextDoc(), term);
+                        assertEquals(expected.termFrequency(), actual.termFrequency(), term);
+                        assertEquals(expected.position(expected.termFrequency() - 1),
+                                actual.position(actual.termFrequency() - 1), term);
+                    }
+                    assertEquals(PostingsCursor.NO_MORE_DOCS, actual.nextDoc(), term);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void openRejectsWrongMagicAndVersion() throws Exception {
+        Path file = Files.createTempFile("reader", ".idx");
+        try {
+            IndexWriter.write(indexer, file);
+            byte[] bytes = Files.readAllBytes(file);
+            assertRejectedByOpen(file, ByteBuffer.wrap(bytes.clone()).putInt(0, 0x12345678).array());
+            assertRejectedByOpen(file, ByteBuffer.wrap(bytes.clone()).putInt(4, IndexWriter.FORMAT_VERSION - 1).array());
+            assertRejectedByOpen(file, ByteBuffer.wrap(bytes.clone()).putInt(4, IndexWriter.FORMAT_VERSION + 1).array());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void openRejectsTruncatedFiles() throws Exception {
+        Path file = Files.createTempFile("reader", ".idx");
+        try {
+            IndexWriter.write(indexer, file);
+            byte[] bytes = Files.readAllBytes(file);
+            for (int length : new int[] {0, 3, 12, 40, bytes.length / 3, bytes.length / 2, bytes.length - 200,
+                    bytes.length - Long.BYTES, bytes.length - 1}) {
+                assertRejectedByOpen(file, Arrays.copyOf(bytes, length));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void openRejectsCountsAndLengthsPastTheEnd() throws Exception {
+        Path file = Files.createTempFile("reader", ".idx");
+        try {
+            IndexWriter.write(indexer, file);
+            byte[] bytes = Files.readAllBytes(file);
+            int codecName = indexer.getCodec().getName().getBytes(StandardCharsets.UTF_8).length;
+            int documentCount = 8 + 4 + codecName + 4;
+            int firstDocument = documentCount + 8;
+            // Codec name and first document ID lengths, document and term counts
+            for (int offset : new int[] {8, firstDocument + 8, documentCount, documentCount + 4}) {
+                for (int value : new int[] {-1, Integer.MAX_VALUE, bytes.length}) {
+                    assertRejectedByOpen(file, ByteBuffer.wrap(bytes.clone()).putInt(offset, value).array());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void verifyRejectsFlippedBytes() throws Exception {
+        Path file = Files.createTempFile("reader", ".idx");
+        try {
+            IndexWriter.write(indexer, file);
+            byte[] bytes = Files.readAllBytes(file);
+            // Header, document table, dictionary, postings, stored fields and the footer itself
+            for (int position : new int[] {10, 60, bytes.length / 4, bytes.length / 2, 3 * bytes.length / 4,
+                    bytes.length - 20, bytes.length - 1}) {
+                byte[] corrupt = bytes.clone();
+                corrupt[position] ^= 0x10;
+                Files.write(file, corrupt);
+                assertThrows(IOException.class, () -> IndexReader.verify(file), "byte " + position);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void verifyRejectsDocumentTableThatDisagreesWithPostings() throws Exception {
+        Path file = Files.createTempFile("reader", ".idx");
+        try {
+            IndexWriter.write(indexer, file);
+            byte[] bytes = Files.readAllBytes(file);
+            // The first document's distinct term count, with the checksum rewritten to match
+            int codecName = indexer.getCodec().getName().getBytes(StandardCharsets.UTF_8).length;
+            int firstDocument = 8 + 4 + codecName + 12;
+            ByteBuffer corrupt = ByteBuffer.wrap(bytes.clone());
+            corrupt.putInt(firstDocument + 4, corrupt.getInt(firstDocument + 4) - 1);
+            CRC32 checksum = new CRC32();
+            checksum.update(corrupt.array(), 0, bytes.length - Long.BYTES);
+            corrupt.putLong(bytes.length - Long.BYTES, checksum.getValue());
+            Files.write(file, corrupt.array());
+
+            IndexReader.open(file);
+            IOException e = assertThrows(IOException.class, () -> IndexReader.verify(file));
+            assertTrue(e.getMessage().contains("distinct term mismatch"), e.getMessage());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static Indexer indexer() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(2000, 40, 800);
+        Indexer indexer = new Indexer(new PForDeltaCodec());
+        indexer.setMaxBufferedDocuments(600);
+        indexer.indexDocuments(corpus);
+        try {
+            indexer.waitForMerges();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return indexer;
+    }
+
+    private static void assertRejectedByOpen(Path file, byte[] content) throws IOException {
+        Files.write(file, content);
+        assertThrows(IOException.class, () -> IndexReader.open(file), content.length + " bytes");
+        assertThrows(IOException.class, () -> IndexReader.verify(file), content.length + " bytes");
+    }
+}
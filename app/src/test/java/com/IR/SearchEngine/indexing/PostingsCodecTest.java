@@ -0,0 +1,175 @@
+package com.IR.SearchEngine.indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round-trips document IDs and values through every postings codec, and bit
+ * fields through BitOutput and BitInput: empty and single-value sequences,
+ * gaps of 2^28 and more, runs of ones and PForDelta exceptions. Every decoder
+ * must also stop exactly at the end of its sequence.
+ */
+class PostingsCodecTest {
+
+    private static final PostingsCodec[] CODECS = {new VByteCodec(), new PForDeltaCodec(), new EliasFanoCodec()};
+    private static final int MARKER = 0x5A;
+
+    @Test
+    void emptyAndSingleSequences() {
+        for (PostingsCodec codec : CODECS) {
+            assertDocIdsRoundTrip(codec, new int[0], -1);
+            assertValuesRoundTrip(codec, new int[0]);
+            assertDocIdsRoundTrip(codec, new int[] {0}, -1);
+            assertDocIdsRoundTrip(codec, new int[] {41}, 40);
+            assertDocIdsRoundTrip(codec, new int[] {Integer.MAX_VALUE - 1}, -1);
+            assertValuesRoundTrip(codec, new int[] {0});
+            assertValuesRoundTrip(codec, new int[] {1 << 28});
+        }
+    }
+
+    @Test
+    void largeGaps() {
+        int[] docIds = {3, (1 << 28) + 3, (1 << 28) + 4, 1 << 30, (1 << 30) + (1 << 28), Integer.MAX_VALUE - 1};
+        int[] values = {1, 1 << 28, 7, (1 << 29) + 1, 0, 3};
+        for (PostingsCodec codec : CODECS) {
+            assertDocIdsRoundTrip(codec, docIds, -1);
+            assertDocIdsRoundTrip(codec, Arrays.copyOfRange(docIds, 1, docIds.length), 3);
+            assertValuesRoundTrip(codec, values);
+        }
+    }
+
+    @Test
+    void runsOfOnes() {
+        int[] ones = new int[3 * PForDeltaCodec.BLOCK_SIZE + 5];
+        Arrays.fill(ones, 1);
+        int[] consecutive = new int[ones.length];
+        for (int i = 0; i < consecutive.length; i++) {
+            consecutive[i] = 1000 + i;
+        }
+        for (PostingsCodec codec : CODECS) {
+            assertValuesRoundTrip(codec, ones);
+            assertDocIdsRoundTrip(codec, consecutive, 999);   // every gap is 0
+        }
+
+        // One bit per value: a block of ones packs into 16 bytes after its header
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PForDeltaCodec().encodeValues(ones, 0, PForDeltaCodec.BLOCK_SIZE, out);
+        assertEquals(1 + 1 + PForDeltaCodec.BLOCK_SIZE / 8, out.size());
+    }
+
+    @Test
+    void pforExceptions() {
+        int[] values = new int[PForDeltaCodec.BLOCK_SIZE + 40];
+        Random random = new Random(7);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(8);
+        }
+        // Fewer than 10% of the first block are wide: they become exceptions of a 3-bit frame
+        values[0] = 1 << 20;
+        values[17] = (1 << 28) + 12345;
+        values[PForDeltaCodec.BLOCK_SIZE - 1] = Integer.MAX_VALUE;
+        values[PForDeltaCodec.BLOCK_SIZE + 3] = 1 << 30;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PForDeltaCodec().encodeValues(values, 0, values.length, out);
+        byte[] encoded = out.toByteArray();
+        assertEquals(3, encoded[0]);   // bit width of the first block
+        assertEquals(3, encoded[1]);   // its exception count
+        assertValuesRoundTrip(new PForDeltaCodec(), values);
+
+        // A block made only of exceptions-sized values takes the wide frame instead
+        int[] wide = new int[PForDeltaCodec.BLOCK_SIZE];
+        Arrays.fill(wide, 1 << 28);
+        out.reset();
+        new PForDeltaCodec().encodeValues(wide, 0, wide.length, out);
+        assertEquals(29, out.toByteArray()[0]);
+        assertEquals(0, out.toByteArray()[1]);
+        assertValuesRoundTrip(new PForDeltaCodec(), wide);
+    }
+
+    @Test
+    void randomSequencesAtOffsets() {
+        Random random = new Random(42);
+        for (PostingsCodec codec : CODECS) {
+            for (int trial = 0; trial < 50; trial++) {
+                int count = random.nextInt(600);
+                int[] docIds = new int[count];
+                int[] values = new int[count];
+                int docId = random.nextInt(100) - 1;
+                int previous = docId;
+                for (int i = 0; i < count; i++) {
+                    docId += 1 + (random.nextInt(10) == 0 ? random.nextInt(1 << 16) : random.nextInt(8));
+                    docIds[i] = docId;
+                    values[i] = random.nextInt(5) == 0 ? random.nextInt(1 << 12) : random.nextInt(4);
+                }
+                assertDocIdsRoundTrip(codec, docIds, previous);
+                assertValuesRoundTrip(codec, values);
+            }
+        }
+    }
+
+    @Test
+    void bitFieldsAndUnaryCodes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BitOutput bits = new BitOutput(out);
+        bits.write(5, 3);
+        bits.write(123, 0);
+        bits.write(-1, 32);
+        bits.write(1 << 28, 29);
+        bits.writeUnary(0);
+        bits.writeUnary(31);
+        bits.writeUnary(32);
+        bits.writeUnary(100);
+        bits.write(1, 1);
+        bits.flush();
+        out.write(MARKER);
+
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+        BitInput input = new BitInput(in);
+        assertEquals(5, input.read(3));
+        assertEquals(0, input.read(0));
+        assertEquals(-1, input.read(32));
+        assertEquals(1 << 28, input.read(29));
+        assertEquals(0, input.readUnary());
+        assertEquals(31, input.readUnary());
+        assertEquals(32, input.readUnary());
+        assertEquals(100, input.readUnary());
+        assertEquals(1, input.read(1));
+        assertEquals(MARKER, in.get());
+    }
+
+    private static void assertDocIdsRoundTrip(PostingsCodec codec, int[] docIds, int previousDocId) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MARKER);
+        codec.encodeDocIds(docIds, 0, docIds.length, previousDocId, out);
+        out.write(MARKER);
+
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(MARKER, in.get());
+        int[] decoded = new int[docIds.length + 2];
+        codec.decodeDocIds(in, decoded, 1, docIds.length, previousDocId);
+        assertArrayEquals(docIds, Arrays.copyOfRange(decoded, 1, docIds.length + 1), codec.getName());
+        assertEquals(MARKER, in.get(), codec.getName() + " must stop at the end of the sequence");
+        assertFalse(in.hasRemaining());
+    }
+
+    private static void assertValuesRoundTrip(PostingsCodec codec, int[] values) {
+        int[] padded = new int[values.length + 3];
+        System.arraycopy(values, 0, padded, 2, values.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encodeValues(padded, 2, values.length, out);
+        out.write(MARKER);
+
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+        int[] decoded = new int[values.length];
+        codec.decodeValues(in, decoded, 0, values.length);
+        assertArrayEquals(values, decoded, codec.getName());
+        assertEquals(MARKER, in.get(), codec.getName() + " must stop at the end of the sequence");
+    }
+}
@@ -0,0 +1,218 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.DocumentScore;
+import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.model.BM25;
+import com.IR.SearchEngine.model.VSM;
+import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that an index built incrementally out of flushed and merged segments
+ * ranks exactly like an index rebuilt from scratch, including while documents
+ * are being ingested and merged in the background, and that a parallel build
+ * produces exactly the index of a sequential one.
+ */
+class SegmentedIndexTest {
+
+    private static final String[] QUERIES = Stream.of(
+        "t1 t5 t20", "t100 t7", "t3 t42 t250 t999", "t12", "t2 t60 t61 t400 t1500"
+    ).map(IndexBenchmark::query).toArray(String[]::new);
+
+    private final Preprocessor preprocessor = new Preprocessor();
+
+    @Test
+    void ingestWhileQueryingMatchesFullRebuild() throws Exception {
+        List<Document> corpus = IndexBenchmark.generateCorpus(3000, 60, 3000);
+
+        Indexer live = new Indexer();
+        live.setMaxBufferedDocuments(200);
+        live.setMergePolicy(new TieredMergePolicy(3, 3, 100));
+        BM25 liveBm25 = new BM25(live, preprocessor);
+        VSM liveVsm = new VSM(live, preprocessor);
+
+        AtomicReference<Throwable> ingestFailure = new AtomicReference<>();
+        Thread ingest = new Thread(() -> {
+            try {
+                for (int i = 0; i < corpus.size(); i++) {
+                    live.indexDocument(corpus.get(i));
+                    if (i % 10 == 9) {
+                        Thread.sleep(10); // a steady stream rather than one burst
+                    }
+                }
+                live.flush();
+            } catch (Throwable t) {
+                ingestFailure.set(t);
+            }
+        }, "ingest");
+        ingest.start();
+
+        // Query the live index while it grows. A query saw exactly the documents of the
+        // snapshots taken around it when no flush happened in between; those rankings
+        // are checked against a rebuilt index once ingestion is over
+        Map<Integer, Map<String, List<String>>> observed = new TreeMap<>();
+        int query = 0;
+        while (ingest.isAlive()) {
+            String text = QUERIES[query++ % QUERIES.length];
+            int before = live.getDocumentCount();
+            List<String> bm25 = ranking(liveBm25.search(text, text, 10));
+            List<String> vsm = ranking(liveVsm.search(text, text, 10));
+            if (before > 0 && live.getDocumentCount() == before) {
+                Map<String, List<String>> rankings = observed.computeIfAbsent(before, count -> new HashMap<>());
+                rankings.put("BM25 " + text, bm25);
+                rankings.put("VSM " + text, vsm);
+            }
+        }
+        ingest.join();
+        assertNull(ingestFailure.get(), "ingestion failed");
+        System.out.println("Checking " + query + " concurrent queries, stable at " + observed.size() + " index sizes");
+        assertFalse(observed.isEmpty(), "no query ran against a stable snapshot");
+        for (Map.Entry<Integer, Map<String, List<String>>> entry : observed.entrySet()) {
+            Map<String, List<String>> expected = rebuiltRankings(corpus.subList(0, entry.getKey()));
+            for (Map.Entry<String, List<String>> ranking : entry.getValue().entrySet()) {
+                assertEquals(expected.get(ranking.getKey()), ranking.getValue(),
+                        ranking.getKey() + " at " + entry.getKey() + " documents");
+            }
+        }
+
+        // Once merging settles, every execution mode must match the rebuilt index
+        live.waitForMerges();
+        assertEquals(corpus.size(), live.getDocumentCount());
+        assertTrue(live.getSegmentCount() < corpus.size() / 200, "segments were not merged");
+
+        Indexer rebuilt = new Indexer();
+        rebuilt.indexDocuments(corpus);
+        assertEquals(1, rebuilt.getSegmentCount());
+        assertEquals(rebuilt.getVocabulary(), live.getVocabulary());
+        for (BM25.ExecutionMode mode : new BM25.ExecutionMode[] {
+                BM25.ExecutionMode.TERM_AT_A_TIME, BM25.ExecutionMode.WAND, BM25.ExecutionMode.BLOCK_MAX_WAND}) {
+            BM25 expected = new BM25(rebuilt, preprocessor);
+            BM25 actual = new BM25(live, preprocessor);
+            expected.setExecutionMode(mode);
+            actual.setExecutionMode(mode);
+            expected.initialize();
+            actual.initialize();
+            for (String text : QUERIES) {
+                assertEquals(ranking(expected.search(text, text, 10)), ranking(actual.search(text, text, 10)),
+                        "BM25 " + mode + " '" + text + "'");
+            }
+        }
+        VSM expectedVsm = new VSM(rebuilt, preprocessor);
+        VSM actualVsm = new VSM(live, preprocessor);
+        for (String text : QUERIES) {
+            assertEquals(ranking(expectedVsm.search(text, text, 10)), ranking(actualVsm.search(text, text, 10)),
+                    "VSM '" + text + "'");
+        }
+    }
+
+    @Test
+    void mergedSegmentHasSamePostingsAsSingleBatch() throws Exception {
+        List<Document> corpus = IndexBenchmark.generateCorpus(1000, 40, 500);
+
+        Indexer segmented = new Indexer();
+        segmented.setMergePolicy(null);
+        segmented.setMaxBufferedDocuments(97);
+        for (Document document : corpus) {
+            segmented.indexDocument(document);
+        }
+        segmented.flush();
+        assertEquals(11, segmented.getSegmentCount());
+
+        Indexer rebuilt = new Indexer();
+        rebuilt.indexDocuments(corpus);
+
+        // Fan-out cursors before merging, then a single merged segment
+        assertSamePostings(rebuilt, segmented);
+        segmented.setMergePolicy(new TieredMergePolicy(2, 20, 1));
+        segmented.waitForMerges();
+        assertEquals(1, segmented.getSegmentCount());
+        assertSamePostings(rebuilt, segmented);
+        assertEquals(rebuilt.getPostingsSizeInBytes(), segmented.getPostingsSizeInBytes());
+    }
+
+    @Test
+    void parallelBuildWritesSameIndexFileAsSequentialBuild() throws Exception {
+        List<Document> corpus = IndexBenchmark.generateCorpus(2000, 50, 800);
+
+        Indexer sequential = new Indexer();
+        sequential.setMaxBufferedDocuments(300);
+        sequential.indexDocuments(corpus);
+        sequential.waitForMerges();
+
+        Indexer parallel = new Indexer();
+        parallel.setIndexingThreads(4);
+        parallel.indexDocuments(corpus.subList(0, 150));
+        parallel.indexDocuments(corpus.subList(150, corpus.size()));
+        parallel.waitForMerges();
+
+        assertSamePostings(sequential, parallel);
+        Path sequentialFile = Files.createTempFile("sequential", ".idx");
+        Path parallelFile = Files.createTempFile("parallel", ".idx");
+        try {
+            IndexWriter.write(sequential, sequentialFile);
+            IndexWriter.write(parallel, parallelFile);
+            assertArrayEquals(Files.readAllBytes(sequentialFile), Files.readAllBytes(parallelFile));
+        } finally {
+            Files.deleteIfExists(sequentialFile);
+            Files.deleteIfExists(parallelFile);
+        }
+    }
+
+    private void assertSamePostings(Indexer expected, Indexer actual) {
+        assertEquals(expected.getVocabulary(), actual.getVocabulary());
+        for (String term : expected.getVocabulary()) {
+            assertEquals(expected.getDocumentFrequency(term), actual.getDocumentFrequency(term), term);
+            PostingsCursor e = expected.getPostings(term);
+            PostingsCursor a = actual.getPostings(term);
+            assertEquals(e.docFrequency(), a.docFrequency(), term);
+            assertEquals(e.maxTermFrequency(), a.maxTermFrequency(), term);
+            while (e.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                assertEquals(e.docId(), a.nextDoc(), term);
+                assertEquals(e.termFrequency(), a.termFrequency(), term);
+            }
+            assertEquals(PostingsCursor.NO_MORE_DOCS, a.nextDoc(), term);
+        }
+        for (int docId = 0; docId < expected.getDocumentCount(); docId++) {
+            assertEquals(expected.getDocument(docId).getId(), actual.getDocument(docId).getId());
+            assertEquals(expected.getDocument(docId).getLength(), actual.getDocument(docId).getLength());
+            assertEquals(expected.getDocumentContent(docId), actual.getDocumentContent(docId));
+        }
+    }
+
+    private Map<String, List<String>> rebuiltRankings(List<Document> documents) {
+        Indexer rebuilt = new Indexer();
+        rebuilt.indexDocuments(new ArrayList<>(documents));
+        BM25 bm25 = new BM25(rebuilt, preprocessor);
+        bm25.initialize();
+        VSM vsm = new VSM(rebuilt, preprocessor);
+        Map<String, List<String>> rankings = new HashMap<>();
+        for (String text : QUERIES) {
+            rankings.put("BM25 " + text, ranking(bm25.search(text, text, 10)));
+            rankings.put("VSM " + text, ranking(vsm.search(text, text, 10)));
+        }
+        return rankings;
+    }
+
+    // Document IDs with their exact scores, best first
+    private static List<String> ranking(QueryResult result) {
+        List<String> ranking = new ArrayList<>();
+        for (DocumentScore score : result.getResults()) {
+            ranking.add(score.getDocument().getId() + "=" + score.getScore());
+        }
+        return ranking;
+    }
+}
@@ -0,0 +1,164 @@
+package com.IR.SearchEngine.indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks TermDictionary lookups against a plain sorted list: term IDs and terms
+ * across block boundaries, absent terms, prefix ranges from the empty prefix to
+ * prefixes past the last term, and non-ASCII terms, which must follow UTF-8
+ * byte order rather than String order.
+ */
+class TermDictionaryTest {
+
+    @Test
+    void termIdsRoundTripAcrossBlocks() {
+        // Sizes just below, at and above multiples of the block size
+        for (int count : new int[] {1, TermDictionary.BLOCK_SIZE - 1, TermDictionary.BLOCK_SIZE,
+                TermDictionary.BLOCK_SIZE + 1, 3 * TermDictionary.BLOCK_SIZE, 100}) {
+            List<String> terms = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                terms.add("term" + i);
+            }
+            TermDictionary dictionary = TermDictionary.of(terms);
+            List<String> expected = sortedByUtf8(terms);
+            assertEquals(count, dictionary.size());
+            for (int id = 0; id < count; id++) {
+                assertEquals(expected.get(id), dictionary.term(id));
+                assertEquals(id, dictionary.termId(expected.get(id)));
+            }
+            assertEquals(-1, dictionary.termId("term"));         // a prefix of terms, before the first
+            assertEquals(-1, dictionary.termId("term0x"));       // between two terms
+            assertEquals(-1, dictionary.termId("zzz"));          // after the last
+            assertEquals(-1, dictionary.termId(""));
+            assertThrows(IndexOutOfBoundsException.class, () -> dictionary.term(count));
+            assertThrows(IndexOutOfBoundsException.class, () -> dictionary.term(-1));
+        }
+    }
+
+    @Test
+    void iteratorAndSetFollowIdOrder() {
+        List<String> terms = List.of("retriev", "retrieval", "index", "retriev", "query", "rank", "invert");
+        TermDictionary dictionary = TermDictionary.of(terms);
+        assertEquals(6, dictionary.size());   // the duplicate is dropped
+        List<String> expected = sortedByUtf8(terms);
+
+        TermDictionary.TermIterator iterator = dictionary.iterator();
+        for (int id = 0; id < expected.size(); id++) {
+            assertTrue(iterator.next());
+            assertEquals(id, iterator.id());
+            assertEquals(expected.get(id), iterator.term());
+        }
+        assertFalse(iterator.next());
+        assertEquals(expected, new ArrayList<>(dictionary.asSet()));
+        assertTrue(dictionary.asSet().contains("rank"));
+        assertFalse(dictionary.asSet().contains("ran"));
+    }
+
+    @Test
+    void prefixRanges() {
+        List<String> terms = new ArrayList<>();
+        for (String stem : new String[] {"a", "ab", "abc", "abd", "b", "ba", "retr", "retriev", "retrieval", "z"}) {
+            for (int i = 0; i < 5; i++) {
+                terms.add(stem + (char) ('a' + i));
+            }
+            terms.add(stem);
+        }
+        assertPrefixRangesMatch(terms);
+
+        TermDictionary dictionary = TermDictionary.of(terms);
+        assertArrayEquals(new int[] {0, dictionary.size()}, dictionary.prefixRange(""));
+        assertArrayEquals(new int[] {dictionary.size(), dictionary.size()}, dictionary.prefixRange("zz"));
+        assertArrayEquals(new int[] {dictionary.size(), dictionary.size()}, dictionary.prefixRange("~"));
+        assertArrayEquals(new int[] {0, 0}, dictionary.prefixRange("0"));
+    }
+
+    @Test
+    void nonAsciiTermsFollowUtf8ByteOrder() {
+        // U+FFFD sorts after a surrogate pair in String order but before the
+        // pair's 4-byte UTF-8 encoding, which starts with 0xF0
+        List<String> terms = List.of("zebra", "été", "étude", "ä", "\uFFFD", "\uFFFDx",
+                "𝄞", "𝄞clef", "𝄠", "😀", "中文", "e");
+        List<String> expected = sortedByUtf8(terms);
+        assertTrue(expected.indexOf("\uFFFD") < expected.indexOf("𝄞"));
+        assertTrue("\uFFFD".compareTo("𝄞") > 0);
+
+        TermDictionary dictionary = TermDictionary.of(terms);
+        for (int id = 0; id < expected.size(); id++) {
+            assertEquals(expected.get(id), dictionary.term(id));
+            assertEquals(id, dictionary.termId(expected.get(id)));
+        }
+        assertPrefixRangesMatch(terms);
+        assertArrayEquals(new int[] {dictionary.termId("𝄞"), dictionary.termId("𝄠")},
+                dictionary.prefixRange("𝄞"));
+        assertEquals(-1, dictionary.termId("é"));
+    }
+
+    @Test
+    void emptyDictionary() {
+        TermDictionary dictionary = TermDictionary.empty();
+        assertEquals(0, dictionary.size());
+        assertEquals(-1, dictionary.termId("a"));
+        assertArrayEquals(new int[] {0, 0}, dictionary.prefixRange(""));
+        assertArrayEquals(new int[] {0, 0}, dictionary.prefixRange("a"));
+        assertFalse(dictionary.iterator().next());
+        assertThrows(IndexOutOfBoundsException.class, () -> dictionary.term(0));
+        assertEquals(0, TermDictionary.of(List.of()).size());
+    }
+
+    @Test
+    void builderRejectsUnsortedTerms() {
+        TermDictionary.Builder builder = new TermDictionary.Builder();
+        byte[] b = "b".getBytes(StandardCharsets.UTF_8);
+        builder.add(b, b.length);
+        byte[] a = "a".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> builder.add(a, a.length));
+        assertThrows(IllegalArgumentException.class, () -> builder.add(b, b.length));
+    }
+
+    /**
+     * Checks prefixRange() for every prefix of every term against a scan of the
+     * sorted terms.
+     */
+    private static void assertPrefixRangesMatch(List<String> terms) {
+        TermDictionary dictionary = TermDictionary.of(terms);
+        List<String> expected = sortedByUtf8(terms);
+        Set<String> prefixes = new HashSet<>();
+        for (String term : terms) {
+            for (int end = 0; end <= term.length(); end = term.offsetByCodePoints(end, 1)) {
+                prefixes.add(term.substring(0, end));
+                if (end == term.length()) {
+                    break;
+                }
+            }
+        }
+        for (String prefix : prefixes) {
+            int from = -1;
+            int to = -1;
+            for (int id = 0; id < expected.size(); id++) {
+                if (expected.get(id).startsWith(prefix)) {
+                    if (from < 0) {
+                        from = id;
+                    }
+                    to = id + 1;
+                }
+            }
+            assertArrayEquals(new int[] {from, to}, dictionary.prefixRange(prefix), "prefix \"" + prefix + "\"");
+        }
+    }
+
+    private static List<String> sortedByUtf8(List<String> terms) {
+        List<String> sorted = new ArrayList<>(new HashSet<>(terms));
+        sorted.sort((x, y) -> Arrays.compareUnsigned(x.getBytes(StandardCharsets.UTF_8),
+                y.getBytes(StandardCharsets.UTF_8)));
+        return sorted;
+    }
+}
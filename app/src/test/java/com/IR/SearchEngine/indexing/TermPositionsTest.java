@@ -0,0 +1,121 @@
+package com.IR.SearchEngine.indexing;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that postings hold the token positions recorded by the Preprocessor,
+ * through sealing and an index file round trip, and that an index built
+ * without positions keeps the same frequencies and stays position-free.
+ */
+class TermPositionsTest {
+
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog; the dog sleeps and the fox runs.";
+
+    private final Preprocessor preprocessor = new Preprocessor();
+
+    @Test
+    void postingsHoldPreprocessedTokenPositions() throws Exception {
+        String[] tokens = preprocessor.preprocessQuery(TEXT).split(" ");
+        Document document = preprocessor.preprocessDocument(new Document("d0", "Fox", TEXT));
+        assertEquals(tokens.length, document.getLength());
+
+        Indexer indexer = new Indexer();
+        indexer.indexDocuments(List.of(document));
+        assertTokenPositions(indexer, tokens);
+
+        Path file = Files.createTempFile("positions", ".idx");
+        try {
+            IndexWriter.write(indexer, file);
+            Indexer reopened = IndexReader.open(file);
+            assertTrue(reopened.isStorePositions());
+            assertTokenPositions(reopened, tokens);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void indexWithoutPositionsKeepsFrequencies() throws Exception {
+        List<Document> corpus = IndexBenchmark.generateCorpus(2000, 40, 1000);
+        Indexer withPositions = new Indexer();
+        withPositions.setMaxBufferedDocuments(300);
+        withPositions.indexDocuments(corpus);
+        Indexer withoutPositions = new Indexer();
+        withoutPositions.setMaxBufferedDocuments(300);
+        withoutPositions.setStorePositions(false);
+        withoutPositions.indexDocuments(corpus);
+        withPositions.waitForMerges();
+        withoutPositions.waitForMerges();
+
+        assertTrue(withoutPositions.getPostingsSizeInBytes() < withPositions.getPostingsSizeInBytes());
+        assertSameFrequencies(withPositions, withoutPositions);
+
+        Path file = Files.createTempFile("no-positions", ".idx");
+        Path external = Files.createTempFile("no-positions-external", ".idx");
+        try {
+            IndexWriter.write(withoutPositions, file);
+            Indexer reopened = IndexReader.open(file);
+            assertFalse(reopened.isStorePositions());
+            assertSameFrequencies(withPositions, reopened);
+
+            try (ExternalIndexBuilder builder = new ExternalIndexBuilder(external, new VByteCodec(), 1 << 20)) {
+                builder.setStorePositions(false);
+                for (Document document : corpus) {
+                    builder.addDocument(document);
+                }
+                builder.finish();
+            }
+            assertEquals(-1, Files.mismatch(file, external));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(external);
+        }
+    }
+
+    private void assertTokenPositions(Indexer indexer, String[] tokens) {
+        for (String term : indexer.getVocabulary()) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < tokens.length; i++) {
+                if (tokens[i].equals(term)) {
+                    expected.add(i);
+                }
+            }
+            PostingsCursor cursor = indexer.getPostings(term);
+            assertTrue(cursor.hasPositions());
+            assertEquals(0, cursor.nextDoc());
+            List<Integer> actual = new ArrayList<>();
+            for (int i = 0; i < cursor.termFrequency(); i++) {
+                actual.add(cursor.position(i));
+            }
+            assertEquals(expected, actual, term);
+        }
+    }
+
+    private void assertSameFrequencies(Indexer expected, Indexer actual) {
+        assertEquals(expected.getVocabulary(), actual.getVocabulary());
+        for (String term : expected.getVocabulary()) {
+            PostingsCursor expectedCursor = expected.getPostings(term);
+            PostingsCursor actualCursor = actual.getPostings(term);
+            assertFalse(actualCursor.hasPositions(), term);
+            while (expectedCursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                assertEquals(expectedCursor.docId(), actualCursor.nextDoc(), term);
+                assertEquals(expectedCursor.termFrequency(), actualCursor.termFrequency(), term);
+            }
+            assertEquals(PostingsCursor.NO_MORE_DOCS, actualCursor.nextDoc(), term);
+
+            PostingsCursor positioned = actual.getPostings(term);
+            positioned.nextDoc();
+            assertThrows(IllegalStateException.class, () -> positioned.position(0));
+        }
+    }
+}
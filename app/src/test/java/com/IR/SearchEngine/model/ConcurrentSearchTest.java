@@ -0,0 +1,153 @@
+package com.IR.SearchEngine.model;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.DocumentScore;
+import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.indexing.DecodedBlockCache;
+import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs thousands of queries on BM25 and VSM from several threads at once and
+ * checks every result against the same query run alone, which finds documents
+ * for every query and model. The models searched concurrently are fresh, so
+ * their statistics and vectors are also computed while queries race; only the
+ * score-at-a-time model is initialized first, so that it searches its impact index.
+ */
+class ConcurrentSearchTest {
+
+    private static final int THREADS = 8;
+    private static final int QUERIES = 4000;
+
+    private static final String[] QUERY_TEXTS = Stream.of(
+        "t3 t27", "t31", "t0 t1 t2 t23", "t50 t60 t399", "t12 t120 t212", "t15 AND t16", "t19 OR t20 NOT t0",
+        "\"t0 t1\"", "t2 NEAR/3 t4", "t398 t397 t396 t395", "t42", "t100 AND NOT t1", "missing t38"
+    ).map(IndexBenchmark::query).toArray(String[]::new);
+
+    @Test
+    void concurrentQueriesMatchSingleThreadedResults() throws Exception {
+        List<Document> corpus = IndexBenchmark.generateCorpus(4000, 40, 400);
+        Indexer indexer = new Indexer();
+        indexer.setMaxBufferedDocuments(1500);
+        indexer.indexDocuments(corpus);
+        indexer.setBlockCache(new DecodedBlockCache(1L << 20));
+
+        Preprocessor preprocessor = new Preprocessor();
+        String[] processed = new String[QUERY_TEXTS.length];
+        for (int q = 0; q < QUERY_TEXTS.length; q++) {
+            processed[q] = preprocessor.preprocessQuery(QUERY_TEXTS[q]);
+        }
+        List<IModel> reference = models(indexer, preprocessor);
+        List<IModel> concurrent = models(indexer, new Preprocessor());
+        String[][] expected = new String[reference.size()][QUERY_TEXTS.length];
+        for (int m = 0; m < reference.size(); m++) {
+            for (int q = 0; q < QUERY_TEXTS.length; q++) {
+                expected[m][q] = describe(reference.get(m).search(QUERY_TEXTS[q], processed[q], 10));
+                assertFalse(expected[m][q].isEmpty(), reference.get(m).getConfiguration() + " \"" + QUERY_TEXTS[q] + "\"");
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> failures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                long seed = t;
+                failures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < QUERIES / THREADS; i++) {
+                        int m = random.nextInt(concurrent.size());
+                        int q = random.nextInt(QUERY_TEXTS.length);
+                        String actual = describe(concurrent.get(m).search(QUERY_TEXTS[q], processed[q], 10));
+                        if (!expected[m][q].equals(actual)) {
+                            return concurrent.get(m).getConfiguration() + " \"" + QUERY_TEXTS[q] + "\": expected "
+                                    + expected[m][q] + " but got " + actual;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<String> failure : failures) {
+                assertNull(failure.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentStemmingMatchesSingleThreaded() throws Exception {
+        String[] texts = {
+            "Running runners ran relational generalizations", "connected connection connecting connections",
+            "hopefulness happiness hopping hoped", "computational complexity of computing computers",
+            "the conditionally conditional conditions", "retrieval of retrieved documents by relevance"
+        };
+        Preprocessor reference = new Preprocessor();
+        String[] expected = new String[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            expected[i] = reference.preprocessQuery(texts[i]);
+        }
+
+        Preprocessor shared = new Preprocessor();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        int text = i % texts.length;
+                        // Changing the text defeats the caches, so the stemmer itself is shared
+                        String suffix = " w" + i + "ing";
+                        String actual = shared.preprocessQuery(texts[text] + suffix);
+                        if (!actual.equals(expected[text] + " " + reference.preprocessQuery(suffix))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<IModel> models(Indexer indexer, Preprocessor preprocessor) {
+        List<IModel> models = new ArrayList<>();
+        for (BM25.ExecutionMode mode : BM25.ExecutionMode.values()) {
+            BM25 bm25 = new BM25(indexer, preprocessor);
+            bm25.setExecutionMode(mode);
+            if (mode == BM25.ExecutionMode.SCORE_AT_A_TIME) {
+                bm25.initialize(); // answers with BLOCK_MAX_WAND until its impact index is built
+            }
+            models.add(bm25);
+        }
+        for (VSM.ExecutionMode mode : VSM.ExecutionMode.values()) {
+            VSM vsm = new VSM(indexer, preprocessor);
+            vsm.setExecutionMode(mode);
+            models.add(vsm);
+        }
+        return models;
+    }
+
+    private static String describe(QueryResult result) {
+        StringBuilder description = new StringBuilder();
+        for (DocumentScore score : result.getResults()) {
+            description.append(score.getDocId()).append(':').append(score.getScore()).append(' ');
+        }
+        return description.toString();
+    }
+}
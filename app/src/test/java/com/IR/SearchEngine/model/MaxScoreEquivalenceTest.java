@@ -0,0 +1,74 @@
+package com.IR.SearchEngine.model;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.DocumentScore;
+import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that VSM's MAX_SCORE mode returns exactly the documents and scores of
+ * the EXHAUSTIVE mode, for every term frequency weighting scheme, on a
+ * multi-segment index, and with a result count from one document to more than
+ * the collection. Every query finds documents.
+ */
+class MaxScoreEquivalenceTest {
+
+    private static final String[] QUERIES = Stream.of(
+        "t30", "t1 t40", "t0 t1 t2 t3 t4 t5 t60", "t3 t42 t250 t399", "t7 t7 t300", "t398 t399", "t150 missing",
+        "t10 t11 t12 t13 t14 t15 t16 t17 t18 t19 t20"
+    ).map(IndexBenchmark::query).toArray(String[]::new);
+    private static final int[] TOP_KS = {1, 10, 100, 5000};
+    private static final int TF_SCHEMES = 4;  // binary, raw, log and augmented
+
+    @Test
+    void maxScoreMatchesExhaustiveScoring() {
+        // A small vocabulary gives many equal scores, so ties are exercised too
+        List<Document> corpus = IndexBenchmark.generateCorpus(4000, 30, 400);
+        Indexer indexer = new Indexer();
+        indexer.setMaxBufferedDocuments(900);
+        indexer.indexDocuments(corpus);
+        assertTrue(indexer.getSegmentCount() > 1);
+        Preprocessor preprocessor = new Preprocessor();
+
+        for (int scheme = 0; scheme < TF_SCHEMES; scheme++) {
+            VSM exhaustive = new VSM(indexer, preprocessor, scheme);
+            exhaustive.setExecutionMode(VSM.ExecutionMode.EXHAUSTIVE);
+            VSM maxScore = new VSM(indexer, preprocessor, scheme);
+            maxScore.setExecutionMode(VSM.ExecutionMode.MAX_SCORE);
+            long postingsScored = 0;
+            long postingsTotal = 0;
+            for (String query : QUERIES) {
+                String processed = preprocessor.preprocessQuery(query);
+                for (int topK : TOP_KS) {
+                    QueryResult pruned = maxScore.search(query, processed, topK);
+                    List<String> expected = describe(exhaustive.search(query, processed, topK));
+                    String description = maxScore.getConfiguration() + " \"" + query + "\" top " + topK;
+                    assertFalse(expected.isEmpty(), description + " found nothing");
+                    assertEquals(expected, describe(pruned), description);
+                    if (topK == 10) {
+                        postingsScored += pruned.getStatistics().getPostingsScored();
+                        postingsTotal += pruned.getStatistics().getPostingsTotal();
+                    }
+                }
+            }
+            assertTrue(postingsScored < postingsTotal, maxScore.getConfiguration() + " never skipped a posting");
+        }
+    }
+
+    private static List<String> describe(QueryResult result) {
+        List<String> hits = new ArrayList<>();
+        for (DocumentScore score : result.getResults()) {
+            hits.add(score.getDocId() + ":" + score.getScore());
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,135 @@
+package com.IR.SearchEngine.model;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.DocumentScore;
+import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that queries split into document ranges scored in parallel return the
+ * same results, scores included, as the same queries scored on one thread, in
+ * every exact execution mode of BM25 and VSM, with hits coming from several
+ * of the ranges.
+ */
+class ParallelScoringTest {
+
+    private static final String[] QUERIES = Stream.of(
+        "t25", "t30 t40", "t0 t1 t2 t3 t20 t21 t22 t23", "t3 t50 t120 t399", "t10 t11 t12 t13 t14 t15 t16 t17 t18 t19",
+        "t398 t397", "missing t8"
+    ).map(IndexBenchmark::query).toArray(String[]::new);
+
+    @Test
+    void parallelQueriesMatchSequentialResults() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(30000, 40, 400);
+        Indexer indexer = new Indexer();
+        indexer.setMaxBufferedDocuments(7000);
+        indexer.indexDocuments(corpus);
+        Preprocessor preprocessor = new Preprocessor();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (BM25.ExecutionMode mode : BM25.ExecutionMode.values()) {
+                if (mode == BM25.ExecutionMode.SCORE_AT_A_TIME) {
+                    continue; // approximate, never split
+                }
+                BM25 sequential = new BM25(indexer, preprocessor);
+                sequential.setExecutionMode(mode);
+                sequential.setParallelThreshold(Long.MAX_VALUE);
+                BM25 parallel = new BM25(indexer, preprocessor);
+                parallel.setExecutionMode(mode);
+                parallel.setParallelThreshold(0);
+                parallel.setParallelPool(pool);
+                assertSameResults(sequential, parallel, preprocessor, corpus.size());
+            }
+            for (VSM.ExecutionMode mode : VSM.ExecutionMode.values()) {
+                VSM sequential = new VSM(indexer, preprocessor);
+                sequential.setExecutionMode(mode);
+                sequential.setParallelThreshold(Long.MAX_VALUE);
+                VSM parallel = new VSM(indexer, preprocessor);
+                parallel.setExecutionMode(mode);
+                parallel.setParallelThreshold(0);
+                parallel.setParallelPool(pool);
+                assertSameResults(sequential, parallel, preprocessor, corpus.size());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void splitsOnlyLargeQueriesOnSeveralThreads() {
+        ParallelScorer scorer = new ParallelScorer();
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            scorer.setPool(pool);
+            scorer.setPostingsThreshold(1000);
+            assertTrue(scorer.shouldSplit(1000, 100000));
+            assertFalse(scorer.shouldSplit(999, 100000));
+            assertFalse(scorer.shouldSplit(1000, 100));   // too few documents for two ranges
+            scorer.setPool(single);
+            assertFalse(scorer.shouldSplit(1000, 100000));
+            assertThrows(IllegalArgumentException.class, () -> scorer.setPostingsThreshold(-1));
+        } finally {
+            single.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    private static void assertSameResults(IModel sequential, IModel parallel, Preprocessor preprocessor,
+                                          int documentCount) {
+        for (String query : QUERIES) {
+            String processed = preprocessor.preprocessQuery(query);
+            for (int topK : new int[] {10, 1000}) {
+                QueryResult expected = sequential.search(query, processed, topK);
+                QueryResult actual = parallel.search(query, processed, topK);
+                String description = parallel.getConfiguration() + " \"" + query + "\" top " + topK;
+                assertTrue(expected.getResultCount() > 0, description + " found nothing");
+                assertEquals(describe(expected), describe(actual), description);
+                assertEquals(expected.getStatistics().getPostingsTotal(), actual.getStatistics().getPostingsTotal());
+                assertEquals(0, expected.getStatistics().getDocumentRanges());
+                int ranges = actual.getStatistics().getDocumentRanges();
+                assertTrue(ranges > 1, description + " was not split");
+                if (topK == 1000) {
+                    assertTrue(rangesWithHits(actual, ranges, documentCount) > 1, description + " hits one range");
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the document ranges, split as ParallelScorer splits them, that hold at least one hit.
+     */
+    private static int rangesWithHits(QueryResult result, int ranges, int documentCount) {
+        boolean[] hit = new boolean[ranges];
+        for (DocumentScore score : result.getResults()) {
+            int range = 0;
+            while (score.getDocId() >= (long) documentCount * (range + 1) / ranges) {
+                range++;
+            }
+            hit[range] = true;
+        }
+        int count = 0;
+        for (boolean rangeHit : hit) {
+            count += rangeHit ? 1 : 0;
+        }
+        return count;
+    }
+
+    private static List<String> describe(QueryResult result) {
+        List<String> hits = new ArrayList<>();
+        for (DocumentScore score : result.getResults()) {
+            hits.add(score.getDocId() + ":" + score.getScore());
+        }
+        return hits;
+    }
+}
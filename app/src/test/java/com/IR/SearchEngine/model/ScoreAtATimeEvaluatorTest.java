@@ -0,0 +1,212 @@
+package com.IR.SearchEngine.model;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.DocumentScore;
+import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.data.QueryStatistics;
+import com.IR.SearchEngine.indexing.ImpactIndex;
+import com.IR.SearchEngine.indexing.IndexSnapshot;
+import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.indexing.TermScorer;
+import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks ScoreAtATimeEvaluator against a direct sum of the quantized impacts:
+ * without a budget the ranking and scores equal the dequantized sums, a budget
+ * of N scores exactly the N highest impacts, and a reused evaluator leaves no
+ * accumulator behind between queries, whether they ran to the end or stopped
+ * at a budget or deadline. Also checks that BM25 answers score-at-a-time queries
+ * with Block-Max WAND until the impact index built in the background is ready.
+ */
+class ScoreAtATimeEvaluatorTest {
+
+    private static final TermScorer WEIGHT = (tf, docLength) -> tf * 10.0 / (tf + docLength / 30.0);
+
+    @Test
+    void unlimitedBudgetRanksByExactImpactSums() {
+        ImpactIndex impacts = impactIndex(3000, 700);
+        ScoreAtATimeEvaluator evaluator = new ScoreAtATimeEvaluator();
+        for (int[] termIds : queries()) {
+            for (int topK : new int[] {1, 10, 5000}) {
+                QueryStatistics statistics = new QueryStatistics();
+                TopKCollector hits = evaluator.evaluate(impacts, termIds, topK, Long.MAX_VALUE, statistics);
+                assertEquals(expectedHits(impacts, termIds, topK), describe(hits), Arrays.toString(termIds));
+                assertEquals(statistics.getPostingsTotal(), statistics.getPostingsScored());
+                assertFalse(statistics.isTimedOut());
+            }
+        }
+    }
+
+    @Test
+    void budgetScoresTheHighestImpactsFirst() {
+        ImpactIndex impacts = impactIndex(3000, 700);
+        int[] termIds = {3, 17, 42, 150};
+        long total = postings(impacts, termIds).length;
+        ScoreAtATimeEvaluator evaluator = new ScoreAtATimeEvaluator();
+        for (long budget : new long[] {0, 1, 7, 100, total / 2, total - 1, total, total + 10}) {
+            QueryStatistics statistics = new QueryStatistics();
+            TopKCollector hits = evaluator.evaluate(impacts, termIds, 5000, budget, statistics);
+            assertEquals(total, statistics.getPostingsTotal());
+            assertEquals(Math.min(budget, total), statistics.getPostingsScored(), "budget " + budget);
+
+            // Every scored posting is one of the highest impacts, whatever the ties
+            int[] impactsDescending = postings(impacts, termIds);
+            long expectedMass = 0;
+            for (int i = 0; i < Math.min(budget, total); i++) {
+                expectedMass += impactsDescending[i];
+            }
+            long mass = 0;
+            for (int i = 0; i < hits.size(); i++) {
+                mass += Math.round(hits.score(i) / impacts.getScale());
+            }
+            assertEquals(expectedMass, mass, "budget " + budget);
+        }
+    }
+
+    @Test
+    void stopsAtTheDeadline() {
+        ImpactIndex impacts = impactIndex(3000, 700);
+        QueryStatistics statistics = new QueryStatistics();
+        statistics.setDeadline(System.nanoTime() - 1);
+        TopKCollector hits = new ScoreAtATimeEvaluator()
+                .evaluate(impacts, new int[] {3, 17}, 10, Long.MAX_VALUE, statistics);
+        assertTrue(statistics.isTimedOut());
+        assertEquals(0, statistics.getPostingsScored());
+        assertEquals(0, hits.size());
+    }
+
+    @Test
+    void accumulatorsAreResetBetweenQueries() {
+        ImpactIndex impacts = impactIndex(3000, 700);
+        ImpactIndex smaller = impactIndex(1000, 400);
+        ScoreAtATimeEvaluator reused = new ScoreAtATimeEvaluator();
+        for (int[] termIds : queries()) {
+            // Leave partial and complete queries behind, on indexes of two sizes
+            reused.evaluate(impacts, new int[] {5, 6, 7}, 10, 50, new QueryStatistics());
+            reused.evaluate(impacts, new int[] {5, 6, 7}, 10, Long.MAX_VALUE, new QueryStatistics());
+            QueryStatistics timedOut = new QueryStatistics();
+            timedOut.setDeadline(System.nanoTime() - 1);
+            reused.evaluate(impacts, new int[] {8, 9}, 10, Long.MAX_VALUE, timedOut);
+            assertEquals(expectedHits(impacts, termIds, 100),
+                    describe(reused.evaluate(impacts, termIds, 100, Long.MAX_VALUE, new QueryStatistics())));
+            assertEquals(expectedHits(smaller, termIds, 100),
+                    describe(reused.evaluate(smaller, termIds, 100, Long.MAX_VALUE, new QueryStatistics())));
+        }
+    }
+
+    @Test
+    void bm25AnswersWithWandUntilItsImpactIndexIsBuilt() throws Exception {
+        List<Document> corpus = IndexBenchmark.generateCorpus(3000, 30, 400);
+        Indexer indexer = new Indexer();
+        indexer.indexDocuments(corpus);
+        Preprocessor preprocessor = new Preprocessor();
+        BM25 wand = new BM25(indexer, preprocessor);
+        wand.initialize();
+        BM25 initialized = new BM25(indexer, preprocessor);
+        initialized.setExecutionMode(BM25.ExecutionMode.SCORE_AT_A_TIME);
+        initialized.initialize();
+        String query = IndexBenchmark.query("t20 t31 t250");
+
+        // A fresh model schedules the build and does not wait for it
+        BM25 fresh = new BM25(indexer, preprocessor);
+        fresh.setExecutionMode(BM25.ExecutionMode.SCORE_AT_A_TIME);
+        List<String> first = describe(fresh.search(query, query, 10));
+        assertFalse(first.isEmpty());
+        assertTrue(first.equals(describe(wand.search(query, query, 10)))
+                || first.equals(describe(initialized.search(query, query, 10))));
+        fresh.waitForImpactIndex();
+        assertEquals(describe(initialized.search(query, query, 10)), describe(fresh.search(query, query, 10)));
+
+        // New impact bits are built in the background as well
+        BM25 fourBits = new BM25(indexer, preprocessor);
+        fourBits.setExecutionMode(BM25.ExecutionMode.SCORE_AT_A_TIME);
+        fourBits.setImpactBits(4);
+        fourBits.initialize();
+        initialized.setImpactBits(4);
+        initialized.waitForImpactIndex();
+        assertEquals(describe(fourBits.search(query, query, 10)), describe(initialized.search(query, query, 10)));
+    }
+
+    private static ImpactIndex impactIndex(int documents, int maxBufferedDocuments) {
+        List<Document> corpus = IndexBenchmark.generateCorpus(documents, 30, 400);
+        Indexer indexer = new Indexer();
+        indexer.setMaxBufferedDocuments(maxBufferedDocuments);
+        indexer.indexDocuments(corpus);
+        IndexSnapshot snapshot = indexer.snapshot();
+        return ImpactIndex.build(snapshot, termId -> WEIGHT, 8);
+    }
+
+    private static List<int[]> queries() {
+        return List.of(new int[] {0}, new int[] {1, 2}, new int[] {3, -1, 250, 399},
+                new int[] {10, 11, 12, 13, 14, 15, 16, 17, 18, 19}, new int[] {-1});
+    }
+
+    /**
+     * Gets the impacts of all postings of the query terms, highest first.
+     */
+    private static int[] postings(ImpactIndex impacts, int[] termIds) {
+        List<Integer> all = new ArrayList<>();
+        for (int termId : termIds) {
+            for (int s = impacts.termStart(termId); s < impacts.termEnd(termId); s++) {
+                for (int p = impacts.segmentStart(s); p < impacts.segmentEnd(s); p++) {
+                    all.add(impacts.impact(s));
+                }
+            }
+        }
+        return all.stream().sorted((x, y) -> y - x).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Ranks the documents by the sum of their quantized impacts, ties by document ID.
+     */
+    private static List<String> expectedHits(ImpactIndex impacts, int[] termIds, int topK) {
+        int[] sums = new int[impacts.getDocumentCount()];
+        for (int termId : termIds) {
+            if (termId < 0) {
+                continue;
+            }
+            for (int s = impacts.termStart(termId); s < impacts.termEnd(termId); s++) {
+                for (int p = impacts.segmentStart(s); p < impacts.segmentEnd(s); p++) {
+                    sums[impacts.docId(p)] += impacts.impact(s);
+                }
+            }
+        }
+        List<Integer> docIds = new ArrayList<>();
+        for (int docId = 0; docId < sums.length; docId++) {
+            if (sums[docId] > 0) {
+                docIds.add(docId);
+            }
+        }
+        docIds.sort((x, y) -> sums[x] != sums[y] ? Integer.compare(sums[y], sums[x]) : Integer.compare(x, y));
+        List<String> hits = new ArrayList<>();
+        for (int docId : docIds.subList(0, Math.min(topK, docIds.size()))) {
+            hits.add(docId + ":" + sums[docId] * impacts.getScale());
+        }
+        return hits;
+    }
+
+    private static List<String> describe(QueryResult result) {
+        List<String> hits = new ArrayList<>();
+        for (DocumentScore score : result.getResults()) {
+            hits.add(score.getDocId() + ":" + score.getScore());
+        }
+        return hits;
+    }
+
+    private static List<String> describe(TopKCollector hits) {
+        hits.sortBestFirst();
+        List<String> described = new ArrayList<>();
+        for (int i = 0; i < hits.size(); i++) {
+            described.add(hits.docId(i) + ":" + hits.score(i));
+        }
+        return described;
+    }
+}
@@ -0,0 +1,98 @@
+package com.IR.SearchEngine.model;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.DocumentScore;
+import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.indexing.EliasFanoCodec;
+import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.indexing.PForDeltaCodec;
+import com.IR.SearchEngine.indexing.PostingsCodec;
+import com.IR.SearchEngine.indexing.VByteCodec;
+import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that BM25's WAND and BLOCK_MAX_WAND modes return exactly the
+ * documents and scores of the EXHAUSTIVE and TERM_AT_A_TIME modes, for every
+ * postings codec, on a multi-segment index, and with a result count from one
+ * document to more than the collection. Every query finds documents.
+ */
+class WandEquivalenceTest {
+
+    private static final String[] QUERIES = Stream.of(
+        "t30", "t1 t40", "t0 t1 t2 t3 t4 t5 t60", "t3 t42 t250 t399", "t7 t7 t300", "t398 t399", "t150 missing",
+        "t10 t11 t12 t13 t14 t15 t16 t17 t18 t19 t20"
+    ).map(IndexBenchmark::query).toArray(String[]::new);
+    private static final int[] TOP_KS = {1, 10, 100, 5000};
+
+    @Test
+    void wandModesMatchExhaustiveScoring() {
+        // A small vocabulary gives many equal scores, so ties are exercised too
+        List<Document> corpus = IndexBenchmark.generateCorpus(4000, 30, 400);
+        Preprocessor preprocessor = new Preprocessor();
+        for (PostingsCodec codec : new PostingsCodec[] {new VByteCodec(), new PForDeltaCodec(), new EliasFanoCodec()}) {
+            Indexer indexer = new Indexer(codec);
+            indexer.setMaxBufferedDocuments(900);
+            indexer.indexDocuments(corpus);
+            assertTrue(indexer.getSegmentCount() > 1);
+
+            BM25 exhaustive = model(indexer, preprocessor, BM25.ExecutionMode.EXHAUSTIVE);
+            List<IModel> others = List.of(
+                    model(indexer, preprocessor, BM25.ExecutionMode.TERM_AT_A_TIME),
+                    model(indexer, preprocessor, BM25.ExecutionMode.WAND),
+                    model(indexer, preprocessor, BM25.ExecutionMode.BLOCK_MAX_WAND));
+            for (String query : QUERIES) {
+                String processed = preprocessor.preprocessQuery(query);
+                for (int topK : TOP_KS) {
+                    List<String> expected = describe(exhaustive.search(query, processed, topK));
+                    assertFalse(expected.isEmpty(), codec.getName() + " \"" + query + "\" found nothing");
+                    for (IModel other : others) {
+                        assertEquals(expected, describe(other.search(query, processed, topK)),
+                                codec.getName() + " " + other.getConfiguration() + " \"" + query + "\" top " + topK);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void wandSkipsPostings() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(20000, 40, 2000);
+        Indexer indexer = new Indexer();
+        indexer.indexDocuments(corpus);
+        Preprocessor preprocessor = new Preprocessor();
+        String query = IndexBenchmark.query("t5 t200 t1500");
+        QueryResult termAtATime = model(indexer, preprocessor, BM25.ExecutionMode.TERM_AT_A_TIME)
+                .search(query, query, 10);
+        QueryResult wand = model(indexer, preprocessor, BM25.ExecutionMode.WAND).search(query, query, 10);
+        QueryResult blockMax = model(indexer, preprocessor, BM25.ExecutionMode.BLOCK_MAX_WAND)
+                .search(query, query, 10);
+        assertTrue(termAtATime.getResultCount() > 0);
+        assertEquals(describe(termAtATime), describe(wand));
+        assertEquals(describe(termAtATime), describe(blockMax));
+        assertEquals(termAtATime.getStatistics().getPostingsTotal(), wand.getStatistics().getPostingsTotal());
+        assertTrue(wand.getStatistics().getPostingsScored() < termAtATime.getStatistics().getPostingsScored());
+        assertTrue(blockMax.getStatistics().getPostingsScored() <= wand.getStatistics().getPostingsScored());
+    }
+
+    private static BM25 model(Indexer indexer, Preprocessor preprocessor, BM25.ExecutionMode mode) {
+        BM25 bm25 = new BM25(indexer, preprocessor);
+        bm25.setExecutionMode(mode);
+        return bm25;
+    }
+
+    private static List<String> describe(QueryResult result) {
+        List<String> hits = new ArrayList<>();
+        for (DocumentScore score : result.getResults()) {
+            hits.add(score.getDocId() + ":" + score.getScore());
+        }
+        return hits;
+    }
+}
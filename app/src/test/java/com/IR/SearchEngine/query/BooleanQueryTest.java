@@ -0,0 +1,168 @@
+package com.IR.SearchEngine.query;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.DocumentScore;
+import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.indexing.IndexSnapshot;
+import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.model.BM25;
+import com.IR.SearchEngine.model.IModel;
+import com.IR.SearchEngine.model.VSM;
+import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that boolean queries match the same documents as a scan of every
+ * document's terms, on a multi-segment index, and that the models only return
+ * matching documents, none at all when nothing matches, and that malformed
+ * queries parse with warnings. Queries are typed with the synthetic corpus's
+ * letter-only terms, so they survive preprocessing.
+ */
+class BooleanQueryTest {
+
+    @Test
+    void queryTreesMatchTermScan() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(3000, 30, 400);
+        Indexer indexer = new Indexer();
+        indexer.setMaxBufferedDocuments(700);
+        indexer.indexDocuments(corpus);
+        IndexSnapshot index = indexer.snapshot();
+        QueryParser parser = new QueryParser(new Preprocessor());
+
+        assertMatches(parser, index, corpus, "t3 AND t7", d -> has(d, "t3") && has(d, "t7"));
+        assertMatches(parser, index, corpus, "t30 AND t2 AND t1", d -> has(d, "t30") && has(d, "t2") && has(d, "t1"));
+        assertMatches(parser, index, corpus, "t50 OR t60 OR t399", d -> has(d, "t50") || has(d, "t60") || has(d, "t399"));
+        assertMatches(parser, index, corpus, "t3 t7 NOT t1", d -> (has(d, "t3") || has(d, "t7")) && !has(d, "t1"));
+        assertMatches(parser, index, corpus, "t20 AND NOT t0", d -> has(d, "t20") && !has(d, "t0"));
+        assertMatches(parser, index, corpus, "NOT t0", d -> !has(d, "t0"));
+        assertMatches(parser, index, corpus, "(t3 OR t40) AND NOT (t1 t2)",
+                d -> (has(d, "t3") || has(d, "t40")) && !has(d, "t1") && !has(d, "t2"));
+        assertMatches(parser, index, corpus, "t9 t10 AND t11 OR t12 AND NOT t0",
+                d -> ((has(d, "t9") || has(d, "t10")) && has(d, "t11")) || (has(d, "t12") && !has(d, "t0")));
+        assertMatches(parser, index, corpus, "t5 AND \"t0 t1\"", d -> has(d, "t5") && phrase(d, "t0", "t1"));
+        assertEquals(List.of(), matches(parser, index, "t5 AND missing"));
+        assertEquals(List.of(), matches(parser, index, "t3 AND NOT t3"));
+    }
+
+    @Test
+    void modelsReturnOnlyMatchingDocuments() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(3000, 30, 400);
+        Indexer indexer = new Indexer();
+        indexer.setMaxBufferedDocuments(700);
+        indexer.indexDocuments(corpus);
+        Preprocessor preprocessor = new Preprocessor();
+        List<IModel> models = new ArrayList<>();
+        for (BM25.ExecutionMode mode : BM25.ExecutionMode.values()) {
+            BM25 bm25 = new BM25(indexer, preprocessor);
+            bm25.setExecutionMode(mode);
+            models.add(bm25);
+        }
+        for (VSM.ExecutionMode mode : VSM.ExecutionMode.values()) {
+            VSM vsm = new VSM(indexer, preprocessor);
+            vsm.setExecutionMode(mode);
+            models.add(vsm);
+        }
+
+        for (IModel model : models) {
+            // An empty conjunction or exclusion must not turn into a ranking of its terms
+            for (String template : new String[] {"t5 AND missing", "t3 NOT t3", "t1 AND NOT t1", "\"t0 missing\""}) {
+                String empty = IndexBenchmark.query(template);
+                QueryResult result = model.search(empty, preprocessor.preprocessQuery(empty), 10);
+                assertEquals(0, result.getResultCount(), model.getConfiguration() + " \"" + empty + "\"");
+            }
+            String query = IndexBenchmark.query("t3 NOT t1");
+            QueryResult result = model.search(query, preprocessor.preprocessQuery(query), 50);
+            assertTrue(result.getResultCount() > 0, model.getConfiguration());
+            for (DocumentScore score : result.getResults()) {
+                Document document = corpus.get(score.getDocId());
+                assertTrue(has(document, "t3") && !has(document, "t1"), model.getConfiguration());
+            }
+        }
+    }
+
+    @Test
+    void phrasesWithoutPositionsFallBackToPlainRanking() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(500, 30, 400);
+        Indexer indexer = new Indexer();
+        indexer.setStorePositions(false);
+        indexer.indexDocuments(corpus);
+        Preprocessor preprocessor = new Preprocessor();
+        String query = IndexBenchmark.query("\"t50 t60\"");
+        assertTrue(new BM25(indexer, preprocessor).search(query, query, 10).getResultCount() > 0);
+        assertTrue(new VSM(indexer, preprocessor).search(query, query, 10).getResultCount() > 0);
+    }
+
+    @Test
+    void plainAndMalformedQueriesStayUsable() {
+        QueryParser parser = new QueryParser(new Preprocessor());
+
+        assertFalse(parser.parse("convex hull applications").hasConstraints());
+        assertFalse(parser.parse("convex OR hull").hasConstraints());
+        assertTrue(parser.parse("convex AND hull").hasConstraints());
+        assertEquals("convex", parser.parse("the AND convex").getProcessedQuery());
+        assertEquals("convex hull", parser.parse("convex hull NOT robot").getProcessedQuery());
+
+        for (String malformed : new String[] {"NOT", "(convex", "convex)) hull", "NOT (", "convex NEAR/0 hull"}) {
+            assertFalse(parser.parse(malformed).getWarnings().isEmpty(), malformed);
+        }
+        for (String malformed : new String[] {"AND", "OR OR", "()"}) {
+            parser.parse(malformed);
+        }
+        assertEquals("convex hull", parser.parse("convex)) hull").getProcessedQuery());
+        assertEquals(List.of("ignoring unmatched ')'", "ignoring unmatched ')'"),
+                parser.parse("convex)) hull").getWarnings());
+        assertTrue(parser.parse("convex AND hull").getWarnings().isEmpty());
+    }
+
+    /**
+     * Checks the documents a query matches against a scan; the query and the terms
+     * given to has() and phrase() name synthetic terms by rank (see IndexBenchmark.query).
+     */
+    private static void assertMatches(QueryParser parser, IndexSnapshot index, List<Document> corpus,
+                                      String template, Predicate<Document> expected) {
+        List<Integer> expectedIds = new ArrayList<>();
+        for (int docId = 0; docId < corpus.size(); docId++) {
+            if (expected.test(corpus.get(docId))) {
+                expectedIds.add(docId);
+            }
+        }
+        assertFalse(expectedIds.isEmpty(), template + " matches no document");
+        assertEquals(expectedIds, matches(parser, index, template), template);
+    }
+
+    private static List<Integer> matches(QueryParser parser, IndexSnapshot index, String template) {
+        DocIdIterator matches = parser.parse(IndexBenchmark.query(template)).getRoot().iterator(index);
+        List<Integer> actual = new ArrayList<>();
+        for (int docId = matches.nextDoc(); docId != DocIdIterator.NO_MORE_DOCS; docId = matches.nextDoc()) {
+            actual.add(docId);
+        }
+        return actual;
+    }
+
+    private static boolean has(Document document, String term) {
+        return document.getTermPositions().containsKey(IndexBenchmark.query(term));
+    }
+
+    private static boolean phrase(Document document, String first, String second) {
+        int[] starts = document.getTermPositions().get(IndexBenchmark.query(first));
+        int[] next = document.getTermPositions().get(IndexBenchmark.query(second));
+        if (starts == null || next == null) {
+            return false;
+        }
+        for (int start : starts) {
+            for (int position : next) {
+                if (position == start + 1) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,152 @@
+package com.IR.SearchEngine.query;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.indexing.IndexSnapshot;
+import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.indexing.PostingsCursor;
+import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.IR.SearchEngine.util.IndexBenchmark.term;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks phrase and NEAR matching on a multi-segment index against a scan of
+ * every document's positions, and the parsing of the query syntax.
+ */
+class PositionalQueryTest {
+
+    private static final String[][] PHRASES = {
+            {term(0), term(1)}, {term(1), term(0)}, {term(2), term(2)}, {term(0), term(3), term(1)}, {term(4), term(49)},
+            {term(1), "nothing"}
+    };
+
+    @Test
+    void phraseAndNearMatchPositionScan() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(3000, 40, 50);
+        Indexer indexer = new Indexer();
+        indexer.setMaxBufferedDocuments(700);
+        indexer.indexDocuments(corpus);
+        IndexSnapshot index = indexer.snapshot();
+        assertTrue(index.getSegmentCount() > 1);
+
+        for (String[] phrase : PHRASES) {
+            List<Integer> expected = new ArrayList<>();
+            for (int docId = 0; docId < corpus.size(); docId++) {
+                if (containsPhrase(corpus.get(docId), phrase)) {
+                    expected.add(docId);
+                }
+            }
+            PostingsCursor[] cursors = new PostingsCursor[phrase.length];
+            for (int i = 0; i < phrase.length; i++) {
+                cursors[i] = index.getPostings(phrase[i]);
+            }
+            assertEquals(expected, collect(new PhraseIterator(cursors)), String.join(" ", phrase));
+        }
+
+        for (int distance : new int[] {1, 3, 8}) {
+            for (String[] pair : new String[][] {{term(0), term(5)}, {term(7), term(7)}, {term(3), term(30)}}) {
+                List<Integer> expected = new ArrayList<>();
+                for (int docId = 0; docId < corpus.size(); docId++) {
+                    if (containsNear(corpus.get(docId), pair[0], pair[1], distance)) {
+                        expected.add(docId);
+                    }
+                }
+                NearIterator near = new NearIterator(index.getPostings(pair[0]), index.getPostings(pair[1]),
+                        pair[0].equals(pair[1]), distance);
+                assertEquals(expected, collect(near), pair[0] + " NEAR/" + distance + " " + pair[1]);
+            }
+        }
+    }
+
+    @Test
+    void parserSeparatesPhrasesNearClausesAndTerms() {
+        Preprocessor preprocessor = new Preprocessor();
+        QueryParser parser = new QueryParser(preprocessor);
+
+        ParsedQuery query = parser.parse("\"convex hulls\" for robot NEAR/3 navigation in \"the\"");
+        QueryNode.Group root = (QueryNode.Group) query.getRoot();
+        assertEquals(2, root.getRequired().size());
+        assertArrayEquals(new String[] {"convex", "hull"}, ((QueryNode.Phrase) root.getRequired().get(0)).getTerms());
+        QueryNode.Near near = (QueryNode.Near) root.getRequired().get(1);
+        assertEquals("robot", near.getLeft());
+        assertEquals(preprocessor.preprocessQuery("navigation"), near.getRight());
+        assertEquals(3, near.getMaxDistance());
+        assertEquals(preprocessor.preprocessQuery("convex hulls robot navigation"), query.getProcessedQuery());
+
+        // Typographic quotes, a dangling operator and an unterminated quote leave a plain query
+        assertFalse(parser.parse("“convex hull” NEAR/2").hasConstraints());
+        assertFalse(parser.parse("\"convex hull").hasConstraints());
+        assertEquals("convex hull", parser.parse("\"convex hull").getProcessedQuery());
+    }
+
+    @Test
+    void indexWithoutPositionsRejectsPhrases() {
+        Indexer indexer = new Indexer();
+        indexer.setStorePositions(false);
+        indexer.indexDocuments(IndexBenchmark.generateCorpus(200, 20, 30));
+        IndexSnapshot index = indexer.snapshot();
+
+        assertThrows(IllegalStateException.class,
+                () -> new PhraseIterator(new PostingsCursor[] {index.getPostings(term(0)), index.getPostings(term(1))}));
+        // A single-term phrase does not need positions
+        assertEquals(index.getDocumentFrequency(term(0)),
+                collect(new PhraseIterator(new PostingsCursor[] {index.getPostings(term(0))})).size());
+    }
+
+    private static List<Integer> collect(DocIdIterator iterator) {
+        List<Integer> docIds = new ArrayList<>();
+        for (int docId = iterator.nextDoc(); docId != DocIdIterator.NO_MORE_DOCS; docId = iterator.nextDoc()) {
+            docIds.add(docId);
+        }
+        return docIds;
+    }
+
+    private static boolean containsPhrase(Document document, String[] phrase) {
+        int[] starts = document.getTermPositions().get(phrase[0]);
+        if (starts == null) {
+            return false;
+        }
+        for (int start : starts) {
+            boolean match = true;
+            for (int i = 1; i < phrase.length && match; i++) {
+                match = contains(document.getTermPositions().get(phrase[i]), start + i);
+            }
+            if (match) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsNear(Document document, String left, String right, int distance) {
+        int[] leftPositions = document.getTermPositions().get(left);
+        int[] rightPositions = document.getTermPositions().get(right);
+        if (leftPositions == null || rightPositions == null) {
+            return false;
+        }
+        for (int l : leftPositions) {
+            for (int r : rightPositions) {
+                if (l != r && Math.abs(l - r) <= distance) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(int[] positions, int position) {
+        if (positions != null) {
+            for (int p : positions) {
+                if (p == position) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
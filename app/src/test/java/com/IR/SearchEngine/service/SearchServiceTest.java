@@ -0,0 +1,161 @@
+package com.IR.SearchEngine.service;
+
+import com.IR.SearchEngine.data.Document;
+import com.IR.SearchEngine.data.DocumentScore;
+import com.IR.SearchEngine.data.QueryResult;
+import com.IR.SearchEngine.indexing.Indexer;
+import com.IR.SearchEngine.model.BM25;
+import com.IR.SearchEngine.model.IModel;
+import com.IR.SearchEngine.preprocessing.Preprocessor;
+import com.IR.SearchEngine.util.IndexBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the search service returns the model's results, queues and
+ * rejects requests beyond its limits, and flags results cut short by their
+ * deadline.
+ */
+class SearchServiceTest {
+
+    @Test
+    void concurrentRequestsMatchDirectSearch() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(3000, 30, 400);
+        Indexer indexer = new Indexer();
+        indexer.indexDocuments(corpus);
+        Preprocessor preprocessor = new Preprocessor();
+        BM25 bm25 = new BM25(indexer, preprocessor);
+        bm25.initialize();
+
+        String[] queries = Stream.of("t1 t22", "t23 AND t27", "t40 t41 t42", "t30", "\"t0 t1\"")
+                .map(IndexBenchmark::query).toArray(String[]::new);
+        List<List<Integer>> expected = new ArrayList<>();
+        for (String query : queries) {
+            expected.add(docIds(bm25.search(query, preprocessor.preprocessQuery(query), 10)));
+            assertFalse(expected.get(expected.size() - 1).isEmpty(), query);
+        }
+        try (SearchService service = new SearchService(bm25, preprocessor, 4, 1000)) {
+            List<CompletableFuture<QueryResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                futures.add(service.submit(queries[i % queries.length], 10, Duration.ofSeconds(60)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                QueryResult result = futures.get(i).join();
+                assertFalse(result.isPartial());
+                assertTrue(result.getQueueWaitMs() >= 0);
+                assertEquals(expected.get(i % queries.length), docIds(result));
+            }
+            assertEquals(500, service.getCompleted());
+            assertEquals(0, service.getRejected());
+        }
+    }
+
+    @Test
+    void fullQueueRejectsAndQueuedRequestsExpire() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (SearchService service = new SearchService(new BlockingModel(release), new Preprocessor(), 1, 2)) {
+            CompletableFuture<QueryResult> running = service.submit("first", 10, Duration.ofSeconds(60));
+            CompletableFuture<QueryResult> expiring = service.submit("second", 10, Duration.ofMillis(50));
+            CompletableFuture<QueryResult> waiting = service.submit("third", 10, Duration.ofSeconds(60));
+            assertThrows(RejectedExecutionException.class,
+                    () -> service.submit("fourth", 10, Duration.ofSeconds(60)));
+            assertEquals(1, service.getRejected());
+
+            // The second request's deadline passes while the first one holds the only slot
+            QueryResult expired = expiring.join();
+            assertTrue(expired.isPartial());
+            assertEquals(0, expired.getResultCount());
+            assertTrue(expired.getQueueWaitMs() >= 50);
+
+            release.countDown();
+            assertFalse(running.join().isPartial());
+            assertFalse(waiting.join().isPartial());
+            assertEquals(1, service.getExpiredInQueue());
+            assertEquals(2, service.getCompleted());
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> new SearchService(new BlockingModel(release), new Preprocessor(), 0, 1));
+    }
+
+    @Test
+    void deadlineStopsScoringWithPartialResults() {
+        List<Document> corpus = IndexBenchmark.generateCorpus(20000, 50, 2000);
+        Indexer indexer = new Indexer();
+        indexer.indexDocuments(corpus);
+        Preprocessor preprocessor = new Preprocessor();
+        BM25 bm25 = new BM25(indexer, preprocessor);
+        bm25.setExecutionMode(BM25.ExecutionMode.EXHAUSTIVE);
+        bm25.initialize();
+
+        String query = IndexBenchmark.query("t20 t21 t25");
+        String processed = preprocessor.preprocessQuery(query);
+        QueryResult complete = bm25.search(query, processed, 10, System.nanoTime() + 60_000_000_000L);
+        assertFalse(complete.isPartial());
+        assertTrue(complete.getResultCount() > 0);
+        assertEquals(20000, complete.getStatistics().getDocumentsScored());
+
+        // A deadline in the past stops the scoring loop at its first clock check
+        QueryResult partial = bm25.search(query, processed, 10, System.nanoTime() - 1);
+        assertTrue(partial.isPartial());
+        assertTrue(partial.getStatistics().getDocumentsScored() < 20000);
+        assertTrue(partial.toString().contains("Partial results"));
+    }
+
+    private static List<Integer> docIds(QueryResult result) {
+        List<Integer> ids = new ArrayList<>();
+        for (DocumentScore score : result.getResults()) {
+            ids.add(score.getDocId());
+        }
+        return ids;
+    }
+
+    /**
+     * Model whose searches block until released.
+     */
+    private static final class BlockingModel implements IModel {
+        private final CountDownLatch release;
+
+        BlockingModel(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String getModelName() {
+            return "Blocking";
+        }
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public QueryResult search(String query, String processedQuery, int topK) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new QueryResult(query, processedQuery, new ArrayList<>(), 0, getModelName());
+        }
+
+        @Override
+        public Map<String, Double> computeDocumentVector(Document document) {
+            return Map.of();
+        }
+
+        @Override
+        public Map<String, Double> computeQueryVector(Map<String, Integer> queryTerms) {
+            return Map.of();
+        }
+    }
+}